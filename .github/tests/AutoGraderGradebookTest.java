@@ -378,21 +378,30 @@ class AutoGraderGradebookTest {
         assertTrue(gradebook.undo());
         assertEquals(0, gradebook.findStudentGrades("Alice").get().size());
 
+        // Undo adding the student
+        assertTrue(gradebook.undo());
+        assertTrue(gradebook.findStudentGrades("Alice").isEmpty());
+
         // Nothing left to undo
         assertFalse(gradebook.undo());
     }
 
     @Test
-    void undo_doesNotUndoAddStudent() {
+    void undo_revertsAddStudent() {
         gradebook.addStudent("Alice");
         gradebook.addStudent("Bob");
 
-        // addStudent should not be undoable
+        // addStudent is undoable, most recent first
+        assertTrue(gradebook.undo());
+        assertTrue(gradebook.findStudentGrades("Alice").isPresent());
+        assertTrue(gradebook.findStudentGrades("Bob").isEmpty());
+
+        assertTrue(gradebook.undo());
+        assertTrue(gradebook.findStudentGrades("Alice").isEmpty());
         assertFalse(gradebook.undo());
 
-        // Students should still exist
-        assertTrue(gradebook.findStudentGrades("Alice").isPresent());
-        assertTrue(gradebook.findStudentGrades("Bob").isPresent());
+        // the names are free again
+        assertTrue(gradebook.addStudent("Alice"));
     }
 
     // ========== recentLog Tests ==========
@@ -0,0 +1,111 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Weighted averages for students with thousands of grades in three categories
+ * (homework 30% dropping the lowest 2, quizzes 20% dropping the lowest 1,
+ * exams 50%).
+ *
+ * Each benchmark adds a categorized grade, reads the student's letter grade and
+ * undoes the grade, so the book stays the same size. incremental uses the
+ * per-category totals Gradebook keeps up to date; naiveRecompute is what we
+ * did offline from exports: group every grade by category, sort each group,
+ * drop the lowest and weight the means.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class CategoryBenchmark {
+    private static final int STUDENTS = 64;
+    private static final GradeCategory[] CATEGORIES = {
+            new GradeCategory("homework", 30, 2),
+            new GradeCategory("quizzes", 20, 1),
+            new GradeCategory("exams", 50)
+    };
+
+    @Param({"1000", "5000"})
+    public int gradesPerStudent;
+
+    private Gradebook gradebook;
+    private String[] names;
+    // category index of every grade, as the naive version has to know them too
+    private int[][] tags;
+    private final Random random = new Random(7);
+    private int next;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        var random = new Random(42);
+        gradebook = new Gradebook();
+        for (var category : CATEGORIES) {
+            gradebook.defineCategory(category);
+        }
+        names = new String[STUDENTS];
+        tags = new int[STUDENTS][gradesPerStudent + 1];
+        for (int s = 0; s < STUDENTS; s++) {
+            names[s] = "Student" + s;
+            gradebook.addStudent(names[s]);
+            for (int g = 0; g < gradesPerStudent; g++) {
+                tags[s][g] = random.nextInt(CATEGORIES.length);
+                gradebook.addGrade(names[s], CATEGORIES[tags[s][g]].name(), random.nextInt(101));
+            }
+        }
+    }
+
+    @Benchmark
+    public Optional<String> incremental() {
+        next = (next + 1) % STUDENTS;
+        int tag = random.nextInt(CATEGORIES.length);
+        gradebook.addGrade(names[next], CATEGORIES[tag].name(), random.nextInt(101));
+        var letter = gradebook.letterGradeFor(names[next]);
+        gradebook.undo();
+        return letter;
+    }
+
+    @Benchmark
+    public double naiveRecompute() {
+        next = (next + 1) % STUDENTS;
+        int tag = random.nextInt(CATEGORIES.length);
+        gradebook.addGrade(names[next], CATEGORIES[tag].name(), random.nextInt(101));
+        tags[next][gradesPerStudent] = tag;
+        var average = naiveAverage(gradebook.findStudentGrades(names[next]).get(), tags[next]);
+        gradebook.undo();
+        return average;
+    }
+
+    private static double naiveAverage(List<Integer> grades, int[] tags) {
+        var byCategory = new int[CATEGORIES.length][grades.size()];
+        var counts = new int[CATEGORIES.length];
+        int i = 0;
+        for (int grade : grades) {
+            int tag = tags[i++];
+            byCategory[tag][counts[tag]++] = grade;
+        }
+        double total = 0;
+        double weights = 0;
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            if (counts[c] == 0) {
+                continue;
+            }
+            Arrays.sort(byCategory[c], 0, counts[c]);
+            int drop = Math.min(CATEGORIES[c].dropLowest(), counts[c] - 1);
+            long sum = 0;
+            for (int g = drop; g < counts[c]; g++) {
+                sum += byCategory[c][g];
+            }
+            total += CATEGORIES[c].weight() * sum / (counts[c] - drop);
+            weights += CATEGORIES[c].weight();
+        }
+        return total / weights;
+    }
+}
@@ -0,0 +1,48 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Commands.parse and CommandLine tokenizing over a mix of typical input lines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandsBenchmark {
+
+    private final String[] lines = {
+        "ADD_STUDENT Alice",
+        "ADD_GRADE Alice 90",
+        "add_grade Bob 85",
+        "REPORT Alice",
+        "CLASS_REPORT",
+        "  UNDO  ",
+        "LOG",
+        "NOT_A_COMMAND foo",
+    };
+    private final CommandLine input = new CommandLine();
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (var line : lines) {
+            bh.consume(Commands.parse(line));
+        }
+    }
+
+    // what Main does per line: keyword plus the arguments a handler reads
+    @Benchmark
+    public void tokenize(Blackhole bh) {
+        for (var line : lines) {
+            bh.consume(input.parse(line));
+            if (input.command() == Command.ADD_GRADE) {
+                bh.consume(input.secondArgumentAsInt());
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Striped versus global locking on a shared ConcurrentGradebook of 1,024
+ * students: addGrade and averageFor on random students, three writes to one read.
+ *
+ * Run it with -t 1, 4, 16 and 64 (e.g. -Djmh.args="ConcurrentGradebookBenchmark -t 16")
+ * to compare how each lock layout scales with writers; on a single core both
+ * only measure locking overhead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentGradebookBenchmark {
+    private static final int STUDENTS = 1_024;
+
+    @Param({"striped", "global"})
+    public String locking;
+
+    private Gradebook gradebook;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        gradebook = locking.equals("striped") ? new ConcurrentGradebook() : ConcurrentGradebook.withGlobalLock();
+        names = new String[STUDENTS];
+        for (int s = 0; s < STUDENTS; s++) {
+            names[s] = "S" + s;
+            gradebook.addStudent(names[s]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public Optional<Double> mixed() {
+        var random = ThreadLocalRandom.current();
+        for (int i = 0; i < 3; i++) {
+            gradebook.addGrade(names[random.nextInt(STUDENTS)], random.nextInt(101));
+        }
+        return gradebook.averageFor(names[random.nextInt(STUDENTS)]);
+    }
+}
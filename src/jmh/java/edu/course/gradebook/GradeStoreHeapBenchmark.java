@@ -0,0 +1,83 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Heap the grades take in each GradeStore layout: ByteGradeStore packs a grade
+ * into one byte, BoxedGradeStore (the original layout) keeps an
+ * ArrayList<Integer>, a reference per grade (grades 0-100 share the cached
+ * Integers, so no box each).
+ *
+ * Each invocation fills studentCount stores with gradesPerStudent grades and
+ * reports what they retain after a full GC as the bytesPerGrade counter. The
+ * time includes those collections and says little; -prof gc adds what filling
+ * allocated, growth garbage included.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+// EVENTS counters add up across iterations, so one measured fill keeps
+// bytesPerGrade per grade; it barely moves from fill to fill anyway
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class GradeStoreHeapBenchmark {
+
+    @Param({"byte", "boxed"})
+    public String layout;
+
+    @Param({"100000"})
+    public int studentCount;
+
+    @Param({"100"})
+    public int gradesPerStudent;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Retained {
+        public double bytesPerGrade;
+    }
+
+    private Supplier<GradeStore> factory;
+    private long baseline;
+
+    @Setup(Level.Trial)
+    public void pickLayout() {
+        factory = layout.equals("boxed") ? BoxedGradeStore::new : ByteGradeStore::new;
+    }
+
+    @Setup(Level.Iteration)
+    public void measureBaseline() {
+        baseline = usedHeap();
+    }
+
+    @Benchmark
+    public void fill(Retained retained) {
+        var random = new Random(42);
+        var stores = new ArrayList<GradeStore>(studentCount);
+        for (int s = 0; s < studentCount; s++) {
+            var store = factory.get();
+            for (int g = 0; g < gradesPerStudent; g++) {
+                store.add(random.nextInt(101));
+            }
+            stores.add(store);
+        }
+        retained.bytesPerGrade = (double) (usedHeap() - baseline) / ((long) studentCount * gradesPerStudent);
+        // held only until measured, so the next baseline starts from an empty heap
+        Reference.reachabilityFence(stores);
+    }
+
+    private static long usedHeap() {
+        var runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
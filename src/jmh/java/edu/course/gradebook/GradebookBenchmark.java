@@ -0,0 +1,107 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of Gradebook on a pre-populated book.
+ *
+ * The book is rebuilt for every trial with studentCount students holding
+ * gradesPerStudent grades each. Larger rosters can be requested on the command
+ * line, e.g. -Djmh.args="GradebookBenchmark -p studentCount=1000000".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class GradebookBenchmark {
+
+    @Param({"1000", "100000"})
+    public int studentCount;
+
+    @Param({"10", "100"})
+    public int gradesPerStudent;
+
+    private Gradebook gradebook;
+    private String[] names;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        var random = new Random(42);
+        gradebook = new Gradebook();
+        names = new String[studentCount];
+        for (int s = 0; s < studentCount; s++) {
+            names[s] = "Student" + s;
+            gradebook.addStudent(names[s]);
+        }
+        for (int g = 0; g < gradesPerStudent; g++) {
+            for (var name : names) {
+                gradebook.addGrade(name, random.nextInt(101));
+            }
+        }
+    }
+
+    private String nextName() {
+        if (++next == names.length) {
+            next = 0;
+        }
+        return names[next];
+    }
+
+    private int nextId() {
+        if (++next == names.length) {
+            next = 0;
+        }
+        return next;
+    }
+
+    @Benchmark
+    public boolean addGrade() {
+        return gradebook.addGrade(nextName(), 87);
+    }
+
+    @Benchmark
+    public Optional<Double> averageFor() {
+        return gradebook.averageFor(nextName());
+    }
+
+    // same as above, but through the interned int IDs (students were added in order, so ID == index)
+    @Benchmark
+    public boolean addGradeById() {
+        return gradebook.addGrade(nextId(), 87);
+    }
+
+    @Benchmark
+    public Optional<Double> averageForId() {
+        return gradebook.averageFor(nextId());
+    }
+
+    @Benchmark
+    public Optional<String> letterGradeFor() {
+        return gradebook.letterGradeFor(nextName());
+    }
+
+    @Benchmark
+    public Optional<Double> classAverage() {
+        return gradebook.classAverage();
+    }
+
+    // undo needs something to pop, so each op pairs it with the addGrade it reverts
+    @Benchmark
+    public boolean addGradeThenUndo() {
+        gradebook.addGrade(nextName(), 87);
+        return gradebook.undo();
+    }
+
+    @Benchmark
+    public List<String> recentLog() {
+        return gradebook.recentLog(10);
+    }
+}
@@ -0,0 +1,79 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the same term of data through IMPORT versus one ADD_STUDENT /
+ * ADD_GRADE command per line through Main's batch mode.
+ *
+ * Both files are generated once per trial into a temp directory; every
+ * invocation loads them into a fresh Gradebook. The default size keeps a run
+ * short; the 50M-row figure is -Djmh.args="ImportBenchmark -p rows=50000000".
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+
+    @Param({"5000000"})
+    public int rows;
+
+    @Param({"100000"})
+    public int studentCount;
+
+    private Path dir;
+    private Path csv;
+    private Path commands;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        dir = Files.createTempDirectory("import-bench");
+        csv = dir.resolve("grades.csv");
+        commands = dir.resolve("grades.txt");
+        var random = new Random(42);
+        try (var csvOut = Files.newBufferedWriter(csv, StandardCharsets.UTF_8);
+             var commandOut = Files.newBufferedWriter(commands, StandardCharsets.UTF_8)) {
+            for (int s = 0; s < studentCount; s++) {
+                commandOut.write("ADD_STUDENT Student" + s + "\n");
+            }
+            for (int row = 0; row < rows; row++) {
+                var name = "Student" + random.nextInt(studentCount);
+                int grade = random.nextInt(101);
+                csvOut.write(name + "," + grade + "\n");
+                commandOut.write("ADD_GRADE " + name + " " + grade + "\n");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        Files.deleteIfExists(csv);
+        Files.deleteIfExists(commands);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public ImportResult importBatch() throws IOException {
+        return new Gradebook().importBatch(csv);
+    }
+
+    @Benchmark
+    public Main.BatchSummary lineByLine() throws IOException {
+        var app = new Main(new Gradebook(), new PrintStream(OutputStream.nullOutputStream()));
+        try (var reader = Files.newBufferedReader(commands, StandardCharsets.UTF_8)) {
+            return app.runBatch(reader);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class letter distribution read from the maintained counters versus asking
+ * letterGradeFor for every student. The counter read should stay flat as
+ * studentCount grows; the scan grows linearly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class LetterDistributionBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int studentCount;
+
+    @Param({"standard", "plusMinus"})
+    public String scale;
+
+    private Gradebook gradebook;
+    private String[] names;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        var random = new Random(42);
+        gradebook = new Gradebook();
+        gradebook.setGradeScale(scale.equals("plusMinus") ? GradeScale.plusMinus() : GradeScale.standard());
+        names = new String[studentCount];
+        for (int s = 0; s < studentCount; s++) {
+            names[s] = "Student" + s;
+            gradebook.addStudent(names[s]);
+        }
+        for (int g = 0; g < 10; g++) {
+            for (var name : names) {
+                gradebook.addGrade(name, random.nextInt(101));
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Long> distribution() {
+        return gradebook.letterDistribution();
+    }
+
+    @Benchmark
+    public Map<String, Long> distributionByScan() {
+        var counts = new HashMap<String, Long>();
+        for (var name : names) {
+            gradebook.letterGradeFor(name).ifPresent(letter -> counts.merge(letter, 1L, Long::sum));
+        }
+        return counts;
+    }
+
+    // what keeping the counters costs each grade
+    @Benchmark
+    public boolean addGrade() {
+        if (++next == names.length) {
+            next = 0;
+        }
+        return gradebook.addGrade(names[next], 87);
+    }
+}
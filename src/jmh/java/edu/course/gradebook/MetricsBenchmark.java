@@ -0,0 +1,95 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-command instrumentation in Main.
+ *
+ * batch runs the same mixed script (ADD_GRADE, REPORT, CLASS_REPORT, RANK)
+ * through Main with metrics on and with CommandMetrics.disabled(), and reports
+ * time per command. addGrade / addGradeTimed isolate what Main.execute adds
+ * around one handler: two System.nanoTime() calls and a record(). Clock reads
+ * are the larger share, so on machines with a slow clock source (some VMs) the
+ * absolute cost is higher.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class MetricsBenchmark {
+    private static final int SCRIPT_LINES = 10_000;
+
+    @Param({"100000"})
+    public int studentCount;
+
+    @Param({"true", "false"})
+    public boolean metricsEnabled;
+
+    private Gradebook gradebook;
+    private Main app;
+    private CommandMetrics metrics;
+    private String script;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        var random = new Random(42);
+        gradebook = new Gradebook();
+        for (int s = 0; s < studentCount; s++) {
+            gradebook.addStudent("Student" + s);
+            for (int g = 0; g < 10; g++) {
+                gradebook.addGrade(s, random.nextInt(101));
+            }
+        }
+        metrics = metricsEnabled ? new CommandMetrics() : CommandMetrics.disabled();
+        app = new Main(gradebook, new PrintStream(OutputStream.nullOutputStream()), null, metrics);
+        var lines = new StringBuilder();
+        for (int i = 0; i < SCRIPT_LINES; i++) {
+            var name = "Student" + random.nextInt(studentCount);
+            switch (i % 4) {
+                case 0 -> lines.append("ADD_GRADE ").append(name).append(' ').append(random.nextInt(101));
+                case 1 -> lines.append("REPORT ").append(name);
+                case 2 -> lines.append("CLASS_REPORT");
+                default -> lines.append("RANK ").append(name);
+            }
+            lines.append('\n');
+        }
+        script = lines.toString();
+    }
+
+    private int nextId() {
+        if (++next == studentCount) {
+            next = 0;
+        }
+        return next;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SCRIPT_LINES)
+    public Main.BatchSummary batch() throws IOException {
+        return app.runBatch(new BufferedReader(new StringReader(script)));
+    }
+
+    @Benchmark
+    public boolean addGrade() {
+        return gradebook.addGrade(nextId(), 87);
+    }
+
+    @Benchmark
+    public boolean addGradeTimed() {
+        long start = System.nanoTime();
+        var result = gradebook.addGrade(nextId(), 87);
+        metrics.record(Command.ADD_GRADE, System.nanoTime() - start, result);
+        return result;
+    }
+}
@@ -0,0 +1,73 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end lines per second of Main.runBatch against Main.runPipelined on a
+ * large script, with output formatted and encoded but thrown away.
+ *
+ * The script is mostly output-heavy commands (REPORT prints every grade, and
+ * CLASS_REPORT / REPORT go through printf), so there is formatting work for the
+ * output stage to take off the apply thread. The pipeline can only win with
+ * spare cores; on a single CPU its stages take turns and the hand-offs are pure
+ * overhead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class PipelineBenchmark {
+    private static final int SCRIPT_LINES = 100_000;
+
+    @Param({"10000"})
+    public int studentCount;
+
+    @Param({"false", "true"})
+    public boolean pipelined;
+
+    private Main app;
+    private String script;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        var random = new Random(42);
+        var gradebook = new Gradebook();
+        for (int s = 0; s < studentCount; s++) {
+            gradebook.addStudent("Student" + s);
+            for (int g = 0; g < 10; g++) {
+                gradebook.addGrade(s, random.nextInt(101));
+            }
+        }
+        var out = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+        app = new Main(gradebook, out, null, CommandMetrics.disabled());
+        var lines = new StringBuilder();
+        for (int i = 0; i < SCRIPT_LINES; i++) {
+            var name = "Student" + random.nextInt(studentCount);
+            switch (i % 4) {
+                case 0 -> lines.append("ADD_GRADE ").append(name).append(' ').append(random.nextInt(101));
+                case 1, 2 -> lines.append("REPORT ").append(name);
+                default -> lines.append("CLASS_REPORT");
+            }
+            lines.append('\n');
+        }
+        script = lines.toString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SCRIPT_LINES)
+    public Main.BatchSummary run() throws IOException {
+        var reader = new BufferedReader(new StringReader(script));
+        return pipelined ? app.runPipelined(reader) : app.runBatch(reader);
+    }
+}
@@ -0,0 +1,118 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mutation throughput with a GradebookPublisher attached: addGrade followed by
+ * undo (two changes) on a book of 1,000 students, with no subscribers or
+ * several that only count what they receive.
+ *
+ * Publishing appends to each subscriber's buffer and returns; delivery happens
+ * on virtual threads, in batches once subscribers fall behind. The delivered
+ * and dropped counters show how many changes reached the subscribers during
+ * each iteration, since a publisher that kept up by dropping would look fast
+ * here too. A subscriber that fails fails the trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PublisherBenchmark {
+    private static final int STUDENTS = 1_000;
+
+    @Param({"0", "1", "4"})
+    public int subscribers;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Delivery {
+        public long delivered;
+        public long dropped;
+    }
+
+    private Gradebook gradebook;
+    private GradebookPublisher publisher;
+    private final LongAdder delivered = new LongAdder();
+    private CountDownLatch ended;
+    private volatile Throwable failure;
+    private final Random random = new Random(7);
+    private Delivery counted;
+    private long deliveredBefore;
+    private long droppedBefore;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        gradebook = new Gradebook();
+        for (int s = 0; s < STUDENTS; s++) {
+            gradebook.addStudent("Student" + s);
+            gradebook.addGrade(s, 80);
+        }
+        publisher = new GradebookPublisher();
+        gradebook.addListener(publisher);
+        ended = new CountDownLatch(subscribers);
+        for (int i = 0; i < subscribers; i++) {
+            publisher.subscribe(new Flow.Subscriber<List<GradebookChange>>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(List<GradebookChange> batch) {
+                    delivered.add(batch.size());
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    failure = error;
+                    ended.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    ended.countDown();
+                }
+            });
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void markIteration() {
+        deliveredBefore = delivered.sum();
+        droppedBefore = publisher.droppedChanges();
+    }
+
+    // delivery runs behind, so a change published late in one iteration may count in the next
+    @TearDown(Level.Iteration)
+    public void countIteration() {
+        counted.delivered = delivered.sum() - deliveredBefore;
+        counted.dropped = publisher.droppedChanges() - droppedBefore;
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws InterruptedException {
+        publisher.close();
+        if (!ended.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("subscribers did not complete after close");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("a subscriber failed", failure);
+        }
+    }
+
+    @Benchmark
+    public boolean addGradeThenUndo(Delivery delivery) {
+        counted = delivery;
+        gradebook.addGrade(random.nextInt(STUDENTS), random.nextInt(101));
+        return gradebook.undo();
+    }
+}
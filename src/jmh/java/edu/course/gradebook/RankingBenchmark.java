@@ -0,0 +1,126 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class standings from the maintained ranking index versus the old way of
+ * collecting every student's average and sorting them per question.
+ *
+ * The *Sorted benchmarks are the baseline; each one pays the O(n log n) sort
+ * the index avoids. The tied distribution grades only 80 or 90, so the 100k
+ * students share eleven averages and every query lands in a crowded bucket.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class RankingBenchmark {
+
+    @Param({"1000", "100000"})
+    public int studentCount;
+
+    @Param({"spread", "tied"})
+    public String distribution;
+
+    private Gradebook gradebook;
+    private String[] names;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        var random = new Random(42);
+        gradebook = new Gradebook();
+        names = new String[studentCount];
+        for (int s = 0; s < studentCount; s++) {
+            names[s] = "Student" + s;
+            gradebook.addStudent(names[s]);
+        }
+        for (int g = 0; g < 10; g++) {
+            for (var name : names) {
+                gradebook.addGrade(name, distribution.equals("tied")
+                        ? (random.nextBoolean() ? 80 : 90)
+                        : random.nextInt(101));
+            }
+        }
+    }
+
+    private String nextName() {
+        if (++next == names.length) {
+            next = 0;
+        }
+        return names[next];
+    }
+
+    private double[] sortedAverages() {
+        var averages = new double[names.length];
+        int n = 0;
+        for (var name : names) {
+            var avg = gradebook.averageFor(name);
+            if (avg.isPresent()) {
+                averages[n++] = avg.get();
+            }
+        }
+        averages = Arrays.copyOf(averages, n);
+        Arrays.sort(averages);
+        return averages;
+    }
+
+    @Benchmark
+    public OptionalInt rankOf() {
+        return gradebook.rankOf(nextName());
+    }
+
+    @Benchmark
+    public int rankOfSorted() {
+        var averages = sortedAverages();
+        double avg = gradebook.averageFor(nextName()).orElseThrow();
+        int higher = 0;
+        for (int i = averages.length - 1; i >= 0 && averages[i] > avg; i--) {
+            higher++;
+        }
+        return higher + 1;
+    }
+
+    @Benchmark
+    public Optional<Double> median() {
+        return gradebook.median();
+    }
+
+    @Benchmark
+    public double medianSorted() {
+        var averages = sortedAverages();
+        int n = averages.length;
+        return n % 2 == 1 ? averages[n / 2] : (averages[n / 2 - 1] + averages[n / 2]) / 2;
+    }
+
+    @Benchmark
+    public Optional<Double> percentile90() {
+        return gradebook.percentile(90);
+    }
+
+    @Benchmark
+    public double percentile90Sorted() {
+        var averages = sortedAverages();
+        return averages[(int) Math.ceil(0.9 * averages.length) - 1];
+    }
+
+    @Benchmark
+    public List<RankedStudent> top10() {
+        return gradebook.topStudents(10);
+    }
+
+    // maintenance cost the index adds to every grade
+    @Benchmark
+    public boolean addGrade() {
+        return gradebook.addGrade(nextName(), 87);
+    }
+}
@@ -0,0 +1,84 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REPORT for students with thousands of grades, printed to a discarding stream.
+ *
+ * threeLookups is what REPORT used to do: findStudentGrades, averageFor and
+ * letterGradeFor (three name lookups and two lock round trips), then the grade
+ * list's toString(), which boxes every grade and builds an intermediate String.
+ * studentReport uses one Gradebook.report() lookup and appends the grades
+ * straight from the byte store into a reused StringBuilder. reportCommand is
+ * the whole REPORT command through Main.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class ReportBenchmark {
+    private static final int STUDENTS = 64;
+
+    @Param({"1000", "5000"})
+    public int gradesPerStudent;
+
+    private Gradebook gradebook;
+    private Main app;
+    private PrintStream out;
+    private final StringBuilder line = new StringBuilder();
+    private final CommandLine input = new CommandLine();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        var random = new Random(42);
+        gradebook = new Gradebook();
+        for (int s = 0; s < STUDENTS; s++) {
+            gradebook.addStudent("Student" + s);
+            for (int g = 0; g < gradesPerStudent; g++) {
+                gradebook.addGrade(s, random.nextInt(101));
+            }
+        }
+        out = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+        app = new Main(gradebook, out, null, CommandMetrics.disabled());
+    }
+
+    private String nextName() {
+        next = (next + 1) % STUDENTS;
+        return "Student" + next;
+    }
+
+    @Benchmark
+    public void threeLookups() {
+        var name = nextName();
+        var grades = gradebook.findStudentGrades(name).get();
+        out.println("Report for " + name + ":");
+        out.println("  Grades: " + grades);
+        out.printf("  Average: %.2f%n", gradebook.averageFor(name).get());
+        out.println("  Letter Grade: " + gradebook.letterGradeFor(name).get());
+    }
+
+    @Benchmark
+    public void studentReport() {
+        var name = nextName();
+        var report = gradebook.report(name).get();
+        out.println("Report for " + name + ":");
+        line.setLength(0);
+        out.println(report.appendGrades(line.append("  Grades: ")));
+        out.printf("  Average: %.2f%n", report.average().get());
+        out.println("  Letter Grade: " + report.letter().get());
+    }
+
+    @Benchmark
+    public boolean reportCommand() {
+        return app.apply(input.parse("REPORT " + nextName()), input);
+    }
+}
@@ -0,0 +1,74 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A department of 100,000 students split over a number of shards.
+ *
+ * addGrade is routed to the owning shard; run it with -t 1 up to -t <cores>
+ * (e.g. -Djmh.args="ShardingBenchmark.addGrade -t 4") to see how writers scale
+ * with the shard count. The department-wide reads combine every shard; only
+ * topStudents forks per shard, and only when the common pool has more than
+ * one worker.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class ShardingBenchmark {
+    private static final int STUDENTS = 100_000;
+
+    @Param({"1", "4", "16"})
+    public int shards;
+
+    private ShardedGradebook department;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        var random = ThreadLocalRandom.current();
+        department = new ShardedGradebook(shards);
+        names = new String[STUDENTS];
+        for (int s = 0; s < STUDENTS; s++) {
+            names[s] = "Student" + s;
+            department.addStudent(names[s]);
+            for (int g = 0; g < 10; g++) {
+                department.addGrade(names[s], random.nextInt(101));
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean addGrade() {
+        var random = ThreadLocalRandom.current();
+        return department.addGrade(names[random.nextInt(STUDENTS)], random.nextInt(101));
+    }
+
+    @Benchmark
+    public Optional<Double> classAverage() {
+        return department.classAverage();
+    }
+
+    @Benchmark
+    public Map<String, Long> letterDistribution() {
+        return department.letterDistribution();
+    }
+
+    @Benchmark
+    public long[] gradeHistogram() {
+        return department.gradeHistogram();
+    }
+
+    @Benchmark
+    public List<RankedStudent> topStudents() {
+        return department.topStudents(10);
+    }
+}
@@ -0,0 +1,116 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getting a saved book back: LOAD of a mapped binary snapshot versus
+ * recovering the same book from a checkpointed journal, which decodes every
+ * grade onto the heap.
+ *
+ * loadAndReadAll also touches every student's grades after the load, i.e. the
+ * full cost once the lazily mapped bytes have all been paged in and checked.
+ * journalRecovery replays journalTail records on top of the checkpoint, the
+ * startup a restart pays; at the defaults it should stay under 3 seconds.
+ * timed=false saves the grades without times; LOAD should cost the same
+ * either way, as times stay in the mapping until read.
+ * The book is written once per trial; every invocation fills a fresh Gradebook.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    @Param({"10000000"})
+    public int grades;
+
+    @Param({"100000"})
+    public int studentCount;
+
+    @Param({"50000"})
+    public int journalTail;
+
+    @Param({"true", "false"})
+    public boolean timed;
+
+    private Path dir;
+    private Path snapshot;
+    private Path journalDir;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        dir = Files.createTempDirectory("snapshot-bench");
+        snapshot = dir.resolve("book.snap");
+        journalDir = dir.resolve("journal");
+        var gradebook = new Gradebook();
+        var random = new Random(42);
+        for (int s = 0; s < studentCount; s++) {
+            gradebook.addStudent("Student" + s);
+        }
+        var batch = new byte[grades / studentCount];
+        for (int s = 0; s < studentCount; s++) {
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = (byte) random.nextInt(101);
+            }
+            if (timed) {
+                gradebook.applyAddGrades(s, batch, batch.length);
+            } else {
+                for (byte grade : batch) {
+                    gradebook.applyAddGrade(s, grade);
+                }
+            }
+        }
+        gradebook.save(snapshot);
+        try (var journal = GradebookJournal.open(journalDir, gradebook)) {
+            journal.checkpoint();
+            for (int i = 0; i < journalTail; i++) {
+                gradebook.addGrade(i % studentCount, 100);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        try (var files = Files.walk(dir)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public Gradebook load() throws IOException {
+        var gradebook = new Gradebook();
+        gradebook.load(snapshot);
+        return gradebook;
+    }
+
+    @Benchmark
+    public long loadAndReadAll() throws IOException {
+        var gradebook = new Gradebook();
+        gradebook.load(snapshot);
+        long sum = 0;
+        for (int id = 0; id < studentCount; id++) {
+            for (int grade : gradebook.findStudentGrades(id).orElseThrow()) {
+                sum += grade;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Gradebook journalRecovery() throws IOException {
+        var gradebook = new Gradebook();
+        GradebookJournal.open(journalDir, gradebook).close();
+        return gradebook;
+    }
+}
@@ -0,0 +1,68 @@
+package edu.course.gradebook;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of GradeWatches on the mutation path: addGrade followed by undo on a
+ * book of 10,000 students with 20 grades each, with no watches or thousands of
+ * them spread evenly over 0-100, and a listener counting crossings.
+ *
+ * With thresholds 100/watches apart, a grade moves a student's average across a
+ * handful of them, so the cost per change should stay nearly flat as watches
+ * are added; a scan over every watch would grow with the count. The crossings
+ * counter shows how many events the listener got during measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class WatchBenchmark {
+    private static final int STUDENTS = 10_000;
+
+    @Param({"0", "1000", "5000"})
+    public int watches;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Crossings {
+        public long crossings;
+    }
+
+    private Gradebook gradebook;
+    private final Random random = new Random(7);
+    // listeners run on the thread making the change, which is the one JMH reads the counter from
+    private Crossings counted;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        var random = new Random(42);
+        gradebook = new Gradebook();
+        for (int s = 0; s < STUDENTS; s++) {
+            gradebook.addStudent("Student" + s);
+            for (int g = 0; g < 20; g++) {
+                gradebook.addGrade(s, random.nextInt(101));
+            }
+        }
+        for (int w = 0; w < watches; w++) {
+            gradebook.addWatch(new GradeWatch("w" + w, 100.0 * w / watches));
+        }
+        gradebook.addListener(new GradebookListener() {
+            @Override
+            public void watchCrossed(GradeWatch watch, String name, double average, boolean below) {
+                counted.crossings++;
+            }
+        });
+    }
+
+    @Benchmark
+    public boolean addGradeThenUndo(Crossings crossings) {
+        counted = crossings;
+        gradebook.addGrade(random.nextInt(STUDENTS), random.nextInt(101));
+        return gradebook.undo();
+    }
+}
@@ -0,0 +1,223 @@
+package edu.course.gradebook;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Fixed-capacity ring buffer of activity records.
+ *
+ * Each record is stored as a few primitive slots (operation, student ID, grade,
+ * timestamp) in parallel arrays, so logging a change allocates nothing. Student
+ * IDs are turned back into names (through the owning Gradebook's registry) only
+ * when a record is read.
+ *
+ * Records are only formatted into text when recent()/LOG asks for them. Once
+ * full, the oldest record is overwritten; with a spill file configured the
+ * overwritten records are appended there first, so ring plus file hold the
+ * full history. record() runs after the change it logs has been applied, so a
+ * failed spill write is kept and thrown by the next flush() or close() instead;
+ * later overwritten records are dropped rather than spilled past the gap.
+ */
+public final class ActivityLog implements Closeable {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** Kinds of logged operations. */
+    public enum Operation {
+        STUDENT_ADDED,
+        GRADE_ADDED,
+        STUDENT_REMOVED,
+        // studentId holds the number of entries undone
+        UNDO,
+        // studentId holds the number of students the import touched
+        IMPORT,
+        // studentId holds the number of students in the loaded snapshot
+        LOAD,
+        REDO
+    }
+
+    /**
+     * One log record, materialized on read. studentId and grade are -1 when they do not apply
+     * (for IMPORT and LOAD, studentId is the number of students imported or loaded, for UNDO the
+     * number of entries undone).
+     */
+    public record Entry(Operation operation, int studentId, String student, int grade, long timestampMillis) {
+        // keeps the wording of the original text log
+        public String format() {
+            return switch (operation) {
+                case STUDENT_ADDED -> "Student added: " + student;
+                case GRADE_ADDED -> "Name:" + student + " ,added Grade:" + grade;
+                case STUDENT_REMOVED -> "Removed student: " + student;
+                case UNDO -> studentId > 1 ? "Undo performed (" + studentId + " steps)" : "Undo performed";
+                case REDO -> "Redo performed";
+                case IMPORT -> "Imported grades for " + studentId + " students";
+                case LOAD -> "Loaded snapshot with " + studentId + " students";
+            };
+        }
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final byte[] operations;
+    private final int[] studentIds;
+    private final byte[] grades;
+    private final long[] timestamps;
+    private final BufferedWriter spill;
+    private IOException spillFailure;
+    private IntFunction<String> names = id -> "#" + id;
+    private int next;
+    private int size;
+
+    public ActivityLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ActivityLog(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param spillFile where overwritten records are appended as text, or null to drop them
+     */
+    public ActivityLog(int capacity, Path spillFile) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        operations = new byte[capacity];
+        studentIds = new int[capacity];
+        grades = new byte[capacity];
+        timestamps = new long[capacity];
+        try {
+            spill = spillFile == null ? null : Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open activity log spill file", e);
+        }
+    }
+
+    public int capacity() {
+        return operations.length;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // the Gradebook that owns this log plugs in its ID -> name lookup
+    synchronized void resolveNamesWith(IntFunction<String> names) {
+        this.names = names;
+    }
+
+    /** Records an operation; grade is ignored unless it is GRADE_ADDED, studentId for REDO. */
+    public synchronized void record(Operation operation, int studentId, int grade) {
+        if (size == operations.length) {
+            spillOldest();
+        } else {
+            size++;
+        }
+        operations[next] = (byte) operation.ordinal();
+        studentIds[next] = studentId;
+        grades[next] = (byte) grade;
+        timestamps[next] = System.currentTimeMillis();
+        next = next + 1 == operations.length ? 0 : next + 1;
+    }
+
+    /** Returns up to maxItems records, newest first. */
+    public synchronized List<Entry> recentEntries(int maxItems) {
+        int count = Math.max(0, Math.min(maxItems, size));
+        var result = new ArrayList<Entry>(count);
+        for (int i = 1; i <= count; i++) {
+            result.add(entryAt(slot(i)));
+        }
+        return result;
+    }
+
+    /** Returns up to maxItems records formatted as text, newest first. */
+    public synchronized List<String> recent(int maxItems) {
+        int count = Math.max(0, Math.min(maxItems, size));
+        var result = new ArrayList<String>(count);
+        for (int i = 1; i <= count; i++) {
+            result.add(entryAt(slot(i)).format());
+        }
+        return result;
+    }
+
+    /** Flushes spilled records to disk, or throws the failure that stopped spilling. */
+    public synchronized void flush() throws IOException {
+        if (spill != null) {
+            checkSpill();
+            spill.flush();
+        }
+    }
+
+    /** Spills everything still in the ring (oldest first) and closes the spill file. */
+    @Override
+    public synchronized void close() throws IOException {
+        if (spill == null) {
+            return;
+        }
+        try {
+            if (spillFailure == null) {
+                for (int i = size; i >= 1; i--) {
+                    writeSpill(entryAt(slot(i)));
+                }
+            }
+            size = 0;
+        } finally {
+            spill.close();
+        }
+        checkSpill();
+    }
+
+    // i-th newest record, 1 = newest
+    private int slot(int i) {
+        int slot = next - i;
+        return slot < 0 ? slot + operations.length : slot;
+    }
+
+    private Entry entryAt(int slot) {
+        var operation = OPERATIONS[operations[slot]];
+        int grade = operation == Operation.GRADE_ADDED ? grades[slot] : -1;
+        if (operation == Operation.REDO) {
+            return new Entry(operation, -1, null, grade, timestamps[slot]);
+        }
+        if (operation == Operation.UNDO || operation == Operation.IMPORT || operation == Operation.LOAD) {
+            return new Entry(operation, studentIds[slot], null, grade, timestamps[slot]);
+        }
+        int id = studentIds[slot];
+        return new Entry(operation, id, names.apply(id), grade, timestamps[slot]);
+    }
+
+    private void spillOldest() {
+        if (spill == null || spillFailure != null) {
+            return;
+        }
+        try {
+            writeSpill(entryAt(next));
+        } catch (IOException e) {
+            spillFailure = e;
+        }
+    }
+
+    private void checkSpill() throws IOException {
+        if (spillFailure != null) {
+            throw new IOException("Could not spill activity log", spillFailure);
+        }
+    }
+
+    private void writeSpill(Entry entry) throws IOException {
+        spill.write(Instant.ofEpochMilli(entry.timestampMillis()).toString());
+        spill.write('\t');
+        spill.write(entry.format());
+        spill.newLine();
+    }
+}
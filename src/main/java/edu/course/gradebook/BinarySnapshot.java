@@ -0,0 +1,492 @@
+package edu.course.gradebook;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary snapshot of a whole book, laid out to be memory-mapped.
+ *
+ * <pre>
+ * header   magic "GBSS", version, students, flags,
+ *          grade count, grade sum, name bytes, histogram[101],
+ *          index CRC, names CRC, grades CRC, header CRC
+ * index    per student: name length (int), grade count (int), grade offset (long), grade sum (long)
+ * names    UTF-8 names, back to back
+ * grades   one byte per grade, each student's grades contiguous
+ * </pre>
+ *
+ * Everything the ranking, letter and class-average indexes need (per-student
+ * sums and counts, the histogram, the totals) is precomputed in the header and
+ * index, so loading reads only those two sections and the names. Grade bytes
+ * stay in the mapping and are paged in by MappedGradeStore when a student's
+ * grades are first read; verify() checks them all up front instead.
+ * Snapshots are limited to what one mapping can hold (2 GB).
+ *
+ * Books with categories or grade times set flags and add sections after the
+ * grades, each only if its flag is set:
+ *
+ * <pre>
+ * categories   CATEGORIES: count (int), then per category: name length (int), UTF-8 name,
+ *              weight (double), drop lowest (int)
+ * tags         CATEGORIES: one byte per grade, in grade order: its category's position + 1, 0 for none
+ * times index  TIMES: per student: 1 if any of their grades has a time, else 0 (int),
+ *              CRC of their times (int)
+ * extras CRC   (int) over the sections above, present if any flag is set
+ * times        TIMES: one long per grade, in grade order: epoch millis, Long.MIN_VALUE for none
+ * </pre>
+ *
+ * Loading reads the categories and tags, plus the grades of the students that
+ * have categorized ones. Times are left in the mapping like grade bytes (see
+ * MappedTimes) and checked per student when first read, so a timed book loads
+ * as fast as an untimed one. Version 1 files have no flags, and version 2
+ * files keep the times before the extras CRC, with no times index; both still
+ * load, version 2 checking every time up front.
+ */
+final class BinarySnapshot {
+    static final int MAGIC = 0x47425353;
+    static final int VERSION = 3;
+    static final int CATEGORIES = 1;
+    static final int TIMES = 2;
+    static final int INDEX_ENTRY_BYTES = 24;
+    static final int HEADER_BYTES = 4 * 4 + 3 * 8 + 101 * 8 + 4 * 4;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    /**
+     * A mapped snapshot; stores[i] belongs to names[i], in the order they were saved, and its
+     * grades start at offsets[i]. tags is null if the book had no categories, times if it had no
+     * grade times, and timesIndex if times came from a version 2 file, already checked.
+     */
+    record Loaded(String[] names, MappedGradeStore[] stores, int[] offsets, long gradeCount, long gradeSum,
+                  long[] histogram, List<GradeCategory> categories, ByteBuffer tags, ByteBuffer times,
+                  ByteBuffer timesIndex) {
+
+        /** Tags of student i's grades (see CategoryAverages), or null if none has a category. */
+        byte[] tagsOf(int i) {
+            if (tags == null) {
+                return null;
+            }
+            var result = new byte[stores[i].size()];
+            tags.get(offsets[i], result);
+            for (byte tag : result) {
+                if (tag != 0) {
+                    return result;
+                }
+            }
+            return null;
+        }
+
+        /** Times of student i's grades, still in the mapping, or null if none has one. */
+        MappedTimes timesOf(int i) {
+            if (times == null) {
+                return null;
+            }
+            var slice = times.slice(offsets[i] * 8, stores[i].size() * 8);
+            if (timesIndex != null) {
+                return timesIndex.getInt(i * 8) == 0 ? null : new MappedTimes(slice, timesIndex.getInt(i * 8 + 4), names[i]);
+            }
+            for (int j = 0; j < stores[i].size(); j++) {
+                if (slice.getLong(j * 8) != GradeTimeline.UNTIMED) {
+                    return new MappedTimes(slice, crc(slice, 0, slice.capacity()), names[i]);
+                }
+            }
+            return null;
+        }
+    }
+
+    private BinarySnapshot() {}
+
+    /**
+     * Writes every live student, in ID order, to file (replacing it). Goes through a
+     * temporary file and a rename, so a snapshot that is currently mapped is never
+     * truncated under its readers. The caller holds the book's lockAll().
+     */
+    static long write(Gradebook gradebook, Path file) throws IOException {
+        int limit = gradebook.studentIdLimit();
+        var ids = new int[limit];
+        var names = new byte[limit][];
+        int students = 0;
+        long gradeCount = 0;
+        long gradeSum = 0;
+        long nameBytes = 0;
+        for (int id = 0; id < limit; id++) {
+            var grades = gradebook.liveGrades(id);
+            if (grades != null) {
+                ids[students] = id;
+                names[students] = gradebook.studentNameOf(id).getBytes(StandardCharsets.UTF_8);
+                nameBytes += names[students].length;
+                gradeCount += grades.size();
+                gradeSum += grades.sum();
+                students++;
+            }
+        }
+
+        var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            var out = new SectionWriter(channel, HEADER_BYTES);
+
+            long offset = 0;
+            for (int i = 0; i < students; i++) {
+                var grades = gradebook.liveGrades(ids[i]);
+                out.ensure(INDEX_ENTRY_BYTES);
+                out.buffer.putInt(names[i].length).putInt(grades.size()).putLong(offset).putLong(grades.sum());
+                offset += grades.size();
+            }
+            int indexCrc = out.endSection();
+
+            for (int i = 0; i < students; i++) {
+                out.write(names[i]);
+            }
+            int namesCrc = out.endSection();
+
+            for (int i = 0; i < students; i++) {
+                out.write(gradebook.liveGrades(ids[i]).toByteArray());
+            }
+            int gradesCrc = out.endSection();
+
+            // tags are CategoryAverages tags, which number the categories in categories() order
+            var categories = gradebook.categories();
+            var times = new long[students][];
+            boolean timed = false;
+            for (int i = 0; i < students; i++) {
+                times[i] = gradebook.gradeTimes(ids[i]);
+                timed |= times[i] != null;
+            }
+            int flags = (categories.isEmpty() ? 0 : CATEGORIES) | (timed ? TIMES : 0);
+            if (!categories.isEmpty()) {
+                out.ensure(4);
+                out.buffer.putInt(categories.size());
+                for (var category : categories) {
+                    var name = category.name().getBytes(StandardCharsets.UTF_8);
+                    out.ensure(4);
+                    out.buffer.putInt(name.length);
+                    out.write(name);
+                    out.ensure(12);
+                    out.buffer.putDouble(category.weight()).putInt(category.dropLowest());
+                }
+                for (int i = 0; i < students; i++) {
+                    int count = gradebook.liveGrades(ids[i]).size();
+                    var tags = gradebook.lastCategoryTags(ids[i], count);
+                    out.write(tags != null ? tags : new byte[count]);
+                }
+            }
+            if (timed) {
+                for (int i = 0; i < students; i++) {
+                    if (times[i] == null) {
+                        times[i] = new long[gradebook.liveGrades(ids[i]).size()];
+                        Arrays.fill(times[i], GradeTimeline.UNTIMED);
+                        out.ensure(8);
+                        out.buffer.putInt(0).putInt(crc(times[i]));
+                    } else {
+                        out.ensure(8);
+                        out.buffer.putInt(1).putInt(crc(times[i]));
+                    }
+                }
+            }
+            if (flags != 0) {
+                int extrasCrc = out.endSection();
+                out.ensure(4);
+                out.buffer.putInt(extrasCrc);
+                out.endSection();
+            }
+            if (timed) {
+                // outside the extras CRC: each student's times are checked against their own CRC when read
+                for (int i = 0; i < students; i++) {
+                    for (long time : times[i]) {
+                        out.ensure(8);
+                        out.buffer.putLong(time);
+                    }
+                }
+                out.endSection();
+            }
+
+            var header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(students).putInt(flags);
+            header.putLong(gradeCount).putLong(gradeSum).putLong(nameBytes);
+            for (long count : gradebook.gradeHistogram()) {
+                header.putLong(count);
+            }
+            header.putInt(indexCrc).putInt(namesCrc).putInt(gradesCrc);
+            header.putInt(crc(header.array(), 0, HEADER_BYTES - 4));
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return students;
+    }
+
+    /**
+     * Maps file and checks everything but the grade bytes: header, section sizes,
+     * index and name checksums, per-student counts and sums against the totals,
+     * and that no name appears twice. Throws IOException if any of that is off.
+     */
+    static Loaded open(Path file) throws IOException {
+        return check(map(file), file);
+    }
+
+    /** Everything open() checks, plus the grade bytes' checksum, which reads every grade. */
+    static void verify(Path file) throws IOException {
+        var map = map(file);
+        var loaded = check(map, file);
+        long nameBytes = map.getLong(32);
+        int gradesStart = (int) (HEADER_BYTES + (long) loaded.names().length * INDEX_ENTRY_BYTES + nameBytes);
+        if (crc(map, gradesStart, (int) loaded.gradeCount()) != map.getInt(HEADER_BYTES - 8)) {
+            throw corrupt(file, "grades checksum mismatch");
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw corrupt(file, "shorter than its header");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private static Loaded check(MappedByteBuffer map, Path file) throws IOException {
+        if (map.getInt(0) != MAGIC) {
+            throw new IOException("Not a gradebook snapshot: " + file);
+        }
+        int version = map.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + ": " + file);
+        }
+        if (crc(map, 0, HEADER_BYTES - 4) != map.getInt(HEADER_BYTES - 4)) {
+            throw corrupt(file, "header checksum mismatch");
+        }
+        int students = map.getInt(8);
+        int flags = map.getInt(12);
+        if ((flags & ~(CATEGORIES | TIMES)) != 0) {
+            throw corrupt(file, "unknown flags " + flags);
+        }
+        long gradeCount = map.getLong(16);
+        long gradeSum = map.getLong(24);
+        long nameBytes = map.getLong(32);
+        var histogram = new long[101];
+        long histogramCount = 0;
+        long histogramSum = 0;
+        for (int grade = 0; grade <= 100; grade++) {
+            histogram[grade] = map.getLong(40 + grade * 8);
+            if (histogram[grade] < 0) {
+                throw corrupt(file, "negative histogram count");
+            }
+            histogramCount += histogram[grade];
+            histogramSum += histogram[grade] * grade;
+        }
+        int crcs = 40 + 101 * 8;
+
+        long indexStart = HEADER_BYTES;
+        long namesStart = indexStart + (long) students * INDEX_ENTRY_BYTES;
+        long gradesStart = namesStart + nameBytes;
+        long extrasStart = gradesStart + gradeCount;
+        if (students < 0 || nameBytes < 0 || gradeCount < 0 || extrasStart > map.capacity()
+                || (flags == 0 && extrasStart != map.capacity())) {
+            throw corrupt(file, "section sizes do not match the file size");
+        }
+        if (histogramCount != gradeCount || histogramSum != gradeSum) {
+            throw corrupt(file, "histogram does not match the grade totals");
+        }
+        if (crc(map, (int) indexStart, (int) (namesStart - indexStart)) != map.getInt(crcs)) {
+            throw corrupt(file, "index checksum mismatch");
+        }
+        if (crc(map, (int) namesStart, (int) nameBytes) != map.getInt(crcs + 4)) {
+            throw corrupt(file, "names checksum mismatch");
+        }
+
+        var grades = map.slice((int) gradesStart, (int) gradeCount);
+        var names = new String[students];
+        var stores = new MappedGradeStore[students];
+        var offsets = new int[students];
+        var seen = new HashSet<String>(Math.max(16, students * 2));
+        var nameBuffer = new byte[256];
+        int namePosition = (int) namesStart;
+        long expectedOffset = 0;
+        long sumOfSums = 0;
+        for (int i = 0; i < students; i++) {
+            int entry = (int) indexStart + i * INDEX_ENTRY_BYTES;
+            int nameLength = map.getInt(entry);
+            int count = map.getInt(entry + 4);
+            long offset = map.getLong(entry + 8);
+            long sum = map.getLong(entry + 16);
+            if (nameLength <= 0 || namePosition + (long) nameLength > gradesStart
+                    || count < 0 || offset != expectedOffset || sum < 0 || sum > 100L * count) {
+                throw corrupt(file, "bad index entry " + i);
+            }
+            if (nameLength > nameBuffer.length) {
+                nameBuffer = new byte[Math.max(nameLength, nameBuffer.length * 2)];
+            }
+            map.get(namePosition, nameBuffer, 0, nameLength);
+            names[i] = new String(nameBuffer, 0, nameLength, StandardCharsets.UTF_8);
+            if (!seen.add(names[i])) {
+                throw corrupt(file, "duplicate student " + names[i]);
+            }
+            stores[i] = new MappedGradeStore(grades, (int) offset, count, sum, names[i]);
+            offsets[i] = (int) offset;
+            namePosition += nameLength;
+            expectedOffset += count;
+            sumOfSums += sum;
+        }
+        if (namePosition != gradesStart || expectedOffset != gradeCount || sumOfSums != gradeSum) {
+            throw corrupt(file, "index does not match the header totals");
+        }
+        var categories = List.<GradeCategory>of();
+        ByteBuffer tags = null;
+        ByteBuffer times = null;
+        ByteBuffer timesIndex = null;
+        if (flags != 0) {
+            boolean timed = (flags & TIMES) != 0;
+            // version 2 has the times inside the extras CRC, version 3 after it with an index before it
+            long timesEnd = version == 2 ? map.capacity() - 4L : map.capacity();
+            long timesStart = timed ? timesEnd - 8 * gradeCount : timesEnd;
+            long end = version == 2 ? timesEnd : timesStart - 4;
+            long timesIndexStart = timed && version > 2 ? end - 8L * students : end;
+            long tagsEnd = version == 2 ? timesStart : timesIndexStart;
+            long tagsStart = (flags & CATEGORIES) != 0 ? tagsEnd - gradeCount : tagsEnd;
+            if (tagsStart < extrasStart || crc(map, (int) extrasStart, (int) (end - extrasStart)) != map.getInt((int) end)) {
+                throw corrupt(file, "extras checksum mismatch");
+            }
+            if ((flags & CATEGORIES) != 0) {
+                categories = categories(map, (int) extrasStart, (int) tagsStart, file);
+                tags = map.slice((int) tagsStart, (int) gradeCount);
+                for (int i = 0; i < gradeCount; i++) {
+                    if (tags.get(i) < 0 || tags.get(i) > categories.size()) {
+                        throw corrupt(file, "bad category tag");
+                    }
+                }
+            } else if (tagsStart != extrasStart) {
+                throw corrupt(file, "extras do not match the file size");
+            }
+            if (timed) {
+                times = map.slice((int) timesStart, (int) (timesEnd - timesStart));
+                if (version > 2) {
+                    timesIndex = map.slice((int) timesIndexStart, (int) (end - timesIndexStart));
+                }
+            }
+        }
+        return new Loaded(names, stores, offsets, gradeCount, gradeSum, histogram, categories, tags, times,
+                timesIndex);
+    }
+
+    // reads the categories section, which must end where the tags start
+    private static List<GradeCategory> categories(MappedByteBuffer map, int start, int end, Path file)
+            throws IOException {
+        if (end - start < 4) {
+            throw corrupt(file, "extras do not match the file size");
+        }
+        int count = map.getInt(start);
+        if (count < 0 || count > CategoryAverages.MAX_CATEGORIES) {
+            throw corrupt(file, "bad category count");
+        }
+        var categories = new ArrayList<GradeCategory>(count);
+        int position = start + 4;
+        try {
+            for (int c = 0; c < count; c++) {
+                int nameLength = map.getInt(position);
+                var name = new byte[nameLength];
+                map.get(position + 4, name);
+                position += 4 + nameLength;
+                categories.add(new GradeCategory(new String(name, StandardCharsets.UTF_8),
+                        map.getDouble(position), map.getInt(position + 8)));
+                position += 12;
+            }
+        } catch (RuntimeException e) {
+            // a negative length, a read past the end or a definition GradeCategory refuses
+            throw corrupt(file, "bad category definition");
+        }
+        if (position != end) {
+            throw corrupt(file, "extras do not match the file size");
+        }
+        return categories;
+    }
+
+    private static IOException corrupt(Path file, String reason) {
+        return new IOException("Snapshot is corrupt (" + reason + "): " + file);
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        var crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    // CRC of times as the snapshot stores them, big-endian longs
+    private static int crc(long[] times) {
+        var bytes = ByteBuffer.allocate(times.length * 8);
+        bytes.asLongBuffer().put(times);
+        return crc(bytes.array(), 0, bytes.capacity());
+    }
+
+    private static int crc(ByteBuffer map, int offset, int length) {
+        var crc = new CRC32();
+        crc.update(map.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    /** Buffered sequential writes after the header, with a running CRC per section. */
+    private static final class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private final CRC32 crc = new CRC32();
+        private long position;
+
+        SectionWriter(FileChannel channel, long start) {
+            this.channel = channel;
+            this.position = start;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void write(byte[] bytes) throws IOException {
+            for (int done = 0; done < bytes.length; ) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int n = Math.min(buffer.remaining(), bytes.length - done);
+                buffer.put(bytes, done, n);
+                done += n;
+            }
+        }
+
+        // flushes and returns the CRC of everything written since the previous section ended
+        int endSection() throws IOException {
+            flush();
+            int value = (int) crc.getValue();
+            crc.reset();
+            return value;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
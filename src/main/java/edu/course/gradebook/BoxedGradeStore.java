@@ -0,0 +1,54 @@
+package edu.course.gradebook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * GradeStore backed by an ArrayList<Integer>.
+ *
+ * This is the original Gradebook layout; it is kept so the packed
+ * ByteGradeStore can be compared against it (see GradeStoreHeapBenchmark).
+ */
+public final class BoxedGradeStore implements GradeStore {
+    private final ArrayList<Integer> grades = new ArrayList<>();
+    private long sum;
+
+    public BoxedGradeStore() {}
+
+    @Override
+    public void add(int grade) {
+        grades.add(grade);
+        sum += grade;
+    }
+
+    @Override
+    public int removeLast() {
+        if (grades.isEmpty()) {
+            throw new IllegalStateException("No grades to remove");
+        }
+        int grade = grades.remove(grades.size() - 1);
+        sum -= grade;
+        return grade;
+    }
+
+    @Override
+    public int get(int index) {
+        return grades.get(index);
+    }
+
+    @Override
+    public long sum() {
+        return sum;
+    }
+
+    @Override
+    public int size() {
+        return grades.size();
+    }
+
+    @Override
+    public List<Integer> asList() {
+        return Collections.unmodifiableList(grades);
+    }
+}
@@ -0,0 +1,186 @@
+package edu.course.gradebook;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * GradeStore that packs grades into a growable byte[].
+ *
+ * Grades are always 0-100, so one byte per grade is enough. Compared to an
+ * ArrayList<Integer> this drops the 4-8 byte reference slot per grade (and the
+ * Integer object itself for values outside the Integer cache).
+ */
+public final class ByteGradeStore implements GradeStore {
+    private static final byte[] EMPTY = new byte[0];
+    private static final int MIN_CAPACITY = 8;
+
+    private byte[] grades = EMPTY;
+    private int size;
+    private long sum;
+    // a snapshot reads grades[0, its size); removeLast must not let add() overwrite those
+    private boolean shared;
+
+    public ByteGradeStore() {}
+
+    @Override
+    public void add(int grade) {
+        if (grade < 0 || grade > 100) {
+            throw new IllegalArgumentException("Grade must be between 0 and 100: " + grade);
+        }
+        if (size == grades.length) {
+            grades = Arrays.copyOf(grades, Math.max(MIN_CAPACITY, size + (size >> 1)));
+            shared = false;
+        }
+        grades[size++] = (byte) grade;
+        sum += grade;
+    }
+
+    @Override
+    public void addAll(byte[] source, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, source.length);
+        long added = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (source[i] < 0 || source[i] > 100) {
+                throw new IllegalArgumentException("Grade must be between 0 and 100: " + source[i]);
+            }
+            added += source[i];
+        }
+        if (size + length > grades.length) {
+            // grow like add() does, so repeated small appends stay amortized O(1)
+            grades = Arrays.copyOf(grades, Math.max(MIN_CAPACITY, Math.max(size + length, size + (size >> 1))));
+            shared = false;
+        }
+        System.arraycopy(source, offset, grades, size, length);
+        size += length;
+        sum += added;
+    }
+
+    @Override
+    public int removeLast() {
+        if (size == 0) {
+            throw new IllegalStateException("No grades to remove");
+        }
+        if (shared) {
+            grades = grades.clone();
+            shared = false;
+        }
+        int grade = grades[--size];
+        sum -= grade;
+        return grade;
+    }
+
+    @Override
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return grades[index];
+    }
+
+    @Override
+    public long sum() {
+        return sum;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return Arrays.copyOf(grades, size);
+    }
+
+    /** Length of the backing array, i.e. the bytes this store holds for its grades. */
+    int capacity() {
+        return grades.length;
+    }
+
+    @Override
+    public List<Integer> asList() {
+        return new GradeListView(this);
+    }
+
+    @Override
+    public GradeStore snapshot() {
+        shared = true;
+        return new Frozen(grades, size, sum);
+    }
+
+    /** Unmodifiable grades[0, size) of an array nobody writes below size any more. */
+    static final class Frozen implements GradeStore {
+        private final byte[] grades;
+        private final int size;
+        private final long sum;
+
+        Frozen(byte[] grades, int size, long sum) {
+            this.grades = grades;
+            this.size = size;
+            this.sum = sum;
+        }
+
+        @Override
+        public void add(int grade) {
+            throw new UnsupportedOperationException("Grade snapshots are read-only");
+        }
+
+        @Override
+        public int removeLast() {
+            throw new UnsupportedOperationException("Grade snapshots are read-only");
+        }
+
+        @Override
+        public int get(int index) {
+            Objects.checkIndex(index, size);
+            return grades[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long sum() {
+            return sum;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return Arrays.copyOf(grades, size);
+        }
+
+        @Override
+        public List<Integer> asList() {
+            return new GradeListView(this);
+        }
+
+        @Override
+        public GradeStore snapshot() {
+            return this;
+        }
+    }
+
+    /** Read-only List over any GradeStore; boxes lazily on get(). */
+    static final class GradeListView extends AbstractList<Integer> implements RandomAccess {
+        private final GradeStore store;
+
+        GradeListView(GradeStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return store.get(index);
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package edu.course.gradebook;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-student category totals behind weighted averages (see GradeCategory).
+ *
+ * Every grade of a tracked student carries a category tag (0 for grades added
+ * without one), kept in the grade store's order, so removing the last grades
+ * (undo) knows which categories they leave. Per student and category it keeps
+ * the sum, the count and, for categories that drop their lowest grades, a
+ * count per grade value plus the sum of the dropped ones. Grades are 0-100, so
+ * finding the dropped grades again after a change walks at most 101 counters
+ * instead of maintaining heaps. Adds and removals only touch the affected
+ * category, and an average is O(categories) however many grades a student
+ * has.
+ *
+ * Students only get state once they have a categorized grade, and nothing is
+ * done at all while no category is defined. Gradebook calls in with the
+ * student's lock held, after changing the grade store; per-student state lives
+ * in IdPages, so students on different stripes share no monitor. define() and
+ * reset() run with every stripe held, and the category table is replaced
+ * rather than changed in place so tagOf() and categories() need no lock.
+ */
+final class CategoryAverages {
+    // tags are bytes and 0 means "no category"
+    static final int MAX_CATEGORIES = Byte.MAX_VALUE;
+
+    private static final class Student {
+        byte[] tags;
+        int size;
+        // the rest is indexed by category, sized to the categories when the student was last rebuilt
+        long[] sums;
+        int[] counts;
+        long[] droppedSums;
+        // count per grade value, only for categories that drop grades
+        int[][] histograms;
+
+        Student(int capacity, int categories) {
+            tags = new byte[Math.max(16, capacity)];
+            reset(categories);
+        }
+
+        void reset(int categories) {
+            sums = new long[categories];
+            counts = new int[categories];
+            droppedSums = new long[categories];
+            histograms = new int[categories][];
+        }
+    }
+
+    // index 0 stands for "no category" and is null; copied on every define
+    private volatile GradeCategory[] categories = {null};
+    // read first on every change, so books without categories pay one volatile read
+    private volatile boolean defined;
+    private final IdPages<Student[]> students = new IdPages<>(() -> new Student[IdPages.PAGE_SIZE]);
+
+    /**
+     * Adds a category, or replaces the one with the same name; returns its tag, or -1 if
+     * MAX_CATEGORIES are defined. The caller rebuilds every student afterwards.
+     */
+    int define(GradeCategory category) {
+        int tag = tagOf(category.name());
+        if (tag < 0) {
+            if (categories.length > MAX_CATEGORIES) {
+                return -1;
+            }
+            tag = categories.length;
+        }
+        var next = Arrays.copyOf(categories, Math.max(tag + 1, categories.length));
+        next[tag] = category;
+        categories = next;
+        defined = true;
+        return tag;
+    }
+
+    /** Tag of the named category, or -1 if there is none. */
+    int tagOf(String name) {
+        var categories = this.categories;
+        for (int tag = 1; tag < categories.length; tag++) {
+            if (categories[tag].name().equals(name)) {
+                return tag;
+            }
+        }
+        return -1;
+    }
+
+    List<GradeCategory> categories() {
+        var categories = this.categories;
+        return List.of(Arrays.copyOfRange(categories, 1, categories.length));
+    }
+
+    /** Name of the category behind a tag, null for tag 0; tag n is the n-th of categories(). */
+    String nameOf(int tag) {
+        return tag == 0 ? null : categories[tag].name();
+    }
+
+    /**
+     * Replaces every definition with the given ones, tagged 1, 2, ... in order, and forgets
+     * every student, e.g. before a snapshot is loaded. Callers hold every stripe.
+     */
+    void reset(List<GradeCategory> defined) {
+        var next = new GradeCategory[defined.size() + 1];
+        for (int i = 0; i < defined.size(); i++) {
+            next[i + 1] = defined.get(i);
+        }
+        students.clear();
+        categories = next;
+        this.defined = next.length > 1;
+    }
+
+    /** grade was just appended to a store that now holds size grades. */
+    void gradeAdded(int id, int tag, int grade, int size) {
+        if (defined) {
+            added(id, tag, grade, size);
+        }
+    }
+
+    /** length grades were just appended; tags is null when none of them has a category. */
+    void gradesAdded(int id, byte[] added, byte[] tags, int length, int size) {
+        if (defined) {
+            added(id, added, tags, length, size);
+        }
+    }
+
+    void gradeRemoved(int id, int grade) {
+        if (defined) {
+            removed(id, grade);
+        }
+    }
+
+    /** The last length grades of the student, oldest first, were just removed. */
+    void gradesRemoved(int id, byte[] removed, int length) {
+        if (defined) {
+            removed(id, removed, length);
+        }
+    }
+
+    /** Tags of the student's count most recent grades, oldest first, or null if none has a category. */
+    byte[] lastTags(int id, int count) {
+        var student = studentOf(id);
+        if (student == null) {
+            return null;
+        }
+        var tags = Arrays.copyOfRange(student.tags, student.size - count, student.size);
+        for (byte tag : tags) {
+            if (tag != 0) {
+                return tags;
+            }
+        }
+        return null;
+    }
+
+    /** Recomputes a student's totals from their tags, e.g. after a restore or a category change. */
+    void rebuild(int id, GradeStore grades) {
+        var student = studentOf(id);
+        if (student == null) {
+            return;
+        }
+        student.reset(categories.length);
+        for (int i = 0; i < student.size; i++) {
+            int tag = student.tags[i];
+            if (tag != 0) {
+                int grade = grades.get(i);
+                student.sums[tag] += grade;
+                student.counts[tag]++;
+                if (categories[tag].dropLowest() > 0) {
+                    histogramOf(student, tag)[grade]++;
+                }
+            }
+        }
+        for (int tag = 1; tag < categories.length; tag++) {
+            updateDropped(student, tag);
+        }
+    }
+
+    /** Gives a student whose grades were read back from storage their tags; rebuild() computes the totals. */
+    void restore(int id, byte[] tags) {
+        var student = track(id, 0);
+        for (byte tag : tags) {
+            append(student, tag);
+        }
+    }
+
+    /**
+     * The student's weighted average over the categories with weight they have grades in, or
+     * the plain mean of all their grades if there are none; NaN if they have no grades.
+     */
+    double average(int id, GradeStore grades) {
+        if (grades.isEmpty()) {
+            return Double.NaN;
+        }
+        if (defined) {
+            double weighted = weighted(id);
+            if (!Double.isNaN(weighted)) {
+                return weighted;
+            }
+        }
+        return (double) grades.sum() / grades.size();
+    }
+
+    private double weighted(int id) {
+        var student = studentOf(id);
+        if (student == null) {
+            return Double.NaN;
+        }
+        double total = 0;
+        double weights = 0;
+        for (int tag = 1; tag < student.counts.length; tag++) {
+            int count = student.counts[tag];
+            double weight = categories[tag].weight();
+            if (count == 0 || weight == 0) {
+                continue;
+            }
+            int kept = count - dropped(tag, count);
+            total += weight * (student.sums[tag] - student.droppedSums[tag]) / kept;
+            weights += weight;
+        }
+        return weights == 0 ? Double.NaN : total / weights;
+    }
+
+    private void added(int id, int tag, int grade, int size) {
+        var student = studentOf(id);
+        if (student == null) {
+            if (tag == 0) {
+                return;
+            }
+            student = track(id, size - 1);
+        }
+        append(student, tag);
+        include(student, tag, grade, 1);
+    }
+
+    private void added(int id, byte[] added, byte[] tags, int length, int size) {
+        var student = studentOf(id);
+        if (student == null) {
+            if (tags == null) {
+                return;
+            }
+            student = track(id, size - length);
+        }
+        for (int i = 0; i < length; i++) {
+            int tag = tags == null ? 0 : tags[i];
+            append(student, tag);
+            include(student, tag, added[i], 1);
+        }
+    }
+
+    private void removed(int id, int grade) {
+        var student = studentOf(id);
+        if (student != null) {
+            include(student, student.tags[--student.size], grade, -1);
+        }
+    }
+
+    private void removed(int id, byte[] removed, int length) {
+        var student = studentOf(id);
+        if (student == null) {
+            return;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            include(student, student.tags[--student.size], removed[i], -1);
+        }
+    }
+
+    // starts tracking a student whose existing grades have no category
+    private Student track(int id, int existing) {
+        var student = new Student(existing * 2, categories.length);
+        student.size = existing;
+        students.pageFor(id)[IdPages.slot(id)] = student;
+        return student;
+    }
+
+    private Student studentOf(int id) {
+        var page = students.page(id);
+        return page == null ? null : page[IdPages.slot(id)];
+    }
+
+    private static void append(Student student, int tag) {
+        if (student.size == student.tags.length) {
+            student.tags = Arrays.copyOf(student.tags, student.size * 2);
+        }
+        student.tags[student.size++] = (byte) tag;
+    }
+
+    // adds (delta 1) or takes away (delta -1) one grade of a category
+    private void include(Student student, int tag, int grade, int delta) {
+        if (tag == 0) {
+            return;
+        }
+        student.sums[tag] += delta * grade;
+        student.counts[tag] += delta;
+        if (categories[tag].dropLowest() > 0) {
+            histogramOf(student, tag)[grade] += delta;
+            updateDropped(student, tag);
+        }
+    }
+
+    private static int[] histogramOf(Student student, int tag) {
+        var histogram = student.histograms[tag];
+        if (histogram == null) {
+            histogram = student.histograms[tag] = new int[101];
+        }
+        return histogram;
+    }
+
+    // at least one grade of a category always counts
+    private int dropped(int tag, int count) {
+        return Math.max(0, Math.min(categories[tag].dropLowest(), count - 1));
+    }
+
+    private void updateDropped(Student student, int tag) {
+        var histogram = student.histograms[tag];
+        int drop = dropped(tag, student.counts[tag]);
+        long sum = 0;
+        for (int grade = 0; drop > 0; grade++) {
+            int taken = Math.min(histogram[grade], drop);
+            sum += (long) taken * grade;
+            drop -= taken;
+        }
+        student.droppedSums[tag] = sum;
+    }
+}
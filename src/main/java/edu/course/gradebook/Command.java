@@ -14,8 +14,30 @@ public enum Command {
     REMOVE_STUDENT,   // Remove a student and all their grades
     REPORT,           // Display a student's grades, average, and letter grade
     CLASS_REPORT,     // Display the class average across all students
-    UNDO,             // Undo the last state-changing operation
+    UNDO,             // Undo the last state-changing operation (or n of them, or back to a savepoint)
     LOG,              // Display the activity log
     EXIT,             // Exit the program
-    UNKNOWN           // Represents an invalid or unrecognized command
+    UNKNOWN,          // Represents an invalid or unrecognized command
+    // later additions go below, so the ordinals printed by the main loop stay stable
+    RANK,             // Display a student's class rank by average
+    PERCENTILE,       // Display the p-th percentile of student averages
+    MEDIAN,           // Display the median student average
+    TOP,              // Display the best N students by average
+    LETTER_DISTRIBUTION, // Display how many students hold each letter grade
+    IMPORT,           // Bulk-load students and grades from a CSV file
+    EXPORT,           // Write every student's grades, average and letter to a CSV or JSON file
+    SAVE,             // Write the whole book as a binary snapshot
+    LOAD,             // Replace the book with a binary snapshot
+    STATS,            // Display per-command counts, errors and latencies, plus book size gauges
+    BEGIN,            // Start a group of changes that undo as one step
+    COMMIT,           // End the group started by BEGIN
+    SAVEPOINT,        // Name the current state for UNDO TO
+    REDO,             // Re-apply what the last UNDO took back
+    CATEGORY,         // Define a weighted grade category, or list them
+    LAST,             // Display the average of a student's last N grades
+    WINDOW,           // Display the average of a student's grades added in a time window
+    TREND,            // Display whether a student's recent grades are rising or falling
+    WATCH,            // Add a named threshold on student averages (or letters)
+    WATCHES,          // List the watches and how many students are below each
+    AT_RISK           // List the students below a watch
 }
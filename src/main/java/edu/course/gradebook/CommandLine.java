@@ -0,0 +1,129 @@
+package edu.course.gradebook;
+
+/**
+ * Single-pass tokenizer for one line of CLI input.
+ *
+ * parse() scans the line once, recognizes the command keyword without
+ * allocating, and records where the arguments start and end. Arguments are
+ * only turned into Strings (or ints) when a handler asks for them. The same
+ * instance is meant to be reused for every line.
+ *
+ * Argument layout mirrors the original split("\\s+", n) handling:
+ * - argument()       everything after the keyword, e.g. the name in "ADD_STUDENT Mary Ann"
+ * - firstArgument()  the token right after the keyword, e.g. the name in "ADD_GRADE Alice 90"
+ * - secondArgument() everything after that token, e.g. the grade in "ADD_GRADE Alice 90"
+ * - thirdArgument()  everything after the second token, e.g. the category in "ADD_GRADE Alice 90 homework"
+ */
+public final class CommandLine {
+    private String line;
+    private Command command = Command.UNKNOWN;
+    private int end;
+    private int argStart;
+    private int firstEnd;
+    private int secondStart;
+    private int secondEnd;
+    private int thirdStart;
+
+    public CommandLine() {}
+
+    /**
+     * Tokenizes the given line and returns its command (UNKNOWN for blank or
+     * unrecognized input).
+     */
+    public Command parse(String line) {
+        this.line = line;
+        if (line == null) {
+            end = argStart = firstEnd = secondStart = secondEnd = thirdStart = 0;
+            return command = Command.UNKNOWN;
+        }
+
+        int start = skipSpace(line, 0, line.length());
+        end = line.length();
+        while (end > start && isSpace(line.charAt(end - 1))) {
+            end--;
+        }
+        int keywordEnd = skipToken(line, start, end);
+        command = Commands.match(line, start, keywordEnd);
+
+        argStart = skipSpace(line, keywordEnd, end);
+        firstEnd = skipToken(line, argStart, end);
+        secondStart = skipSpace(line, firstEnd, end);
+        secondEnd = skipToken(line, secondStart, end);
+        thirdStart = skipSpace(line, secondEnd, end);
+        return command;
+    }
+
+    public Command command() {
+        return command;
+    }
+
+    public boolean hasArgument() {
+        return argStart < end;
+    }
+
+    public String argument() {
+        return line.substring(argStart, end);
+    }
+
+    public String firstArgument() {
+        return line.substring(argStart, firstEnd);
+    }
+
+    public boolean hasSecondArgument() {
+        return secondStart < end;
+    }
+
+    public String secondArgument() {
+        return line.substring(secondStart, end);
+    }
+
+    /**
+     * Parses the second argument as an int straight from the line.
+     *
+     * @throws NumberFormatException if it is not a valid integer
+     */
+    public int secondArgumentAsInt() {
+        return Integer.parseInt(line, secondStart, end, 10);
+    }
+
+    /** The token right after the first one, e.g. the weight in "CATEGORY homework 30 1". */
+    public String secondToken() {
+        return line.substring(secondStart, secondEnd);
+    }
+
+    /**
+     * Parses the second token (not everything after the first) as an int.
+     *
+     * @throws NumberFormatException if it is not a valid integer
+     */
+    public int secondTokenAsInt() {
+        return Integer.parseInt(line, secondStart, secondEnd, 10);
+    }
+
+    public boolean hasThirdArgument() {
+        return thirdStart < end;
+    }
+
+    public String thirdArgument() {
+        return line.substring(thirdStart, end);
+    }
+
+    private static int skipSpace(String s, int from, int to) {
+        while (from < to && isSpace(s.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int skipToken(String s, int from, int to) {
+        while (from < to && !isSpace(s.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    // same characters String.trim() strips
+    private static boolean isSpace(char c) {
+        return c <= ' ';
+    }
+}
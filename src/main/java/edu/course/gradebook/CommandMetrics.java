@@ -0,0 +1,94 @@
+package edu.course.gradebook;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-command counters and latency histograms, plus gauges read off a Gradebook.
+ *
+ * Main records every dispatched command here (its handler's wall time and
+ * whether it succeeded). Everything is indexed by Command ordinal and updated
+ * with atomic increments, so recording is lock-free; a command's count is the
+ * count of its histogram, so a successful command costs two atomic adds.
+ * report() renders it all for STATS and for the periodic dump.
+ *
+ * disabled() returns an instance that records nothing, for callers that do
+ * not want even the two clock reads around each command.
+ */
+public final class CommandMetrics {
+    private static final Command[] COMMANDS = Command.values();
+
+    private final AtomicLongArray errors = new AtomicLongArray(COMMANDS.length);
+    private final LatencyHistogram[] latencies = new LatencyHistogram[COMMANDS.length];
+    private final boolean enabled;
+
+    public CommandMetrics() {
+        this(true);
+    }
+
+    private CommandMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public static CommandMetrics disabled() {
+        return new CommandMetrics(false);
+    }
+
+    /** False for disabled(); callers can skip timing the command at all. */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(Command command, long nanos, boolean succeeded) {
+        if (!enabled) {
+            return;
+        }
+        int i = command.ordinal();
+        if (!succeeded) {
+            errors.getAndIncrement(i);
+        }
+        latencies[i].record(nanos);
+    }
+
+    public long count(Command command) {
+        return latencies[command.ordinal()].count();
+    }
+
+    public long errors(Command command) {
+        return errors.get(command.ordinal());
+    }
+
+    public LatencyHistogram latency(Command command) {
+        return latencies[command.ordinal()];
+    }
+
+    /** Gauges of the book's size, then one line per command that has run; latencies in microseconds. */
+    public List<String> report(Gradebook gradebook) {
+        var lines = new ArrayList<String>();
+        lines.add(String.format("students=%d grades=%d undoDepth=%d undoBytes=%d logSize=%d",
+                gradebook.studentCount(), gradebook.gradeCount(), gradebook.undoDepth(),
+                gradebook.undoRetainedBytes(), gradebook.activityLog().size()));
+        if (!enabled) {
+            lines.add("per-command metrics are disabled");
+            return lines;
+        }
+        lines.add(String.format("%-20s %10s %8s %10s %10s %10s %10s %10s",
+                "command", "count", "errors", "mean", "p50", "p99", "p99.9", "max"));
+        for (var command : COMMANDS) {
+            long count = count(command);
+            if (count == 0) {
+                continue;
+            }
+            var latency = latency(command);
+            lines.add(String.format("%-20s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f",
+                    command, count, errors(command), latency.mean() / 1e3,
+                    latency.percentile(50) / 1e3, latency.percentile(99) / 1e3,
+                    latency.percentile(99.9) / 1e3, latency.max() / 1e3));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,254 @@
+package edu.course.gradebook;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipelined batch run: reading and tokenizing, applying to the Gradebook, and
+ * formatting and writing output each run on their own thread.
+ *
+ * Lines travel in batches of BATCH_LINES through bounded queues, so a stage
+ * hands over one batch at a time and a slow stage holds the others back
+ * instead of buffering the whole script. A fixed set of batches is recycled
+ * (each slot keeps its CommandLine and Outcome), so steady state allocates
+ * nothing per line for the pipeline itself.
+ *
+ * The apply stage is the only one touching the Gradebook, in input order, and
+ * checkpoints the journal once per batch. For the common commands it only
+ * records an Outcome (see Main.applyForPipeline) and the output stage formats
+ * it; other commands print into the batch's text buffer while applying, and
+ * the output stage copies that text in place, so output order is the same as
+ * in Main.runBatch.
+ *
+ * If the parse or output stage dies of an exception, the apply stage stops
+ * waiting on it (it re-checks every STAGE_CHECK_MILLIS while blocked) and run()
+ * fails with that exception as the cause instead of hanging.
+ */
+final class CommandPipeline {
+    static final int BATCH_LINES = 256;
+    // batches in flight between the three stages
+    private static final int BATCHES = 8;
+    // how often the apply stage, while blocked on a queue, checks that the other stages are alive
+    private static final long STAGE_CHECK_MILLIS = 100;
+
+    private static final class Slot {
+        final CommandLine input = new CommandLine();
+        final Main.Outcome outcome = new Main.Outcome();
+        Command command;
+        // outcome is printed by the output stage; otherwise the text was printed while applying
+        boolean deferred;
+        // end of this line's text in the batch's text buffer
+        int textEnd;
+    }
+
+    private static final class Batch {
+        final Slot[] slots = new Slot[BATCH_LINES];
+        final TextBuffer text = new TextBuffer();
+        int size;
+        // EXIT or end of input was reached with this batch
+        boolean last;
+        IOException failure;
+
+        Batch() {
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new Slot();
+            }
+        }
+    }
+
+    // a ByteArrayOutputStream whose ranges can be written out without copying
+    private static final class TextBuffer extends ByteArrayOutputStream {
+        TextBuffer() {
+            super(1 << 12);
+        }
+
+        void writeRange(PrintStream out, int from, int to) {
+            out.write(buf, from, to - from);
+        }
+    }
+
+    // where the applying Main prints: the text buffer of the batch being applied
+    private static final class Redirect extends OutputStream {
+        TextBuffer target;
+
+        @Override
+        public void write(int b) {
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            target.write(b, off, len);
+        }
+    }
+
+    private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(BATCHES);
+    private final BlockingQueue<Batch> parsed = new ArrayBlockingQueue<>(BATCHES);
+    private final BlockingQueue<Batch> applied = new ArrayBlockingQueue<>(BATCHES);
+    private final Redirect redirect = new Redirect();
+    private final Main applier;
+    private final Main printer;
+    private final PrintStream out;
+    // what killed the parse or output stage, if anything did
+    private volatile Throwable stageFailure;
+
+    CommandPipeline(Gradebook gradebook, PrintStream out, GradebookJournal journal, CommandMetrics metrics) {
+        this.out = out;
+        applier = new Main(gradebook, new PrintStream(redirect, false, StandardCharsets.UTF_8), journal, metrics);
+        printer = new Main(gradebook, out, null, CommandMetrics.disabled());
+        for (int i = 0; i < BATCHES; i++) {
+            free.add(new Batch());
+        }
+    }
+
+    /** Runs every line up to EXIT or end of input; output is flushed once at the end. */
+    Main.BatchSummary run(BufferedReader reader) throws IOException {
+        long start = System.nanoTime();
+        var parser = stage("gradebook-parse", () -> parse(reader));
+        var writer = stage("gradebook-output", this::output);
+        long lines = 0;
+        long errors = 0;
+        IOException failure = null;
+        try {
+            while (true) {
+                var batch = take(parsed);
+                redirect.target = batch.text;
+                for (int i = 0; i < batch.size; i++) {
+                    var slot = batch.slots[i];
+                    lines++;
+                    if (slot.command != Command.EXIT) {
+                        slot.deferred = applier.applyForPipeline(slot.command, slot.input, slot.outcome);
+                        if (!slot.outcome.succeeded()) {
+                            errors++;
+                        }
+                    }
+                    slot.textEnd = batch.text.size();
+                }
+                applier.checkpoint();
+                if (batch.size > 0) {
+                    // anything the checkpoint printed goes out after the batch's last line
+                    batch.slots[batch.size - 1].textEnd = batch.text.size();
+                }
+                failure = batch.failure;
+                boolean last = batch.last;
+                put(applied, batch);
+                if (last) {
+                    break;
+                }
+            }
+            parser.join();
+            writer.join();
+            checkStages();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running the pipeline", e);
+        } finally {
+            // no-ops after a clean run; otherwise a stage may be waiting on one that is gone
+            parser.interrupt();
+            writer.interrupt();
+        }
+        out.flush();
+        if (failure != null) {
+            throw failure;
+        }
+        return new Main.BatchSummary(lines, errors, System.nanoTime() - start);
+    }
+
+    // daemons, so a stage stuck on a dead neighbour cannot block exit
+    private Thread stage(String name, Runnable body) {
+        return Thread.ofPlatform().name(name).daemon()
+                .uncaughtExceptionHandler((thread, e) -> stageFailure = e)
+                .start(body);
+    }
+
+    // take() and put() for the apply stage, giving up once another stage has died
+    private Batch take(BlockingQueue<Batch> queue) throws IOException, InterruptedException {
+        while (true) {
+            var batch = queue.poll(STAGE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            if (batch != null) {
+                return batch;
+            }
+            checkStages();
+        }
+    }
+
+    private void put(BlockingQueue<Batch> queue, Batch batch) throws IOException, InterruptedException {
+        while (!queue.offer(batch, STAGE_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkStages();
+        }
+    }
+
+    private void checkStages() throws IOException {
+        var failure = stageFailure;
+        if (failure != null) {
+            throw new IOException("Pipeline stage failed: " + failure, failure);
+        }
+    }
+
+    // stage 1: read and tokenize
+    private void parse(BufferedReader reader) {
+        try {
+            boolean done = false;
+            while (!done) {
+                var batch = free.take();
+                batch.size = 0;
+                batch.text.reset();
+                batch.failure = null;
+                try {
+                    while (batch.size < BATCH_LINES) {
+                        var line = reader.readLine();
+                        if (line == null) {
+                            done = true;
+                            break;
+                        }
+                        var slot = batch.slots[batch.size++];
+                        slot.command = slot.input.parse(line);
+                        if (slot.command == Command.EXIT) {
+                            done = true;
+                            break;
+                        }
+                    }
+                } catch (IOException e) {
+                    batch.failure = e;
+                    done = true;
+                }
+                batch.last = done;
+                parsed.put(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // stage 3: format deferred outcomes and write everything in line order
+    private void output() {
+        try {
+            while (true) {
+                var batch = applied.take();
+                int textStart = 0;
+                for (int i = 0; i < batch.size; i++) {
+                    var slot = batch.slots[i];
+                    if (slot.command != Command.EXIT && slot.deferred) {
+                        printer.printDeferred(slot.command, slot.input, slot.outcome);
+                    }
+                    batch.text.writeRange(out, textStart, slot.textEnd);
+                    textStart = slot.textEnd;
+                }
+                boolean last = batch.last;
+                free.put(batch);
+                if (last) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
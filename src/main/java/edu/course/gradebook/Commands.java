@@ -1,5 +1,7 @@
 package edu.course.gradebook;
 
+import java.util.Arrays;
+
 /**
  * Utility class for parsing user input into Command enum values.
  *
@@ -7,6 +9,11 @@ package edu.course.gradebook;
  * into structured Command enum values that can be processed by the application.
  */
 public final class Commands {
+    // every real command, checked in declaration order by match()
+    private static final Command[] KEYWORDS = Arrays.stream(Command.values())
+            .filter(c -> c != Command.UNKNOWN)
+            .toArray(Command[]::new);
+
     private Commands() {}
 
     /**
@@ -25,26 +32,41 @@ public final class Commands {
      * - "" (blank) returns Command.UNKNOWN
      *
      * Note: This method only identifies WHICH command was entered.
-     * Parsing the arguments (student names, grades, etc.) is handled elsewhere.
+     * Parsing the arguments (student names, grades, etc.) is handled by CommandLine.
+     * The keyword is matched in place, so no substrings or arrays are allocated.
      *
      * @param line the raw input line from the user
      * @return the Command enum value corresponding to the input, or UNKNOWN if not recognized
      */
     public static Command parse(String line) {
-        if (line == null || line.isBlank()) return Command.UNKNOWN;
+        if (line == null) return Command.UNKNOWN;
 
-        var firstWord = line.trim().split("\\s+")[0].toUpperCase();
+        int start = 0;
+        int length = line.length();
+        while (start < length && line.charAt(start) <= ' ') {
+            start++;
+        }
+        int end = start;
+        while (end < length && line.charAt(end) > ' ') {
+            end++;
+        }
+        return match(line, start, end);
+    }
 
-        return switch (firstWord) {
-            case "ADD_STUDENT" -> Command.ADD_STUDENT;
-            case "ADD_GRADE" -> Command.ADD_GRADE;
-            case "REMOVE_STUDENT" -> Command.REMOVE_STUDENT;
-            case "REPORT" -> Command.REPORT;
-            case "CLASS_REPORT" -> Command.CLASS_REPORT;
-            case "UNDO" -> Command.UNDO;
-            case "LOG" -> Command.LOG;
-            case "EXIT" -> Command.EXIT;
-            default -> Command.UNKNOWN;
-        };
+    /**
+     * Case-insensitively matches line[start, end) against the command names.
+     *
+     * @return the matching Command, or UNKNOWN if the region is empty or not a command
+     */
+    static Command match(String line, int start, int end) {
+        int length = end - start;
+        if (length == 0) return Command.UNKNOWN;
+        for (var command : KEYWORDS) {
+            var keyword = command.name();
+            if (keyword.length() == length && line.regionMatches(true, start, keyword, 0, length)) {
+                return command;
+            }
+        }
+        return Command.UNKNOWN;
     }
 }
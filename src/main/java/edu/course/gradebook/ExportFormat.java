@@ -0,0 +1,14 @@
+package edu.course.gradebook;
+
+/**
+ * File formats for Gradebook.export.
+ *
+ * CSV has one row per student: {@code name,average,letter,grades}, with the
+ * grades separated by ';' and the average/letter left empty for a student with
+ * no grades. JSON is an array with one object per student, e.g.
+ * {@code {"name":"Alice","grades":[80,90],"average":85.00,"letter":"B"}}.
+ */
+public enum ExportFormat {
+    CSV,
+    JSON
+}
@@ -0,0 +1,30 @@
+package edu.course.gradebook;
+
+import java.util.Objects;
+
+/**
+ * A weighted grade category such as homework or exams (see Gradebook.defineCategory).
+ *
+ * Weights are relative: a student's average is the weighted mean of their
+ * category averages, over the categories they have grades in. Each category
+ * average leaves out the student's dropLowest lowest grades in it, but always
+ * keeps at least one.
+ */
+public record GradeCategory(String name, double weight, int dropLowest) {
+    public GradeCategory {
+        Objects.requireNonNull(name);
+        if (name.isBlank() || name.chars().anyMatch(c -> c <= ' ')) {
+            throw new IllegalArgumentException("category names are one word: '" + name + "'");
+        }
+        if (!(weight >= 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("weight must be a finite number >= 0: " + weight);
+        }
+        if (dropLowest < 0) {
+            throw new IllegalArgumentException("dropLowest must be >= 0: " + dropLowest);
+        }
+    }
+
+    public GradeCategory(String name, double weight) {
+        this(name, weight, 0);
+    }
+}
@@ -0,0 +1,309 @@
+package edu.course.gradebook;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Parses a roster/grades CSV into per-student grade arrays, in parallel.
+ *
+ * Each line is {@code name[,grade[,grade...]]}: a name alone adds the student
+ * with no grades, and a name that appears on several lines collects all of
+ * their grades in file order. Blank lines and lines starting with '#' are
+ * skipped, as is a first line whose first field is "name" (a header). Rows
+ * with a grade that is not a whole number in 0-100 are rejected and counted.
+ *
+ * The file is split at line boundaries into chunks of at most 64 MB that are
+ * read with positional reads and parsed on the common fork-join pool. Inside a
+ * chunk, names are looked up by their raw bytes, so only one String is made
+ * per distinct name per chunk, and the chunk's bytes are dropped as soon as it
+ * is parsed. Chunk results are merged in file order, so the outcome does not
+ * depend on how the file was split.
+ */
+final class GradeImport {
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+    private static final int MAX_CHUNK_BYTES = 1 << 26;
+
+    /** Grades per student in order of first appearance, plus row counts. */
+    record Batch(Map<String, ByteGradeStore> grades, long rows, long rejectedRows) {}
+
+    private GradeImport() {}
+
+    static Batch parse(Path file) throws IOException {
+        return parse(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    static Batch parse(Path file, int parallelism) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel, parallelism);
+            List<Chunk> chunks;
+            try {
+                chunks = IntStream.range(0, bounds.length - 1)
+                        .parallel()
+                        .mapToObj(i -> parseChunk(channel, bounds[i], bounds[i + 1], i == 0))
+                        .toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return merge(chunks);
+        }
+    }
+
+    // chunk i is [bounds[i], bounds[i + 1]); every bound but the last sits just after a '\n'
+    private static long[] chunkBounds(FileChannel channel, int parallelism) throws IOException {
+        long size = channel.size();
+        // a few chunks per thread evens out lines of uneven length
+        long target = Math.min(MAX_CHUNK_BYTES, Math.max(MIN_CHUNK_BYTES, size / (Math.max(1, parallelism) * 4L)));
+        var bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        var probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (size - start > target) {
+            long at = start + target;
+            long lineEnd = -1;
+            while (lineEnd < 0 && at < size) {
+                probe.clear();
+                int read = channel.read(probe, at);
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        lineEnd = at + i + 1;
+                        break;
+                    }
+                }
+                at += Math.max(read, 0);
+            }
+            if (lineEnd < 0 || lineEnd >= size) {
+                break;
+            }
+            if (lineEnd - start > Integer.MAX_VALUE - 8) {
+                throw new IOException("Line too long near byte " + start);
+            }
+            bounds.add(lineEnd);
+            start = lineEnd;
+        }
+        bounds.add(size);
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static Chunk parseChunk(FileChannel channel, long start, long end, boolean first) {
+        try {
+            var bytes = new byte[(int) (end - start)];
+            var buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new IOException("File shrank while importing");
+                }
+            }
+            var chunk = new Chunk(bytes);
+            chunk.parse(first);
+            return chunk;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Batch merge(List<Chunk> chunks) {
+        var grades = new LinkedHashMap<String, ByteGradeStore>();
+        long rows = 0;
+        long rejected = 0;
+        for (var chunk : chunks) {
+            rows += chunk.rows;
+            rejected += chunk.rejected;
+            for (int slot = 0; slot < chunk.count; slot++) {
+                var name = chunk.names[slot];
+                var store = chunk.stores[slot];
+                var existing = grades.putIfAbsent(name, store);
+                if (existing != null) {
+                    existing.addAll(store.toByteArray(), 0, store.size());
+                }
+            }
+        }
+        return new Batch(grades, rows, rejected);
+    }
+
+    /** One slice of the file and the students it mentions, keyed by raw name bytes while parsing. */
+    private static final class Chunk {
+        // released once parse() has turned the names into Strings
+        private byte[] bytes;
+        // open-addressing table: slot order is first-appearance order, each entry is hash << 32 | slot + 1
+        private long[] index = new long[1024];
+        private int[] nameStarts = new int[256];
+        private int[] nameLengths = new int[256];
+        private ByteGradeStore[] stores = new ByteGradeStore[256];
+        private String[] names;
+        private byte[] pending = new byte[16];
+        private int count;
+        private long rows;
+        private long rejected;
+
+        Chunk(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        void parse(boolean first) {
+            int limit = bytes.length;
+            int pos = 0;
+            var header = first;
+            while (pos < limit) {
+                int lineEnd = pos;
+                while (lineEnd < limit && bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                parseLine(pos, lineEnd, header);
+                header = false;
+                pos = lineEnd + 1;
+            }
+            names = new String[count];
+            for (int slot = 0; slot < count; slot++) {
+                names[slot] = new String(bytes, nameStarts[slot], nameLengths[slot], StandardCharsets.UTF_8);
+            }
+            bytes = null;
+        }
+
+        private void parseLine(int pos, int end, boolean header) {
+            // name: up to the first comma, surrounding whitespace trimmed
+            int nameEnd = pos;
+            while (nameEnd < end && bytes[nameEnd] != ',') {
+                nameEnd++;
+            }
+            int nameStart = pos;
+            while (nameStart < nameEnd && bytes[nameStart] <= ' ') {
+                nameStart++;
+            }
+            int trimmedEnd = nameEnd;
+            while (trimmedEnd > nameStart && bytes[trimmedEnd - 1] <= ' ') {
+                trimmedEnd--;
+            }
+            if (trimmedEnd == nameStart) {
+                if (nameEnd < end) {
+                    rows++;
+                    rejected++;
+                }
+                return;
+            }
+            if (bytes[nameStart] == '#' || (header && isHeader(nameStart, trimmedEnd))) {
+                return;
+            }
+            rows++;
+
+            // grades: parsed into a scratch array first so a bad field rejects the whole row
+            int grades = 0;
+            for (int p = nameEnd; p < end; ) {
+                int fieldStart = p + 1;
+                int fieldEnd = fieldStart;
+                while (fieldEnd < end && bytes[fieldEnd] != ',') {
+                    fieldEnd++;
+                }
+                int grade = parseGrade(fieldStart, fieldEnd);
+                if (grade < 0) {
+                    rejected++;
+                    return;
+                }
+                if (grades == pending.length) {
+                    pending = Arrays.copyOf(pending, grades * 2);
+                }
+                pending[grades++] = (byte) grade;
+                p = fieldEnd;
+            }
+            studentAt(nameStart, trimmedEnd).addAll(pending, 0, grades);
+        }
+
+        // whole number 0-100 with optional surrounding whitespace, or -1
+        private int parseGrade(int start, int end) {
+            while (start < end && bytes[start] <= ' ') {
+                start++;
+            }
+            while (end > start && bytes[end - 1] <= ' ') {
+                end--;
+            }
+            if (end == start || end - start > 3) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = start; i < end; i++) {
+                byte c = bytes[i];
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value <= 100 ? value : -1;
+        }
+
+        private boolean isHeader(int start, int end) {
+            return end - start == 4
+                    && (bytes[start] | 0x20) == 'n' && (bytes[start + 1] | 0x20) == 'a'
+                    && (bytes[start + 2] | 0x20) == 'm' && (bytes[start + 3] | 0x20) == 'e';
+        }
+
+        private ByteGradeStore studentAt(int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int mask = index.length - 1;
+            for (int i = mix(hash) & mask; ; i = (i + 1) & mask) {
+                long entry = index[i];
+                if (entry == 0) {
+                    return insert(i, hash, start, end);
+                }
+                int slot = (int) entry - 1;
+                if ((int) (entry >>> 32) == hash && Arrays.equals(bytes, start, end,
+                        bytes, nameStarts[slot], nameStarts[slot] + nameLengths[slot])) {
+                    return stores[slot];
+                }
+            }
+        }
+
+        private ByteGradeStore insert(int i, int hash, int start, int end) {
+            if (count == stores.length) {
+                int grown = count * 2;
+                nameStarts = Arrays.copyOf(nameStarts, grown);
+                nameLengths = Arrays.copyOf(nameLengths, grown);
+                stores = Arrays.copyOf(stores, grown);
+            }
+            int slot = count++;
+            nameStarts[slot] = start;
+            nameLengths[slot] = end - start;
+            stores[slot] = new ByteGradeStore();
+            index[i] = (long) hash << 32 | (slot + 1);
+            // keep the table at most half full
+            if (count * 2 > index.length) {
+                rehash();
+            }
+            return stores[slot];
+        }
+
+        private void rehash() {
+            var old = index;
+            index = new long[old.length * 2];
+            int mask = index.length - 1;
+            for (long entry : old) {
+                if (entry == 0) {
+                    continue;
+                }
+                int i = mix((int) (entry >>> 32)) & mask;
+                while (index[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                index[i] = entry;
+            }
+        }
+
+        // names like "Student123" / "Student124" hash to neighbours; spread them before linear probing
+        private static int mix(int hash) {
+            int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package edu.course.gradebook;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table of letter grades and the whole-number average each one starts at.
+ *
+ * Averages are truncated before lookup (89.99 is still a B on the standard
+ * scale), so every scale compiles down to a 101-entry table and finding a
+ * letter is a single array read.
+ */
+public final class GradeScale {
+    private static final GradeScale STANDARD = new GradeScale(
+            new String[] {"A", "B", "C", "D", "F"},
+            new int[] {90, 80, 70, 60, 0});
+    private static final GradeScale PLUS_MINUS = new GradeScale(
+            new String[] {"A+", "A", "A-", "B+", "B", "B-", "C+", "C", "C-", "D+", "D", "D-", "F"},
+            new int[] {97, 93, 90, 87, 83, 80, 77, 73, 70, 67, 63, 60, 0});
+
+    private final String[] letters;
+    private final int[] minimums;
+    // truncated average -> index into letters
+    private final byte[] table = new byte[101];
+
+    /**
+     * @param letters  letter names, best first
+     * @param minimums lowest whole-number average for each letter, strictly
+     *                 descending and ending at 0
+     */
+    public GradeScale(String[] letters, int[] minimums) {
+        if (letters.length == 0 || letters.length != minimums.length || letters.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("need one minimum per letter");
+        }
+        for (int i = 0; i < minimums.length; i++) {
+            if (minimums[i] < 0 || minimums[i] > 100 || (i > 0 && minimums[i] >= minimums[i - 1])) {
+                throw new IllegalArgumentException("minimums must be strictly descending within 0-100: "
+                        + Arrays.toString(minimums));
+            }
+        }
+        if (minimums[minimums.length - 1] != 0) {
+            throw new IllegalArgumentException("the last letter must start at 0");
+        }
+        this.letters = letters.clone();
+        this.minimums = minimums.clone();
+        int letter = letters.length - 1;
+        for (int average = 0; average <= 100; average++) {
+            while (letter > 0 && average >= minimums[letter - 1]) {
+                letter--;
+            }
+            table[average] = (byte) letter;
+        }
+    }
+
+    /** A 90+, B 80+, C 70+, D 60+, F below. */
+    public static GradeScale standard() {
+        return STANDARD;
+    }
+
+    /** Standard scale split into +/- thirds (A+ 97+, A 93+, A- 90+, ... D- 60+, F below). */
+    public static GradeScale plusMinus() {
+        return PLUS_MINUS;
+    }
+
+    public List<String> letters() {
+        return List.of(letters);
+    }
+
+    public int letterCount() {
+        return letters.length;
+    }
+
+    public String letter(int index) {
+        return letters[index];
+    }
+
+    public int minimum(int index) {
+        return minimums[index];
+    }
+
+    /** Index into letters() for an average between 0 and 100. */
+    public int indexFor(double average) {
+        return table[(int) average];
+    }
+
+    public String letterFor(double average) {
+        return letters[indexFor(average)];
+    }
+}
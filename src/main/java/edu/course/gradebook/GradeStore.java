@@ -0,0 +1,62 @@
+package edu.course.gradebook;
+
+import java.util.List;
+
+/**
+ * Storage for a single student's grades.
+ *
+ * Implementations decide how the grades are laid out in memory; the Gradebook
+ * only ever appends, removes the most recent grade, or reads them back.
+ * See ByteGradeStore for the default (packed) layout and BoxedGradeStore for
+ * the original ArrayList-based layout.
+ */
+public interface GradeStore {
+
+    /** Appends a grade (0-100) to the end of the store. */
+    void add(int grade);
+
+    /** Appends grades[offset, offset + length), each 0-100. */
+    default void addAll(byte[] grades, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            add(grades[i]);
+        }
+    }
+
+    /** Removes and returns the most recently added grade. */
+    int removeLast();
+
+    /** Returns the grade at the given position (0 = oldest). */
+    int get(int index);
+
+    int size();
+
+    /** Returns the sum of all stored grades, maintained as grades are added and removed. */
+    long sum();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Copies the grades, oldest first, into a new byte array. */
+    default byte[] toByteArray() {
+        var copy = new byte[size()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = (byte) get(i);
+        }
+        return copy;
+    }
+
+    /** Returns a read-only List view backed by this store (no copy is made). */
+    List<Integer> asList();
+
+    /**
+     * Returns an unmodifiable store holding the grades as they are now. Later changes
+     * to this store do not show through it. The default copies; the byte-backed stores
+     * share their storage instead and copy it only if they are changed in a way that
+     * would overwrite what the snapshot sees.
+     */
+    default GradeStore snapshot() {
+        var copy = toByteArray();
+        return new ByteGradeStore.Frozen(copy, copy.length, sum());
+    }
+}
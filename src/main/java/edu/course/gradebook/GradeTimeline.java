@@ -0,0 +1,250 @@
+package edu.course.gradebook;
+
+import java.util.Arrays;
+
+/**
+ * When each grade was recorded, plus prefix sums for windowed queries.
+ *
+ * Per student it keeps the time of every grade (epoch millis; a time earlier
+ * than the student's previous grade is moved up to it, so times never go
+ * backwards) and two prefix sums over the grades in order: their sum, and their
+ * sum weighted by position. The mean of any run of consecutive grades is then
+ * one subtraction, a least-squares trend over them a few more, and the first
+ * grade at or after a time is a binary search over the times.
+ *
+ * Grades only come and go at the end of a student's list, so the prefix sums
+ * are extended when a query needs them, and removing grades (undo) just
+ * shortens them. Students get state with their first timed grade or first
+ * query. Grades added without a time (by bulk population, or from journals and
+ * snapshots written before times were stored) have time UNTIMED and count as
+ * older than any window. A student loaded from a snapshot reads their times
+ * from the mapping (MappedTimes) until their first change copies them here.
+ *
+ * Gradebook calls in with the student's lock held. Per-student state lives in
+ * IdPages, so students on different stripes share no monitor; clear() runs
+ * with every stripe held.
+ */
+final class GradeTimeline {
+    // the time of grades recorded without one; sorts before every real time
+    static final long UNTIMED = Long.MIN_VALUE;
+
+    private static final class Student {
+        // null while the times are still read from mapped
+        long[] times;
+        MappedTimes mapped;
+        int size;
+        // sums[i] is the sum of the first i grades, weighted[i] the sum of j * grade j below i;
+        // both are valid up to summed
+        long[] sums = new long[1];
+        long[] weighted = new long[1];
+        int summed;
+
+        Student(int size) {
+            times = new long[Math.max(16, size + 1)];
+            Arrays.fill(times, 0, size, UNTIMED);
+            this.size = size;
+        }
+
+        Student(MappedTimes mapped) {
+            this.mapped = mapped;
+            this.size = mapped.size();
+        }
+
+        long time(int index) {
+            return times != null ? times[index] : mapped.get(index);
+        }
+
+        long lastTime() {
+            return size == 0 ? UNTIMED : time(size - 1);
+        }
+
+        long[] copy(int from, int to) {
+            return times != null ? Arrays.copyOfRange(times, from, to) : mapped.copy(from, to);
+        }
+
+        void append(long time) {
+            long last = lastTime();
+            if (times == null) {
+                times = Arrays.copyOf(mapped.copy(0, size), Math.max(16, size * 2));
+                mapped = null;
+            } else if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+            }
+            times[size] = Math.max(time, last);
+            size++;
+        }
+    }
+
+    private final IdPages<Student[]> students = new IdPages<>(() -> new Student[IdPages.PAGE_SIZE]);
+
+    /** A grade was appended; size is the student's grade count including it. */
+    void gradeAdded(int id, long time, int size) {
+        var student = studentOf(id);
+        if (student == null) {
+            if (time == UNTIMED) {
+                return;
+            }
+            student = track(id, size - 1);
+        }
+        student.append(time);
+    }
+
+    /** grades were appended, with the given times or all at time if times is null. */
+    void gradesAdded(int id, long[] times, long time, int length, int size) {
+        var student = studentOf(id);
+        if (student == null) {
+            if (times == null && time == UNTIMED) {
+                return;
+            }
+            student = track(id, size - length);
+        }
+        for (int i = 0; i < length; i++) {
+            student.append(times == null ? time : times[i]);
+        }
+    }
+
+    /** The student's last count grades were removed. */
+    void gradesRemoved(int id, int count) {
+        var student = studentOf(id);
+        if (student != null) {
+            student.size -= count;
+            student.summed = Math.min(student.summed, student.size);
+        }
+    }
+
+    /** Time of the student's most recent grade as stored (moved up if need be), or UNTIMED. */
+    long lastTime(int id) {
+        var student = studentOf(id);
+        return student == null ? UNTIMED : student.lastTime();
+    }
+
+    /** Times of the student's count most recent grades, oldest first. */
+    long[] lastTimes(int id, int count) {
+        var student = studentOf(id);
+        if (student == null) {
+            var times = new long[count];
+            Arrays.fill(times, UNTIMED);
+            return times;
+        }
+        return student.copy(student.size - count, student.size);
+    }
+
+    /** Times of all the student's grades, or null if none has one. */
+    long[] times(int id) {
+        var student = studentOf(id);
+        return student == null ? null : student.copy(0, student.size);
+    }
+
+    /** The student's grades were replaced wholesale (restore, import); times null means untimed. */
+    void restore(int id, int size, long[] times) {
+        if (times == null) {
+            forget(id);
+            return;
+        }
+        var student = track(id, 0);
+        for (int i = 0; i < size; i++) {
+            student.append(times[i]);
+        }
+    }
+
+    /** The student was loaded from a snapshot; their times stay in the mapping until they change. */
+    void restore(int id, MappedTimes times) {
+        students.pageFor(id)[IdPages.slot(id)] = new Student(times);
+    }
+
+    void forget(int id) {
+        var page = students.page(id);
+        if (page != null) {
+            page[IdPages.slot(id)] = null;
+        }
+    }
+
+    void clear() {
+        students.clear();
+    }
+
+    /** Mean of the student's last count grades; NaN if they have none. */
+    double averageOfLast(int id, GradeStore grades, int count) {
+        int size = grades.size();
+        int from = size - Math.min(count, size);
+        return mean(summed(id, grades), from, size);
+    }
+
+    /** Mean of the grades recorded in [from, to) (epoch millis); NaN if there are none. */
+    double averageBetween(int id, GradeStore grades, long from, long to) {
+        var student = summed(id, grades);
+        return mean(student, firstAtOrAfter(student, from), firstAtOrAfter(student, to));
+    }
+
+    /**
+     * Least-squares slope of the student's last count grades against their position, in
+     * points per grade; NaN with fewer than two grades.
+     */
+    double trend(int id, GradeStore grades, int count) {
+        int size = grades.size();
+        long m = Math.min(count, size);
+        if (m < 2) {
+            return Double.NaN;
+        }
+        var student = summed(id, grades);
+        int from = (int) (size - m);
+        double sum = student.sums[size] - student.sums[from];
+        // positions shifted to 0..m-1, so the terms stay small
+        double xy = (student.weighted[size] - student.weighted[from]) - (double) from * sum;
+        double x = m * (m - 1) / 2.0;
+        double xx = (m - 1) * m * (2 * m - 1) / 6.0;
+        return (m * xy - x * sum) / (m * xx - x * x);
+    }
+
+    private static double mean(Student student, int from, int to) {
+        return from >= to ? Double.NaN : (double) (student.sums[to] - student.sums[from]) / (to - from);
+    }
+
+    // index of the first grade with a time >= time, or size if there is none
+    private static int firstAtOrAfter(Student student, long time) {
+        int low = 0;
+        int high = student.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (student.time(mid) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // the student's state with prefix sums covering every grade
+    private Student summed(int id, GradeStore grades) {
+        var student = studentOf(id);
+        if (student == null) {
+            student = track(id, grades.size());
+        }
+        int size = grades.size();
+        if (student.sums.length <= size) {
+            int capacity = Math.max(size + 1, student.sums.length * 2);
+            student.sums = Arrays.copyOf(student.sums, capacity);
+            student.weighted = Arrays.copyOf(student.weighted, capacity);
+        }
+        for (int i = student.summed; i < size; i++) {
+            int grade = grades.get(i);
+            student.sums[i + 1] = student.sums[i] + grade;
+            student.weighted[i + 1] = student.weighted[i] + (long) i * grade;
+        }
+        student.summed = size;
+        return student;
+    }
+
+    private Student studentOf(int id) {
+        var page = students.page(id);
+        return page == null ? null : page[IdPages.slot(id)];
+    }
+
+    // new state for a student whose first size grades are untimed
+    private Student track(int id, int size) {
+        var student = new Student(size);
+        students.pageFor(id)[IdPages.slot(id)] = student;
+        return student;
+    }
+}
@@ -0,0 +1,37 @@
+package edu.course.gradebook;
+
+import java.util.Objects;
+
+/**
+ * A named threshold on student averages, e.g. "at-risk" below 60 (see Gradebook.addWatch).
+ *
+ * A student is below the watch while their average (the one letters use) is
+ * under threshold; students without grades never are. Listeners hear when a
+ * student crosses it in either direction, and Gradebook.belowWatch lists who
+ * is below right now.
+ */
+public record GradeWatch(String name, double threshold) {
+    public GradeWatch {
+        Objects.requireNonNull(name);
+        if (name.isBlank() || name.chars().anyMatch(c -> c <= ' ')) {
+            throw new IllegalArgumentException("watch names are one word: '" + name + "'");
+        }
+        if (!Double.isFinite(threshold)) {
+            throw new IllegalArgumentException("threshold must be a finite number: " + threshold);
+        }
+    }
+
+    /** Watches for students whose letter under scale is worse than letter, e.g. below a C. */
+    public static GradeWatch worseThan(String name, String letter, GradeScale scale) {
+        int index = scale.letters().indexOf(letter);
+        if (index < 0) {
+            throw new IllegalArgumentException("no letter " + letter + " in " + scale.letters());
+        }
+        return new GradeWatch(name, scale.minimum(index));
+    }
+
+    /** True if a student with this average is below the watch; NaN (no grades) never is. */
+    public boolean isBelow(double average) {
+        return average < threshold;
+    }
+}
@@ -1,123 +1,1226 @@
 package edu.course.gradebook;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
 
 public class Gradebook {
 
-    private final Map<String, List<Integer>> gradesByStudent = new HashMap<>();
-    private final Deque<UndoAction> undoStack = new ArrayDeque<>();
-    private final LinkedList<String> activityLog = new LinkedList<>();
+    // name -> dense student ID, and the per-ID grade stores
+    private final StudentRegistry students;
+    private final UndoHistory undoStack;
+    // set while runSession() runs on a thread; that session's changes go to its own history
+    private final ThreadLocal<UndoHistory> sessionHistory = new ThreadLocal<>();
+    private final ActivityLog activityLog;
+    private final Supplier<GradeStore> storeFactory;
+    // no-op locks unless this is a ConcurrentGradebook
+    private final StripedLocks locks;
+    // running totals over every grade in the book, kept in sync by every mutation and undo
+    private final LongAdder totalSum = new LongAdder();
+    private final LongAdder totalCount = new LongAdder();
+    // class rank / median / percentiles over student averages, plus the grade histogram
+    private final RankingIndex ranking = new RankingIndex();
+    // each student's current letter and the students-per-letter counters
+    private final LetterDistribution letters = new LetterDistribution(GradeScale.standard());
+    // per-student category totals for weighted averages; idle until a category is defined
+    private final CategoryAverages categories = new CategoryAverages();
+    // when each grade was added, and prefix sums for windowed averages and trends
+    private final GradeTimeline timeline = new GradeTimeline();
+    // thresholds on student averages and who is below each; idle until a watch is added
+    private final ThresholdWatches watches = new ThresholdWatches();
+    private final ThresholdWatches.Crossing crossed = this::watchCrossed;
+    private final List<GradebookListener> listeners = new CopyOnWriteArrayList<>();
+    // true while undo() applies a batch, so the primitives record reverted rather than new changes
+    private boolean reverting;
 
+    public Gradebook() {
+        this(ByteGradeStore::new);
+    }
+
+    // lets callers pick the grade layout, e.g. BoxedGradeStore::new for the old ArrayList<Integer> one
+    public Gradebook(Supplier<GradeStore> storeFactory) {
+        this(storeFactory, new ActivityLog());
+    }
+
+    // e.g. a bigger ActivityLog, or one that spills full history to disk
+    public Gradebook(Supplier<GradeStore> storeFactory, ActivityLog activityLog) {
+        this(storeFactory, activityLog, new UndoHistory());
+    }
+
+    // undoHistory bounds how much undo state a long session keeps
+    public Gradebook(Supplier<GradeStore> storeFactory, ActivityLog activityLog, UndoHistory undoHistory) {
+        this(storeFactory, StripedLocks.none(), activityLog, undoHistory);
+    }
+
+    Gradebook(Supplier<GradeStore> storeFactory, StripedLocks locks, ActivityLog activityLog, UndoHistory undoHistory) {
+        this.storeFactory = Objects.requireNonNull(storeFactory);
+        this.locks = Objects.requireNonNull(locks);
+        this.activityLog = Objects.requireNonNull(activityLog);
+        this.undoStack = Objects.requireNonNull(undoHistory);
+        students = new StudentRegistry(locks.isConcurrent());
+        activityLog.resolveNamesWith(students::nameOf);
+    }
+
+    /** Registers a listener that sees every state change, including undos and replays. */
+    public void addListener(GradebookListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public void removeListener(GradebookListener listener) {
+        listeners.remove(listener);
+    }
+
+    // ---- student IDs ----
+    // Every student gets a dense int ID on addStudent. Callers that update the same students over
+    // and over can look the ID up once and use the int overloads, which skip hashing the name.
+
+    public OptionalInt studentId(String name) {
+        int id = students.idOf(name);
+        return id < 0 ? OptionalInt.empty() : OptionalInt.of(id);
+    }
+
+    public Optional<String> studentName(int studentId) {
+        return students.gradesOf(studentId) == null ? Optional.empty() : Optional.of(students.nameOf(studentId));
+    }
+
+    public int studentCount() {
+        return students.size();
+    }
+
+    // returns a read-only snapshot view: the grades are not copied, and later changes do not show
+    // through (see GradeStore.snapshot), so it is also safe to read while other threads write
     public Optional<List<Integer>> findStudentGrades(String name) {
-        return Optional.ofNullable(gradesByStudent.get(name));
+        return findStudentGrades(students.idOf(name));
+    }
+
+    public Optional<List<Integer>> findStudentGrades(int studentId) {
+        if (studentId < 0) {
+            return Optional.empty();
+        }
+        var lock = locks.forId(studentId);
+        lock.lock();
+        try {
+            var grades = students.gradesOf(studentId);
+            return grades == null ? Optional.empty() : Optional.of(grades.snapshot().asList());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Grades, average and letter of one student from a single lookup; see StudentReport. */
+    public Optional<StudentReport> report(String name) {
+        return report(students.idOf(name));
+    }
+
+    public Optional<StudentReport> report(int studentId) {
+        if (studentId < 0) {
+            return Optional.empty();
+        }
+        var lock = locks.forId(studentId);
+        lock.lock();
+        try {
+            var grades = students.gradesOf(studentId);
+            if (grades == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new StudentReport(studentId, students.nameOf(studentId), grades.snapshot(),
+                    categories.average(studentId, grades), letters.letterOf(studentId)));
+        } finally {
+            lock.unlock();
+        }
     }
 
     public boolean addStudent(String name) {
-        if (gradesByStudent.containsKey(name)) {
+        if (students.idOf(name) >= 0) {
             return false;
         }
-        gradesByStudent.put(name, new ArrayList<>());
-        activityLog.addFirst("Student added: " + name);
-        return true;
+        beforeChange();
+        int id = students.allocate();
+        // the new ID's stripe is held before the name becomes visible, so nobody can add a grade
+        // (and notify listeners about it) ahead of the studentAdded notification
+        var lock = locks.forId(id);
+        lock.lock();
+        try {
+            if (!applyAddStudent(id, name, storeFactory.get())) {
+                return false;
+            }
+            history().push(new UndoAction.RetireStudent(id));
+            activityLog.record(ActivityLog.Operation.STUDENT_ADDED, id, 0);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public boolean addGrade(String name, int grade) {
-        var grades = gradesByStudent.get(name);
-        if  (grades == null) {
+        int id = students.idOf(name);
+        return id >= 0 && addGrade(id, grade);
+    }
+
+    public boolean addGrade(int studentId, int grade) {
+        return addGrade(studentId, 0, grade, System.currentTimeMillis());
+    }
+
+    /** Adds a grade counted in a category (see defineCategory); false if the student or category is unknown. */
+    public boolean addGrade(String name, String category, int grade) {
+        int id = students.idOf(name);
+        int tag = categories.tagOf(category);
+        return id >= 0 && tag > 0 && addGrade(id, tag, grade, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds a grade recorded at the given time (epoch millis) instead of now, e.g. when entering
+     * grades after the fact. A time before the student's previous grade is moved up to it.
+     */
+    public boolean addGrade(String name, int grade, long timestampMillis) {
+        int id = students.idOf(name);
+        return id >= 0 && addGrade(id, 0, grade, timestampMillis);
+    }
+
+    private boolean addGrade(int studentId, int tag, int grade, long time) {
+        if (studentId < 0 || grade < 0 || grade > 100) {
             return false;
         }
-        grades.add(grade);
-        // undo by removing last element
-        undoStack.push(gb -> {var g = gb.gradesByStudent.get(name);
-        if (g != null&& !g.isEmpty()) {
-            g.remove(g.size() - 1);
-            }
-        });
-        // log entry
-        activityLog.addFirst("Name:" + name + " ,added Grade:" + grade);
-        return true;
+        beforeChange();
+        var lock = locks.forId(studentId);
+        lock.lock();
+        try {
+            if  (!applyAddGrade(studentId, grade, tag, time)) {
+                return false;
+            }
+            // undo by removing last element
+            history().push(new UndoAction.RemoveLastGrade(studentId));
+            // log entry, formatted only when someone reads it
+            activityLog.record(ActivityLog.Operation.GRADE_ADDED, studentId, grade);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loads a roster/grades CSV (see GradeImport for the format). The file is parsed in
+     * parallel without holding any lock; the result is then merged under all locks as one
+     * undo entry and one log entry. Names already in the book get the grades appended.
+     */
+    public ImportResult importBatch(Path csv) throws IOException {
+        return importBatch(GradeImport.parse(csv));
+    }
+
+    ImportResult importBatch(GradeImport.Batch batch) {
+        var addedIds = new int[batch.grades().size()];
+        var extendedIds = new int[batch.grades().size()];
+        var extendedCounts = new int[batch.grades().size()];
+        int added = 0;
+        int extended = 0;
+        long grades = 0;
+        beforeChange();
+        locks.lockAll();
+        try {
+            for (var entry : batch.grades().entrySet()) {
+                var imported = entry.getValue();
+                int id = students.idOf(entry.getKey());
+                if (id < 0) {
+                    var store = storeFactory.get();
+                    store.addAll(imported.toByteArray(), 0, imported.size());
+                    id = students.allocate();
+                    if (imported.isEmpty()) {
+                        applyAddStudent(id, entry.getKey(), store);
+                    } else {
+                        // a new student with grades is announced like a restore: one event with all of them
+                        students.publish(id, entry.getKey(), store);
+                        var times = new long[imported.size()];
+                        Arrays.fill(times, System.currentTimeMillis());
+                        restored(id, store, times);
+                    }
+                    addedIds[added++] = id;
+                } else if (!imported.isEmpty()) {
+                    applyAddGrades(id, imported.toByteArray(), imported.size());
+                    extendedIds[extended] = id;
+                    extendedCounts[extended++] = imported.size();
+                }
+                grades += imported.size();
+            }
+            if (added + extended > 0) {
+                history().push(new UndoAction.UndoImport(Arrays.copyOf(addedIds, added),
+                        Arrays.copyOf(extendedIds, extended), Arrays.copyOf(extendedCounts, extended)));
+                activityLog.record(ActivityLog.Operation.IMPORT, added + extended, 0);
+            }
+        } finally {
+            locks.unlockAll();
+        }
+        return new ImportResult(batch.rows(), batch.rejectedRows(), added, extended, grades);
+    }
+
+    /**
+     * Streams every student's grades, average and letter to file (replacing it), in the order
+     * they were added. Returns the number of students written.
+     */
+    public long export(Path file, ExportFormat format) throws IOException {
+        return GradebookExport.write(this, file, format, ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Writes the whole book as a binary snapshot (see BinarySnapshot), replacing file.
+     * Mutations are blocked while it is written. Returns the number of students saved.
+     */
+    public long save(Path file) throws IOException {
+        locks.lockAll();
+        try {
+            return BinarySnapshot.write(this, file);
+        } finally {
+            locks.unlockAll();
+        }
+    }
 
+    /**
+     * Replaces the book's contents with a binary snapshot. The file is mapped and its
+     * index checked before anything changes; grades are then read from the mapping as
+     * students are accessed, and copied onto the heap when a student is first changed.
+     * Categories are replaced by the snapshot's and grade times come back with it, left in the
+     * mapping like the grades; only the grades of students with categorized grades are read up
+     * front. Undo history is cleared
+     * and listeners get bookReplaced() instead of per-student events, still under every
+     * stripe lock. Returns the number of students loaded.
+     */
+    public long load(Path file) throws IOException {
+        var snapshot = BinarySnapshot.open(file);
+        beforeChange();
+        var names = snapshot.names();
+        var stores = snapshot.stores();
+        var ids = new int[names.length];
+        locks.lockAll();
+        try {
+            for (int id = 0, limit = students.idLimit(); id < limit; id++) {
+                students.retire(id);
+                students.forgetChanges(id);
+            }
+            totalSum.reset();
+            totalCount.reset();
+            ranking.clear();
+            letters.reset(letters.scale());
+            categories.reset(snapshot.categories());
+            timeline.clear();
+            watches.clearStudents();
+            history().clear();
+            for (int i = 0; i < names.length; i++) {
+                ids[i] = students.allocate();
+                students.publish(ids[i], names[i], stores[i]);
+                // only students with categorized grades have tags to read; their grades are read too
+                var tags = snapshot.tagsOf(i);
+                if (tags != null) {
+                    categories.restore(ids[i], tags);
+                    categories.rebuild(ids[i], stores[i]);
+                }
+                var times = snapshot.timesOf(i);
+                if (times != null) {
+                    timeline.restore(ids[i], times);
+                }
+                double average = categories.average(ids[i], stores[i]);
+                letters.update(ids[i], average);
+                ranking.update(ids[i], average);
+                if (watches.isActive()) {
+                    watches.seed(ids[i], average);
+                }
+            }
+            watches.recount();
+            // sizes and sums come from the snapshot index, so none of this touches grade bytes
+            ranking.loaded(snapshot.histogram());
+            totalSum.add(snapshot.gradeSum());
+            totalCount.add(snapshot.gradeCount());
+            for (var listener : listeners) {
+                listener.bookReplaced();
+            }
+            activityLog.record(ActivityLog.Operation.LOAD, names.length, 0);
+            return names.length;
+        } finally {
+            locks.unlockAll();
+        }
     }
 
     public boolean removeStudent(String name) {
-        var removed = gradesByStudent.remove(name);
-        if (removed == null) {
+        int id = students.idOf(name);
+        if (id < 0) {
             return false;
         }
-        //push undo action to restore student and their grades
-        undoStack.push(gb -> gb.gradesByStudent.put(name, removed));
-        activityLog.addFirst("Removed student: " + name);
-        return true;
+        beforeChange();
+        var lock = locks.forId(id);
+        lock.lock();
+        try {
+            var grades = students.gradesOf(id);
+            if (grades == null) {
+                return false;
+            }
+            // push undo action to restore student and their grades; pushed before the name is freed,
+            // so an addStudent of the same name on another stripe always lands above it in the history
+            history().push(new UndoAction.RestoreStudent(id, grades, gradeTimes(id)));
+            applyRemoveStudent(id);
+            activityLog.record(ActivityLog.Operation.STUDENT_REMOVED, id, 0);
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public Optional<Double> averageFor(String name) {
-        var grades = gradesByStudent.get(name);
-        if (grades == null || grades.isEmpty()) {
+        return averageFor(students.idOf(name));
+    }
+
+    public Optional<Double> averageFor(int studentId) {
+        if (studentId < 0) {
             return Optional.empty();
         }
-        int sum = 0;
-        for  (int grade : grades) {
-            sum += grade;
+        var lock = locks.forId(studentId);
+        lock.lock();
+        try {
+            var grades = students.gradesOf(studentId);
+            if (grades == null || grades.isEmpty()) {
+                return Optional.empty();
+            }
+            // running sums in the store and the category totals make this O(categories)
+            return Optional.of(categories.average(studentId, grades));
+        } finally {
+            lock.unlock();
         }
-        // cast to double so dont lose decimals
-        double avg = (double) sum / grades.size();
-        return Optional.of(avg);
     }
 
     public Optional<String> letterGradeFor(String name) {
-        Optional<Double> avgOptional = averageFor(name);
-        if (avgOptional.isEmpty()) {
+        return letterGradeFor(students.idOf(name));
+    }
+
+    // the letter is kept current on every mutation, so this is a lookup rather than a recomputation
+    public Optional<String> letterGradeFor(int studentId) {
+        if (studentId < 0) {
             return Optional.empty();
         }
-        double avg = avgOptional.get();
-        // had to use AI to figure out how to use switch expression and  dividing averages
-        String letter = switch ((int)avg / 10) {
-            case 10, 9 -> {yield "A";}
-            case 8 -> {yield "B";}
-            case 7 -> {yield "C";}
-            case 6 -> {yield "D";}
-            default -> {yield "F";}
-        };
-        return Optional.of(letter);
+        var lock = locks.forId(studentId);
+        lock.lock();
+        try {
+            return Optional.ofNullable(letters.letterOf(studentId));
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public Optional<Double> classAverage() {
+    public GradeScale gradeScale() {
+        return letters.scale();
+    }
 
-        double total = 0;
-        int count = 0;
-        for (var grades : gradesByStudent.values()){
-            for (int grade : grades) {
-                total += grade;
-                count++;
+    /** Switches letter grades to another boundary table, e.g. GradeScale.plusMinus(). */
+    public void setGradeScale(GradeScale scale) {
+        Objects.requireNonNull(scale);
+        locks.lockAll();
+        try {
+            letters.reset(scale);
+            for (int id = 0, limit = students.idLimit(); id < limit; id++) {
+                var grades = students.gradesOf(id);
+                if (grades != null) {
+                    letters.update(id, categories.average(id, grades));
+                }
             }
+        } finally {
+            locks.unlockAll();
         }
-        if  (count == 0) {
+    }
+
+    // ---- weighted categories ----
+    // Without categories an average is the plain mean of a student's grades. Once categories are
+    // defined, grades added to one count toward a weighted average (see GradeCategory) that
+    // averageFor, letters, reports, ranking and percentiles use; the class average stays the mean of
+    // every grade in the book. Exports show the weighted average too. The journal and snapshots
+    // store the definitions and each grade's category, so a recovered book averages the same way.
+
+    /**
+     * Defines a category, or changes the weight and drop rule of the one with the same name;
+     * every student's average is recomputed. False if CategoryAverages.MAX_CATEGORIES exist.
+     */
+    public boolean defineCategory(GradeCategory category) {
+        Objects.requireNonNull(category);
+        beforeChange();
+        locks.lockAll();
+        try {
+            if (categories.define(category) < 0) {
+                return false;
+            }
+            for (var listener : listeners) {
+                listener.categoryDefined(category);
+            }
+            for (int id = 0, limit = students.idLimit(); id < limit; id++) {
+                var grades = students.gradesOf(id);
+                if (grades != null) {
+                    categories.rebuild(id, grades);
+                    averageChanged(id, categories.average(id, grades));
+                }
+            }
+            return true;
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    public Optional<GradeCategory> category(String name) {
+        int tag = categories.tagOf(name);
+        return tag < 0 ? Optional.empty() : Optional.of(categories.categories().get(tag - 1));
+    }
+
+    /** The defined categories, in the order they were first defined. */
+    public List<GradeCategory> categories() {
+        return categories.categories();
+    }
+
+    // ---- grade times ----
+    // Grades added through addGrade and imports are stamped with the time they were added; the
+    // queries below answer from prefix sums (see GradeTimeline) in O(1), or O(log n) to find a
+    // time, however many grades a student has. They use plain means, not category weights. The
+    // journal and snapshots store each grade's time, so windows answer the same after a restart.
+
+    /** Mean of the student's last count grades (all of them if they have fewer); count >= 1. */
+    public Optional<Double> averageOfLast(String name, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be positive: " + count);
+        }
+        int id = students.idOf(name);
+        return timed(id, grades -> timeline.averageOfLast(id, grades, count));
+    }
+
+    /** Mean of the student's grades added in [fromMillis, toMillis); empty if there are none. */
+    public Optional<Double> averageBetween(String name, long fromMillis, long toMillis) {
+        int id = students.idOf(name);
+        return timed(id, grades -> timeline.averageBetween(id, grades, fromMillis, toMillis));
+    }
+
+    /**
+     * Least-squares slope of the student's last count grades (all of them if they have fewer)
+     * against their order, in points per grade: positive when they are improving. Empty with
+     * fewer than two grades.
+     */
+    public Optional<Double> trend(String name, int count) {
+        if (count < 2) {
+            throw new IllegalArgumentException("count must be at least 2: " + count);
+        }
+        int id = students.idOf(name);
+        return timed(id, grades -> timeline.trend(id, grades, count));
+    }
+
+    // runs a timeline query under the student's lock; NaN results become empty
+    private Optional<Double> timed(int studentId, ToDoubleFunction<GradeStore> query) {
+        if (studentId < 0) {
             return Optional.empty();
         }
-        return Optional.of(total / count);
+        var lock = locks.forId(studentId);
+        lock.lock();
+        try {
+            var grades = students.gradesOf(studentId);
+            if (grades == null) {
+                return Optional.empty();
+            }
+            double value = query.applyAsDouble(grades);
+            return Double.isNaN(value) ? Optional.empty() : Optional.of(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---- watches ----
+    // A GradeWatch is a threshold on student averages (the ones letters use). Watches are checked
+    // as part of the update that keeps letters current on every change, including undo and redo:
+    // only watches whose threshold lies between a student's old and new average are touched (see
+    // ThresholdWatches). Listeners hear about crossings (watchCrossed) and letter changes
+    // (letterChanged) as they happen. Watches are kept in memory only.
+
+    /**
+     * Adds a watch, or moves the one with the same name to a new threshold. Students already
+     * below it are listed by belowWatch but get no watchCrossed event. Returns how many there are.
+     */
+    public int addWatch(GradeWatch watch) {
+        Objects.requireNonNull(watch);
+        locks.lockAll();
+        try {
+            if (!watches.isActive()) {
+                for (int id = 0, limit = students.idLimit(); id < limit; id++) {
+                    var grades = students.gradesOf(id);
+                    if (grades != null) {
+                        watches.seed(id, categories.average(id, grades));
+                    }
+                }
+            }
+            return watches.add(watch);
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    public boolean removeWatch(String name) {
+        locks.lockAll();
+        try {
+            return watches.remove(name);
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    public Optional<GradeWatch> watch(String name) {
+        return Optional.ofNullable(watches.watch(name));
+    }
+
+    /** The watches, lowest threshold first. */
+    public List<GradeWatch> watches() {
+        return watches.watches();
+    }
+
+    /** Students below the named watch, lowest average first; empty if there is no such watch. */
+    public Optional<List<String>> belowWatch(String name) {
+        // the ordered set is shared by every stripe, so listing it holds them all
+        locks.lockAll();
+        try {
+            var ids = watches.below(name);
+            if (ids == null) {
+                return Optional.empty();
+            }
+            var names = new ArrayList<String>(ids.length);
+            for (int id : ids) {
+                names.add(students.nameOf(id));
+            }
+            return Optional.of(names);
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    /** Number of students below the named watch (0 if there is no such watch), without listing them. */
+    public int belowWatchCount(String name) {
+        return watches.belowCount(name);
+    }
+
+    /** Number of students holding each letter of the current scale, best letter first. */
+    public Map<String, Long> letterDistribution() {
+        return letters.counts();
+    }
+
+    // lock-free: under concurrent writers the sum and count may be read a few grades apart
+    public Optional<Double> classAverage() {
+        long count = totalCount.sum();
+        if  (count <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of((double) totalSum.sum() / count);
+    }
+
+    /** Number of grades in the whole book; lock-free, like classAverage(). */
+    public long gradeCount() {
+        return totalCount.sum();
+    }
+
+    // sum of every grade in the book, read like gradeCount(); lets a ShardedGradebook combine averages exactly
+    long gradeSum() {
+        return totalSum.sum();
+    }
+
+    // ---- class standings ----
+    // Answered from the ranking index, which every mutation keeps current, so nothing is sorted here.
+    // Students are ranked by the same average averageFor returns. A query reads many students at
+    // once, so it holds every stripe; updates to the index only ever hold the student's own.
+
+    /** 1-based class rank by average (ties share a rank); empty if unknown or without grades. */
+    public OptionalInt rankOf(String name) {
+        return rankOf(students.idOf(name));
+    }
+
+    public OptionalInt rankOf(int studentId) {
+        locks.lockAll();
+        try {
+            int rank = ranking.rankOf(studentId);
+            return rank == 0 ? OptionalInt.empty() : OptionalInt.of(rank);
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    /** Number of students that have at least one grade, i.e. the ones that are ranked. */
+    public int rankedCount() {
+        locks.lockAll();
+        try {
+            return ranking.rankedCount();
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    /**
+     * Nearest-rank percentile of the student averages, e.g. 90 for the average
+     * that 90% of students are at or below.
+     */
+    public Optional<Double> percentile(double p) {
+        if (!(p >= 0 && p <= 100)) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + p);
+        }
+        double value;
+        locks.lockAll();
+        try {
+            value = ranking.percentile(p);
+        } finally {
+            locks.unlockAll();
+        }
+        return Double.isNaN(value) ? Optional.empty() : Optional.of(value);
+    }
+
+    /** Median of the student averages. */
+    public Optional<Double> median() {
+        double value;
+        locks.lockAll();
+        try {
+            value = ranking.median();
+        } finally {
+            locks.unlockAll();
+        }
+        return Double.isNaN(value) ? Optional.empty() : Optional.of(value);
+    }
+
+    /** Up to n best students by average, best first. */
+    public List<RankedStudent> topStudents(int n) {
+        var result = new ArrayList<RankedStudent>();
+        locks.lockAll();
+        try {
+            for (var standing : ranking.top(n)) {
+                result.add(new RankedStudent(standing.rank(), students.nameOf(standing.studentId()), standing.average()));
+            }
+        } finally {
+            locks.unlockAll();
+        }
+        return result;
+    }
+
+    /** How many grades of each value (0-100) are in the book, indexed by grade; lock-free, like classAverage(). */
+    public long[] gradeHistogram() {
+        return ranking.histogram();
     }
 
     public boolean undo() {
-        if (undoStack.isEmpty()) {
+        return undo(1) == 1;
+    }
+
+    /**
+     * Undoes up to steps entries (a committed group counts as one) as a single pass:
+     * runs of added grades are taken back with one bulk removal per student. The whole
+     * batch becomes one REDO step. Returns how many entries were undone; 0 inside an
+     * open BEGIN, which has to be committed first.
+     */
+    public int undo(int steps) {
+        beforeChange();
+        // every stripe is held so no mutation can slip in between the pops and the undo
+        locks.lockAll();
+        try {
+            var history = history();
+            if (history.inGroup()) {
+                return 0;
+            }
+            var popped = history.peek(steps);
+            if (popped.isEmpty()) {
+                return 0;
+            }
+            var changes = new HashMap<Integer, Integer>();
+            for (var action : popped) {
+                action.countChanges(changes);
+            }
+            for (var change : changes.entrySet()) {
+                if (!students.lastChangedBy(change.getKey(), history, change.getValue())) {
+                    return 0;
+                }
+            }
+            for (int i = 0; i < popped.size(); i++) {
+                history.pop();
+            }
+            UndoAction batch;
+            if (popped.size() == 1) {
+                batch = popped.get(0);
+            } else {
+                var builder = new UndoAction.Group.Builder();
+                for (var action : popped.reversed()) {
+                    builder.add(action);
+                }
+                batch = builder.build();
+            }
+            var versionsBefore = versionsOf(changes.keySet());
+            UndoAction redo;
+            reverting = true;
+            try {
+                redo = batch.undo(this);
+            } finally {
+                reverting = false;
+            }
+            if (redo != null) {
+                history.pushRedo(redoOf(redo, changes.keySet(), versionsBefore));
+            }
+            activityLog.record(ActivityLog.Operation.UNDO, popped.size(), 0);
+            return popped.size();
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    /** Undoes everything done since savepoint(name); false if the savepoint is unknown or out of reach. */
+    public boolean undoTo(String savepoint) {
+        locks.lockAll();
+        try {
+            int steps = history().stepsTo(savepoint);
+            if (steps < 0 || history().inGroup()) {
+                return false;
+            }
+            return steps == 0 || undo(steps) == steps;
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    /** Re-applies what the most recent undo took back; false if there is nothing to redo. */
+    public boolean redo() {
+        beforeChange();
+        locks.lockAll();
+        try {
+            var history = history();
+            var redo = (Redo) history.peekRedo();
+            if (redo == null || history.inGroup() || !redo.unchangedIn(students)) {
+                return false;
+            }
+            history.popRedo();
+            var undo = redo.action().undo(this);
+            // the students are back as they were before the undo, so are their versions
+            redo.restoreVersionsIn(students);
+            if (undo != null) {
+                history.pushRedone(undo);
+            }
+            activityLog.record(ActivityLog.Operation.REDO, -1, 0);
+            return true;
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    /** Starts a group: changes until the matching commit() are undone (and redone) as one step. */
+    public void begin() {
+        history().begin();
+    }
+
+    /** Ends the innermost begin(); false if none is open. */
+    public boolean commit() {
+        return history().commit();
+    }
+
+    /** Remembers the current state for undoTo(name); false inside an open group. */
+    public boolean savepoint(String name) {
+        return history().savepoint(Objects.requireNonNull(name));
+    }
+
+    /**
+     * Runs session on the calling thread with its own undo history: undo, redo, groups and
+     * savepoints inside it only see the changes it made, while the students are shared with
+     * everyone else. Undo is refused while another session's changes to the same students
+     * sit on top of the ones being undone (it would take those back too), and redo once
+     * anyone has changed them since the undo.
+     */
+    public void runSession(UndoHistory history, Runnable session) {
+        Objects.requireNonNull(history);
+        var previous = sessionHistory.get();
+        sessionHistory.set(history);
+        try {
+            session.run();
+        } finally {
+            if (previous == null) {
+                sessionHistory.remove();
+            } else {
+                sessionHistory.set(previous);
+            }
+        }
+    }
+
+    private UndoHistory history() {
+        var session = sessionHistory.get();
+        return session != null ? session : undoStack;
+    }
+
+    /**
+     * A redo entry plus the version of every student it touches as the undo left them, and as
+     * they were before it. Redo is refused once any of them changed since, e.g. by another session.
+     */
+    private record Redo(UndoAction action, int[] ids, long[] versions, long[] versionsBefore) implements UndoAction {
+        @Override
+        public UndoAction undo(Gradebook gradebook) {
+            return action.undo(gradebook);
+        }
+
+        @Override
+        public long retainedBytes() {
+            return action.retainedBytes() + 64 + 20L * ids.length;
+        }
+
+        boolean unchangedIn(StudentRegistry students) {
+            for (int i = 0; i < ids.length; i++) {
+                if (students.version(ids[i]) != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void restoreVersionsIn(StudentRegistry students) {
+            for (int i = 0; i < ids.length; i++) {
+                students.restoreVersion(ids[i], versionsBefore[i]);
+            }
+        }
+    }
+
+    // versions of ids in the set's iteration order, which redoOf() relies on
+    private long[] versionsOf(Set<Integer> ids) {
+        var versions = new long[ids.size()];
+        int i = 0;
+        for (int id : ids) {
+            versions[i++] = students.version(id);
+        }
+        return versions;
+    }
+
+    private Redo redoOf(UndoAction action, Set<Integer> ids, long[] versionsBefore) {
+        var idArray = new int[ids.size()];
+        int i = 0;
+        for (int id : ids) {
+            idArray[i++] = id;
+        }
+        return new Redo(action, idArray, versionsOf(ids), versionsBefore);
+    }
+
+    public List<String> recentLog(int maxItems) {
+        return activityLog.recent(maxItems);
+    }
+
+    public ActivityLog activityLog() {
+        return activityLog;
+    }
+
+    public UndoHistory undoHistory() {
+        return history();
+    }
+
+    public int undoDepth() {
+        return history().depth();
+    }
+
+    public int redoDepth() {
+        return history().redoDepth();
+    }
+
+    public long undoRetainedBytes() {
+        return history().retainedBytes();
+    }
+
+    // lets listeners refuse an operation before anything changes; events come after the change,
+    // too late for a listener that failed to leave the book as it was
+    private void beforeChange() {
+        for (var listener : listeners) {
+            listener.beforeChange();
+        }
+    }
+
+    // ---- primitive mutations ----
+    // These change state, keep the running totals in sync and notify listeners, but never push undo
+    // entries or log lines. The public methods and undo actions are built on them, and journal
+    // replay calls the name-based ones directly. Callers hold the student's lock (or all locks).
+
+    GradeStore newStore() {
+        return storeFactory.get();
+    }
+
+    boolean applyAddStudent(String name, GradeStore grades) {
+        return students.idOf(name) < 0 && applyAddStudent(students.allocate(), name, grades);
+    }
+
+    private boolean applyAddStudent(int id, String name, GradeStore grades) {
+        if (!students.publish(id, name, grades)) {
             return false;
         }
-        var action = undoStack.pop();
-        action.undo(this);
-        activityLog.addFirst("Undo performed");
+        changed(id, 1);
+        for (var listener : listeners) {
+            listener.studentAdded(name);
+        }
         return true;
+    }
 
+    boolean applyAddGrade(String name, int grade) {
+        int id = students.idOf(name);
+        return id >= 0 && applyAddGrade(id, grade);
     }
 
-    public List<String> recentLog(int maxItems) {
-        var result = new ArrayList<String>();
-        int count = 0;
-        for (String activity : activityLog) {
-            if (count >= maxItems) {
-                break;
+    // bulk-populated grades have no time, see GradeTimeline
+    boolean applyAddGrade(int id, int grade) {
+        return applyAddGrade(id, grade, 0, GradeTimeline.UNTIMED);
+    }
+
+    // tag is the grade's category (0 for none), see CategoryAverages; time is in epoch millis
+    boolean applyAddGrade(int id, int grade, int tag, long time) {
+        var grades = students.gradesOf(id);
+        if (grades == null) {
+            return false;
+        }
+        grades.add(grade);
+        totalSum.add(grade);
+        totalCount.increment();
+        changed(id, 1);
+        ranking.gradeAdded(grade);
+        categories.gradeAdded(id, tag, grade, grades.size());
+        timeline.gradeAdded(id, time, grades.size());
+        averageChanged(id, categories.average(id, grades));
+        for (var listener : listeners) {
+            listener.gradeAdded(students.nameOf(id), grade, categories.nameOf(tag), timeline.lastTime(id));
+        }
+        return true;
+    }
+
+    // journal replay: tag as categoryTag() returned it, time as the listener was told
+    boolean applyAddGrade(String name, int grade, int tag, long time) {
+        int id = students.idOf(name);
+        return id >= 0 && applyAddGrade(id, grade, tag, time);
+    }
+
+    // tag of the named category for replay, 0 (none) if it is not defined
+    int categoryTag(String name) {
+        return Math.max(0, categories.tagOf(name));
+    }
+
+    void applyAddGrades(int id, byte[] added, int length) {
+        applyAddGrades(id, added, null, null, length);
+    }
+
+    // tags are the grades' categories, or null if none has one; times null stamps them with now
+    void applyAddGrades(int id, byte[] added, byte[] tags, long[] times, int length) {
+        var grades = students.gradesOf(id);
+        grades.addAll(added, 0, length);
+        changed(id, length);
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += added[i];
+        }
+        totalSum.add(sum);
+        totalCount.add(length);
+        ranking.gradesAdded(added, 0, length);
+        categories.gradesAdded(id, added, tags, length, grades.size());
+        timeline.gradesAdded(id, times, System.currentTimeMillis(), length, grades.size());
+        averageChanged(id, categories.average(id, grades));
+        if (!listeners.isEmpty()) {
+            var name = students.nameOf(id);
+            var stored = timeline.lastTimes(id, length);
+            for (var listener : listeners) {
+                for (int i = 0; i < length; i++) {
+                    listener.gradeAdded(name, added[i], categories.nameOf(tags == null ? 0 : tags[i]), stored[i]);
+                }
             }
-            result.add(activity);
-            count++;
         }
-        return result;
+    }
+
+    boolean applyRemoveLastGrade(String name) {
+        int id = students.idOf(name);
+        return id >= 0 && applyRemoveLastGrade(id);
+    }
+
+    boolean applyRemoveLastGrade(int id) {
+        var grades = students.gradesOf(id);
+        if (grades == null || grades.isEmpty()) {
+            return false;
+        }
+        int grade = grades.removeLast();
+        changed(id, 1);
+        totalSum.add(-grade);
+        totalCount.decrement();
+        ranking.gradeRemoved(grade);
+        categories.gradeRemoved(id, grade);
+        timeline.gradesRemoved(id, 1);
+        averageChanged(id, categories.average(id, grades));
+        for (var listener : listeners) {
+            listener.gradeRemoved(students.nameOf(id), grade);
+        }
+        return true;
+    }
+
+    byte[] applyRemoveLastGrades(int id, int count) {
+        var grades = students.gradesOf(id);
+        var removed = new byte[count];
+        long sum = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            removed[i] = (byte) grades.removeLast();
+            sum += removed[i];
+        }
+        totalSum.add(-sum);
+        totalCount.add(-count);
+        changed(id, count);
+        ranking.gradesRemoved(removed, 0, count);
+        categories.gradesRemoved(id, removed, count);
+        timeline.gradesRemoved(id, count);
+        averageChanged(id, categories.average(id, grades));
+        var name = students.nameOf(id);
+        for (var listener : listeners) {
+            for (int i = count - 1; i >= 0; i--) {
+                listener.gradeRemoved(name, removed[i]);
+            }
+        }
+        return removed;
+    }
+
+    GradeStore applyRemoveStudent(String name) {
+        int id = students.idOf(name);
+        return id < 0 ? null : applyRemoveStudent(id);
+    }
+
+    GradeStore applyRemoveStudent(int id) {
+        var removed = students.gradesOf(id);
+        if (removed == null) {
+            return null;
+        }
+        totalSum.add(-removed.sum());
+        totalCount.add(-removed.size());
+        changed(id, 1);
+        ranking.gradesRemoved(removed);
+        averageChanged(id, Double.NaN);
+        timeline.forget(id);
+        for (var listener : listeners) {
+            listener.studentRemoved(students.nameOf(id));
+        }
+        // the name is freed only after listeners have heard of the removal, so an addStudent of the
+        // same name on another stripe cannot be journaled ahead of it
+        students.retire(id);
+        return removed;
+    }
+
+    // replayed restores have no retired ID to return to, so they get a fresh one
+    boolean applyRestoreStudent(String name, GradeStore grades) {
+        return applyRestoreStudent(name, grades, null, null);
+    }
+
+    // tags are the grades' categories as categoryTag() returned them, or null if none has one
+    boolean applyRestoreStudent(String name, GradeStore grades, byte[] tags, long[] times) {
+        if (students.idOf(name) >= 0 || !students.publish(students.allocate(), name, grades)) {
+            return false;
+        }
+        int id = students.idOf(name);
+        if (tags != null) {
+            categories.restore(id, tags);
+        }
+        restored(id, grades, times);
+        return true;
+    }
+
+    // times are the grades' times as gradeTimes() returned them before the removal
+    boolean applyRestoreStudent(int id, GradeStore grades, long[] times) {
+        if (!students.restore(id, grades)) {
+            return false;
+        }
+        restored(id, grades, times);
+        return true;
+    }
+
+    // counts changes made to a student, or taken back when called from undo()
+    private void changed(int id, int changes) {
+        if (reverting) {
+            students.reverted(id, changes);
+        } else {
+            students.changed(id, history(), changes);
+        }
+    }
+
+    // categories of a student's count most recent grades, oldest first, or null if none has one
+    byte[] lastCategoryTags(int id, int count) {
+        return categories.lastTags(id, count);
+    }
+
+    // a student's average may have changed: keeps ranking, letters and watches current and tells
+    // listeners about letter changes and watch crossings
+    private void averageChanged(int id, double average) {
+        ranking.update(id, average);
+        if (listeners.isEmpty()) {
+            letters.update(id, average);
+        } else {
+            var before = letters.letterOf(id);
+            if (letters.update(id, average)) {
+                var name = students.nameOf(id);
+                var after = letters.letterOf(id);
+                for (var listener : listeners) {
+                    listener.letterChanged(name, before, after);
+                }
+            }
+        }
+        if (watches.isActive()) {
+            watches.update(id, average, crossed);
+        }
+    }
+
+    private void watchCrossed(GradeWatch watch, int id, double average, boolean below) {
+        var name = students.nameOf(id);
+        for (var listener : listeners) {
+            listener.watchCrossed(watch, name, average, below);
+        }
+    }
+
+    // times of a student's count most recent grades, oldest first
+    long[] lastGradeTimes(int id, int count) {
+        return timeline.lastTimes(id, count);
+    }
+
+    // times of all a student's grades, or null if they have none
+    long[] gradeTimes(int id) {
+        return timeline.times(id);
+    }
+
+    private void restored(int id, GradeStore grades, long[] times) {
+        changed(id, 1);
+        totalSum.add(grades.sum());
+        totalCount.add(grades.size());
+        ranking.gradesAdded(grades);
+        categories.rebuild(id, grades);
+        timeline.restore(id, grades.size(), times);
+        averageChanged(id, categories.average(id, grades));
+        if (!listeners.isEmpty()) {
+            var names = categoryNames(categories.lastTags(id, grades.size()));
+            var stored = timeline.times(id);
+            for (var listener : listeners) {
+                listener.studentRestored(students.nameOf(id), grades.asList(), names, stored);
+            }
+        }
+    }
+
+    // category names for tags as lastTags() returns them; null stays null
+    private String[] categoryNames(byte[] tags) {
+        if (tags == null) {
+            return null;
+        }
+        var names = new String[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            names[i] = categories.nameOf(tags[i]);
+        }
+        return names;
+    }
+
+    // ---- per-ID access for streaming exports and snapshots ----
+
+    int studentIdLimit() {
+        return students.idLimit();
+    }
+
+    String studentNameOf(int id) {
+        return students.nameOf(id);
+    }
+
+    // the live store behind an ID, or null; callers must hold lockAll()
+    GradeStore liveGrades(int id) {
+        return students.gradesOf(id);
+    }
+
+    void lockAll() {
+        locks.lockAll();
+    }
+
+    void unlockAll() {
+        locks.unlockAll();
     }
 }
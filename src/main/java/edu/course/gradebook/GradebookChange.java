@@ -0,0 +1,36 @@
+package edu.course.gradebook;
+
+import java.util.List;
+
+/**
+ * One change to a Gradebook as delivered by a GradebookPublisher.
+ *
+ * Like GradebookListener events these describe effects, not commands: undoing
+ * an ADD_GRADE arrives as GradeRemoved, undoing a REMOVE_STUDENT as
+ * StudentRestored. sequence numbers the changes a publisher has seen from 1
+ * up without gaps, so a subscriber that finds a jump knows how many it missed
+ * (see GradebookPublisher.Overflow).
+ */
+public sealed interface GradebookChange {
+
+    long sequence();
+
+    record StudentAdded(long sequence, String name) implements GradebookChange {}
+
+    record GradeAdded(long sequence, String name, int grade) implements GradebookChange {}
+
+    /** The most recent grade of a student was taken back (undo of addGrade). */
+    record GradeRemoved(long sequence, String name, int grade) implements GradebookChange {}
+
+    record StudentRemoved(long sequence, String name) implements GradebookChange {}
+
+    /** A removed student came back with all their grades (undo of removeStudent). */
+    record StudentRestored(long sequence, String name, List<Integer> grades) implements GradebookChange {
+        public StudentRestored {
+            grades = List.copyOf(grades);
+        }
+    }
+
+    /** Everything was replaced at once (a snapshot LOAD); re-read the book instead of replaying. */
+    record BookReplaced(long sequence) implements GradebookChange {}
+}
@@ -0,0 +1,218 @@
+package edu.course.gradebook;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Streams every student to a file in ID (i.e. insertion) order.
+ *
+ * Students are formatted in partitions of PARTITION_SIZE IDs. With more than
+ * one thread, up to two partitions per thread are formatted ahead on the
+ * common fork-join pool while the calling thread writes finished ones to the
+ * channel strictly in order, so memory use is bounded by the window, not by
+ * the size of the book. Each row comes from one StudentReport, taken under
+ * the student's own lock, so a concurrent book may change while it is
+ * exported, but every row is consistent, and the average and letter are the
+ * ones REPORT shows (weighted by category where categories apply).
+ */
+final class GradebookExport {
+    private static final int PARTITION_SIZE = 1024;
+
+    private record Partition(byte[] bytes, int students) {}
+
+    private GradebookExport() {}
+
+    /** Writes the book to file (replacing it) and returns the number of students written. */
+    static long write(Gradebook gradebook, Path file, ExportFormat format, int parallelism) throws IOException {
+        return write(new Gradebook[] {gradebook}, file, format, parallelism);
+    }
+
+    /**
+     * Writes several books into one file, one after the other (e.g. the shards of a
+     * ShardedGradebook), sharing one window of partitions across book boundaries.
+     */
+    static long write(Gradebook[] gradebooks, Path file, ExportFormat format, int parallelism) throws IOException {
+        // partition p belongs to book b for firstPartition[b] <= p < firstPartition[b + 1]
+        var limits = new int[gradebooks.length];
+        var firstPartition = new int[gradebooks.length + 1];
+        for (int b = 0; b < gradebooks.length; b++) {
+            limits[b] = gradebooks[b].studentIdLimit();
+            firstPartition[b + 1] = firstPartition[b] + (limits[b] + PARTITION_SIZE - 1) / PARTITION_SIZE;
+        }
+        int partitions = firstPartition[gradebooks.length];
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, format == ExportFormat.CSV ? "name,average,letter,grades\n" : "[");
+            long students = 0;
+            var window = new ArrayDeque<CompletableFuture<Partition>>();
+            int next = 0;
+            int book = 0;
+            while (next < partitions || !window.isEmpty()) {
+                Partition partition;
+                if (parallelism <= 1) {
+                    while (next >= firstPartition[book + 1]) {
+                        book++;
+                    }
+                    partition = format(gradebooks[book], format, next - firstPartition[book], limits[book]);
+                    next++;
+                } else {
+                    while (window.size() < parallelism * 2 && next < partitions) {
+                        while (next >= firstPartition[book + 1]) {
+                            book++;
+                        }
+                        var gradebook = gradebooks[book];
+                        int index = next++ - firstPartition[book];
+                        int limit = limits[book];
+                        window.add(CompletableFuture.supplyAsync(() -> format(gradebook, format, index, limit)));
+                    }
+                    partition = window.poll().join();
+                }
+                if (partition.students() == 0) {
+                    continue;
+                }
+                // JSON objects all start with ",\n"; the very first one drops its comma
+                int skip = format == ExportFormat.JSON && students == 0 ? 1 : 0;
+                write(channel, ByteBuffer.wrap(partition.bytes(), skip, partition.bytes().length - skip));
+                students += partition.students();
+            }
+            if (format == ExportFormat.JSON) {
+                write(channel, students == 0 ? "]\n" : "\n]\n");
+            }
+            return students;
+        }
+    }
+
+    private static Partition format(Gradebook gradebook, ExportFormat format, int partition, int limit) {
+        var out = new StringBuilder(PARTITION_SIZE * 64);
+        int students = 0;
+        for (int id = partition * PARTITION_SIZE, end = Math.min(limit, id + PARTITION_SIZE); id < end; id++) {
+            var report = gradebook.report(id);
+            if (report.isEmpty()) {
+                continue;
+            }
+            if (format == ExportFormat.CSV) {
+                appendCsv(out, report.get());
+            } else {
+                appendJson(out, report.get());
+            }
+            students++;
+        }
+        return new Partition(out.toString().getBytes(StandardCharsets.UTF_8), students);
+    }
+
+    private static void appendCsv(StringBuilder out, StudentReport report) {
+        appendCsvField(out, report.name());
+        out.append(',');
+        if (report.count() > 0) {
+            appendAverage(out, report);
+            out.append(',');
+            appendCsvField(out, report.letter().orElseThrow());
+        } else {
+            out.append(',');
+        }
+        out.append(',');
+        for (int i = 0, n = report.count(); i < n; i++) {
+            if (i > 0) {
+                out.append(';');
+            }
+            out.append(report.grade(i));
+        }
+        out.append('\n');
+    }
+
+    private static void appendJson(StringBuilder out, StudentReport report) {
+        out.append(",\n{\"name\":");
+        appendJsonString(out, report.name());
+        out.append(",\"grades\":[");
+        for (int i = 0, n = report.count(); i < n; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(report.grade(i));
+        }
+        out.append("],\"average\":");
+        if (report.count() > 0) {
+            appendAverage(out, report);
+            out.append(",\"letter\":");
+            appendJsonString(out, report.letter().orElseThrow());
+        } else {
+            out.append("null,\"letter\":null");
+        }
+        out.append('}');
+    }
+
+    // two decimals, rounded half-up; a plain mean is rounded on its exact fraction sum / count
+    private static void appendAverage(StringBuilder out, StudentReport report) {
+        double average = report.average().orElseThrow();
+        long sum = report.sum();
+        int count = report.count();
+        long hundredths = average == (double) sum / count
+                ? (sum * 200 + count) / (2L * count)
+                : Math.round(average * 100);
+        out.append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+
+    private static void appendCsvField(StringBuilder out, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    private static void write(FileChannel channel, String text) throws IOException {
+        write(channel, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,608 @@
+package edu.course.gradebook;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only write-ahead journal that makes a Gradebook survive restarts.
+ *
+ * The journal listens to the Gradebook and appends one binary record per state
+ * change. Undos are journaled as their effect (grade removed, student restored),
+ * so replay never needs the undo history. Category definitions and each grade's
+ * category and time are journaled and checkpointed too, so weighted averages
+ * and windowed queries survive a restart. Each record is
+ * [int length][int crc32][payload]; a torn or corrupt tail is cut off on recovery.
+ *
+ * Writes are buffered and fsync'd in groups: after groupCommitRecords records,
+ * every syncIntervalMillis from a background thread, on checkpoint and on close.
+ * A failed write or sync is kept rather than thrown at the change that hit it,
+ * which is already applied by then; from then on the journal refuses every
+ * change up front (beforeChange) and sync, checkpoint and close report it.
+ * A checkpoint writes a compact snapshot of the whole book and starts a new,
+ * empty journal generation, so startup loads the snapshot and replays only the
+ * tail. The undo history itself is not persisted; after a restart there is
+ * nothing to undo.
+ *
+ * Directory layout: snapshot.bin (holds the generation it covers up to) and
+ * journal-<generation>.log.
+ */
+public final class GradebookJournal implements GradebookListener, Closeable {
+
+    /**
+     * Tuning knobs.
+     *
+     * @param groupCommitRecords     fsync after this many unsynced records
+     * @param syncIntervalMillis     also fsync this often in the background (0 disables)
+     * @param checkpointEveryRecords maybeCheckpoint() snapshots once this many records were journaled
+     */
+    public record Options(int groupCommitRecords, long syncIntervalMillis, long checkpointEveryRecords) {
+        public static Options defaults() {
+            return new Options(256, 50, 1_000_000);
+        }
+    }
+
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final int SNAPSHOT_MAGIC = 0x47424B53; // "GBKS"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int MAX_RECORD_BYTES = 1 << 28;
+
+    private static final byte ADD_STUDENT = 1;
+    private static final byte ADD_GRADE = 2;
+    private static final byte REMOVE_STUDENT = 3;
+    private static final byte REMOVE_LAST_GRADE = 4;
+    private static final byte RESTORE_STUDENT = 5;
+    private static final byte DEFINE_CATEGORY = 6;
+    // ADD_GRADE and RESTORE_STUDENT followed by a flags byte and what it flags
+    private static final byte ADD_GRADE_V2 = 7;
+    private static final byte RESTORE_STUDENT_V2 = 8;
+    private static final int HAS_CATEGORIES = 1;
+    private static final int HAS_TIMES = 2;
+
+    private final Path dir;
+    private final Gradebook gradebook;
+    private final Options options;
+    private final RecordBuffer record = new RecordBuffer();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService syncer;
+
+    private long generation;
+    private FileChannel channel;
+    private DataOutputStream out;
+    private int unsynced;
+    private long recordsSinceCheckpoint;
+    private long recoveredRecords;
+    private volatile IOException syncFailure;
+    private volatile IOException appendFailure;
+    private boolean closed;
+
+    private GradebookJournal(Path dir, Gradebook gradebook, Options options) {
+        this.dir = dir;
+        this.gradebook = gradebook;
+        this.options = options;
+        if (options.syncIntervalMillis() > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                var thread = new Thread(r, "gradebook-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            syncer = null;
+        }
+    }
+
+    public static GradebookJournal open(Path dir, Gradebook gradebook) throws IOException {
+        return open(dir, gradebook, Options.defaults());
+    }
+
+    /**
+     * Recovers the state stored in dir into the given Gradebook, then starts
+     * journaling its changes. Anything already in the Gradebook is only
+     * persisted by the next checkpoint.
+     */
+    public static GradebookJournal open(Path dir, Gradebook gradebook, Options options) throws IOException {
+        Files.createDirectories(dir);
+        var journal = new GradebookJournal(dir, gradebook, options);
+        journal.recover();
+        gradebook.addListener(journal);
+        if (journal.syncer != null) {
+            journal.syncer.scheduleWithFixedDelay(journal::backgroundSync,
+                    options.syncIntervalMillis(), options.syncIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+        return journal;
+    }
+
+    /** Number of journal records replayed on top of the snapshot during open(). */
+    public long recoveredRecords() {
+        return recoveredRecords;
+    }
+
+    // ========== Listener: one record per state change ==========
+
+    @Override
+    public void beforeChange() {
+        var failure = appendFailure != null ? appendFailure : syncFailure;
+        if (failure != null) {
+            throw new UncheckedIOException("Gradebook journal cannot record changes", failure);
+        }
+    }
+
+    @Override
+    public synchronized void studentAdded(String name) {
+        append(ADD_STUDENT, name, () -> {});
+    }
+
+    // grades without a category or time keep the shorter version 1 record
+    @Override
+    public synchronized void gradeAdded(String name, int grade, String category, long timeMillis) {
+        boolean timed = timeMillis != GradeTimeline.UNTIMED;
+        if (category == null && !timed) {
+            append(ADD_GRADE, name, () -> recordOut.writeByte(grade));
+            return;
+        }
+        append(ADD_GRADE_V2, name, () -> {
+            recordOut.writeByte(grade);
+            recordOut.writeByte((category != null ? HAS_CATEGORIES : 0) | (timed ? HAS_TIMES : 0));
+            if (category != null) {
+                recordOut.writeUTF(category);
+            }
+            if (timed) {
+                recordOut.writeLong(timeMillis);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void gradeRemoved(String name, int grade) {
+        append(REMOVE_LAST_GRADE, name, () -> recordOut.writeByte(grade));
+    }
+
+    @Override
+    public synchronized void studentRemoved(String name) {
+        append(REMOVE_STUDENT, name, () -> {});
+    }
+
+    @Override
+    public synchronized void studentRestored(String name, List<Integer> grades, String[] categories, long[] timesMillis) {
+        boolean plain = categories == null && timesMillis == null;
+        append(plain ? RESTORE_STUDENT : RESTORE_STUDENT_V2, name, () -> {
+            recordOut.writeInt(grades.size());
+            for (int grade : grades) {
+                recordOut.writeByte(grade);
+            }
+            if (!plain) {
+                recordOut.writeByte((categories != null ? HAS_CATEGORIES : 0) | (timesMillis != null ? HAS_TIMES : 0));
+            }
+            if (categories != null) {
+                writeCategories(categories);
+            }
+            if (timesMillis != null) {
+                writeTimes(recordOut, timesMillis);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void categoryDefined(GradeCategory category) {
+        append(DEFINE_CATEGORY, category.name(), () -> {
+            recordOut.writeDouble(category.weight());
+            recordOut.writeInt(category.dropLowest());
+        });
+    }
+
+    // each grade's category as the distinct names, then one byte per grade: position + 1, 0 for none
+    private void writeCategories(String[] categories) throws IOException {
+        var distinct = new ArrayList<String>();
+        var positions = new byte[categories.length];
+        for (int i = 0; i < categories.length; i++) {
+            if (categories[i] != null) {
+                int at = distinct.indexOf(categories[i]);
+                if (at < 0) {
+                    at = distinct.size();
+                    distinct.add(categories[i]);
+                }
+                positions[i] = (byte) (at + 1);
+            }
+        }
+        recordOut.writeInt(distinct.size());
+        for (var category : distinct) {
+            recordOut.writeUTF(category);
+        }
+        recordOut.write(positions);
+    }
+
+    private static void writeTimes(DataOutputStream out, long[] times) throws IOException {
+        for (long time : times) {
+            out.writeLong(time);
+        }
+    }
+
+    private static long[] readTimes(DataInputStream in, int count) throws IOException {
+        var times = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = in.readLong();
+        }
+        return times;
+    }
+
+    // a LOAD is not journaled record by record: the new book is checkpointed while load() still
+    // holds every stripe, so no later change can be recorded against the old snapshot
+    @Override
+    public void bookReplaced() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            appendFailure = e;
+        }
+    }
+
+    private interface RecordBody {
+        void write() throws IOException;
+    }
+
+    // the change is already applied when this runs, so a failure is kept for beforeChange() rather
+    // than thrown into the middle of the Gradebook's update
+    private void append(byte type, String name, RecordBody body) {
+        if (closed || appendFailure != null) {
+            return;
+        }
+        try {
+            checkOpen();
+            record.reset();
+            recordOut.writeByte(type);
+            recordOut.writeUTF(name);
+            body.write();
+
+            crc.reset();
+            crc.update(record.array(), 0, record.size());
+            out.writeInt(record.size());
+            out.writeInt((int) crc.getValue());
+            out.write(record.array(), 0, record.size());
+
+            recordsSinceCheckpoint++;
+            if (++unsynced >= options.groupCommitRecords()) {
+                sync();
+            }
+        } catch (IOException e) {
+            appendFailure = e;
+        }
+    }
+
+    // ========== Durability ==========
+
+    /** Flushes buffered records and fsyncs the journal file. */
+    public synchronized void sync() throws IOException {
+        checkOpen();
+        if (unsynced == 0) {
+            return;
+        }
+        out.flush();
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    private synchronized void backgroundSync() {
+        if (closed) {
+            return;
+        }
+        try {
+            sync();
+        } catch (IOException e) {
+            syncFailure = e;
+        }
+    }
+
+    /** Checkpoints if at least checkpointEveryRecords records were journaled since the last one. */
+    public void maybeCheckpoint() throws IOException {
+        boolean due;
+        synchronized (this) {
+            due = recordsSinceCheckpoint >= options.checkpointEveryRecords();
+        }
+        if (due) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the whole book and switches to a fresh journal.
+     * Mutations are blocked while the snapshot is written.
+     */
+    public void checkpoint() throws IOException {
+        // gradebook locks before the journal monitor, the same order listener calls use
+        gradebook.lockAll();
+        try {
+            synchronized (this) {
+                checkOpen();
+                sync();
+                long next = generation + 1;
+
+                // the rename is the commit point: until then recovery still uses the old snapshot + journal
+                var tmp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+                writeSnapshot(tmp, next);
+                Files.move(tmp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                out.close();
+                openJournal(next, true);
+                Files.deleteIfExists(journalPath(generation));
+                generation = next;
+                recordsSinceCheckpoint = 0;
+            }
+        } finally {
+            gradebook.unlockAll();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        gradebook.removeListener(this);
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                sync();
+            } finally {
+                closed = true;
+                out.close();
+            }
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Gradebook journal is closed");
+        }
+        if (appendFailure != null) {
+            throw new IOException("Journal write failed", appendFailure);
+        }
+        var failure = syncFailure;
+        if (failure != null) {
+            throw new IOException("Background journal sync failed", failure);
+        }
+    }
+
+    // ========== Recovery ==========
+
+    private void recover() throws IOException {
+        var snapshot = dir.resolve(SNAPSHOT_FILE);
+        generation = Files.exists(snapshot) ? readSnapshot(snapshot) : 0;
+
+        var journal = journalPath(generation);
+        if (Files.exists(journal)) {
+            replay(journal);
+        }
+        // journals of other generations are leftovers from an interrupted checkpoint
+        try (var files = Files.newDirectoryStream(dir, "journal-*.log")) {
+            for (var file : files) {
+                if (!file.equals(journal)) {
+                    Files.delete(file);
+                }
+            }
+        }
+        openJournal(generation, false);
+    }
+
+    private void replay(Path journal) throws IOException {
+        long valid = 0;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal), 1 << 16))) {
+            var payload = new byte[256];
+            var check = new CRC32();
+            while (true) {
+                int length;
+                int expected;
+                try {
+                    length = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_BYTES) {
+                        break;
+                    }
+                    expected = in.readInt();
+                    if (payload.length < length) {
+                        payload = new byte[Math.max(length, payload.length * 2)];
+                    }
+                    in.readFully(payload, 0, length);
+                } catch (EOFException e) {
+                    break; // torn final record
+                }
+                check.reset();
+                check.update(payload, 0, length);
+                if ((int) check.getValue() != expected) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload, 0, length)));
+                valid += 8 + length;
+                recoveredRecords++;
+            }
+        }
+        // drop whatever follows the last intact record so new appends start clean
+        try (var truncate = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            if (truncate.size() > valid) {
+                truncate.truncate(valid);
+            }
+        }
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        var name = in.readUTF();
+        switch (type) {
+            case ADD_STUDENT -> gradebook.applyAddStudent(name, gradebook.newStore());
+            case ADD_GRADE -> gradebook.applyAddGrade(name, in.readUnsignedByte());
+            case ADD_GRADE_V2 -> {
+                int grade = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                int tag = (flags & HAS_CATEGORIES) != 0 ? gradebook.categoryTag(in.readUTF()) : 0;
+                long time = (flags & HAS_TIMES) != 0 ? in.readLong() : GradeTimeline.UNTIMED;
+                gradebook.applyAddGrade(name, grade, tag, time);
+            }
+            case DEFINE_CATEGORY -> gradebook.defineCategory(new GradeCategory(name, in.readDouble(), in.readInt()));
+            case REMOVE_LAST_GRADE -> gradebook.applyRemoveLastGrade(name);
+            case REMOVE_STUDENT -> gradebook.applyRemoveStudent(name);
+            case RESTORE_STUDENT -> {
+                var grades = new byte[in.readInt()];
+                in.readFully(grades);
+                var store = gradebook.newStore();
+                store.addAll(grades, 0, grades.length);
+                gradebook.applyRestoreStudent(name, store);
+            }
+            case RESTORE_STUDENT_V2 -> {
+                var grades = new byte[in.readInt()];
+                in.readFully(grades);
+                int flags = in.readUnsignedByte();
+                var tags = (flags & HAS_CATEGORIES) != 0 ? readTags(in, grades.length) : null;
+                var times = (flags & HAS_TIMES) != 0 ? readTimes(in, grades.length) : null;
+                var store = gradebook.newStore();
+                store.addAll(grades, 0, grades.length);
+                gradebook.applyRestoreStudent(name, store, tags, times);
+            }
+            default -> throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    // reads what writeCategories wrote and turns it into the book's tags
+    private byte[] readTags(DataInputStream in, int count) throws IOException {
+        var tagOf = new byte[in.readInt() + 1];
+        for (int i = 1; i < tagOf.length; i++) {
+            tagOf[i] = (byte) gradebook.categoryTag(in.readUTF());
+        }
+        var tags = new byte[count];
+        in.readFully(tags);
+        for (int i = 0; i < count; i++) {
+            tags[i] = tagOf[tags[i]];
+        }
+        return tags;
+    }
+
+    // ========== Files ==========
+
+    private Path journalPath(long gen) {
+        return dir.resolve("journal-" + gen + ".log");
+    }
+
+    private void openJournal(long gen, boolean truncate) throws IOException {
+        channel = truncate
+                ? FileChannel.open(journalPath(gen), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(journalPath(gen), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        unsynced = 0;
+    }
+
+    // snapshot: magic, version, generation, categories (count, then name, weight, drop lowest),
+    // student count, then per student (name, grade count, grade bytes, flags, [tags], [times]), crc32
+    private void writeSnapshot(Path file, long gen) throws IOException {
+        try (var fileOut = new FileOutputStream(file.toFile())) {
+            var checked = new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16), new CRC32());
+            var data = new DataOutputStream(checked);
+            data.writeInt(SNAPSHOT_MAGIC);
+            data.writeInt(SNAPSHOT_VERSION);
+            data.writeLong(gen);
+            // tags number the categories in categories() order, so they are written as they are
+            var categories = gradebook.categories();
+            data.writeInt(categories.size());
+            for (var category : categories) {
+                data.writeUTF(category.name());
+                data.writeDouble(category.weight());
+                data.writeInt(category.dropLowest());
+            }
+            int limit = gradebook.studentIdLimit();
+            int students = 0;
+            for (int id = 0; id < limit; id++) {
+                if (gradebook.liveGrades(id) != null) {
+                    students++;
+                }
+            }
+            data.writeInt(students);
+            for (int id = 0; id < limit; id++) {
+                var grades = gradebook.liveGrades(id);
+                if (grades == null) {
+                    continue;
+                }
+                data.writeUTF(gradebook.studentNameOf(id));
+                var bytes = grades.toByteArray();
+                data.writeInt(bytes.length);
+                data.write(bytes);
+                var tags = gradebook.lastCategoryTags(id, bytes.length);
+                var times = gradebook.gradeTimes(id);
+                data.writeByte((tags != null ? HAS_CATEGORIES : 0) | (times != null ? HAS_TIMES : 0));
+                if (tags != null) {
+                    data.write(tags);
+                }
+                if (times != null) {
+                    writeTimes(data, times);
+                }
+            }
+            data.flush();
+            long checksum = checked.getChecksum().getValue();
+            data.writeLong(checksum);
+            data.flush();
+            fileOut.getFD().sync();
+        }
+    }
+
+    // version 1 snapshots have no categories and no per-student flags
+    private long readSnapshot(Path file) throws IOException {
+        try (var checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16), new CRC32())) {
+            var in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a gradebook snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != 1 && version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            long gen = in.readLong();
+            var tagOf = new byte[version == 1 ? 1 : in.readInt() + 1];
+            for (int i = 1; i < tagOf.length; i++) {
+                var category = new GradeCategory(in.readUTF(), in.readDouble(), in.readInt());
+                gradebook.defineCategory(category);
+                tagOf[i] = (byte) gradebook.categoryTag(category.name());
+            }
+            int students = in.readInt();
+            for (int s = 0; s < students; s++) {
+                var name = in.readUTF();
+                var grades = new byte[in.readInt()];
+                in.readFully(grades);
+                int flags = version == 1 ? 0 : in.readUnsignedByte();
+                byte[] tags = null;
+                if ((flags & HAS_CATEGORIES) != 0) {
+                    tags = new byte[grades.length];
+                    in.readFully(tags);
+                    for (int i = 0; i < tags.length; i++) {
+                        tags[i] = tagOf[tags[i]];
+                    }
+                }
+                var times = (flags & HAS_TIMES) != 0 ? readTimes(in, grades.length) : null;
+                var store = gradebook.newStore();
+                store.addAll(grades, 0, grades.length);
+                gradebook.applyRestoreStudent(name, store, tags, times);
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Snapshot checksum mismatch: " + file);
+            }
+            return gen;
+        }
+    }
+
+    // exposes the backing array so records can be checksummed and written without copying
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        byte[] array() {
+            return buf;
+        }
+    }
+}
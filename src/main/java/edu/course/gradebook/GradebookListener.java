@@ -0,0 +1,75 @@
+package edu.course.gradebook;
+
+import java.util.List;
+
+/**
+ * Receives every state change made to a Gradebook.
+ *
+ * Events describe effects, not commands: undoing an ADD_GRADE arrives as
+ * gradeRemoved, and undoing a REMOVE_STUDENT arrives as studentRestored.
+ * Listeners are called synchronously while the Gradebook holds the affected
+ * student's lock, so they must be quick and must not call back into the
+ * Gradebook. All methods default to doing nothing.
+ */
+public interface GradebookListener {
+
+    /**
+     * Called at the start of every operation that changes the book, before anything is
+     * touched; throwing refuses the operation. The journal uses this to stop taking changes
+     * once it can no longer record them, since the events below arrive after the fact.
+     */
+    default void beforeChange() {}
+
+    default void studentAdded(String name) {}
+
+    default void gradeAdded(String name, int grade) {}
+
+    /**
+     * The same event with the category the grade was added to (null for none) and the time it
+     * was recorded at, in epoch millis (Long.MIN_VALUE if it has none). Gradebook calls this one;
+     * by default it forwards to gradeAdded(name, grade).
+     */
+    default void gradeAdded(String name, int grade, String category, long timeMillis) {
+        gradeAdded(name, grade);
+    }
+
+    /** The most recent grade of a student was taken back (undo of addGrade). */
+    default void gradeRemoved(String name, int grade) {}
+
+    default void studentRemoved(String name) {}
+
+    /** A removed student came back with all their grades (undo of removeStudent). */
+    default void studentRestored(String name, List<Integer> grades) {}
+
+    /**
+     * The same event with each grade's category (null entries for grades without one; categories
+     * is null if none has one) and time, as in gradeAdded (timesMillis is null if none has one).
+     * Gradebook calls this one; by default it forwards to studentRestored(name, grades).
+     */
+    default void studentRestored(String name, List<Integer> grades, String[] categories, long[] timesMillis) {
+        studentRestored(name, grades);
+    }
+
+    /** A category was defined or its weight or drop rule changed (see Gradebook.defineCategory). */
+    default void categoryDefined(GradeCategory category) {}
+
+    /**
+     * Everything was replaced at once (a snapshot LOAD); no per-student events are sent for it.
+     * Called with every stripe still held, so nothing else has changed the new book yet.
+     */
+    default void bookReplaced() {}
+
+    /**
+     * A student's letter grade changed through one of the changes above; from or to is null
+     * when the student had or has no grades (or was removed). Switching the grade scale and
+     * loading a snapshot do not send this.
+     */
+    default void letterChanged(String name, String from, String to) {}
+
+    /**
+     * A student's average crossed a GradeWatch (see Gradebook.addWatch): below is true when it
+     * fell under the threshold, false when it came back up or the student lost their grades.
+     * average is the new average, NaN if there is none.
+     */
+    default void watchCrossed(GradeWatch watch, String name, double average, boolean below) {}
+}
@@ -0,0 +1,170 @@
+package edu.course.gradebook;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays a command script against a GradebookServer from many concurrent clients
+ * and reports throughput and round-trip latency percentiles.
+ *
+ * Every client is a virtual thread with its own connection that sends the script
+ * repeat times, one command at a time, waiting for each response's OK or ERROR
+ * line before sending the next. "{client}" in a script line is replaced by the
+ * client's number, so clients can work on students of their own.
+ *
+ * Run with: GradebookLoadGenerator --connect <port | host:port | socket path>
+ * --script <file> [--clients n] [--repeat n]
+ */
+public final class GradebookLoadGenerator {
+    private static final String USAGE =
+            "Usage: GradebookLoadGenerator --connect <port | host:port | socket path> --script <file> [--clients n] [--repeat n]";
+
+    /** Outcome of a run; latencies are per command, from sending the line to reading OK or ERROR. */
+    public record Report(int clients, long commands, long errors, long elapsedNanos, LatencyHistogram latency) {
+        public double commandsPerSecond() {
+            return elapsedNanos == 0 ? 0 : commands * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d clients, %d commands (%d errors) in %.1f ms: %.0f commands/s, "
+                            + "latency us mean %.1f p50 %.1f p99 %.1f p99.9 %.1f max %.1f",
+                    clients, commands, errors, elapsedNanos / 1e6, commandsPerSecond(), latency.mean() / 1e3,
+                    latency.percentile(50) / 1e3, latency.percentile(99) / 1e3, latency.percentile(99.9) / 1e3,
+                    latency.max() / 1e3);
+        }
+    }
+
+    private GradebookLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String connect = null;
+        Path script = null;
+        int clients = 16;
+        int repeat = 1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 == args.length) {
+                    System.err.println(USAGE);
+                    return;
+                }
+                switch (args[i]) {
+                    case "--connect" -> connect = args[++i];
+                    case "--script" -> script = Path.of(args[++i]);
+                    case "--clients" -> clients = Integer.parseInt(args[++i]);
+                    case "--repeat" -> repeat = Integer.parseInt(args[++i]);
+                    default -> {
+                        System.err.println("Unknown option: " + args[i]);
+                        System.err.println(USAGE);
+                        return;
+                    }
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("--clients and --repeat take a number");
+            return;
+        }
+        if (connect == null || script == null || clients < 1 || repeat < 1) {
+            System.err.println(USAGE);
+            return;
+        }
+        var lines = Files.readAllLines(script, StandardCharsets.UTF_8);
+        System.out.println(run(GradebookServer.address(connect), lines, clients, repeat));
+    }
+
+    /** Runs script repeat times on each of clients connections at once and waits for all of them. */
+    public static Report run(SocketAddress address, List<String> script, int clients, int repeat)
+            throws IOException, InterruptedException {
+        var commands = new ArrayList<String>();
+        for (var line : script) {
+            if (!line.isBlank()) {
+                commands.add(line);
+            }
+        }
+        var latency = new LatencyHistogram();
+        var sent = new LongAdder();
+        var errors = new LongAdder();
+        var connected = new CountDownLatch(clients);
+        var go = new CountDownLatch(1);
+        var failures = new ArrayList<IOException>();
+        var threads = new ArrayList<Thread>(clients);
+        for (int c = 0; c < clients; c++) {
+            var client = Integer.toString(c);
+            threads.add(Thread.ofVirtual().name("gradebook-client-" + c).start(() -> {
+                try (var channel = address instanceof UnixDomainSocketAddress
+                        ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open()) {
+                    channel.connect(address);
+                    var in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+                    var out = new PrintStream(new BufferedOutputStream(Channels.newOutputStream(channel)), false, StandardCharsets.UTF_8);
+                    connected.countDown();
+                    go.await();
+                    for (int r = 0; r < repeat; r++) {
+                        for (var command : commands) {
+                            long start = System.nanoTime();
+                            out.println(command.replace("{client}", client));
+                            out.flush();
+                            if (!readResponse(in)) {
+                                errors.increment();
+                            }
+                            latency.record(System.nanoTime() - start);
+                            sent.increment();
+                        }
+                    }
+                } catch (IOException e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    // a client that failed to connect must not hold the others back
+                    connected.countDown();
+                }
+            }));
+        }
+        connected.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (var thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (!failures.isEmpty()) {
+            var failure = new IOException(failures.size() + " of " + clients + " clients failed", failures.get(0));
+            for (int i = 1; i < failures.size(); i++) {
+                failure.addSuppressed(failures.get(i));
+            }
+            throw failure;
+        }
+        return new Report(clients, sent.sum(), errors.sum(), elapsed, latency);
+    }
+
+    // reads one response up to its status line; true for OK
+    private static boolean readResponse(BufferedReader in) throws IOException {
+        for (var line = in.readLine(); line != null; line = in.readLine()) {
+            if (line.equals(Main.SESSION_OK)) {
+                return true;
+            }
+            if (line.equals(Main.SESSION_ERROR)) {
+                return false;
+            }
+        }
+        throw new IOException("Server closed the connection");
+    }
+}
@@ -0,0 +1,334 @@
+package edu.course.gradebook;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Streams every change to a Gradebook to Flow subscribers, for systems that
+ * mirror the book (see GradebookChange). Attach it with Gradebook.addListener.
+ *
+ * Each subscriber has a buffer of its own holding up to bufferSize changes.
+ * Publishing only appends to those buffers and never waits for a subscriber,
+ * so a slow one cannot hold up the Gradebook; what happens when its buffer is
+ * full is the publisher's Overflow policy. Changes are delivered on the
+ * executor (a virtual thread by default) as batches of up to maxBatch, one
+ * batch per requested item: a subscriber that keeps up gets small batches,
+ * one that falls behind gets everything waiting in one go.
+ *
+ * A subscriber sees the changes made after subscribe() returns, in the order
+ * they were made. close() delivers what is buffered and then completes every
+ * subscriber; changes after that are not published.
+ */
+public final class GradebookPublisher implements Flow.Publisher<List<GradebookChange>>, GradebookListener,
+        AutoCloseable {
+
+    /** What to do with a change when a subscriber's buffer is full. */
+    public enum Overflow {
+        /** Discard the oldest buffered change to make room; the subscriber sees a gap in sequence. */
+        DROP_OLDEST,
+        /** Discard the new change; the subscriber sees a gap in sequence. */
+        DROP_NEWEST,
+        /** Drop everything buffered and end the subscription with onError. */
+        DISCONNECT
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private final int bufferSize;
+    private final int maxBatch;
+    private final Overflow overflow;
+    private final Executor executor;
+    private final List<ChangeSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    // both guarded by this, which also keeps every buffer in sequence order
+    private long sequence;
+    private boolean closed;
+
+    public GradebookPublisher() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_BATCH, Overflow.DROP_OLDEST);
+    }
+
+    public GradebookPublisher(int bufferSize, int maxBatch, Overflow overflow) {
+        this(bufferSize, maxBatch, overflow, task -> Thread.ofVirtual().name("gradebook-publisher").start(task));
+    }
+
+    public GradebookPublisher(int bufferSize, int maxBatch, Overflow overflow, Executor executor) {
+        if (bufferSize < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("bufferSize and maxBatch must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.maxBatch = maxBatch;
+        this.overflow = Objects.requireNonNull(overflow);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<GradebookChange>> subscriber) {
+        var subscription = new ChangeSubscription(Objects.requireNonNull(subscriber));
+        subscriber.onSubscribe(subscription);
+        boolean open;
+        synchronized (this) {
+            open = !closed;
+            // it may already have failed or been cancelled from onSubscribe
+            if (open && !subscription.isOver()) {
+                subscriptions.add(subscription);
+            }
+        }
+        if (!open) {
+            subscription.complete();
+        }
+    }
+
+    /** Completes every subscriber once it has received what is already buffered. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        for (var subscription : subscriptions) {
+            subscription.complete();
+        }
+        subscriptions.clear();
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    /** Changes discarded so far because a subscriber's buffer was full, over all subscribers. */
+    public long droppedChanges() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void studentAdded(String name) {
+        publish(sequence -> new GradebookChange.StudentAdded(sequence, name));
+    }
+
+    @Override
+    public void gradeAdded(String name, int grade) {
+        publish(sequence -> new GradebookChange.GradeAdded(sequence, name, grade));
+    }
+
+    @Override
+    public void gradeRemoved(String name, int grade) {
+        publish(sequence -> new GradebookChange.GradeRemoved(sequence, name, grade));
+    }
+
+    @Override
+    public void studentRemoved(String name) {
+        publish(sequence -> new GradebookChange.StudentRemoved(sequence, name));
+    }
+
+    @Override
+    public void studentRestored(String name, List<Integer> grades) {
+        publish(sequence -> new GradebookChange.StudentRestored(sequence, name, grades));
+    }
+
+    @Override
+    public void bookReplaced() {
+        publish(GradebookChange.BookReplaced::new);
+    }
+
+    // called by the Gradebook under the student's lock: appends to each buffer and returns
+    private void publish(LongFunction<GradebookChange> change) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            var published = change.apply(++sequence);
+            for (var subscription : subscriptions) {
+                subscription.offer(published);
+            }
+        }
+    }
+
+    /**
+     * One subscriber's buffer and demand. Delivery runs on the executor, at most one
+     * task at a time per subscriber: whoever bumps work from zero schedules it, and it
+     * loops until no more signals arrived while it was running.
+     */
+    private final class ChangeSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super List<GradebookChange>> subscriber;
+        // ring buffer, guarded by this
+        private final GradebookChange[] buffer = new GradebookChange[bufferSize];
+        private int head;
+        private int size;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        // cancelled, or onComplete/onError already sent
+        private volatile boolean done;
+        // the publisher was closed: finish the buffer, then complete
+        private volatile boolean completing;
+        // sent before anything still buffered
+        private volatile Throwable failure;
+
+        ChangeSubscription(Flow.Subscriber<? super List<GradebookChange>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(GradebookChange change) {
+            synchronized (this) {
+                if (done || failure != null) {
+                    return;
+                }
+                if (size == buffer.length) {
+                    dropped.increment();
+                    switch (overflow) {
+                        case DROP_NEWEST -> {
+                            return;
+                        }
+                        case DROP_OLDEST -> {
+                            buffer[head] = null;
+                            head = (head + 1) % buffer.length;
+                            size--;
+                        }
+                        case DISCONNECT -> {
+                            fail(new IllegalStateException(
+                                    "subscriber fell more than " + buffer.length + " changes behind"));
+                            return;
+                        }
+                    }
+                }
+                buffer[(head + size) % buffer.length] = change;
+                size++;
+            }
+            if (demand.get() > 0) {
+                signal();
+            }
+        }
+
+        boolean isOver() {
+            return done || failure != null;
+        }
+
+        void complete() {
+            completing = true;
+            signal();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("request must be positive: " + n));
+                return;
+            }
+            demand.accumulateAndGet(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            subscriptions.remove(this);
+            clear();
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                deliver();
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            while (!done) {
+                var error = failure;
+                if (error != null) {
+                    cancel();
+                    subscriber.onError(error);
+                    return;
+                }
+                if (demand.get() == 0) {
+                    if (completing && isEmpty()) {
+                        finish();
+                    }
+                    return;
+                }
+                var batch = take();
+                if (batch == null) {
+                    if (completing) {
+                        finish();
+                    }
+                    return;
+                }
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                try {
+                    subscriber.onNext(batch);
+                } catch (RuntimeException e) {
+                    cancel();
+                    subscriber.onError(e);
+                    return;
+                }
+            }
+        }
+
+        private void finish() {
+            done = true;
+            subscriber.onComplete();
+        }
+
+        private void fail(Throwable error) {
+            failure = error;
+            subscriptions.remove(this);
+            clear();
+            signal();
+        }
+
+        private void signal() {
+            if (work.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // nowhere left to deliver from
+                    cancel();
+                }
+            }
+        }
+
+        private synchronized boolean isEmpty() {
+            return size == 0;
+        }
+
+        private synchronized List<GradebookChange> take() {
+            int n = Math.min(size, maxBatch);
+            if (n == 0) {
+                return null;
+            }
+            var batch = new GradebookChange[n];
+            for (int i = 0; i < n; i++) {
+                batch[i] = buffer[head];
+                buffer[head] = null;
+                head = (head + 1) % buffer.length;
+            }
+            size -= n;
+            return List.of(batch);
+        }
+
+        private synchronized void clear() {
+            Arrays.fill(buffer, null);
+            head = 0;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package edu.course.gradebook;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves one shared gradebook to many clients over a local TCP or Unix-domain socket.
+ *
+ * Each connection is a session running on its own virtual thread: a Main of its
+ * own reads command lines and answers them exactly as the console would, ending
+ * every response with an OK or ERROR line (see Main.runSession). All sessions
+ * share the gradebook, journal and command metrics, but each has its own undo
+ * history, so UNDO, REDO, BEGIN/COMMIT and SAVEPOINT only ever concern the
+ * session's own changes (see Gradebook.runSession). The gradebook should be a
+ * ConcurrentGradebook.
+ */
+public final class GradebookServer implements Closeable {
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final Gradebook gradebook;
+    // null when running in memory only
+    private final GradebookJournal journal;
+    private final CommandMetrics metrics;
+    private final Thread acceptor;
+    private final Set<SocketChannel> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sessionsStarted = new AtomicLong();
+
+    public GradebookServer(SocketAddress address, Gradebook gradebook) throws IOException {
+        this(address, gradebook, null, new CommandMetrics());
+    }
+
+    public GradebookServer(SocketAddress address, Gradebook gradebook, GradebookJournal journal,
+                           CommandMetrics metrics) throws IOException {
+        this.gradebook = gradebook;
+        this.journal = journal;
+        this.metrics = metrics;
+        server = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        try {
+            server.bind(address);
+            this.address = server.getLocalAddress();
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        acceptor = Thread.ofPlatform().name("gradebook-server").daemon().start(this::acceptLoop);
+    }
+
+    /**
+     * Parses a listen or connect address: a bare port number means that port on the
+     * loopback interface, host:port a TCP address, and anything else the path of a
+     * Unix-domain socket.
+     */
+    public static SocketAddress address(String spec) {
+        if (spec.chars().allMatch(Character::isDigit) && !spec.isEmpty()) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(spec));
+        }
+        int colon = spec.lastIndexOf(':');
+        if (colon > 0 && colon < spec.length() - 1 && spec.substring(colon + 1).chars().allMatch(Character::isDigit)) {
+            return new InetSocketAddress(spec.substring(0, colon), Integer.parseInt(spec.substring(colon + 1)));
+        }
+        return UnixDomainSocketAddress.of(spec);
+    }
+
+    /** The bound address, with the actual port if 0 was asked for. */
+    public SocketAddress address() {
+        return address;
+    }
+
+    public int activeSessions() {
+        return sessions.size();
+    }
+
+    public long sessionsStarted() {
+        return sessionsStarted.get();
+    }
+
+    /** Blocks until close() has stopped the server. */
+    public void awaitClose() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /** Stops accepting, disconnects every session and removes a Unix-domain socket file. */
+    @Override
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            // nothing useful to do; the channel is unusable either way
+        }
+        for (var session : sessions) {
+            closeQuietly(session);
+        }
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (address instanceof UnixDomainSocketAddress unix) {
+            try {
+                Files.deleteIfExists(unix.getPath());
+            } catch (IOException e) {
+                // a stale socket file only matters to the next bind, which reports it
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (!server.isOpen()) {
+                    return;
+                }
+                continue;
+            }
+            sessions.add(channel);
+            sessionsStarted.incrementAndGet();
+            Thread.ofVirtual().name("gradebook-session-" + sessionsStarted.get()).start(() -> serve(channel));
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel) {
+            var reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            var out = new PrintStream(new BufferedOutputStream(Channels.newOutputStream(channel)), false, StandardCharsets.UTF_8);
+            var session = new Main(gradebook, out, journal, metrics);
+            gradebook.runSession(new UndoHistory(), () -> {
+                try {
+                    session.runSession(reader);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            // the client went away or the server is closing; its changes are already applied
+        } finally {
+            sessions.remove(channel);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // already broken
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package edu.course.gradebook;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Per-student-ID state split into fixed-size pages; StudentRegistry and the
+ * per-student indexes are built on it.
+ *
+ * A page holds the state of PAGE_SIZE consecutive IDs (typically a few
+ * primitive arrays of that length, indexed by slot(id)). Growing adds pages
+ * and never copies or moves a slot, so writers holding different stripe locks
+ * can fill slots side by side without sharing a monitor; only creating a page
+ * synchronizes, once per PAGE_SIZE IDs.
+ */
+final class IdPages<P> {
+    static final int PAGE_BITS = 10;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final Supplier<P> newPage;
+    private volatile Object[] pages = new Object[4];
+
+    IdPages(Supplier<P> newPage) {
+        this.newPage = newPage;
+    }
+
+    static int slot(int id) {
+        return id & PAGE_MASK;
+    }
+
+    /** The page holding id, or null if it was never created. */
+    @SuppressWarnings("unchecked")
+    P page(int id) {
+        var directory = pages;
+        int index = id >>> PAGE_BITS;
+        return id >= 0 && index < directory.length ? (P) directory[index] : null;
+    }
+
+    /** The page holding id, created if needed. */
+    P pageFor(int id) {
+        var page = page(id);
+        return page != null ? page : create(id >>> PAGE_BITS);
+    }
+
+    /** One past the highest ID a page could hold, for walking every page. */
+    int idLimit() {
+        return pages.length << PAGE_BITS;
+    }
+
+    /** Drops every page; callers hold all locks. */
+    synchronized void clear() {
+        pages = new Object[4];
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized P create(int index) {
+        var directory = pages;
+        if (index >= directory.length) {
+            directory = Arrays.copyOf(directory, Math.max(index + 1, directory.length * 2));
+        }
+        if (directory[index] == null) {
+            directory[index] = newPage.get();
+        }
+        // volatile write publishes the new page to readers
+        pages = directory;
+        return (P) directory[index];
+    }
+}
@@ -0,0 +1,7 @@
+package edu.course.gradebook;
+
+/**
+ * Outcome of Gradebook.importBatch. Rejected rows were skipped; everything
+ * else was applied (and is undone) as a single unit.
+ */
+public record ImportResult(long rows, long rejectedRows, int studentsAdded, int studentsUpdated, long gradesAdded) {}
@@ -0,0 +1,94 @@
+package edu.course.gradebook;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram in nanoseconds with HDR-style log-linear buckets.
+ *
+ * Every power of two is split into 32 equal sub-buckets, so a recorded value
+ * is reported with at most ~3% error from 32 ns up to about 18 minutes
+ * (larger values are clamped) in a fixed 1,184-slot array. Recording is one
+ * atomic increment plus an add, with no locks or allocation, so any number of
+ * threads can record while another reads; a reader sees each slot at some
+ * point during its read rather than a single frozen instant.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int SLOTS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.getAndIncrement(slot(value));
+        totalNanos.getAndAdd(value);
+        // a plain read first keeps the common case (not a new maximum) free of CAS retries
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /** Mean of the recorded values, or NaN if there are none. */
+    public double mean() {
+        long count = count();
+        return count == 0 ? Double.NaN : (double) totalNanos.get() / count;
+    }
+
+    /**
+     * Smallest bucket bound that at least p percent of the recorded values are at or
+     * below (never above max()), or 0 if nothing was recorded.
+     */
+    public long percentile(double p) {
+        if (!(p >= 0 && p <= 100)) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + p);
+        }
+        var snapshot = new long[SLOTS];
+        long count = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestIn(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // values below 64 get a slot each; above that, slot = shift * 32 + the top 6 bits of the value
+    static int slot(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestIn(int slot) {
+        int shift = Math.max(0, slot / SUB_BUCKETS - 1);
+        long lowest = (long) (slot - shift * SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
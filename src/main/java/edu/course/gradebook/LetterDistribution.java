@@ -0,0 +1,96 @@
+package edu.course.gradebook;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-letter student counts under a GradeScale, plus each student's current letter.
+ *
+ * Gradebook calls update() whenever a student's average changes; the counters
+ * are only touched when the student's letter actually changes, so keeping the
+ * distribution costs one table lookup per mutation and reading it is
+ * O(letters) however large the roster is.
+ *
+ * update() comes in under the student's stripe lock only: each letter's count
+ * is a LongAdder and the letters live in an IdPages column, so writers on
+ * different stripes share no monitor. reset() is called with every stripe held.
+ */
+final class LetterDistribution {
+    private static final byte NONE = -1;
+
+    // replaced as one on reset, so a lock-free counts() never pairs one scale with another's counters
+    private record Table(GradeScale scale, LongAdder[] counts) {}
+
+    private volatile Table table;
+    // per student ID, index into the scale's letters or NONE
+    private final IdPages<byte[]> letters = new IdPages<>(() -> {
+        var page = new byte[IdPages.PAGE_SIZE];
+        Arrays.fill(page, NONE);
+        return page;
+    });
+
+    LetterDistribution(GradeScale scale) {
+        reset(scale);
+    }
+
+    /** Switches to another scale and forgets every student; the caller re-adds them. */
+    void reset(GradeScale scale) {
+        var fresh = new LongAdder[scale.letterCount()];
+        for (int i = 0; i < fresh.length; i++) {
+            fresh[i] = new LongAdder();
+        }
+        letters.clear();
+        table = new Table(scale, fresh);
+    }
+
+    GradeScale scale() {
+        return table.scale();
+    }
+
+    /** Sets the student's letter from their average (NaN when they have no grades); true if it changed. */
+    boolean update(int id, double average) {
+        var current = table;
+        int letter = Double.isNaN(average) ? NONE : current.scale().indexFor(average);
+        var page = letter == NONE ? letters.page(id) : letters.pageFor(id);
+        if (page == null) {
+            return false;
+        }
+        int slot = IdPages.slot(id);
+        int previous = page[slot];
+        if (previous == letter) {
+            return false;
+        }
+        var adders = current.counts();
+        if (previous != NONE) {
+            adders[previous].decrement();
+        }
+        if (letter != NONE) {
+            adders[letter].increment();
+        }
+        page[slot] = (byte) letter;
+        return true;
+    }
+
+    void remove(int id) {
+        update(id, Double.NaN);
+    }
+
+    /** The student's letter, or null if they are unknown or have no grades; callers hold the student's stripe. */
+    String letterOf(int id) {
+        var page = letters.page(id);
+        int letter = page == null ? NONE : page[IdPages.slot(id)];
+        return letter == NONE ? null : table.scale().letter(letter);
+    }
+
+    /** Students per letter, in the scale's order; lock-free, so a student changing letter may be caught mid-move. */
+    Map<String, Long> counts() {
+        var current = table;
+        var result = new LinkedHashMap<String, Long>();
+        for (int i = 0; i < current.counts().length; i++) {
+            result.put(current.scale().letter(i), current.counts()[i].sum());
+        }
+        return result;
+    }
+}
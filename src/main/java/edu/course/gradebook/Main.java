@@ -1,5 +1,24 @@
 package edu.course.gradebook;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
 import java.util.Scanner;
 
 /**
@@ -10,17 +29,173 @@ import java.util.Scanner;
  * - labeled while loop (changed from for loop per requirements)
  * - enhanced switch expression for command processing
  * - Integration with Gradebook methods
+ *
+ * Run with --batch [file] to stream a command file (or stdin) without prompts
+ * or echoes; output is buffered and a summary is printed to stderr at the end.
+ * Add --pipeline to parse, apply and print on three threads (see CommandPipeline).
+ * Add --journal <dir> to keep the gradebook on disk across runs, and
+ * --stats-file <file> [--stats-interval <seconds>] to rewrite the STATS
+ * report to a file periodically (every 60 seconds by default) and on exit.
+ * --serve <port | socket path> shares one thread-safe gradebook between many
+ * clients over TCP (on localhost) or a Unix-domain socket; see GradebookServer.
  */
 public class Main {
+    private static final int BATCH_BUFFER_SIZE = 1 << 16;
+    // last line of every response in a server session
+    static final String SESSION_OK = "OK";
+    static final String SESSION_ERROR = "ERROR";
+    private static final String USAGE =
+            "Usage: Main [--journal <dir>] [--stats-file <file> [--stats-interval <seconds>]] [--batch [file] [--pipeline] | --serve <port | socket path>]";
+
     private final Gradebook gradebook;
+    private final PrintStream out;
+    // null when running in memory only
+    private final GradebookJournal journal;
+    // reused for every line so parsing does not allocate per command
+    private final CommandLine input = new CommandLine();
+    private final Outcome outcome = new Outcome();
+    // reused to build long output lines, e.g. a REPORT's grades
+    private final StringBuilder line = new StringBuilder();
+    private final CommandMetrics metrics;
 
     public Main() {
-        this.gradebook = new Gradebook();
+        this(new Gradebook(), System.out);
+    }
+
+    public Main(Gradebook gradebook, PrintStream out) {
+        this(gradebook, out, null);
+    }
+
+    public Main(Gradebook gradebook, PrintStream out, GradebookJournal journal) {
+        this(gradebook, out, journal, new CommandMetrics());
+    }
+
+    // CommandMetrics.disabled() turns per-command timing off
+    public Main(Gradebook gradebook, PrintStream out, GradebookJournal journal, CommandMetrics metrics) {
+        this.gradebook = gradebook;
+        this.out = out;
+        this.journal = journal;
+        this.metrics = Objects.requireNonNull(metrics);
     }
 
-    public static void main(String[] args) {
-        var app = new Main();
-        app.run();
+    /** Counts, errors and latencies of every command this Main has run. */
+    public CommandMetrics metrics() {
+        return metrics;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path journalDir = null;
+        var batch = false;
+        var pipeline = false;
+        Path batchFile = null;
+        Path statsFile = null;
+        long statsIntervalSeconds = 60;
+        String serveAddress = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--journal" -> {
+                    if (i + 1 == args.length) {
+                        System.err.println(USAGE);
+                        return;
+                    }
+                    journalDir = Path.of(args[++i]);
+                }
+                case "--stats-file", "--stats-interval" -> {
+                    if (i + 1 == args.length) {
+                        System.err.println(USAGE);
+                        return;
+                    }
+                    if (args[i].equals("--stats-file")) {
+                        statsFile = Path.of(args[++i]);
+                    } else {
+                        try {
+                            statsIntervalSeconds = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            statsIntervalSeconds = 0;
+                        }
+                        if (statsIntervalSeconds <= 0) {
+                            System.err.println("--stats-interval must be a positive number of seconds");
+                            return;
+                        }
+                    }
+                }
+                case "--serve" -> {
+                    if (i + 1 == args.length) {
+                        System.err.println(USAGE);
+                        return;
+                    }
+                    serveAddress = args[++i];
+                }
+                case "--pipeline" -> pipeline = true;
+                case "--batch" -> {
+                    batch = true;
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        batchFile = Path.of(args[++i]);
+                    }
+                }
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.err.println(USAGE);
+                    return;
+                }
+            }
+        }
+
+        if ((batch && serveAddress != null) || (pipeline && !batch)) {
+            System.err.println(USAGE);
+            return;
+        }
+        var gradebook = serveAddress != null ? new ConcurrentGradebook() : new Gradebook();
+        try (var journal = journalDir == null ? null : GradebookJournal.open(journalDir, gradebook)) {
+            if (serveAddress != null) {
+                var metrics = new CommandMetrics();
+                var dump = metricsDump(metrics, gradebook, statsFile, statsIntervalSeconds);
+                try (dump; var server = new GradebookServer(GradebookServer.address(serveAddress), gradebook, journal, metrics)) {
+                    System.err.println("Serving on " + server.address());
+                    closeOnShutdown(server);
+                    server.awaitClose();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return;
+            }
+            if (!batch) {
+                var app = new Main(gradebook, System.out, journal);
+                var dump = metricsDump(app.metrics(), gradebook, statsFile, statsIntervalSeconds);
+                try (dump) {
+                    app.run();
+                }
+                return;
+            }
+            var out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), BATCH_BUFFER_SIZE),
+                    false, StandardCharsets.UTF_8);
+            var app = new Main(gradebook, out, journal);
+            var dump = metricsDump(app.metrics(), gradebook, statsFile, statsIntervalSeconds);
+            try (dump; var reader = batchFile != null
+                    ? Files.newBufferedReader(batchFile, StandardCharsets.UTF_8)
+                    : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BATCH_BUFFER_SIZE)) {
+                var summary = pipeline ? app.runPipelined(reader) : app.runBatch(reader);
+                System.err.println(summary);
+            }
+        }
+    }
+
+    // null without a stats file; try-with-resources skips null resources
+    private static MetricsDump metricsDump(CommandMetrics metrics, Gradebook gradebook, Path file, long intervalSeconds) {
+        return file == null ? null : new MetricsDump(metrics, gradebook, file, Duration.ofSeconds(intervalSeconds));
+    }
+
+    // on Ctrl-C or kill, stop accepting and let the main thread close the journal and dump
+    private static void closeOnShutdown(GradebookServer server) {
+        var mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                mainThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
     }
 
     public void run() {
@@ -28,160 +203,842 @@ public class Main {
 
         mainLoop:
         while (true) {
-            System.out.print("> ");
+            out.print("> ");
             var line = scanner.nextLine();
-            var cmd = Commands.parse(line);
+            var cmd = input.parse(line);
 
             // Print numeric ordinal value of the command
-            System.out.println("[" + cmd.ordinal() + "] " + cmd);
+            out.println("[" + cmd.ordinal() + "] " + cmd);
 
             if (cmd == Command.EXIT) {
                 break mainLoop;
             }
 
             if (cmd == Command.UNKNOWN) {
-                System.out.println("Unknown command. Try: ADD_STUDENT, ADD_GRADE, REMOVE_STUDENT, REPORT, CLASS_REPORT, UNDO, LOG, EXIT");
+                unknown();
                 continue mainLoop;
             }
 
-            // Enhanced switch expression to invoke correct Gradebook method
-            var result = switch (cmd) {
-                case ADD_STUDENT -> handleAddStudent(line);
-                case ADD_GRADE -> handleAddGrade(line);
-                case REMOVE_STUDENT -> handleRemoveStudent(line);
-                case REPORT -> handleReport(line);
-                case CLASS_REPORT -> handleClassReport();
-                case UNDO -> handleUndo();
-                case LOG -> handleLog();
-                default -> {
-                    System.out.println("Command not handled: " + cmd);
-                    yield false;
-                }
-            };
+            var result = execute(cmd);
         }
 
         scanner.close();
-        System.out.println("Goodbye!");
+        out.println("Goodbye!");
     }
 
-    private boolean handleAddStudent(String line) {
-        var parts = line.trim().split("\\s+", 2);
-        if (parts.length < 2) {
-            System.out.println("Usage: ADD_STUDENT <name>");
-            return false;
+    /** Outcome of a batch run. */
+    public record BatchSummary(long lines, long errors, long elapsedNanos) {
+        @Override
+        public String toString() {
+            return String.format("Processed %d lines (%d errors) in %.1f ms", lines, errors, elapsedNanos / 1e6);
         }
-        var success = gradebook.addStudent(parts[1]);
-        if (success) {
-            System.out.println("Added student: " + parts[1]);
-        } else {
-            System.out.println("Student already exists: " + parts[1]);
+    }
+
+    /**
+     * Runs every line from the reader without prompts or echoes, stopping at
+     * EXIT or end of input. Output goes to this Main's stream and is flushed
+     * once at the end. Unknown commands and handlers that report failure are
+     * counted as errors.
+     */
+    public BatchSummary runBatch(BufferedReader reader) throws IOException {
+        return runLines(reader, false);
+    }
+
+    /**
+     * Same as runBatch, with reading and tokenizing, applying and printing on three
+     * threads connected by bounded queues (see CommandPipeline). Output and the
+     * order of changes are exactly those of runBatch.
+     */
+    public BatchSummary runPipelined(BufferedReader reader) throws IOException {
+        return new CommandPipeline(gradebook, out, journal, metrics).run(reader);
+    }
+
+    /**
+     * Serves one client of a GradebookServer: like runBatch, but every command's
+     * output is followed by a line reading OK or ERROR and flushed right away, so
+     * the client can tell where each response ends. A command that throws gets an
+     * ERROR response rather than ending the session. Runs until EXIT or until the
+     * client closes its end.
+     */
+    public BatchSummary runSession(BufferedReader reader) throws IOException {
+        return runLines(reader, true);
+    }
+
+    private BatchSummary runLines(BufferedReader reader, boolean session) throws IOException {
+        long start = System.nanoTime();
+        long lines = 0;
+        long errors = 0;
+
+        batchLoop:
+        for (var line = reader.readLine(); line != null; line = reader.readLine()) {
+            lines++;
+            var cmd = input.parse(line);
+            if (cmd == Command.EXIT) {
+                if (session) {
+                    out.println("Goodbye!");
+                    out.println(SESSION_OK);
+                }
+                break batchLoop;
+            }
+            boolean succeeded;
+            if (cmd == Command.UNKNOWN) {
+                unknown();
+                succeeded = false;
+            } else if (session) {
+                succeeded = executeForClient(cmd);
+            } else {
+                succeeded = execute(cmd);
+            }
+            if (!succeeded) {
+                errors++;
+            }
+            if (session) {
+                out.println(succeeded ? SESSION_OK : SESSION_ERROR);
+                out.flush();
+            }
         }
-        return success;
+
+        out.flush();
+        return new BatchSummary(lines, errors, System.nanoTime() - start);
     }
 
-    private boolean handleAddGrade(String line) {
-        var parts = line.trim().split("\\s+", 3);
-        if (parts.length < 3) {
-            System.out.println("Usage: ADD_GRADE <name> <grade>");
+    private boolean execute(Command cmd) {
+        var result = apply(cmd, input);
+        checkpoint();
+        return result;
+    }
+
+    // a command that throws (e.g. a journal that can no longer record changes) fails alone;
+    // the client gets an ERROR response and its session carries on
+    private boolean executeForClient(Command cmd) {
+        try {
+            return execute(cmd);
+        } catch (RuntimeException e) {
+            out.println(cmd + " failed: " + e.getMessage());
             return false;
         }
-        try {
-            var grade = Integer.parseInt(parts[2]);
-            if (grade < 0 || grade > 100) {
-                System.out.println("Grade must be between 0 and 100");
+    }
+
+    // runs one command's handler, timed for the metrics; output goes straight to out
+    boolean apply(Command cmd, CommandLine args) {
+        long start = metrics.isEnabled() ? System.nanoTime() : 0;
+        // Enhanced switch expression to invoke correct Gradebook method
+        var result = switch (cmd) {
+            case ADD_STUDENT, ADD_GRADE, REMOVE_STUDENT, REPORT, CLASS_REPORT -> {
+                applyDeferrable(cmd, args, outcome);
+                printDeferred(cmd, args, outcome);
+                yield outcome.succeeded();
+            }
+            case UNDO -> handleUndo(args);
+            case LOG -> handleLog();
+            case RANK -> handleRank(args);
+            case PERCENTILE -> handlePercentile(args);
+            case MEDIAN -> handleMedian();
+            case TOP -> handleTop(args);
+            case LETTER_DISTRIBUTION -> handleLetterDistribution();
+            case IMPORT -> handleImport(args);
+            case EXPORT -> handleExport(args);
+            case SAVE -> handleSave(args);
+            case LOAD -> handleLoad(args);
+            case STATS -> handleStats();
+            case BEGIN -> handleBegin();
+            case COMMIT -> handleCommit();
+            case SAVEPOINT -> handleSavepoint(args);
+            case REDO -> handleRedo();
+            case CATEGORY -> handleCategory(args);
+            case LAST -> handleLast(args);
+            case WINDOW -> handleWindow(args);
+            case TREND -> handleTrend(args);
+            case WATCH -> handleWatch(args);
+            case WATCHES -> handleWatches();
+            case AT_RISK -> handleAtRisk(args);
+            default -> {
+                out.println("Command not handled: " + cmd);
+                yield false;
+            }
+        };
+        if (metrics.isEnabled()) {
+            metrics.record(cmd, System.nanoTime() - start, result);
+        }
+        return result;
+    }
+
+    // checkpoints are background housekeeping, not part of any command's latency
+    void checkpoint() {
+        if (journal != null) {
+            try {
+                journal.maybeCheckpoint();
+            } catch (IOException e) {
+                out.println("Checkpoint failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Applies a command for a pipelined run (see CommandPipeline). The common commands
+     * only change or read the book here and leave what to print in outcome, for
+     * printDeferred() on the output thread; true is returned for those. Every other
+     * command runs its handler as usual, printing to this Main's out.
+     */
+    boolean applyForPipeline(Command cmd, CommandLine args, Outcome outcome) {
+        switch (cmd) {
+            case ADD_STUDENT, ADD_GRADE, REMOVE_STUDENT, REPORT, CLASS_REPORT -> {
+                long start = metrics.isEnabled() ? System.nanoTime() : 0;
+                applyDeferrable(cmd, args, outcome);
+                if (metrics.isEnabled()) {
+                    metrics.record(cmd, System.nanoTime() - start, outcome.succeeded());
+                }
+                return true;
+            }
+            case UNKNOWN -> {
+                metrics.record(Command.UNKNOWN, 0, false);
+                outcome.status = Outcome.Status.USAGE;
+                return true;
+            }
+            default -> {
+                outcome.status = apply(cmd, args) ? Outcome.Status.DONE : Outcome.Status.FAILED;
                 return false;
             }
-            var success = gradebook.addGrade(parts[1], grade);
+        }
+    }
+
+    /**
+     * Result of applying a command, held until it is printed. Pipelined runs keep one
+     * per queued line; a REPORT's StudentReport is a snapshot, so later lines changing
+     * the student do not alter what is printed for it.
+     */
+    static final class Outcome {
+        enum Status { DONE, FAILED, USAGE, INVALID, OUT_OF_RANGE, NOT_FOUND, EXISTS, NO_CATEGORY }
+
+        Status status;
+        // the grade or class average; NaN when there is none
+        double number;
+        StudentReport report;
+
+        boolean succeeded() {
+            return status == Status.DONE;
+        }
+    }
+
+    private void unknown() {
+        long start = System.nanoTime();
+        printUnknown();
+        metrics.record(Command.UNKNOWN, System.nanoTime() - start, false);
+    }
+
+    private void printUnknown() {
+        out.println("Unknown command. Try: ADD_STUDENT, ADD_GRADE, REMOVE_STUDENT, REPORT, CLASS_REPORT, UNDO, LOG, "
+                + "RANK, PERCENTILE, MEDIAN, TOP, LETTER_DISTRIBUTION, IMPORT, EXPORT, SAVE, LOAD, STATS, BEGIN, COMMIT, SAVEPOINT, REDO, CATEGORY, "
+                + "LAST, WINDOW, TREND, WATCH, WATCHES, AT_RISK, EXIT");
+    }
+
+    // ---- commands applied and printed separately, so a pipeline can print on another thread ----
+
+    private void applyDeferrable(Command cmd, CommandLine args, Outcome outcome) {
+        outcome.number = Double.NaN;
+        outcome.report = null;
+        outcome.status = switch (cmd) {
+            case ADD_STUDENT -> !args.hasArgument() ? Outcome.Status.USAGE
+                    : gradebook.addStudent(args.argument()) ? Outcome.Status.DONE : Outcome.Status.EXISTS;
+            case ADD_GRADE -> applyAddGrade(args, outcome);
+            case REMOVE_STUDENT -> !args.hasArgument() ? Outcome.Status.USAGE
+                    : gradebook.removeStudent(args.argument()) ? Outcome.Status.DONE : Outcome.Status.NOT_FOUND;
+            case REPORT -> {
+                if (!args.hasArgument()) {
+                    yield Outcome.Status.USAGE;
+                }
+                outcome.report = gradebook.report(args.argument()).orElse(null);
+                yield outcome.report == null ? Outcome.Status.NOT_FOUND : Outcome.Status.DONE;
+            }
+            case CLASS_REPORT -> {
+                var avgOpt = gradebook.classAverage();
+                if (avgOpt.isEmpty()) {
+                    yield Outcome.Status.NOT_FOUND;
+                }
+                outcome.number = avgOpt.get();
+                yield Outcome.Status.DONE;
+            }
+            default -> throw new IllegalArgumentException("Not a deferrable command: " + cmd);
+        };
+    }
+
+    private Outcome.Status applyAddGrade(CommandLine args, Outcome outcome) {
+        if (!args.hasSecondArgument()) {
+            return Outcome.Status.USAGE;
+        }
+        // ADD_GRADE <name> <grade> [category]
+        boolean categorized = args.hasThirdArgument();
+        int grade;
+        try {
+            grade = categorized ? args.secondTokenAsInt() : args.secondArgumentAsInt();
+        } catch (NumberFormatException e) {
+            return Outcome.Status.INVALID;
+        }
+        outcome.number = grade;
+        if (grade < 0 || grade > 100) {
+            return Outcome.Status.OUT_OF_RANGE;
+        }
+        if (!categorized) {
+            return gradebook.addGrade(args.firstArgument(), grade) ? Outcome.Status.DONE : Outcome.Status.NOT_FOUND;
+        }
+        var category = args.thirdArgument();
+        if (gradebook.category(category).isEmpty()) {
+            return Outcome.Status.NO_CATEGORY;
+        }
+        return gradebook.addGrade(args.firstArgument(), category, grade) ? Outcome.Status.DONE : Outcome.Status.NOT_FOUND;
+    }
+
+    /** Prints what applyForPipeline() left in outcome for a command it returned true for. */
+    void printDeferred(Command cmd, CommandLine args, Outcome outcome) {
+        var status = outcome.status;
+        switch (cmd) {
+            case ADD_STUDENT -> {
+                switch (status) {
+                    case USAGE -> out.println("Usage: ADD_STUDENT <name>");
+                    case DONE -> out.println("Added student: " + args.argument());
+                    default -> out.println("Student already exists: " + args.argument());
+                }
+            }
+            case ADD_GRADE -> {
+                switch (status) {
+                    case USAGE -> out.println("Usage: ADD_GRADE <name> <grade> [category]");
+                    case INVALID -> out.println("Invalid grade: "
+                            + (args.hasThirdArgument() ? args.secondToken() : args.secondArgument()));
+                    case OUT_OF_RANGE -> out.println("Grade must be between 0 and 100");
+                    case NO_CATEGORY -> out.println("Unknown category: " + args.thirdArgument());
+                    case DONE -> out.println("Added grade " + (int) outcome.number + " for " + args.firstArgument()
+                            + (args.hasThirdArgument() ? " (" + args.thirdArgument() + ")" : ""));
+                    default -> out.println("Student not found: " + args.firstArgument());
+                }
+            }
+            case REMOVE_STUDENT -> {
+                switch (status) {
+                    case USAGE -> out.println("Usage: REMOVE_STUDENT <name>");
+                    case DONE -> out.println("Removed student: " + args.argument());
+                    default -> out.println("Student not found: " + args.argument());
+                }
+            }
+            case REPORT -> printReport(args, outcome);
+            case CLASS_REPORT -> {
+                if (status == Outcome.Status.DONE) {
+                    out.printf("Class Average: %.2f%n", outcome.number);
+                } else {
+                    out.println("Class Average: N/A (no grades in system)");
+                }
+            }
+            case UNKNOWN -> printUnknown();
+            default -> throw new IllegalArgumentException("Not a deferrable command: " + cmd);
+        }
+    }
+
+    private void printReport(CommandLine args, Outcome outcome) {
+        switch (outcome.status) {
+            case USAGE -> out.println("Usage: REPORT <name>");
+            case NOT_FOUND -> out.println("Student not found: " + args.argument());
+            default -> {
+                var report = outcome.report;
+                out.println("Report for " + args.argument() + ":");
+                line.setLength(0);
+                out.println(report.appendGrades(line.append("  Grades: ")));
+
+                var avgOpt = report.average();
+                if (avgOpt.isPresent()) {
+                    out.printf("  Average: %.2f%n", avgOpt.get());
+                } else {
+                    out.println("  Average: N/A (no grades)");
+                }
+
+                var letterOpt = report.letter();
+                if (letterOpt.isPresent()) {
+                    out.println("  Letter Grade: " + letterOpt.get());
+                } else {
+                    out.println("  Letter Grade: N/A");
+                }
+            }
+        }
+    }
+
+    private boolean handleUndo(CommandLine args) {
+        if (!args.hasArgument()) {
+            var success = gradebook.undo();
             if (success) {
-                System.out.println("Added grade " + grade + " for " + parts[1]);
+                out.println("Undo successful");
             } else {
-                System.out.println("Student not found: " + parts[1]);
+                out.println(undoRefusal());
             }
             return success;
+        }
+        if (args.firstArgument().equalsIgnoreCase("TO")) {
+            if (!args.hasSecondArgument()) {
+                out.println("Usage: UNDO [n | TO <savepoint>]");
+                return false;
+            }
+            var savepoint = args.secondArgument();
+            if (!gradebook.undoTo(savepoint)) {
+                out.println("Cannot undo to savepoint: " + savepoint);
+                return false;
+            }
+            out.println("Undone back to savepoint " + savepoint);
+            return true;
+        }
+        int steps;
+        try {
+            steps = Integer.parseInt(args.argument());
         } catch (NumberFormatException e) {
-            System.out.println("Invalid grade: " + parts[2]);
+            steps = 0;
+        }
+        if (steps < 1) {
+            out.println("Usage: UNDO [n | TO <savepoint>]");
+            return false;
+        }
+        int undone = gradebook.undo(steps);
+        if (undone == 0) {
+            out.println(undoRefusal());
             return false;
         }
+        out.println("Undid " + undone + " step" + (undone == 1 ? "" : "s"));
+        return true;
     }
 
-    private boolean handleRemoveStudent(String line) {
-        var parts = line.trim().split("\\s+", 2);
-        if (parts.length < 2) {
-            System.out.println("Usage: REMOVE_STUDENT <name>");
-            return false;
+    private String undoRefusal() {
+        if (gradebook.undoHistory().inGroup()) {
+            return "Cannot undo inside BEGIN; COMMIT first";
         }
-        var success = gradebook.removeStudent(parts[1]);
+        return gradebook.undoDepth() == 0 ? "Nothing to undo" : "Cannot undo: another session has changed those students since";
+    }
+
+    private boolean handleRedo() {
+        var success = gradebook.redo();
         if (success) {
-            System.out.println("Removed student: " + parts[1]);
+            out.println("Redo successful");
+        } else if (gradebook.undoHistory().inGroup()) {
+            out.println("Cannot redo inside BEGIN; COMMIT first");
+        } else if (gradebook.redoDepth() == 0) {
+            out.println("Nothing to redo");
         } else {
-            System.out.println("Student not found: " + parts[1]);
+            out.println("Cannot redo: another session has changed those students since");
         }
         return success;
     }
 
-    private boolean handleReport(String line) {
-        var parts = line.trim().split("\\s+", 2);
-        if (parts.length < 2) {
-            System.out.println("Usage: REPORT <name>");
+    // CATEGORY lists the categories; CATEGORY <name> <weight> [drop lowest] defines or changes one
+    private boolean handleCategory(CommandLine args) {
+        if (!args.hasArgument()) {
+            var categories = gradebook.categories();
+            if (categories.isEmpty()) {
+                out.println("No categories defined; averages are plain means");
+            } else {
+                out.println("Categories:");
+                for (var category : categories) {
+                    out.println("  " + describe(category));
+                }
+            }
+            return true;
+        }
+        if (!args.hasSecondArgument()) {
+            out.println("Usage: CATEGORY [<name> <weight> [drop lowest]]");
+            return false;
+        }
+        GradeCategory category;
+        try {
+            double weight = Double.parseDouble(args.hasThirdArgument() ? args.secondToken() : args.secondArgument());
+            int drop = args.hasThirdArgument() ? Integer.parseInt(args.thirdArgument()) : 0;
+            category = new GradeCategory(args.firstArgument(), weight, drop);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            out.println("Usage: CATEGORY [<name> <weight> [drop lowest]] (weight >= 0, drop lowest >= 0)");
             return false;
         }
-        var studentName = parts[1];
-        var gradesOpt = gradebook.findStudentGrades(studentName);
-        if (gradesOpt.isEmpty()) {
-            System.out.println("Student not found: " + studentName);
+        if (!gradebook.defineCategory(category)) {
+            out.println("Too many categories (at most " + CategoryAverages.MAX_CATEGORIES + ")");
             return false;
         }
-        var grades = gradesOpt.get();
-        System.out.println("Report for " + studentName + ":");
-        System.out.println("  Grades: " + grades);
+        out.println("Category " + describe(category));
+        return true;
+    }
 
-        var avgOpt = gradebook.averageFor(studentName);
-        var letterOpt = gradebook.letterGradeFor(studentName);
+    private static String describe(GradeCategory category) {
+        double weight = category.weight();
+        var text = category.name() + ": weight " + (weight == (long) weight ? Long.toString((long) weight) : weight);
+        return category.dropLowest() == 0 ? text : text + ", drops lowest " + category.dropLowest();
+    }
 
-        if (avgOpt.isPresent()) {
-            System.out.printf("  Average: %.2f%n", avgOpt.get());
-        } else {
-            System.out.println("  Average: N/A (no grades)");
+    private boolean handleLast(CommandLine args) {
+        int count;
+        try {
+            count = args.hasSecondArgument() ? args.secondArgumentAsInt() : 0;
+        } catch (NumberFormatException e) {
+            count = 0;
         }
+        if (count < 1) {
+            out.println("Usage: LAST <name> <n>");
+            return false;
+        }
+        var name = args.firstArgument();
+        var average = gradebook.averageOfLast(name, count);
+        if (average.isEmpty()) {
+            out.println("No grades for " + name + " (student not found or no grades)");
+            return false;
+        }
+        out.printf("Average of last %d grades for %s: %.2f%n", count, name, average.get());
+        return true;
+    }
 
-        if (letterOpt.isPresent()) {
-            System.out.println("  Letter Grade: " + letterOpt.get());
-        } else {
-            System.out.println("  Letter Grade: N/A");
+    // WINDOW <name> <from> [to]; times are dates (midnight, local time) or date-times
+    private boolean handleWindow(CommandLine args) {
+        if (!args.hasSecondArgument()) {
+            out.println("Usage: WINDOW <name> <from> [to]");
+            return false;
         }
+        var name = args.firstArgument();
+        var fromText = args.hasThirdArgument() ? args.secondToken() : args.secondArgument();
+        var toText = args.hasThirdArgument() ? args.thirdArgument() : null;
+        long from;
+        long to;
+        try {
+            from = parseTime(fromText);
+            to = toText == null ? Long.MAX_VALUE : parseTime(toText);
+        } catch (DateTimeParseException e) {
+            out.println("Invalid time: " + e.getParsedString() + " (use e.g. 2026-03-01 or 2026-03-01T09:30)");
+            return false;
+        }
+        var average = gradebook.averageBetween(name, from, to);
+        var window = toText == null ? "since " + fromText : "from " + fromText + " to " + toText;
+        if (average.isEmpty()) {
+            out.println("No grades for " + name + " " + window);
+            return false;
+        }
+        out.printf("Average for %s %s: %.2f%n", name, window, average.get());
         return true;
     }
 
-    private boolean handleClassReport() {
-        var avgOpt = gradebook.classAverage();
-        if (avgOpt.isPresent()) {
-            System.out.printf("Class Average: %.2f%n", avgOpt.get());
-        } else {
-            System.out.println("Class Average: N/A (no grades in system)");
+    // epoch millis of a date (start of day), local date-time or instant, in this machine's zone
+    private static long parseTime(String text) {
+        var zone = ZoneId.systemDefault();
+        if (text.length() == 10) {
+            return LocalDate.parse(text).atStartOfDay(zone).toInstant().toEpochMilli();
         }
-        return avgOpt.isPresent();
+        if (text.endsWith("Z") || text.endsWith("z")) {
+            return Instant.parse(text.toUpperCase()).toEpochMilli();
+        }
+        return LocalDateTime.parse(text).atZone(zone).toInstant().toEpochMilli();
     }
 
-    private boolean handleUndo() {
-        var success = gradebook.undo();
-        if (success) {
-            System.out.println("Undo successful");
-        } else {
-            System.out.println("Nothing to undo");
+    // TREND <name> [n]: slope over the last n grades, all of them by default
+    private boolean handleTrend(CommandLine args) {
+        if (!args.hasArgument()) {
+            out.println("Usage: TREND <name> [n]");
+            return false;
         }
-        return success;
+        int count = Integer.MAX_VALUE;
+        if (args.hasSecondArgument()) {
+            try {
+                count = args.secondArgumentAsInt();
+            } catch (NumberFormatException e) {
+                count = 0;
+            }
+            if (count < 2) {
+                out.println("Usage: TREND <name> [n] (n >= 2)");
+                return false;
+            }
+        }
+        var name = args.firstArgument();
+        var trend = gradebook.trend(name, count);
+        if (trend.isEmpty()) {
+            out.println("No trend for " + name + " (student not found or fewer than 2 grades)");
+            return false;
+        }
+        var over = count == Integer.MAX_VALUE ? "" : " over the last " + count;
+        out.printf("Trend for %s%s: %+.2f points per grade%n", name, over, trend.get());
+        return true;
+    }
+
+    // WATCH <name> <average | letter>: students below the average, or worse than the letter
+    private boolean handleWatch(CommandLine args) {
+        if (!args.hasSecondArgument()) {
+            out.println("Usage: WATCH <name> <average | letter>");
+            return false;
+        }
+        var name = args.firstArgument();
+        var threshold = args.secondArgument();
+        GradeWatch watch;
+        try {
+            watch = gradebook.gradeScale().letters().contains(threshold)
+                    ? GradeWatch.worseThan(name, threshold, gradebook.gradeScale())
+                    : new GradeWatch(name, Double.parseDouble(threshold));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            out.println("Usage: WATCH <name> <average | letter> (a number or one of " + gradebook.gradeScale().letters() + ")");
+            return false;
+        }
+        int below = gradebook.addWatch(watch);
+        out.println("Watching " + describe(watch) + ", " + below + " below now");
+        return true;
+    }
+
+    private boolean handleWatches() {
+        var watches = gradebook.watches();
+        if (watches.isEmpty()) {
+            out.println("No watches; add one with WATCH <name> <average | letter>");
+            return true;
+        }
+        out.println("Watches:");
+        for (var watch : watches) {
+            out.println("  " + describe(watch) + ", " + gradebook.belowWatchCount(watch.name()) + " below");
+        }
+        return true;
+    }
+
+    // AT_RISK [watch] lists the students below one watch, or below each of them
+    private boolean handleAtRisk(CommandLine args) {
+        var watches = gradebook.watches();
+        if (args.hasArgument()) {
+            var watch = gradebook.watch(args.argument());
+            if (watch.isEmpty()) {
+                out.println("Unknown watch: " + args.argument());
+                return false;
+            }
+            watches = List.of(watch.get());
+        } else if (watches.isEmpty()) {
+            out.println("No watches; add one with WATCH <name> <average | letter>");
+            return false;
+        }
+        for (var watch : watches) {
+            var below = gradebook.belowWatch(watch.name()).orElse(List.of());
+            out.println(below.isEmpty() ? "Nobody below " + describe(watch)
+                    : "Below " + describe(watch) + ": " + String.join(", ", below));
+        }
+        return true;
+    }
+
+    private static String describe(GradeWatch watch) {
+        double threshold = watch.threshold();
+        return watch.name() + " (" + (threshold == (long) threshold ? Long.toString((long) threshold) : threshold) + ")";
+    }
+
+    private boolean handleBegin() {
+        gradebook.begin();
+        out.println("Started a group; changes until COMMIT undo as one step");
+        return true;
+    }
+
+    private boolean handleCommit() {
+        if (!gradebook.commit()) {
+            out.println("No group to commit");
+            return false;
+        }
+        out.println("Committed");
+        return true;
+    }
+
+    private boolean handleSavepoint(CommandLine args) {
+        if (!args.hasArgument()) {
+            out.println("Usage: SAVEPOINT <name>");
+            return false;
+        }
+        var name = args.argument();
+        if (!gradebook.savepoint(name)) {
+            out.println("Cannot set a savepoint inside BEGIN; COMMIT first");
+            return false;
+        }
+        out.println("Savepoint set: " + name);
+        return true;
     }
 
     private boolean handleLog() {
         var logs = gradebook.recentLog(10);
         if (logs.isEmpty()) {
-            System.out.println("No activity logged yet");
+            out.println("No activity logged yet");
         } else {
-            System.out.println("Recent activity:");
+            out.println("Recent activity:");
             for (var entry : logs) {
-                System.out.println("  - " + entry);
+                out.println("  - " + entry);
             }
         }
         return !logs.isEmpty();
     }
+
+    private boolean handleRank(CommandLine args) {
+        if (!args.hasArgument()) {
+            out.println("Usage: RANK <name>");
+            return false;
+        }
+        var name = args.argument();
+        var rank = gradebook.rankOf(name);
+        if (rank.isEmpty()) {
+            out.println("No rank for " + name + " (student not found or no grades)");
+            return false;
+        }
+        out.println("Rank for " + name + ": " + rank.getAsInt() + " of " + gradebook.rankedCount());
+        return true;
+    }
+
+    private boolean handlePercentile(CommandLine args) {
+        if (!args.hasArgument()) {
+            out.println("Usage: PERCENTILE <0-100>");
+            return false;
+        }
+        double p;
+        try {
+            p = Double.parseDouble(args.firstArgument());
+        } catch (NumberFormatException e) {
+            out.println("Invalid percentile: " + args.firstArgument());
+            return false;
+        }
+        if (!(p >= 0 && p <= 100)) {
+            out.println("Percentile must be between 0 and 100");
+            return false;
+        }
+        var value = gradebook.percentile(p);
+        if (value.isPresent()) {
+            out.printf("Percentile %s: %.2f%n", args.firstArgument(), value.get());
+        } else {
+            out.println("Percentile " + args.firstArgument() + ": N/A (no grades in system)");
+        }
+        return value.isPresent();
+    }
+
+    private boolean handleMedian() {
+        var median = gradebook.median();
+        if (median.isPresent()) {
+            out.printf("Class Median: %.2f%n", median.get());
+        } else {
+            out.println("Class Median: N/A (no grades in system)");
+        }
+        return median.isPresent();
+    }
+
+    private boolean handleTop(CommandLine args) {
+        var n = 10;
+        if (args.hasArgument()) {
+            try {
+                n = Integer.parseInt(args.firstArgument());
+            } catch (NumberFormatException e) {
+                out.println("Invalid count: " + args.firstArgument());
+                return false;
+            }
+        }
+        if (n < 1) {
+            out.println("Usage: TOP [n] (n >= 1)");
+            return false;
+        }
+        var top = gradebook.topStudents(n);
+        if (top.isEmpty()) {
+            out.println("No graded students yet");
+            return false;
+        }
+        out.println("Top " + top.size() + " students:");
+        for (var student : top) {
+            out.printf("  %d. %s (%.2f)%n", student.rank(), student.name(), student.average());
+        }
+        return true;
+    }
+
+    private boolean handleLetterDistribution() {
+        var distribution = gradebook.letterDistribution();
+        var graded = 0L;
+        for (var count : distribution.values()) {
+            graded += count;
+        }
+        if (graded == 0) {
+            out.println("Letter Distribution: N/A (no grades in system)");
+            return false;
+        }
+        out.println("Letter Distribution (" + graded + " students):");
+        for (var entry : distribution.entrySet()) {
+            out.printf("  %-2s %d%n", entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+
+    private boolean handleImport(CommandLine args) {
+        if (!args.hasArgument()) {
+            out.println("Usage: IMPORT <file>");
+            return false;
+        }
+        var file = args.argument();
+        try {
+            long start = System.nanoTime();
+            var result = gradebook.importBatch(Path.of(file));
+            out.printf("Imported %d rows from %s: %d students added, %d updated, %d grades in %.1f ms%n",
+                    result.rows() - result.rejectedRows(), file, result.studentsAdded(), result.studentsUpdated(),
+                    result.gradesAdded(), (System.nanoTime() - start) / 1e6);
+            if (result.rejectedRows() > 0) {
+                out.println("Skipped " + result.rejectedRows() + " malformed rows");
+            }
+            return result.rejectedRows() == 0;
+        } catch (IOException | InvalidPathException e) {
+            out.println("Import failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean handleExport(CommandLine args) {
+        if (!args.hasArgument()) {
+            out.println("Usage: EXPORT <file> [csv|json]");
+            return false;
+        }
+        var file = args.firstArgument();
+        var format = ExportFormat.CSV;
+        if (args.hasSecondArgument()) {
+            switch (args.secondArgument().toLowerCase()) {
+                case "csv" -> format = ExportFormat.CSV;
+                case "json" -> format = ExportFormat.JSON;
+                default -> {
+                    out.println("Unknown export format: " + args.secondArgument() + " (use csv or json)");
+                    return false;
+                }
+            }
+        }
+        try {
+            long start = System.nanoTime();
+            var students = gradebook.export(Path.of(file), format);
+            out.printf("Exported %d students to %s in %.1f ms%n", students, file, (System.nanoTime() - start) / 1e6);
+            return true;
+        } catch (IOException | InvalidPathException e) {
+            out.println("Export failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean handleSave(CommandLine args) {
+        if (!args.hasArgument()) {
+            out.println("Usage: SAVE <file>");
+            return false;
+        }
+        var file = args.argument();
+        try {
+            long start = System.nanoTime();
+            var students = gradebook.save(Path.of(file));
+            out.printf("Saved %d students to %s in %.1f ms%n", students, file, (System.nanoTime() - start) / 1e6);
+            return true;
+        } catch (IOException | InvalidPathException e) {
+            out.println("Save failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean handleLoad(CommandLine args) {
+        if (!args.hasArgument()) {
+            out.println("Usage: LOAD <file>");
+            return false;
+        }
+        var file = args.argument();
+        try {
+            long start = System.nanoTime();
+            var students = gradebook.load(Path.of(file));
+            out.printf("Loaded %d students from %s in %.1f ms%n", students, file, (System.nanoTime() - start) / 1e6);
+            return true;
+        } catch (IOException | InvalidPathException e) {
+            out.println("Load failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean handleStats() {
+        for (var line : metrics.report(gradebook)) {
+            out.println(line);
+        }
+        return true;
+    }
 }
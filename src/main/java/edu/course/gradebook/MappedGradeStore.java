@@ -0,0 +1,218 @@
+package edu.course.gradebook;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * GradeStore over one student's slice of a memory-mapped binary snapshot.
+ *
+ * Size and sum come from the snapshot index, so averages, ranking and letter
+ * grades work without reading the grade bytes at all. The bytes themselves
+ * are paged in on first read, when they are also checked against the stored
+ * sum. The first add or removeLast copies them onto the heap and the store
+ * behaves like a ByteGradeStore from then on. A snapshot() taken before that
+ * keeps reading the mapping, which is never written.
+ */
+final class MappedGradeStore implements GradeStore {
+    private final ByteBuffer mapped;
+    private final int offset;
+    private final String student;
+    // null until the first mutation
+    private byte[] own;
+    private int size;
+    private long sum;
+    private boolean verified;
+    // see ByteGradeStore: set while a snapshot reads own[0, its size)
+    private boolean shared;
+
+    MappedGradeStore(ByteBuffer mapped, int offset, int size, long sum, String student) {
+        this.mapped = mapped;
+        this.offset = offset;
+        this.size = size;
+        this.sum = sum;
+        this.student = student;
+    }
+
+    @Override
+    public void add(int grade) {
+        if (grade < 0 || grade > 100) {
+            throw new IllegalArgumentException("Grade must be between 0 and 100: " + grade);
+        }
+        materialize(size + 1);
+        if (size == own.length) {
+            own = Arrays.copyOf(own, size + (size >> 1) + 1);
+            shared = false;
+        }
+        own[size++] = (byte) grade;
+        sum += grade;
+    }
+
+    @Override
+    public int removeLast() {
+        if (size == 0) {
+            throw new IllegalStateException("No grades to remove");
+        }
+        materialize(size);
+        if (shared) {
+            own = own.clone();
+            shared = false;
+        }
+        int grade = own[--size];
+        sum -= grade;
+        return grade;
+    }
+
+    @Override
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        if (own != null) {
+            return own[index];
+        }
+        verify();
+        return mapped.get(offset + index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long sum() {
+        return sum;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        if (own != null) {
+            return Arrays.copyOf(own, size);
+        }
+        verify();
+        var copy = new byte[size];
+        mapped.get(offset, copy);
+        return copy;
+    }
+
+    @Override
+    public List<Integer> asList() {
+        return new MappedListView();
+    }
+
+    @Override
+    public GradeStore snapshot() {
+        if (own != null) {
+            shared = true;
+            return new ByteGradeStore.Frozen(own, size, sum);
+        }
+        verify();
+        return new MappedSnapshot(size, sum);
+    }
+
+    // still reading straight from the mapping, i.e. never mutated
+    boolean isMapped() {
+        return own == null;
+    }
+
+    private void materialize(int capacity) {
+        if (own == null) {
+            verify();
+            own = new byte[Math.max(8, capacity)];
+            mapped.get(offset, own, 0, size);
+        }
+    }
+
+    // the snapshot's header and index are checked on load; grade bytes only when first read
+    private void verify() {
+        if (verified) {
+            return;
+        }
+        long actual = 0;
+        for (int i = 0; i < size; i++) {
+            byte grade = mapped.get(offset + i);
+            if (grade < 0 || grade > 100) {
+                actual = -1;
+                break;
+            }
+            actual += grade;
+        }
+        if (actual != sum) {
+            throw new UncheckedIOException(new IOException("Snapshot is corrupt: grades of " + student
+                    + " do not match their stored sum"));
+        }
+        verified = true;
+    }
+
+    // the mapped bytes as of snapshot(); the mapping is read-only, so they cannot change
+    private final class MappedSnapshot implements GradeStore {
+        private final int size;
+        private final long sum;
+
+        MappedSnapshot(int size, long sum) {
+            this.size = size;
+            this.sum = sum;
+        }
+
+        @Override
+        public void add(int grade) {
+            throw new UnsupportedOperationException("Grade snapshots are read-only");
+        }
+
+        @Override
+        public int removeLast() {
+            throw new UnsupportedOperationException("Grade snapshots are read-only");
+        }
+
+        @Override
+        public int get(int index) {
+            Objects.checkIndex(index, size);
+            return mapped.get(offset + index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long sum() {
+            return sum;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            var copy = new byte[size];
+            mapped.get(offset, copy);
+            return copy;
+        }
+
+        @Override
+        public List<Integer> asList() {
+            return new ByteGradeStore.GradeListView(this);
+        }
+
+        @Override
+        public GradeStore snapshot() {
+            return this;
+        }
+    }
+
+    private final class MappedListView extends AbstractList<Integer> implements RandomAccess {
+        @Override
+        public Integer get(int index) {
+            return MappedGradeStore.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package edu.course.gradebook;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * One student's grade times in a memory-mapped binary snapshot.
+ *
+ * GradeTimeline reads a loaded student's times from here until the student
+ * first changes, so a LOAD neither copies nor checks times up front. As with
+ * MappedGradeStore's grade bytes, they are checked on first read, against the
+ * CRC the snapshot keeps per student.
+ */
+final class MappedTimes {
+    // the student's slice of the times section: one big-endian long per grade
+    private final ByteBuffer mapped;
+    private final int crc;
+    private final String student;
+    private boolean verified;
+
+    MappedTimes(ByteBuffer mapped, int crc, String student) {
+        this.mapped = mapped;
+        this.crc = crc;
+        this.student = student;
+    }
+
+    int size() {
+        return mapped.capacity() / 8;
+    }
+
+    long get(int index) {
+        verify();
+        return mapped.getLong(index * 8);
+    }
+
+    /** Times [from, to) onto the heap. */
+    long[] copy(int from, int to) {
+        verify();
+        var times = new long[to - from];
+        mapped.asLongBuffer().get(from, times);
+        return times;
+    }
+
+    private void verify() {
+        if (verified) {
+            return;
+        }
+        var actual = new CRC32();
+        actual.update(mapped.duplicate());
+        if ((int) actual.getValue() != crc) {
+            throw new UncheckedIOException(new IOException("Snapshot is corrupt: grade times of " + student
+                    + " do not match their checksum"));
+        }
+        verified = true;
+    }
+}
@@ -0,0 +1,69 @@
+package edu.course.gradebook;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewrites a file with the current CommandMetrics report at a fixed interval,
+ * from a daemon thread, and once more on close. Each write goes through a
+ * temporary file and a rename, so readers never see half a report. A failed
+ * write is kept and reported by close() instead of stopping the schedule.
+ */
+final class MetricsDump implements Closeable {
+    private final CommandMetrics metrics;
+    private final Gradebook gradebook;
+    private final Path file;
+    private final ScheduledExecutorService timer;
+    private volatile IOException failure;
+
+    MetricsDump(CommandMetrics metrics, Gradebook gradebook, Path file, Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("interval must be positive: " + interval);
+        }
+        this.metrics = metrics;
+        this.gradebook = gradebook;
+        this.file = file;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "gradebook-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::backgroundDump, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void dump() throws IOException {
+        var lines = new ArrayList<String>();
+        lines.add("# " + Instant.now());
+        lines.addAll(metrics.report(gradebook));
+        var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void backgroundDump() {
+        try {
+            dump();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        timer.shutdownNow();
+        dump();
+        if (failure != null) {
+            throw new IOException("Periodic metrics dump failed", failure);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package edu.course.gradebook;
+
+/**
+ * One line of a class ranking: tied averages share a rank.
+ */
+public record RankedStudent(int rank, String name, double average) {}
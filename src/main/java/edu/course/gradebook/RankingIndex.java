@@ -0,0 +1,328 @@
+package edu.course.gradebook;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Order-statistics index over student averages, plus a histogram of every grade.
+ *
+ * Averages are bucketed at 1/1000 of a point (100,001 buckets) and a Fenwick
+ * tree counts students per bucket, highest bucket first. Each bucket keeps its
+ * members ordered by exact average, then ID, so rank, k-th average and the
+ * start of a top-N walk are a Fenwick descent plus a binary search inside one
+ * bucket, however many students tie there. A grade change moves a student
+ * between two buckets in O(log buckets) plus a shift of the bucket's member
+ * array (one arraycopy, no per-member bookkeeping). The Fenwick array stays cache-resident no matter how many students
+ * there are, which a pointer-based tree over the students does not.
+ *
+ * The owning Gradebook updates the index from its primitive mutations, so
+ * grade adds, removals, undos and journal replay all keep it current. It ranks
+ * by the same average letters use (weighted once categories are defined, see
+ * CategoryAverages), which the Gradebook passes in.
+ *
+ * Updates come in under the student's stripe lock only, so nothing here is
+ * book-wide: Fenwick cells are atomic counters (a move between nearby buckets
+ * stops where the two update paths meet, so it rarely reaches the shared top
+ * of the tree), bucket member lists are guarded by one of BUCKET_LOCKS monitors
+ * picked by bucket, and so are their members' averages, which the order
+ * depends on, per-student state lives in IdPages and the histogram is
+ * LongAdders. Queries read several buckets and students together, so callers
+ * hold every stripe for them; histogram() needs no lock.
+ */
+final class RankingIndex {
+    private static final int SCALE = 1000;
+    private static final int BUCKETS = 100 * SCALE + 1;
+    private static final int BUCKET_LOCKS = 64;
+    private static final int UNRANKED = -1;
+
+    private static final class Page {
+        // a ranked student's average, guarded by their bucket's monitor
+        final double[] averages = new double[IdPages.PAGE_SIZE];
+        // bucket of a ranked student, UNRANKED otherwise; only written under the student's stripe
+        final int[] buckets = new int[IdPages.PAGE_SIZE];
+
+        Page() {
+            Arrays.fill(buckets, UNRANKED);
+        }
+    }
+
+    // Fenwick tree over buckets in descending order of average (position 1 = average 100)
+    private final AtomicIntegerArray tree = new AtomicIntegerArray(BUCKETS + 1);
+    // per bucket, its students by descending average, then ascending ID
+    private final int[][] members = new int[BUCKETS][];
+    private final int[] memberCounts = new int[BUCKETS];
+    private final Object[] bucketLocks = new Object[BUCKET_LOCKS];
+    private final IdPages<Page> students = new IdPages<>(Page::new);
+    private final LongAdder[] histogram = new LongAdder[101];
+
+    RankingIndex() {
+        for (int i = 0; i < bucketLocks.length; i++) {
+            bucketLocks[i] = new Object();
+        }
+        for (int grade = 0; grade < histogram.length; grade++) {
+            histogram[grade] = new LongAdder();
+        }
+    }
+
+    /** One entry of a top-N listing. */
+    record Standing(int studentId, int rank, double average) {}
+
+    void gradeAdded(int grade) {
+        histogram[grade].increment();
+    }
+
+    void gradeRemoved(int grade) {
+        histogram[grade].decrement();
+    }
+
+    // bulk versions for imports and undo
+    void gradesAdded(byte[] added, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            histogram[added[i]].increment();
+        }
+    }
+
+    void gradesRemoved(byte[] removed, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            histogram[removed[i]].decrement();
+        }
+    }
+
+    // a whole student's grades came or went (restore, removal)
+    void gradesAdded(GradeStore grades) {
+        for (int i = 0; i < grades.size(); i++) {
+            histogram[grades.get(i)].increment();
+        }
+    }
+
+    void gradesRemoved(GradeStore grades) {
+        for (int i = 0; i < grades.size(); i++) {
+            histogram[grades.get(i)].decrement();
+        }
+    }
+
+    /** Moves a student to their new average; NaN (no grades, or removed) takes them out of the ranking. */
+    void update(int id, double average) {
+        boolean ranked = !Double.isNaN(average);
+        var page = ranked ? students.pageFor(id) : students.page(id);
+        if (page == null) {
+            return;
+        }
+        int slot = IdPages.slot(id);
+        int from = page.buckets[slot];
+        // multiplying by a positive constant is monotonic, so bucket order follows average order
+        int to = ranked ? (int) (average * SCALE) : UNRANKED;
+        if (from == to && (!ranked || page.averages[slot] == average)) {
+            return;
+        }
+        // a new average within the same bucket still changes the student's place in it
+        if (from != UNRANKED) {
+            unlink(id, page, slot, from);
+        }
+        if (to != UNRANKED) {
+            link(id, page, slot, to, average);
+        }
+        page.buckets[slot] = to;
+        if (from != to) {
+            move(from, to);
+        }
+    }
+
+    /** Forgets every student and grade, e.g. before a snapshot is loaded; callers hold every stripe. */
+    void clear() {
+        for (int i = 0; i < tree.length(); i++) {
+            tree.set(i, 0);
+        }
+        Arrays.fill(members, null);
+        Arrays.fill(memberCounts, 0);
+        students.clear();
+        for (var count : histogram) {
+            count.reset();
+        }
+    }
+
+    // a loaded snapshot carries its own histogram, so grades are not walked; averages come through update()
+    void loaded(long[] snapshotHistogram) {
+        for (int grade = 0; grade < histogram.length; grade++) {
+            histogram[grade].add(snapshotHistogram[grade]);
+        }
+    }
+
+    /** Number of students with at least one grade. */
+    int rankedCount() {
+        return prefix(BUCKETS);
+    }
+
+    /** 1-based rank by average, tied averages share a rank; 0 if the student has no grades. */
+    int rankOf(int id) {
+        var page = students.page(id);
+        if (page == null || page.buckets[IdPages.slot(id)] == UNRANKED) {
+            return 0;
+        }
+        double average = page.averages[IdPages.slot(id)];
+        int bucket = page.buckets[IdPages.slot(id)];
+        // no ID sorts before MIN_VALUE, so this counts exactly the higher averages in the bucket
+        return prefix(position(bucket) - 1) + search(bucket, average, Integer.MIN_VALUE) + 1;
+    }
+
+    /** The k-th highest average, 0-based; the caller checks k < rankedCount(). */
+    double averageAt(int k) {
+        int position = find(k);
+        int bucket = bucket(position);
+        return averageOf(members[bucket][k - prefix(position - 1)]);
+    }
+
+    /** Nearest-rank percentile of the student averages, or NaN if nobody has grades. */
+    double percentile(double p) {
+        int count = rankedCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        int k = Math.max(1, (int) Math.ceil(p / 100.0 * count));
+        // k-th lowest is the (count - k)-th highest
+        return averageAt(count - Math.min(k, count));
+    }
+
+    /** Median of the student averages (mean of the middle two for an even count), or NaN. */
+    double median() {
+        int count = rankedCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if ((count & 1) == 1) {
+            return averageAt(count / 2);
+        }
+        return (averageAt(count / 2 - 1) + averageAt(count / 2)) / 2;
+    }
+
+    /** Up to n highest-ranked students, best first (ties in ID order). */
+    List<Standing> top(int n) {
+        int count = rankedCount();
+        var result = new ArrayList<Standing>(Math.max(0, Math.min(n, count)));
+        int rank = 0;
+        double previous = Double.NaN;
+        for (int k = 0; k < count && result.size() < n; ) {
+            int bucket = bucket(find(k));
+            var bucketMembers = members[bucket];
+            int size = memberCounts[bucket];
+            for (int i = 0; i < size && result.size() < n; i++) {
+                int id = bucketMembers[i];
+                double average = averageOf(id);
+                if (average != previous) {
+                    rank = result.size() + 1;
+                    previous = average;
+                }
+                result.add(new Standing(id, rank, average));
+            }
+            k += size;
+        }
+        return result;
+    }
+
+    /** Copy of the grade histogram, indexed by grade; lock-free, so it may be a few grades apart under writers. */
+    long[] histogram() {
+        var counts = new long[histogram.length];
+        for (int grade = 0; grade < counts.length; grade++) {
+            counts[grade] = histogram[grade].sum();
+        }
+        return counts;
+    }
+
+    // ---- buckets ----
+
+    private double averageOf(int id) {
+        return students.page(id).averages[IdPages.slot(id)];
+    }
+
+    private void link(int id, Page page, int slot, int bucket, double average) {
+        synchronized (bucketLocks[bucket & (BUCKET_LOCKS - 1)]) {
+            page.averages[slot] = average;
+            var bucketMembers = members[bucket];
+            int size = memberCounts[bucket];
+            if (bucketMembers == null || size == bucketMembers.length) {
+                bucketMembers = members[bucket] = bucketMembers == null ? new int[4] : Arrays.copyOf(bucketMembers, size * 2);
+            }
+            int at = search(bucket, average, id);
+            System.arraycopy(bucketMembers, at, bucketMembers, at + 1, size - at);
+            bucketMembers[at] = id;
+            memberCounts[bucket] = size + 1;
+        }
+    }
+
+    // runs before the student's average changes, so the search still finds them
+    private void unlink(int id, Page page, int slot, int bucket) {
+        synchronized (bucketLocks[bucket & (BUCKET_LOCKS - 1)]) {
+            var bucketMembers = members[bucket];
+            int at = search(bucket, page.averages[slot], id);
+            int last = --memberCounts[bucket];
+            System.arraycopy(bucketMembers, at + 1, bucketMembers, at, last - at);
+        }
+    }
+
+    // index of the first member of the bucket that does not sort before (average, id)
+    private int search(int bucket, double average, int id) {
+        var bucketMembers = members[bucket];
+        int low = 0;
+        int high = memberCounts[bucket];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int other = bucketMembers[mid];
+            double otherAverage = averageOf(other);
+            if (otherAverage > average || (otherAverage == average && other < id)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int position(int bucket) {
+        return BUCKETS - bucket;
+    }
+
+    private static int bucket(int position) {
+        return BUCKETS - position;
+    }
+
+    // takes a student out of bucket from and into bucket to (either may be UNRANKED); past the
+    // node where the two update paths meet the -1 and +1 cancel, so the walk stops there
+    private void move(int from, int to) {
+        int out = from == UNRANKED ? BUCKETS + 1 : position(from);
+        int in = to == UNRANKED ? BUCKETS + 1 : position(to);
+        while (out != in && Math.min(out, in) <= BUCKETS) {
+            if (out < in) {
+                tree.getAndAdd(out, -1);
+                out += out & -out;
+            } else {
+                tree.getAndAdd(in, 1);
+                in += in & -in;
+            }
+        }
+    }
+
+    // students in positions 1..position, i.e. with averages in that bucket or higher
+    private int prefix(int position) {
+        int sum = 0;
+        for (int i = position; i > 0; i -= i & -i) {
+            sum += tree.get(i);
+        }
+        return sum;
+    }
+
+    // smallest position whose prefix count exceeds k
+    private int find(int k) {
+        int position = 0;
+        for (int step = Integer.highestOneBit(BUCKETS); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= BUCKETS && tree.get(next) <= k) {
+                position = next;
+                k -= tree.get(next);
+            }
+        }
+        return position + 1;
+    }
+}
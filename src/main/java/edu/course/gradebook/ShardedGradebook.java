@@ -0,0 +1,213 @@
+package edu.course.gradebook;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToIntFunction;
+
+/**
+ * A department made of independent Gradebook shards, e.g. one per course section.
+ *
+ * Every student belongs to exactly one shard, chosen by a router from the name
+ * (by default a hash of it), and single-student operations go straight to that
+ * shard, so writers to different shards share no map, lock or counter.
+ * Department-wide answers combine the shards. classAverage, the counts and the
+ * distributions add up what every shard already keeps current, which costs a
+ * few hundred nanoseconds per shard, less than handing a task to another
+ * thread. Top students and exports do real work per shard, so they fork one
+ * task per shard on the common fork-join pool and merge the results, unless
+ * the pool has a single worker, where forking only adds hand-offs.
+ *
+ * Undo and the other history operations stay per shard (see shard(), shardFor()),
+ * since there is no single order of changes across shards to undo in.
+ */
+public final class ShardedGradebook {
+    private final Gradebook[] shards;
+    private final ToIntFunction<String> router;
+
+    /** shardCount thread-safe shards, students spread by a hash of their name. */
+    public ShardedGradebook(int shardCount) {
+        this(shardCount, name -> hashShard(name, shardCount));
+    }
+
+    /** shardCount thread-safe shards; router maps a name to its shard, e.g. to its section's number. */
+    public ShardedGradebook(int shardCount, ToIntFunction<String> router) {
+        this(newShards(shardCount), router);
+    }
+
+    /** Joins existing books, e.g. one per section; router must send each name to the book holding it. */
+    public ShardedGradebook(Gradebook[] shards, ToIntFunction<String> router) {
+        if (shards.length == 0) {
+            throw new IllegalArgumentException("need at least one shard");
+        }
+        this.shards = shards.clone();
+        this.router = Objects.requireNonNull(router);
+    }
+
+    private static Gradebook[] newShards(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("need at least one shard: " + shardCount);
+        }
+        var shards = new Gradebook[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentGradebook();
+        }
+        return shards;
+    }
+
+    /**
+     * The default router. Takes the high bits of a multiplicative hash: each shard's own
+     * name map buckets by the low bits of hashCode(), which would all be alike within a
+     * shard if the shard were picked by hashCode() modulo the shard count.
+     */
+    static int hashShard(String name, int shardCount) {
+        int mixed = name.hashCode() * 0x9E3779B9;
+        return (int) ((Integer.toUnsignedLong(mixed) * shardCount) >>> 32);
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    public Gradebook shard(int index) {
+        return shards[index];
+    }
+
+    /** The shard that holds (or would hold) the named student. */
+    public Gradebook shardFor(String name) {
+        return shards[Objects.checkIndex(router.applyAsInt(name), shards.length)];
+    }
+
+    // ---- single students, routed to their shard ----
+
+    public boolean addStudent(String name) {
+        return shardFor(name).addStudent(name);
+    }
+
+    public boolean addGrade(String name, int grade) {
+        return shardFor(name).addGrade(name, grade);
+    }
+
+    public boolean removeStudent(String name) {
+        return shardFor(name).removeStudent(name);
+    }
+
+    public Optional<List<Integer>> findStudentGrades(String name) {
+        return shardFor(name).findStudentGrades(name);
+    }
+
+    public Optional<Double> averageFor(String name) {
+        return shardFor(name).averageFor(name);
+    }
+
+    public Optional<String> letterGradeFor(String name) {
+        return shardFor(name).letterGradeFor(name);
+    }
+
+    /** See Gradebook.report; the student ID in it is only meaningful within the student's shard. */
+    public Optional<StudentReport> report(String name) {
+        return shardFor(name).report(name);
+    }
+
+    // ---- department-wide ----
+
+    /** Sets the same letter scale on every shard. */
+    public void setGradeScale(GradeScale scale) {
+        for (var shard : shards) {
+            shard.setGradeScale(scale);
+        }
+    }
+
+    public int studentCount() {
+        int count = 0;
+        for (var shard : shards) {
+            count += shard.studentCount();
+        }
+        return count;
+    }
+
+    public long gradeCount() {
+        long count = 0;
+        for (var shard : shards) {
+            count += shard.gradeCount();
+        }
+        return count;
+    }
+
+    // each shard's totals are two counter reads, far cheaper than forking a task for them;
+    // lock-free like Gradebook.classAverage(), so concurrent writers may be a few grades apart
+    public Optional<Double> classAverage() {
+        long sum = 0;
+        long count = 0;
+        for (var shard : shards) {
+            sum += shard.gradeSum();
+            count += shard.gradeCount();
+        }
+        return count == 0 ? Optional.empty() : Optional.of((double) sum / count);
+    }
+
+    /** Number of students holding each letter, best letter first, over all shards. */
+    public Map<String, Long> letterDistribution() {
+        // every shard hands out a fresh map; the first one keeps the scale's letter order
+        var counts = shards[0].letterDistribution();
+        for (int i = 1; i < shards.length; i++) {
+            shards[i].letterDistribution().forEach((letter, count) -> counts.merge(letter, count, Long::sum));
+        }
+        return counts;
+    }
+
+    /** How many grades of each value (0-100) are in the department, indexed by grade. */
+    public long[] gradeHistogram() {
+        var histogram = shards[0].gradeHistogram();
+        for (int i = 1; i < shards.length; i++) {
+            var shard = shards[i].gradeHistogram();
+            for (int grade = 0; grade < histogram.length; grade++) {
+                histogram[grade] += shard[grade];
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Up to n best students by average over all shards, best first, ranked department-wide
+     * (ties share a rank). Each shard contributes its own top n.
+     */
+    public List<RankedStudent> topStudents(int n) {
+        var perShard = Arrays.stream(shards);
+        if (shards.length > 1 && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            perShard = perShard.parallel();
+        }
+        var candidates = perShard
+                .flatMap(shard -> shard.topStudents(n).stream())
+                .sorted(Comparator.comparingDouble(RankedStudent::average).reversed())
+                .limit(Math.max(0, n))
+                .toList();
+        var result = new ArrayList<RankedStudent>(candidates.size());
+        int rank = 0;
+        double previous = Double.NaN;
+        for (var student : candidates) {
+            if (student.average() != previous) {
+                rank = result.size() + 1;
+                previous = student.average();
+            }
+            result.add(new RankedStudent(rank, student.name(), student.average()));
+        }
+        return result;
+    }
+
+    /**
+     * Streams every student to one file (replacing it), shard by shard and in insertion
+     * order within a shard; partitions of all shards are formatted on the common fork-join
+     * pool as in Gradebook.export. Returns the number of students written.
+     */
+    public long export(Path file, ExportFormat format) throws IOException {
+        return GradebookExport.write(shards, file, format, ForkJoinPool.getCommonPoolParallelism());
+    }
+}
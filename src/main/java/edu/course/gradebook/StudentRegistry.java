@@ -0,0 +1,209 @@
+package edu.course.gradebook;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interned student identity table.
+ *
+ * Every student gets a dense int ID when added; names are hashed once on the
+ * way in and the hot paths then index straight into the per-ID columns. The
+ * columns are split into fixed-size pages (IdPages), so growing the table never
+ * copies or moves existing slots (a concurrent writer can keep using its page
+ * while the directory is grown).
+ *
+ * IDs are never reused. A removed student's ID is retired: its grades slot is
+ * cleared but its name stays resolvable for log records, and an undo restores
+ * the student under the same ID.
+ *
+ * Each ID also keeps who made its most recent changes, as runs of consecutive
+ * changes by the same writer (an opaque owner, in practice the undo history of
+ * the session that made them), and a version bumped by every change. A session
+ * may undo its last n changes to a student only if they are the student's last
+ * n changes overall; otherwise it would take back someone else's work too.
+ */
+final class StudentRegistry {
+    private static final class Page {
+        final String[] names = new String[IdPages.PAGE_SIZE];
+        final GradeStore[] grades = new GradeStore[IdPages.PAGE_SIZE];
+        final ChangeRun[] runs = new ChangeRun[IdPages.PAGE_SIZE];
+        final long[] versions = new long[IdPages.PAGE_SIZE];
+    }
+
+    // count consecutive changes by writer, on top of the runs below it
+    private static final class ChangeRun {
+        final Object writer;
+        int count;
+        ChangeRun below;
+
+        ChangeRun(Object writer, int count, ChangeRun below) {
+            this.writer = writer;
+            this.count = count;
+            this.below = below;
+        }
+    }
+
+    // older runs are forgotten; undoing that far back is refused instead
+    private static final int MAX_RUNS = 32;
+
+    private final Map<String, Integer> idsByName;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final IdPages<Page> pages = new IdPages<>(Page::new);
+
+    StudentRegistry(boolean concurrent) {
+        idsByName = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    /** Returns the live ID for name, or -1. */
+    int idOf(String name) {
+        var id = idsByName.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /** Name for any ID ever handed out (including retired ones), or null. */
+    String nameOf(int id) {
+        var page = page(id);
+        return page == null ? null : page.names[IdPages.slot(id)];
+    }
+
+    /** Grades of a live student, or null if the ID is unknown or retired. */
+    GradeStore gradesOf(int id) {
+        var page = page(id);
+        return page == null ? null : page.grades[IdPages.slot(id)];
+    }
+
+    // ---- change ownership; callers hold the ID's lock ----
+
+    /** Records changes made to the ID by writer. */
+    void changed(int id, Object writer, int changes) {
+        var page = page(id);
+        int slot = IdPages.slot(id);
+        page.versions[slot]++;
+        var top = page.runs[slot];
+        if (top != null && top.writer == writer) {
+            top.count += changes;
+            return;
+        }
+        page.runs[slot] = new ChangeRun(writer, changes, top);
+        var run = top;
+        for (int depth = 2; run != null; depth++, run = run.below) {
+            if (depth == MAX_RUNS) {
+                run.below = null;
+            }
+        }
+    }
+
+    /** Records that the ID's most recent changes were undone. */
+    void reverted(int id, int changes) {
+        var page = page(id);
+        int slot = IdPages.slot(id);
+        page.versions[slot]++;
+        var top = page.runs[slot];
+        while (top != null && changes > 0) {
+            int taken = Math.min(changes, top.count);
+            top.count -= taken;
+            changes -= taken;
+            if (top.count == 0) {
+                top = top.below;
+            }
+        }
+        page.runs[slot] = top;
+    }
+
+    /** True if writer made the ID's last changes changes (and nobody changed it since). */
+    boolean lastChangedBy(int id, Object writer, int changes) {
+        var page = page(id);
+        var top = page == null ? null : page.runs[IdPages.slot(id)];
+        return top != null && top.writer == writer && top.count >= changes;
+    }
+
+    /** Bumped by every change and undo of the ID (and put back by a redo, see restoreVersion). */
+    long version(int id) {
+        var page = page(id);
+        return page == null ? 0 : page.versions[IdPages.slot(id)];
+    }
+
+    /**
+     * Puts back the version the ID had before an undo, once a redo has restored exactly that
+     * state, so redo entries from undos further back stay usable.
+     */
+    void restoreVersion(int id, long version) {
+        page(id).versions[IdPages.slot(id)] = version;
+    }
+
+    /** Drops the ID's change history, so no earlier change to it can be undone. */
+    void forgetChanges(int id) {
+        var page = page(id);
+        page.runs[IdPages.slot(id)] = null;
+        page.versions[IdPages.slot(id)]++;
+    }
+
+    /** Reserves a fresh ID; its slots stay empty until publish(). */
+    int allocate() {
+        int id = nextId.getAndIncrement();
+        // only the first ID of a page takes IdPages' lock
+        pages.pageFor(id);
+        return id;
+    }
+
+    /**
+     * Fills the ID's slots and makes the name resolvable. Returns false (and
+     * leaves the ID unused) if the name is already taken.
+     */
+    boolean publish(int id, String name, GradeStore grades) {
+        var page = page(id);
+        int slot = IdPages.slot(id);
+        page.names[slot] = name;
+        page.grades[slot] = grades;
+        if (idsByName.putIfAbsent(name, id) != null) {
+            page.names[slot] = null;
+            page.grades[slot] = null;
+            return false;
+        }
+        return true;
+    }
+
+    /** Retires a live ID and returns its grades, or null if it was not live. */
+    GradeStore retire(int id) {
+        var page = page(id);
+        if (page == null) {
+            return null;
+        }
+        int slot = IdPages.slot(id);
+        var grades = page.grades[slot];
+        if (grades == null) {
+            return null;
+        }
+        page.grades[slot] = null;
+        idsByName.remove(page.names[slot], id);
+        return grades;
+    }
+
+    /** Brings a retired ID back; false if its name has been taken in the meantime. */
+    boolean restore(int id, GradeStore grades) {
+        var page = page(id);
+        if (page == null || page.grades[IdPages.slot(id)] != null) {
+            return false;
+        }
+        if (idsByName.putIfAbsent(page.names[IdPages.slot(id)], id) != null) {
+            return false;
+        }
+        page.grades[IdPages.slot(id)] = grades;
+        return true;
+    }
+
+    int size() {
+        return idsByName.size();
+    }
+
+    /** Highest ID handed out so far, plus one. */
+    int idLimit() {
+        return nextId.get();
+    }
+
+    private Page page(int id) {
+        return pages.page(id);
+    }
+}
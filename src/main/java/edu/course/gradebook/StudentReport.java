@@ -0,0 +1,87 @@
+package edu.course.gradebook;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * One student's grades, count, sum, average and letter, taken together from a
+ * single lookup under the student's lock (see Gradebook.report).
+ *
+ * The report is immutable: it holds a snapshot of the grade store, which shares
+ * the store's storage instead of copying it, and its count and sum are those of
+ * that snapshot. The average is the one averageFor gives at that moment, i.e.
+ * weighted by category if categories apply; grades() is a view that boxes each
+ * grade only when it is read.
+ */
+public final class StudentReport {
+    private final int studentId;
+    private final String name;
+    private final GradeStore grades;
+    // NaN when the student has no grades
+    private final double average;
+    // null when the student has no grades
+    private final String letter;
+    private List<Integer> gradeList;
+
+    StudentReport(int studentId, String name, GradeStore grades, double average, String letter) {
+        this.studentId = studentId;
+        this.name = name;
+        this.grades = grades;
+        this.average = average;
+        this.letter = letter;
+    }
+
+    public int studentId() {
+        return studentId;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int count() {
+        return grades.size();
+    }
+
+    public long sum() {
+        return grades.sum();
+    }
+
+    /** The grade at index (0 = oldest), without boxing. */
+    public int grade(int index) {
+        return grades.get(index);
+    }
+
+    public Optional<Double> average() {
+        return Double.isNaN(average) ? Optional.empty() : Optional.of(average);
+    }
+
+    public Optional<String> letter() {
+        return Optional.ofNullable(letter);
+    }
+
+    /** Read-only List over the grades, oldest first; no copy is made. */
+    public List<Integer> grades() {
+        if (gradeList == null) {
+            gradeList = grades.asList();
+        }
+        return gradeList;
+    }
+
+    /** Appends the grades as List.toString() would, e.g. "[90, 85]", without boxing them. */
+    public StringBuilder appendGrades(StringBuilder out) {
+        out.append('[');
+        for (int i = 0, n = grades.size(); i < n; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(grades.get(i));
+        }
+        return out.append(']');
+    }
+
+    @Override
+    public String toString() {
+        return appendGrades(new StringBuilder(name.length() + 4 + 5 * grades.size()).append(name).append(": ")).toString();
+    }
+}
@@ -0,0 +1,254 @@
+package edu.course.gradebook;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The registered GradeWatches, how many students are below each, and the
+ * students ordered by average.
+ *
+ * Watches are kept sorted by threshold. When a student's average moves from a
+ * to b, exactly the watches with a threshold in (min(a, b), max(a, b)] change
+ * sides, so an update is a binary search plus one step per crossing, however
+ * many watches there are. Students below the highest threshold are also kept
+ * in one set ordered by average, so the students below any watch are a prefix
+ * of it: listing them never scans the roster, and memory does not grow with
+ * the number of watches.
+ *
+ * Averages are only tracked while at least one watch exists; Gradebook seeds
+ * them when the first watch is added. Gradebook calls update() with only the
+ * student's lock held, so nothing on that path is book-wide: per-student
+ * averages live in IdPages, the counts are atomic and the ordered set is a
+ * concurrent skip list. Everything else (adding and removing watches,
+ * seeding, recount, below) runs with every stripe held; the watch list is
+ * swapped as a whole, so watches() and belowCount() need no lock.
+ */
+final class ThresholdWatches {
+
+    /** Called for every crossing, with the student's stripe lock held; must be quick. */
+    @FunctionalInterface
+    interface Crossing {
+        void crossed(GradeWatch watch, int id, double average, boolean below);
+    }
+
+    private record Ranked(double average, int id) implements Comparable<Ranked> {
+        @Override
+        public int compareTo(Ranked other) {
+            int byAverage = Double.compare(average, other.average);
+            return byAverage != 0 ? byAverage : Integer.compare(id, other.id);
+        }
+    }
+
+    // the watches sorted by threshold, then by name, and the students below each; replaced as a whole
+    private record Watches(GradeWatch[] watches, double[] thresholds, AtomicIntegerArray counts) {
+        double highest() {
+            return thresholds.length == 0 ? Double.NEGATIVE_INFINITY : thresholds[thresholds.length - 1];
+        }
+
+        int indexOf(String name) {
+            for (int i = 0; i < watches.length; i++) {
+                if (watches[i].name().equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // index of the first threshold > value
+        int firstAbove(double value) {
+            int low = 0;
+            int high = thresholds.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (thresholds[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private volatile Watches current = new Watches(new GradeWatch[0], new double[0], new AtomicIntegerArray(0));
+    // per student ID, the average the watches last saw, NaN for none
+    private final IdPages<double[]> averages = new IdPages<>(() -> {
+        var page = new double[IdPages.PAGE_SIZE];
+        Arrays.fill(page, Double.NaN);
+        return page;
+    });
+    // students with an average below the highest threshold, lowest first
+    private final ConcurrentSkipListSet<Ranked> ranked = new ConcurrentSkipListSet<>();
+    // read first on every change, so books without watches pay one volatile read
+    private volatile boolean active;
+
+    boolean isActive() {
+        return active;
+    }
+
+    /** Records a student's average before the first watch is added; no crossings are reported. */
+    void seed(int id, double average) {
+        averages.pageFor(id)[IdPages.slot(id)] = average;
+    }
+
+    /**
+     * Adds a watch, replacing one with the same name. Students already below it count
+     * toward it, but no crossings are reported for them. Returns the number below.
+     */
+    int add(GradeWatch watch) {
+        var watches = current.watches();
+        var thresholds = current.thresholds();
+        int existing = current.indexOf(watch.name());
+        if (existing >= 0) {
+            watches = without(watches, existing);
+            thresholds = without(thresholds, existing);
+        }
+        int at = 0;
+        while (at < watches.length && (thresholds[at] < watch.threshold()
+                || (thresholds[at] == watch.threshold() && watches[at].name().compareTo(watch.name()) < 0))) {
+            at++;
+        }
+        var grownWatches = new GradeWatch[watches.length + 1];
+        var grownThresholds = new double[watches.length + 1];
+        System.arraycopy(watches, 0, grownWatches, 0, at);
+        System.arraycopy(thresholds, 0, grownThresholds, 0, at);
+        grownWatches[at] = watch;
+        grownThresholds[at] = watch.threshold();
+        System.arraycopy(watches, at, grownWatches, at + 1, watches.length - at);
+        System.arraycopy(thresholds, at, grownThresholds, at + 1, watches.length - at);
+        active = true;
+        recount(grownWatches, grownThresholds);
+        return current.counts().get(at);
+    }
+
+    /** Removes the watch with this name; false if there is none. */
+    boolean remove(String name) {
+        int at = current.indexOf(name);
+        if (at < 0) {
+            return false;
+        }
+        var watches = without(current.watches(), at);
+        if (watches.length == 0) {
+            active = false;
+            averages.clear();
+        }
+        recount(watches, without(current.thresholds(), at));
+        return true;
+    }
+
+    /** Forgets every student's average; Gradebook seeds them again and calls recount(). */
+    void clearStudents() {
+        averages.clear();
+        recount();
+    }
+
+    /** Rebuilds the counts and the ordered set from the averages, e.g. after seeding. */
+    void recount() {
+        recount(current.watches(), current.thresholds());
+    }
+
+    /**
+     * A student's average changed (NaN once they have no grades or are removed); reports
+     * every watch they crossed, in threshold order.
+     */
+    void update(int id, double average, Crossing crossing) {
+        if (!active) {
+            return;
+        }
+        var watches = current;
+        var page = averages.pageFor(id);
+        int slot = IdPages.slot(id);
+        double previous = page[slot];
+        page[slot] = average;
+        double from = Double.isNaN(previous) ? Double.POSITIVE_INFINITY : previous;
+        double to = Double.isNaN(average) ? Double.POSITIVE_INFINITY : average;
+        if (from == to) {
+            return;
+        }
+        double highest = watches.highest();
+        if (from < highest) {
+            ranked.remove(new Ranked(previous, id));
+        }
+        if (to < highest) {
+            ranked.add(new Ranked(average, id));
+        }
+        boolean falling = to < from;
+        double low = Math.min(from, to);
+        double high = Math.max(from, to);
+        var thresholds = watches.thresholds();
+        for (int i = watches.firstAbove(low); i < thresholds.length && thresholds[i] <= high; i++) {
+            watches.counts().getAndAdd(i, falling ? 1 : -1);
+            crossing.crossed(watches.watches()[i], id, average, falling);
+        }
+    }
+
+    List<GradeWatch> watches() {
+        return List.of(current.watches());
+    }
+
+    GradeWatch watch(String name) {
+        var watches = current;
+        int at = watches.indexOf(name);
+        return at < 0 ? null : watches.watches()[at];
+    }
+
+    /** IDs of the students below the named watch, lowest average first; null if no such watch. */
+    int[] below(String name) {
+        var watches = current;
+        int at = watches.indexOf(name);
+        if (at < 0) {
+            return null;
+        }
+        var ids = new int[watches.counts().get(at)];
+        int i = 0;
+        for (var student : ranked.headSet(new Ranked(watches.thresholds()[at], Integer.MIN_VALUE))) {
+            ids[i++] = student.id();
+        }
+        return ids;
+    }
+
+    int belowCount(String name) {
+        var watches = current;
+        int at = watches.indexOf(name);
+        return at < 0 ? 0 : watches.counts().get(at);
+    }
+
+    private void recount(GradeWatch[] watches, double[] thresholds) {
+        var next = new Watches(watches, thresholds, new AtomicIntegerArray(watches.length));
+        var counts = new int[watches.length];
+        ranked.clear();
+        double highest = next.highest();
+        for (int id = 0, limit = averages.idLimit(); id < limit; id += IdPages.PAGE_SIZE) {
+            var page = averages.page(id);
+            for (int slot = 0; page != null && slot < page.length; slot++) {
+                double average = page[slot];
+                if (average < highest) {
+                    ranked.add(new Ranked(average, id + slot));
+                    // below every watch from here on; summed up below
+                    counts[next.firstAbove(average)]++;
+                }
+            }
+        }
+        for (int i = 0, below = 0; i < counts.length; i++) {
+            below += counts[i];
+            next.counts().set(i, below);
+        }
+        current = next;
+    }
+
+    private static GradeWatch[] without(GradeWatch[] watches, int at) {
+        var kept = new GradeWatch[watches.length - 1];
+        System.arraycopy(watches, 0, kept, 0, at);
+        System.arraycopy(watches, at + 1, kept, at, kept.length - at);
+        return kept;
+    }
+
+    private static double[] without(double[] thresholds, int at) {
+        var kept = new double[thresholds.length - 1];
+        System.arraycopy(thresholds, 0, kept, 0, at);
+        System.arraycopy(thresholds, at + 1, kept, at, kept.length - at);
+        return kept;
+    }
+}
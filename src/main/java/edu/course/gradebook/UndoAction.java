@@ -1,6 +1,232 @@
 package edu.course.gradebook;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One entry of the undo (or redo) history.
+ *
+ * undo() reverts the change and returns the action that reverts it again, so
+ * the same types serve both stacks: UNDO pushes what undo() returns onto the
+ * redo stack, and REDO applies it and pushes the result back as undoable.
+ */
 @FunctionalInterface
 public interface UndoAction {
-    void undo(Gradebook gradebook);
+    /** Reverts the change; returns the action that re-applies it, or null if that is not possible. */
+    UndoAction undo(Gradebook gradebook);
+
+    /** Rough heap cost of keeping this entry in the undo history. */
+    default long retainedBytes() {
+        return 16;
+    }
+
+    /**
+     * Adds, per student ID, how many of the student's most recent changes this action
+     * reverts: one per grade, added student, removal or restore.
+     */
+    default void countChanges(Map<Integer, Integer> changes) {
+    }
+
+    /** Undoes an addGrade by dropping the student's most recent grade. */
+    record RemoveLastGrade(int studentId) implements UndoAction {
+        @Override
+        public UndoAction undo(Gradebook gradebook) {
+            return new RemoveLastGrades(studentId, 1).undo(gradebook);
+        }
+
+        @Override
+        public void countChanges(Map<Integer, Integer> changes) {
+            changes.merge(studentId, 1, Integer::sum);
+        }
+    }
+
+    /** Drops a student's count most recent grades in one step; what a group of addGrades compacts to. */
+    record RemoveLastGrades(int studentId, int count) implements UndoAction {
+        @Override
+        public UndoAction undo(Gradebook gradebook) {
+            var categories = gradebook.lastCategoryTags(studentId, count);
+            var times = gradebook.lastGradeTimes(studentId, count);
+            return new AddGrades(studentId, gradebook.applyRemoveLastGrades(studentId, count), categories, times);
+        }
+
+        @Override
+        public void countChanges(Map<Integer, Integer> changes) {
+            changes.merge(studentId, count, Integer::sum);
+        }
+    }
+
+    /**
+     * Appends grades that an undo took away (redo of addGrade), back in their categories if they
+     * had any and with the times they were first added at.
+     */
+    record AddGrades(int studentId, byte[] grades, byte[] categories, long[] times) implements UndoAction {
+        @Override
+        public UndoAction undo(Gradebook gradebook) {
+            gradebook.applyAddGrades(studentId, grades, categories, times, grades.length);
+            return new RemoveLastGrades(studentId, grades.length);
+        }
+
+        @Override
+        public long retainedBytes() {
+            return 48 + 9L * grades.length + (categories == null ? 0 : 16 + categories.length);
+        }
+
+        @Override
+        public void countChanges(Map<Integer, Integer> changes) {
+            changes.merge(studentId, grades.length, Integer::sum);
+        }
+    }
+
+    /** Undoes an addStudent by removing the student (with no grades, by the time this runs) again. */
+    record RetireStudent(int studentId) implements UndoAction {
+        @Override
+        public UndoAction undo(Gradebook gradebook) {
+            var times = gradebook.gradeTimes(studentId);
+            var removed = gradebook.applyRemoveStudent(studentId);
+            return removed == null ? null : new RestoreStudent(studentId, removed, times);
+        }
+
+        @Override
+        public void countChanges(Map<Integer, Integer> changes) {
+            changes.merge(studentId, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Undoes a removeStudent by putting the removed grades back, with their times (null if they
+     * had none); it pins them until evicted.
+     */
+    record RestoreStudent(int studentId, GradeStore grades, long[] times) implements UndoAction {
+        @Override
+        public UndoAction undo(Gradebook gradebook) {
+            return gradebook.applyRestoreStudent(studentId, grades, times) ? new RetireStudent(studentId) : null;
+        }
+
+        @Override
+        public long retainedBytes() {
+            return 64 + grades.size() + (times == null ? 0 : 16 + 8L * times.length);
+        }
+
+        @Override
+        public void countChanges(Map<Integer, Integer> changes) {
+            changes.merge(studentId, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Undoes a bulk import as one unit: drops the grades appended to students that
+     * already existed, then removes the students the import created.
+     */
+    record UndoImport(int[] addedIds, int[] extendedIds, int[] extendedCounts) implements UndoAction {
+        @Override
+        public UndoAction undo(Gradebook gradebook) {
+            var builder = new Group.Builder();
+            for (int i = extendedIds.length - 1; i >= 0; i--) {
+                builder.add(new RemoveLastGrades(extendedIds[i], extendedCounts[i]).undo(gradebook));
+            }
+            for (int i = addedIds.length - 1; i >= 0; i--) {
+                builder.add(new RetireStudent(addedIds[i]).undo(gradebook));
+            }
+            return builder.build();
+        }
+
+        @Override
+        public long retainedBytes() {
+            return 64 + 4L * (addedIds.length + extendedIds.length + extendedCounts.length);
+        }
+
+        @Override
+        public void countChanges(Map<Integer, Integer> changes) {
+            for (int id : addedIds) {
+                changes.merge(id, 1, Integer::sum);
+            }
+            for (int i = 0; i < extendedIds.length; i++) {
+                changes.merge(extendedIds[i], extendedCounts[i], Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Several changes undone as one step: a BEGIN/COMMIT transaction, UNDO n or
+     * UNDO TO a savepoint. Actions are in the order the changes were made and
+     * are undone last to first.
+     */
+    record Group(UndoAction[] actions) implements UndoAction {
+        @Override
+        public UndoAction undo(Gradebook gradebook) {
+            var builder = new Builder();
+            for (int i = actions.length - 1; i >= 0; i--) {
+                builder.add(actions[i].undo(gradebook));
+            }
+            // the undos are themselves changes made newest first, so their inverses, applied last
+            // to first, redo the oldest change first
+            return builder.build();
+        }
+
+        @Override
+        public long retainedBytes() {
+            long bytes = 32 + 8L * actions.length;
+            for (var action : actions) {
+                bytes += action.retainedBytes();
+            }
+            return bytes;
+        }
+
+        @Override
+        public void countChanges(Map<Integer, Integer> changes) {
+            for (var action : actions) {
+                action.countChanges(changes);
+            }
+        }
+
+        /**
+         * Collects actions in the order the changes were made. Consecutive addGrades
+         * are compacted into one RemoveLastGrades per student, which is safe because
+         * grades of different students do not depend on each other's order, so a
+         * transaction of thousands of grades undoes in one bulk step per student.
+         */
+        static final class Builder {
+            private final List<UndoAction> actions = new ArrayList<>();
+            // the current run of compacted grade removals, studentId -> index into actions
+            private final HashMap<Integer, Integer> run = new HashMap<>();
+            private long retainedBytes;
+
+            void add(UndoAction action) {
+                if (action == null) {
+                    return;
+                }
+                if (action instanceof RemoveLastGrade(int studentId)) {
+                    action = new RemoveLastGrades(studentId, 1);
+                }
+                if (action instanceof RemoveLastGrades(int studentId, int count)) {
+                    var at = run.get(studentId);
+                    if (at != null) {
+                        var merged = (RemoveLastGrades) actions.get(at);
+                        actions.set(at, new RemoveLastGrades(studentId, merged.count() + count));
+                        return;
+                    }
+                    run.put(studentId, actions.size());
+                } else {
+                    run.clear();
+                }
+                actions.add(action);
+                retainedBytes += action.retainedBytes();
+            }
+
+            long retainedBytes() {
+                return retainedBytes;
+            }
+
+            /** The single action, a Group, or null if nothing was added. */
+            UndoAction build() {
+                return switch (actions.size()) {
+                    case 0 -> null;
+                    case 1 -> actions.get(0);
+                    default -> new Group(actions.toArray(UndoAction[]::new));
+                };
+            }
+        }
+    }
 }
@@ -0,0 +1,229 @@
+package edu.course.gradebook;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Undo and redo stacks bounded by depth and by (estimated) retained bytes.
+ *
+ * When either limit is exceeded the oldest entries are dropped, so a long
+ * session keeps only its most recent history instead of growing forever.
+ * Methods are synchronized so a ConcurrentGradebook can push from several
+ * threads.
+ *
+ * Between begin() and commit() pushed actions are collected into one group
+ * that becomes a single entry on commit. Every entry gets a sequence number,
+ * and a savepoint remembers the number of the entry on top when it was set;
+ * undoing back to it means undoing every entry numbered above it. Undoing an
+ * entry at or below a savepoint forgets the savepoint, since that state is
+ * gone. Any new change clears the redo stack.
+ */
+public final class UndoHistory {
+    public static final int DEFAULT_MAX_DEPTH = 10_000;
+    public static final long DEFAULT_MAX_BYTES = 16L << 20;
+
+    private record Entry(UndoAction action, long sequence) {}
+
+    private final Deque<Entry> undoStack = new ArrayDeque<>();
+    private final Deque<UndoAction> redoStack = new ArrayDeque<>();
+    private final Map<String, Long> savepoints = new HashMap<>();
+    private final int maxDepth;
+    private final long maxBytes;
+    private long retainedBytes;
+    private long evicted;
+    private long lastSequence;
+    // sequence of the newest entry dropped by the limits; nothing at or below it can be undone
+    private long evictedThrough;
+    // open BEGIN ... COMMIT group, and how many BEGINs deep it is
+    private UndoAction.Group.Builder group;
+    private int groupDepth;
+
+    public UndoHistory() {
+        this(DEFAULT_MAX_DEPTH, DEFAULT_MAX_BYTES);
+    }
+
+    public UndoHistory(int maxDepth, long maxBytes) {
+        if (maxDepth < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Undo limits must be positive");
+        }
+        this.maxDepth = maxDepth;
+        this.maxBytes = maxBytes;
+    }
+
+    /** Records a new change: joins the open group if there is one, and clears the redo stack. */
+    public synchronized void push(UndoAction action) {
+        clearRedo();
+        if (group != null) {
+            retainedBytes -= group.retainedBytes();
+            group.add(action);
+            retainedBytes += group.retainedBytes();
+            return;
+        }
+        pushEntry(action);
+    }
+
+    // a redone change goes back on the undo stack without clearing what else can be redone
+    synchronized void pushRedone(UndoAction action) {
+        pushEntry(action);
+    }
+
+    /** Removes and returns the most recent action, or null if there is none. */
+    public synchronized UndoAction pop() {
+        var entry = undoStack.poll();
+        if (entry == null) {
+            return null;
+        }
+        retainedBytes -= entry.action().retainedBytes();
+        savepoints.values().removeIf(mark -> mark >= entry.sequence());
+        return entry.action();
+    }
+
+    // the next steps actions pop() would return, newest first, without removing them
+    synchronized List<UndoAction> peek(int steps) {
+        var actions = new ArrayList<UndoAction>(Math.min(steps, undoStack.size()));
+        for (var entry : undoStack) {
+            if (actions.size() == steps) {
+                break;
+            }
+            actions.add(entry.action());
+        }
+        return actions;
+    }
+
+    synchronized void pushRedo(UndoAction action) {
+        redoStack.push(action);
+        retainedBytes += action.retainedBytes();
+        // redo entries are the first to go, then the oldest undo entries
+        while (redoStack.size() > maxDepth || (retainedBytes > maxBytes && redoStack.size() > 1)) {
+            retainedBytes -= redoStack.removeLast().retainedBytes();
+            evicted++;
+        }
+    }
+
+    synchronized UndoAction peekRedo() {
+        return redoStack.peek();
+    }
+
+    synchronized UndoAction popRedo() {
+        var action = redoStack.poll();
+        if (action != null) {
+            retainedBytes -= action.retainedBytes();
+        }
+        return action;
+    }
+
+    /** Starts (or nests) a group; everything pushed until the matching commit() undoes as one step. */
+    public synchronized void begin() {
+        if (groupDepth++ == 0) {
+            group = new UndoAction.Group.Builder();
+        }
+    }
+
+    /** Closes the innermost group; false if none is open. The outermost commit pushes the group. */
+    public synchronized boolean commit() {
+        if (groupDepth == 0) {
+            return false;
+        }
+        if (--groupDepth == 0) {
+            var built = group;
+            group = null;
+            retainedBytes -= built.retainedBytes();
+            var action = built.build();
+            if (action != null) {
+                pushEntry(action);
+            }
+        }
+        return true;
+    }
+
+    public synchronized boolean inGroup() {
+        return groupDepth > 0;
+    }
+
+    /** Marks the current state under name (replacing an older mark); false inside a group. */
+    public synchronized boolean savepoint(String name) {
+        if (groupDepth > 0) {
+            return false;
+        }
+        var top = undoStack.peek();
+        savepoints.put(name, top == null ? evictedThrough : top.sequence());
+        return true;
+    }
+
+    /** How many entries to undo to get back to the savepoint, or -1 if it is unknown or out of reach. */
+    public synchronized int stepsTo(String name) {
+        var mark = savepoints.get(name);
+        if (mark == null || mark < evictedThrough) {
+            return -1;
+        }
+        int steps = 0;
+        for (var entry : undoStack) {
+            if (entry.sequence() <= mark) {
+                break;
+            }
+            steps++;
+        }
+        return steps;
+    }
+
+    /** Drops every entry, savepoint and open group, e.g. when the whole book is replaced. */
+    public synchronized void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        savepoints.clear();
+        group = null;
+        groupDepth = 0;
+        retainedBytes = 0;
+    }
+
+    public synchronized int depth() {
+        return undoStack.size();
+    }
+
+    public synchronized int redoDepth() {
+        return redoStack.size();
+    }
+
+    /** Estimated heap held by the undo and redo entries (and any open group). */
+    public synchronized long retainedBytes() {
+        return retainedBytes;
+    }
+
+    /** How many old entries were dropped to stay within the limits. */
+    public synchronized long evicted() {
+        return evicted;
+    }
+
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    private void pushEntry(UndoAction action) {
+        undoStack.push(new Entry(action, ++lastSequence));
+        retainedBytes += action.retainedBytes();
+        while (!redoStack.isEmpty() && retainedBytes > maxBytes) {
+            retainedBytes -= redoStack.removeLast().retainedBytes();
+            evicted++;
+        }
+        while (undoStack.size() > maxDepth || (retainedBytes > maxBytes && undoStack.size() > 1)) {
+            var oldest = undoStack.removeLast();
+            retainedBytes -= oldest.action().retainedBytes();
+            evictedThrough = oldest.sequence();
+            evicted++;
+        }
+    }
+
+    private void clearRedo() {
+        while (!redoStack.isEmpty()) {
+            retainedBytes -= redoStack.pop().retainedBytes();
+        }
+    }
+}
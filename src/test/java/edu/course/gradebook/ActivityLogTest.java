@@ -0,0 +1,105 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ActivityLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recent_returnsNewestFirstInOriginalWording() {
+        var log = new ActivityLog(8);
+        log.resolveNamesWith(id -> id == 7 ? "Alice" : "?");
+        log.record(ActivityLog.Operation.STUDENT_ADDED, 7, 0);
+        log.record(ActivityLog.Operation.GRADE_ADDED, 7, 90);
+        log.record(ActivityLog.Operation.STUDENT_REMOVED, 7, 0);
+        log.record(ActivityLog.Operation.UNDO, -1, 0);
+
+        assertEquals(List.of("Undo performed", "Removed student: Alice", "Name:Alice ,added Grade:90"), log.recent(3));
+        assertEquals(4, log.recent(100).size());
+        assertTrue(log.recent(0).isEmpty());
+    }
+
+    @Test
+    void ring_keepsOnlyTheNewestCapacityRecords() {
+        var log = new ActivityLog(3);
+        for (int grade = 0; grade < 10; grade++) {
+            log.record(ActivityLog.Operation.GRADE_ADDED, 0, grade);
+        }
+
+        assertEquals(3, log.size());
+        var entries = log.recentEntries(10);
+        assertEquals(List.of(9, 8, 7), entries.stream().map(ActivityLog.Entry::grade).toList());
+        assertTrue(entries.get(0).timestampMillis() > 0);
+    }
+
+    @Test
+    void spillFile_receivesOverwrittenRecordsThenTheRestOnClose() throws Exception {
+        var spill = dir.resolve("activity.log");
+        var log = new ActivityLog(2, spill);
+        log.resolveNamesWith(id -> "Bob");
+        for (int grade = 0; grade < 5; grade++) {
+            log.record(ActivityLog.Operation.GRADE_ADDED, 3, grade);
+        }
+        log.flush();
+        assertEquals(3, Files.readAllLines(spill).size());
+
+        log.close();
+        var lines = Files.readAllLines(spill);
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0).endsWith("\tName:Bob ,added Grade:0"));
+        assertTrue(lines.get(4).endsWith("\tName:Bob ,added Grade:4"));
+    }
+
+    @Test
+    void spillFailure_doesNotFailTheChange_butFlushAndCloseReportIt() {
+        // every write to /dev/full fails with "no space left on device"
+        var full = Path.of("/dev/full");
+        assumeTrue(Files.isWritable(full));
+        var log = new ActivityLog(1, full);
+        var gradebook = new Gradebook(ByteGradeStore::new, log);
+        gradebook.addStudent("Alice");
+        // enough spilled lines to overflow the writer's buffer
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(gradebook.addGrade("Alice", 90));
+        }
+        assertEquals(1_000, gradebook.findStudentGrades("Alice").orElseThrow().size());
+
+        assertThrows(IOException.class, log::flush);
+        assertThrows(IOException.class, log::close);
+    }
+
+    @Test
+    void gradebook_logStaysBoundedOverLongSession() {
+        var gradebook = new Gradebook(ByteGradeStore::new, new ActivityLog(16));
+        gradebook.addStudent("Alice");
+        for (int i = 0; i < 10_000; i++) {
+            gradebook.addGrade("Alice", i % 101);
+        }
+
+        assertEquals(16, gradebook.activityLog().size());
+        assertEquals("Name:Alice ,added Grade:" + (9_999 % 101), gradebook.recentLog(1).get(0));
+    }
+
+    @Test
+    void gradebook_logResolvesRemovedStudentsByTheirId() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.removeStudent("Alice");
+
+        var entry = gradebook.activityLog().recentEntries(1).get(0);
+        assertEquals(ActivityLog.Operation.STUDENT_REMOVED, entry.operation());
+        assertEquals("Alice", entry.student());
+        assertEquals(0, entry.studentId());
+    }
+}
@@ -0,0 +1,242 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private static Gradebook sample() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addStudent("Bob");
+        gradebook.addStudent("Zoë");
+        gradebook.addStudent("Gone");
+        gradebook.addGrade("Alice", 90);
+        gradebook.addGrade("Alice", 85);
+        gradebook.addGrade("Bob", 59);
+        gradebook.addGrade("Gone", 100);
+        gradebook.removeStudent("Gone");
+        return gradebook;
+    }
+
+    @Test
+    void roundTrip_restoresGradesAndEveryDerivedIndex() throws IOException {
+        var original = sample();
+        var file = dir.resolve("book.snap");
+        assertEquals(3, original.save(file));
+
+        var loaded = new Gradebook();
+        loaded.addStudent("Replaced");
+        loaded.addGrade("Replaced", 10);
+        assertEquals(3, loaded.load(file));
+
+        assertEquals(3, loaded.studentCount());
+        assertTrue(loaded.findStudentGrades("Replaced").isEmpty());
+        assertTrue(loaded.findStudentGrades("Gone").isEmpty());
+        assertEquals(Optional.of(List.of(90, 85)), loaded.findStudentGrades("Alice"));
+        assertEquals(Optional.of(List.of()), loaded.findStudentGrades("Zoë"));
+        assertEquals(original.classAverage(), loaded.classAverage());
+        assertEquals(original.rankOf("Bob"), loaded.rankOf("Bob"));
+        assertEquals(original.letterDistribution(), loaded.letterDistribution());
+        assertEquals(Optional.of("B"), loaded.letterGradeFor("Alice"));
+        assertArrayEquals(original.gradeHistogram(), loaded.gradeHistogram());
+        assertEquals(original.topStudents(5), loaded.topStudents(5));
+        assertEquals("Loaded snapshot with 3 students", loaded.recentLog(1).get(0));
+        // the load itself cannot be undone, and the history from before it is gone
+        assertFalse(loaded.undo());
+    }
+
+    @Test
+    void categories_areSavedAndReplaceTheLoadingBooks() throws IOException {
+        var original = sample();
+        original.defineCategory(new GradeCategory("homework", 25, 1));
+        original.defineCategory(new GradeCategory("exams", 75));
+        original.addGrade("Bob", "homework", 40);
+        original.addGrade("Bob", "homework", 100);
+        original.addGrade("Bob", "exams", 70);
+        double bob = 0.25 * 100 + 0.75 * 70;
+        assertEquals(bob, original.averageFor("Bob").orElseThrow(), 1e-9);
+        var file = dir.resolve("book.snap");
+        original.save(file);
+        BinarySnapshot.verify(file);
+
+        var loaded = new Gradebook();
+        loaded.defineCategory(new GradeCategory("labs", 50));
+        loaded.load(file);
+        assertEquals(original.categories(), loaded.categories());
+        assertEquals(bob, loaded.report("Bob").orElseThrow().average().orElseThrow(), 1e-9);
+        assertEquals(Optional.of(87.5), loaded.averageFor("Alice"));
+        assertEquals(original.letterDistribution(), loaded.letterDistribution());
+        assertEquals(original.topStudents(3), loaded.topStudents(3));
+        // undoing after the load takes the right category's grade away
+        assertTrue(loaded.addGrade("Bob", "exams", 100));
+        assertTrue(loaded.undo());
+        assertEquals(bob, loaded.averageFor("Bob").orElseThrow(), 1e-9);
+    }
+
+    @Test
+    void gradeTimes_areSavedSoWindowsAnswerTheSame() throws IOException {
+        long march = 1_772_323_200_000L; // 2026-03-01T00:00Z
+        var original = new Gradebook();
+        original.addStudent("Alice");
+        original.addStudent("Bob");
+        original.addGrade("Alice", 70, march);
+        original.addGrade("Alice", 90, march + 1_000);
+        // untimed grades stay untimed
+        original.applyAddGrade(original.studentId("Bob").getAsInt(), 50);
+        var file = dir.resolve("book.snap");
+        original.save(file);
+        BinarySnapshot.verify(file);
+
+        var loaded = new Gradebook();
+        loaded.load(file);
+        assertEquals(Optional.of(90.0), loaded.averageBetween("Alice", march + 1, march + 2_000));
+        assertEquals(Optional.of(80.0), loaded.averageBetween("Alice", march, march + 2_000));
+        assertEquals(Optional.empty(), loaded.averageBetween("Bob", march, Long.MAX_VALUE));
+        assertEquals(original.trend("Alice", 2), loaded.trend("Alice", 2));
+        // a grade dated before Alice's last one is still moved up to it after the load
+        assertTrue(loaded.addGrade("Alice", 10, march));
+        assertEquals(Optional.of(50.0), loaded.averageBetween("Alice", march + 1, march + 2_000));
+    }
+
+    @Test
+    void corruptGradeTime_failsOnlyThatStudentsFirstTimedRead() throws IOException {
+        long march = 1_772_323_200_000L;
+        var original = new Gradebook();
+        original.addStudent("Alice");
+        original.addStudent("Bob");
+        original.addGrade("Alice", 70, march);
+        original.addGrade("Bob", 80, march);
+        var file = dir.resolve("book.snap");
+        original.save(file);
+        long size;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+        }
+        // Bob's time is the last 8 bytes; times are not read on load, so it still loads
+        flipByte(file, size - 1);
+
+        var loaded = new Gradebook();
+        loaded.load(file);
+        assertEquals(Optional.of(70.0), loaded.averageBetween("Alice", march, Long.MAX_VALUE));
+        assertEquals(Optional.of(80.0), loaded.averageFor("Bob"));
+        var read = assertThrows(UncheckedIOException.class, () -> loaded.averageBetween("Bob", march, Long.MAX_VALUE));
+        assertTrue(read.getCause().getMessage().contains("times of Bob"), read.getCause().getMessage());
+    }
+
+    @Test
+    void mutationsAfterLoad_copyTheStudentOffTheMapping() throws IOException {
+        var file = dir.resolve("book.snap");
+        sample().save(file);
+        var loaded = new Gradebook();
+        loaded.load(file);
+
+        assertTrue(loaded.addGrade("Alice", 70));
+        assertEquals(Optional.of(List.of(90, 85, 70)), loaded.findStudentGrades("Alice"));
+        assertEquals(Optional.of(81.66666666666667), loaded.averageFor("Alice"));
+        assertTrue(loaded.undo());
+        assertEquals(Optional.of(List.of(90, 85)), loaded.findStudentGrades("Alice"));
+
+        // saving over the file that is still mapped replaces it instead of truncating it
+        assertTrue(loaded.addGrade("Bob", 100));
+        loaded.save(file);
+        var reloaded = new Gradebook();
+        reloaded.load(file);
+        assertEquals(Optional.of(List.of(59, 100)), reloaded.findStudentGrades("Bob"));
+        assertEquals(Optional.of(List.of(90, 85)), reloaded.findStudentGrades("Alice"));
+    }
+
+    @Test
+    void largeBook_roundTripsAndVerifies() throws IOException {
+        var original = new Gradebook();
+        var random = new Random(15);
+        for (int s = 0; s < 3_000; s++) {
+            original.addStudent("Student" + s);
+            for (int g = random.nextInt(12); g > 0; g--) {
+                original.addGrade(s, random.nextInt(101));
+            }
+        }
+        var file = dir.resolve("large.snap");
+        original.save(file);
+        BinarySnapshot.verify(file);
+
+        var loaded = new Gradebook();
+        loaded.load(file);
+        for (int s = 0; s < 3_000; s += 97) {
+            assertEquals(original.findStudentGrades("Student" + s), loaded.findStudentGrades("Student" + s));
+        }
+        assertEquals(original.median(), loaded.median());
+        assertEquals(original.percentile(90), loaded.percentile(90));
+    }
+
+    @Test
+    void corruptHeaderOrIndex_isRejectedBeforeTheBookChanges() throws IOException {
+        var file = dir.resolve("book.snap");
+        sample().save(file);
+        var gradebook = sample();
+
+        flipByte(file, 20);
+        var header = assertThrows(IOException.class, () -> gradebook.load(file));
+        assertTrue(header.getMessage().contains("header checksum"), header.getMessage());
+        flipByte(file, 20);
+
+        flipByte(file, BinarySnapshot.HEADER_BYTES + 5);
+        var index = assertThrows(IOException.class, () -> gradebook.load(file));
+        assertTrue(index.getMessage().contains("index checksum"), index.getMessage());
+
+        flipByte(file, 0);
+        assertThrows(IOException.class, () -> gradebook.load(file));
+
+        assertEquals(3, gradebook.studentCount());
+        assertEquals(Optional.of(List.of(90, 85)), gradebook.findStudentGrades("Alice"));
+    }
+
+    @Test
+    void corruptGradeByte_failsVerifyAndTheFirstRead() throws IOException {
+        var file = dir.resolve("book.snap");
+        sample().save(file);
+        long size;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+        }
+        // Bob's 59 is the last grade; the times index (8 bytes for each of the 3 students), a crc
+        // and the times (8 bytes for each of the 3 grades) follow
+        flipByte(file, size - 3 * 8 - 4 - 3 * 8 - 1);
+
+        var failure = assertThrows(IOException.class, () -> BinarySnapshot.verify(file));
+        assertTrue(failure.getMessage().contains("grades checksum"), failure.getMessage());
+
+        var loaded = new Gradebook();
+        loaded.load(file);
+        // sums and counts come from the index, so aggregates still work without the bytes
+        assertEquals(Optional.of(59.0), loaded.averageFor("Bob"));
+        assertEquals(Optional.of(List.of(90, 85)), loaded.findStudentGrades("Alice"));
+        var read = assertThrows(UncheckedIOException.class, () -> loaded.findStudentGrades("Bob").orElseThrow().get(0));
+        assertTrue(read.getCause().getMessage().contains("Bob"), read.getCause().getMessage());
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            one.put(0, (byte) (one.get(0) ^ 0x5A));
+            one.rewind();
+            channel.write(one, position);
+        }
+    }
+}
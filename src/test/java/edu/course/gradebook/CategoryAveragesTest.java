@@ -0,0 +1,204 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryAveragesTest {
+
+    private static final GradeCategory[] POLICY = {
+            new GradeCategory("homework", 30, 2),
+            new GradeCategory("exams", 70),
+            new GradeCategory("extra", 0)
+    };
+
+    @Test
+    void weightedAverage_dropsLowestAndFeedsLettersAndReports() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 40);
+        // no categories yet: plain mean
+        assertEquals(Optional.of(40.0), gradebook.averageFor("Alice"));
+        assertFalse(gradebook.addGrade("Alice", "homework", 90));
+
+        assertTrue(gradebook.defineCategory(new GradeCategory("homework", 30, 1)));
+        assertTrue(gradebook.defineCategory(new GradeCategory("exams", 70)));
+        gradebook.addGrade("Alice", "homework", 50);
+        gradebook.addGrade("Alice", "homework", 90);
+        gradebook.addGrade("Alice", "homework", 100);
+        // homework drops the 50: 95; the uncategorized 40 does not count once weighted grades exist
+        assertEquals(Optional.of(95.0), gradebook.averageFor("Alice"));
+        assertEquals(Optional.of("A"), gradebook.letterGradeFor("Alice"));
+
+        gradebook.addGrade("Alice", "exams", 80);
+        // 0.3 * 95 + 0.7 * 80
+        assertEquals(84.5, gradebook.averageFor("Alice").get(), 1e-9);
+        var report = gradebook.report("Alice").get();
+        assertEquals(84.5, report.average().get(), 1e-9);
+        assertEquals(Optional.of("B"), report.letter());
+        assertEquals(1L, gradebook.letterDistribution().get("B"));
+        // the plain aggregates are unchanged
+        assertEquals(Optional.of(72.0), gradebook.classAverage());
+
+        // a new drop rule applies to the grades already there
+        assertTrue(gradebook.defineCategory(new GradeCategory("homework", 30, 0)));
+        assertEquals(0.3 * 80 + 0.7 * 80, gradebook.averageFor("Alice").get(), 1e-9);
+        assertEquals(List.of("homework", "exams"), gradebook.categories().stream().map(GradeCategory::name).toList());
+    }
+
+    @Test
+    void ranking_usesTheSameWeightedAverageAsReports() {
+        var gradebook = new Gradebook();
+        gradebook.defineCategory(new GradeCategory("homework", 30));
+        gradebook.defineCategory(new GradeCategory("exams", 70));
+        gradebook.addStudent("Alice");
+        gradebook.addStudent("Bob");
+        gradebook.addGrade("Alice", "homework", 0);
+        gradebook.addGrade("Alice", "exams", 100);
+        gradebook.addGrade("Bob", 60);
+
+        // plain means would put Bob (60) ahead of Alice (50)
+        assertEquals(Optional.of(70.0), gradebook.averageFor("Alice"));
+        assertEquals(OptionalInt.of(1), gradebook.rankOf("Alice"));
+        assertEquals(OptionalInt.of(2), gradebook.rankOf("Bob"));
+        assertEquals(List.of(new RankedStudent(1, "Alice", 70.0), new RankedStudent(2, "Bob", 60.0)),
+                gradebook.topStudents(2));
+        assertEquals(Optional.of(65.0), gradebook.median());
+
+        // changing a weight re-ranks everyone
+        gradebook.defineCategory(new GradeCategory("exams", 10));
+        assertEquals(25.0, gradebook.averageFor("Alice").get(), 1e-9);
+        assertEquals(OptionalInt.of(2), gradebook.rankOf("Alice"));
+        assertEquals(OptionalInt.of(1), gradebook.rankOf("Bob"));
+        // undoing Bob's only grade unranks him
+        assertTrue(gradebook.undo());
+        assertEquals(OptionalInt.empty(), gradebook.rankOf("Bob"));
+        assertEquals(OptionalInt.of(1), gradebook.rankOf("Alice"));
+        assertEquals(25.0, gradebook.percentile(100).get(), 1e-9);
+    }
+
+    @Test
+    void undoRedoAndRemoval_keepTheAverageEqualToARecomputation() {
+        var gradebook = new Gradebook();
+        for (var category : POLICY) {
+            gradebook.defineCategory(category);
+        }
+        gradebook.addStudent("Alice");
+        // what the book should hold: the grades in order with their category (-1 for none),
+        // how many grades each undo entry covers (a redone batch is one entry), and the redo batches
+        var grades = new ArrayList<int[]>();
+        var entries = new ArrayList<Integer>();
+        var redo = new ArrayList<List<int[]>>();
+        var random = new Random(22);
+        for (int step = 0; step < 3_000; step++) {
+            int roll = random.nextInt(10);
+            if (roll < 6) {
+                int grade = random.nextInt(101);
+                int category = random.nextInt(POLICY.length + 1) - 1;
+                assertTrue(category < 0 ? gradebook.addGrade("Alice", grade)
+                        : gradebook.addGrade("Alice", POLICY[category].name(), grade));
+                grades.add(new int[] {grade, category});
+                entries.add(1);
+                redo.clear();
+            } else if (roll < 8) {
+                // never as far back as ADD_STUDENT
+                int undone = gradebook.undo(Math.min(1 + random.nextInt(3), entries.size()));
+                int count = 0;
+                for (int i = 0; i < undone; i++) {
+                    count += entries.remove(entries.size() - 1);
+                }
+                var taken = grades.subList(grades.size() - count, grades.size());
+                if (undone > 0) {
+                    redo.add(new ArrayList<>(taken));
+                }
+                taken.clear();
+            } else if (!redo.isEmpty()) {
+                assertTrue(gradebook.redo());
+                var batch = redo.remove(redo.size() - 1);
+                grades.addAll(batch);
+                entries.add(batch.size());
+            }
+            var expected = recompute(grades);
+            assertEquals(expected, gradebook.averageFor("Alice").map(a -> Math.round(a * 1e9) / 1e9), "step " + step);
+        }
+
+        // a removed and restored student keeps their categories
+        var before = gradebook.averageFor("Alice");
+        gradebook.removeStudent("Alice");
+        assertTrue(gradebook.undo());
+        assertEquals(before, gradebook.averageFor("Alice"));
+    }
+
+    // the weighted average straight from the definition
+    private static Optional<Double> recompute(List<int[]> grades) {
+        if (grades.isEmpty()) {
+            return Optional.empty();
+        }
+        double total = 0;
+        double weights = 0;
+        for (int c = 0; c < POLICY.length; c++) {
+            var scores = new ArrayList<Integer>();
+            for (var grade : grades) {
+                if (grade[1] == c) {
+                    scores.add(grade[0]);
+                }
+            }
+            if (scores.isEmpty() || POLICY[c].weight() == 0) {
+                continue;
+            }
+            scores.sort(null);
+            var kept = scores.subList(Math.min(POLICY[c].dropLowest(), scores.size() - 1), scores.size());
+            total += POLICY[c].weight() * kept.stream().mapToInt(Integer::intValue).average().orElseThrow();
+            weights += POLICY[c].weight();
+        }
+        double average = weights > 0 ? total / weights : grades.stream().mapToInt(g -> g[0]).average().orElseThrow();
+        return Optional.of(Math.round(average * 1e9) / 1e9);
+    }
+
+    @Test
+    void commands_defineCategoriesAndAddGradesToThem() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var gradebook = new Gradebook();
+        var app = new Main(gradebook, new PrintStream(bytes, false, StandardCharsets.UTF_8));
+        var summary = app.runBatch(new BufferedReader(new StringReader("""
+                CATEGORY
+                CATEGORY homework 30 1
+                CATEGORY exams 70
+                CATEGORY quizzes x
+                ADD_STUDENT Alice
+                ADD_GRADE Alice 60 homework
+                ADD_GRADE Alice 100 homework
+                ADD_GRADE Alice 70 exams
+                ADD_GRADE Alice 70 labs
+                ADD_GRADE Alice 7x exams
+                REPORT Alice
+                CATEGORY
+                """)));
+
+        var output = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("No categories defined; averages are plain means"), output);
+        assertTrue(output.contains("Category homework: weight 30, drops lowest 1"), output);
+        assertTrue(output.contains("Added grade 100 for Alice (homework)"), output);
+        assertTrue(output.contains("Unknown category: labs"), output);
+        assertTrue(output.contains("Invalid grade: 7x"), output);
+        assertTrue(output.contains("  Grades: [60, 100, 70]"), output);
+        // 0.3 * 100 + 0.7 * 70
+        assertTrue(output.contains("  Average: 79.00"), output);
+        assertTrue(output.contains("  Letter Grade: C"), output);
+        assertTrue(output.contains("  exams: weight 70"), output);
+        // CATEGORY quizzes x, labs and 7x
+        assertEquals(3, summary.errors());
+    }
+}
@@ -0,0 +1,62 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandLineTest {
+
+    private final CommandLine input = new CommandLine();
+
+    @Test
+    void parse_matchesKeywordCaseInsensitively() {
+        assertEquals(Command.ADD_GRADE, Commands.parse("add_Grade Alice 90"));
+        assertEquals(Command.EXIT, Commands.parse("   exit   "));
+        assertEquals(Command.UNKNOWN, Commands.parse("ADD_GRADES Alice 90"));
+        assertEquals(Command.UNKNOWN, Commands.parse("ADD"));
+        assertEquals(Command.UNKNOWN, Commands.parse(""));
+        assertEquals(Command.UNKNOWN, Commands.parse(" \t "));
+        assertEquals(Command.UNKNOWN, Commands.parse(null));
+    }
+
+    @Test
+    void argument_isRestOfLineAfterKeyword() {
+        assertEquals(Command.ADD_STUDENT, input.parse("  ADD_STUDENT   Mary Ann  "));
+        assertTrue(input.hasArgument());
+        assertEquals("Mary Ann", input.argument());
+    }
+
+    @Test
+    void firstAndSecondArguments_splitNameAndGrade() {
+        assertEquals(Command.ADD_GRADE, input.parse("ADD_GRADE\tAlice   95"));
+        assertEquals("Alice", input.firstArgument());
+        assertTrue(input.hasSecondArgument());
+        assertEquals(95, input.secondArgumentAsInt());
+    }
+
+    @Test
+    void secondArgument_keepsTrailingTokensLikeTheOldSplit() {
+        input.parse("ADD_GRADE Alice 90 extra");
+        assertEquals("90 extra", input.secondArgument());
+        assertThrows(NumberFormatException.class, input::secondArgumentAsInt);
+    }
+
+    @Test
+    void missingArguments_areReported() {
+        input.parse("ADD_GRADE Alice");
+        assertTrue(input.hasArgument());
+        assertFalse(input.hasSecondArgument());
+
+        input.parse("REPORT   ");
+        assertFalse(input.hasArgument());
+    }
+
+    @Test
+    void instance_canBeReusedAcrossLines() {
+        input.parse("ADD_GRADE Alice 90");
+        assertEquals(Command.CLASS_REPORT, input.parse("CLASS_REPORT"));
+        assertFalse(input.hasArgument());
+        assertEquals(Command.UNKNOWN, input.parse(null));
+        assertFalse(input.hasArgument());
+    }
+}
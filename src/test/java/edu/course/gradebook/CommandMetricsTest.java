@@ -0,0 +1,116 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandMetricsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void histogram_reportsPercentilesWithinBucketPrecision() {
+        var histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos * 1_000);
+        }
+        assertEquals(100_000, histogram.count());
+        assertEquals(100_000_000, histogram.max());
+        assertEquals(50_000_500.0, histogram.mean(), 1e-6);
+        for (double p : new double[] {50, 90, 99, 99.9}) {
+            double exact = p * 1_000_000;
+            double reported = histogram.percentile(p);
+            assertTrue(reported >= exact && reported <= exact * 1.04, p + ": " + reported);
+        }
+        assertEquals(histogram.max(), histogram.percentile(100));
+        assertEquals(0, new LatencyHistogram().percentile(99));
+    }
+
+    @Test
+    void histogram_slotsCoverEveryValueInOrder() {
+        int previous = -1;
+        for (long value : new long[] {0, 1, 63, 64, 65, 127, 128, 1_000, 1L << 30, (1L << 41) - 1}) {
+            int slot = LatencyHistogram.slot(value);
+            assertTrue(slot >= previous, "slot of " + value);
+            assertTrue(LatencyHistogram.highestIn(slot) >= value, "bound of " + value);
+            previous = slot;
+        }
+        // 64 and 65 share a two-wide bucket, 66 starts the next one
+        assertEquals(LatencyHistogram.slot(64), LatencyHistogram.slot(65));
+        assertEquals(LatencyHistogram.slot(65) + 1, LatencyHistogram.slot(66));
+    }
+
+    @Test
+    void histogram_countsEveryRecordFromManyThreads() throws InterruptedException {
+        var histogram = new LatencyHistogram();
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    histogram.record(i);
+                }
+            }));
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        assertEquals(200_000, histogram.count());
+        assertEquals(49_999, histogram.max());
+    }
+
+    @Test
+    void main_recordsCountsErrorsAndReportsThemInStats() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var gradebook = new Gradebook();
+        var app = new Main(gradebook, new PrintStream(bytes, false, StandardCharsets.UTF_8));
+        app.runBatch(new BufferedReader(new StringReader("""
+                ADD_STUDENT Alice
+                ADD_GRADE Alice 90
+                ADD_GRADE Alice 80
+                ADD_GRADE Bob 70
+                BOGUS
+                STATS
+                """)));
+
+        var metrics = app.metrics();
+        assertEquals(3, metrics.count(Command.ADD_GRADE));
+        assertEquals(1, metrics.errors(Command.ADD_GRADE));
+        assertEquals(3, metrics.latency(Command.ADD_GRADE).count());
+        assertEquals(1, metrics.errors(Command.UNKNOWN));
+        assertEquals(0, metrics.count(Command.UNDO));
+
+        var output = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("students=1 grades=2 undoDepth=3"), output);
+        assertTrue(output.matches("(?s).*\\nADD_GRADE +3 +1 .*"), output);
+        assertFalse(output.contains("\nUNDO "), output);
+    }
+
+    @Test
+    void dump_rewritesTheFileWithTheCurrentReport() throws IOException {
+        var gradebook = new Gradebook();
+        var metrics = new CommandMetrics();
+        var file = dir.resolve("stats.txt");
+        try (var dump = new MetricsDump(metrics, gradebook, file, Duration.ofHours(1))) {
+            metrics.record(Command.REPORT, 2_000, true);
+            dump.dump();
+            assertTrue(Files.readString(file).contains("\nREPORT "));
+            gradebook.addStudent("Alice");
+        }
+        var lines = Files.readAllLines(file);
+        assertTrue(lines.get(0).startsWith("# "));
+        assertTrue(lines.get(1).startsWith("students=1 "), lines.get(1));
+    }
+}
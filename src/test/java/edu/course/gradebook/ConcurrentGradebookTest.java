@@ -0,0 +1,145 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentGradebookTest {
+
+    private static final int THREADS = 16;
+
+    // ========== Stress Tests ==========
+
+    @Test
+    void concurrentAddGrade_losesNoGrades() throws Exception {
+        var gradebook = new ConcurrentGradebook();
+        int students = 100;
+        int gradesPerThread = 5_000;
+        for (int s = 0; s < students; s++) {
+            gradebook.addStudent("S" + s);
+        }
+
+        runConcurrently(THREADS, t -> {
+            var random = ThreadLocalRandom.current();
+            for (int i = 0; i < gradesPerThread; i++) {
+                assertTrue(gradebook.addGrade("S" + random.nextInt(students), 100));
+                gradebook.averageFor("S" + random.nextInt(students));
+            }
+        });
+
+        int total = 0;
+        for (int s = 0; s < students; s++) {
+            var grades = gradebook.findStudentGrades("S" + s).get();
+            total += grades.size();
+            if (!grades.isEmpty()) {
+                assertEquals(100.0, gradebook.averageFor("S" + s).get(), 0.0);
+            }
+        }
+        assertEquals(THREADS * gradesPerThread, total);
+        assertEquals(100.0, gradebook.classAverage().get(), 0.0);
+    }
+
+    @Test
+    void mixedOperationsWithUndo_leaveBookConsistent() throws Exception {
+        // unbounded undo history so the whole run can be undone at the end
+        var gradebook = new ConcurrentGradebook(8, new ActivityLog(), new UndoHistory(Integer.MAX_VALUE, Long.MAX_VALUE));
+        int students = 20;
+
+        runConcurrently(THREADS, t -> {
+            var random = ThreadLocalRandom.current();
+            for (int i = 0; i < 20_000; i++) {
+                var name = "S" + random.nextInt(students);
+                int op = random.nextInt(100);
+                if (op < 10) {
+                    gradebook.addStudent(name);
+                } else if (op < 75) {
+                    gradebook.addGrade(name, random.nextInt(101));
+                } else if (op < 82) {
+                    gradebook.removeStudent(name);
+                } else if (op < 92) {
+                    gradebook.undo();
+                } else {
+                    gradebook.classAverage();
+                    gradebook.recentLog(5);
+                }
+            }
+        });
+
+        // once quiet, the lock-free class totals must agree with the stored grades
+        long sum = 0;
+        long count = 0;
+        for (int s = 0; s < students; s++) {
+            var grades = gradebook.findStudentGrades("S" + s);
+            if (grades.isPresent()) {
+                for (int grade : grades.get()) {
+                    sum += grade;
+                }
+                count += grades.get().size();
+            }
+        }
+        if (count == 0) {
+            assertTrue(gradebook.classAverage().isEmpty());
+        } else {
+            assertEquals((double) sum / count, gradebook.classAverage().get(), 1e-9);
+        }
+
+        // undoing everything must walk the history back to an empty book
+        while (gradebook.undo()) {
+            // keep undoing
+        }
+        assertTrue(gradebook.classAverage().isEmpty());
+    }
+
+    @Test
+    void concurrentAddStudent_admitsEachNameOnce() throws Exception {
+        var gradebook = new ConcurrentGradebook();
+        var added = new java.util.concurrent.atomic.AtomicInteger();
+
+        runConcurrently(THREADS, t -> {
+            for (int s = 0; s < 500; s++) {
+                if (gradebook.addStudent("S" + s)) {
+                    added.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(500, added.get());
+        assertEquals(500, gradebook.recentLog(10_000).size());
+    }
+
+    // ========== Helpers ==========
+
+    private interface Worker {
+        void run(int threadIndex) throws Exception;
+    }
+
+    private static void runConcurrently(int threads, Worker worker) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            var start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int index = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    worker.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (var future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
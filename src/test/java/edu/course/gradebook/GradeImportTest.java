@@ -0,0 +1,100 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradeImportTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parse_handlesHeaderCommentsRosterRowsAndBadRows() throws IOException {
+        var csv = dir.resolve("term.csv");
+        Files.writeString(csv, """
+                name,grade
+                # roster
+                Alice,90
+                  Bob , 80 ,70\r
+                Carol
+
+                Alice,100
+                Dan,101
+                Eve,abc
+                Frank,
+                ,50
+                """);
+
+        var batch = GradeImport.parse(csv);
+        assertEquals(List.of("Alice", "Bob", "Carol"), List.copyOf(batch.grades().keySet()));
+        assertEquals(List.of(90, 100), batch.grades().get("Alice").asList());
+        assertEquals(List.of(80, 70), batch.grades().get("Bob").asList());
+        assertTrue(batch.grades().get("Carol").isEmpty());
+        assertEquals(8, batch.rows());
+        assertEquals(4, batch.rejectedRows());
+    }
+
+    @Test
+    void parse_doesNotDependOnChunking() throws IOException {
+        var csv = dir.resolve("big.csv");
+        var random = new Random(1);
+        var text = new StringBuilder();
+        // a few MB, so the parallel parse really splits the file
+        for (int row = 0; row < 400_000; row++) {
+            text.append("Student").append(random.nextInt(5_000)).append(',').append(random.nextInt(101)).append('\n');
+        }
+        Files.writeString(csv, text);
+
+        var serial = GradeImport.parse(csv, 1);
+        var parallel = GradeImport.parse(csv, 64);
+        assertEquals(400_000, parallel.rows());
+        assertEquals(List.copyOf(serial.grades().keySet()), List.copyOf(parallel.grades().keySet()));
+        for (var entry : serial.grades().entrySet()) {
+            assertEquals(entry.getValue().asList(), parallel.grades().get(entry.getKey()).asList());
+        }
+    }
+
+    @Test
+    void importBatch_isOneUndoAndOneLogEntry() throws IOException {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 50);
+        var csv = dir.resolve("grades.csv");
+        Files.writeString(csv, "Alice,70\nBob,90,80\nCarol\n");
+
+        var result = gradebook.importBatch(csv);
+        assertEquals(new ImportResult(3, 0, 2, 1, 3), result);
+        assertEquals(Optional.of(List.of(50, 70)), gradebook.findStudentGrades("Alice"));
+        assertEquals(Optional.of(85.0), gradebook.averageFor("Bob"));
+        assertTrue(gradebook.findStudentGrades("Carol").isPresent());
+        assertEquals(Optional.of(72.5), gradebook.classAverage());
+        assertEquals("Imported grades for 3 students", gradebook.recentLog(1).get(0));
+        assertEquals(OptionalInt.of(1), gradebook.rankOf("Bob"));
+
+        assertTrue(gradebook.undo());
+        assertEquals(Optional.of(List.of(50)), gradebook.findStudentGrades("Alice"));
+        assertTrue(gradebook.findStudentGrades("Bob").isEmpty());
+        assertTrue(gradebook.findStudentGrades("Carol").isEmpty());
+        assertEquals(Optional.of(50.0), gradebook.classAverage());
+        assertEquals(1, gradebook.studentCount());
+
+        // the addGrade from before the import is still next in line
+        assertTrue(gradebook.undo());
+        assertEquals(Optional.of(List.of()), gradebook.findStudentGrades("Alice"));
+    }
+
+    @Test
+    void importBatch_missingFileThrows() {
+        assertThrows(IOException.class, () -> new Gradebook().importBatch(dir.resolve("missing.csv")));
+    }
+}
@@ -0,0 +1,146 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradeStoreTest {
+
+    // ========== ByteGradeStore Tests ==========
+
+    @Test
+    void byteStore_growsPastInitialCapacity() {
+        var store = new ByteGradeStore();
+        for (int i = 0; i <= 100; i++) {
+            store.add(i);
+        }
+        assertEquals(101, store.size());
+        assertEquals(0, store.get(0));
+        assertEquals(100, store.get(100));
+    }
+
+    @Test
+    void byteStore_removeLastReturnsNewestGrade() {
+        var store = new ByteGradeStore();
+        store.add(90);
+        store.add(100);
+        assertEquals(100, store.removeLast());
+        assertEquals(90, store.removeLast());
+        assertTrue(store.isEmpty());
+        assertThrows(IllegalStateException.class, store::removeLast);
+    }
+
+    @Test
+    void byteStore_rejectsOutOfRangeGrades() {
+        var store = new ByteGradeStore();
+        assertThrows(IllegalArgumentException.class, () -> store.add(-1));
+        assertThrows(IllegalArgumentException.class, () -> store.add(101));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(0));
+    }
+
+    @Test
+    void asList_isReadOnlyLiveView() {
+        var store = new ByteGradeStore();
+        var view = store.asList();
+        store.add(85);
+        assertEquals(List.of(85), view);
+        assertThrows(UnsupportedOperationException.class, () -> view.add(90));
+        assertThrows(UnsupportedOperationException.class, () -> view.remove(0));
+    }
+
+    @Test
+    void gradebook_findStudentGradesIsReadOnly() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 90);
+        var grades = gradebook.findStudentGrades("Alice").get();
+        assertThrows(UnsupportedOperationException.class, grades::clear);
+        assertEquals(90.0, gradebook.averageFor("Alice").get(), 0.01);
+    }
+
+    @Test
+    void snapshot_sharesStorageButIgnoresLaterChanges() {
+        var store = new ByteGradeStore();
+        store.add(70);
+        store.add(80);
+        var snapshot = store.snapshot();
+        store.add(90);
+        // removing and re-adding would overwrite the shared slot, so the store copies first
+        store.removeLast();
+        store.removeLast();
+        store.add(10);
+        assertEquals(List.of(70, 10), store.asList());
+        assertEquals(List.of(70, 80), snapshot.asList());
+        assertEquals(150, snapshot.sum());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(1));
+        assertSame(snapshot, snapshot.snapshot());
+    }
+
+    @Test
+    void studentReport_comesFromOneLookupAndStaysPut() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 90);
+        gradebook.addGrade("Alice", 85);
+
+        var report = gradebook.report("Alice").get();
+        gradebook.addGrade("Alice", 10);
+        gradebook.undo();
+        gradebook.undo();
+
+        assertEquals(2, report.count());
+        assertEquals(175, report.sum());
+        assertEquals(Optional.of(87.5), report.average());
+        assertEquals(Optional.of("B"), report.letter());
+        assertEquals(List.of(90, 85), report.grades());
+        assertEquals("[90, 85]", report.appendGrades(new StringBuilder()).toString());
+        assertEquals(List.of(90), gradebook.findStudentGrades("Alice").get());
+        assertTrue(gradebook.report("Bob").isEmpty());
+
+        gradebook.addStudent("Bob");
+        var empty = gradebook.report("Bob").get();
+        assertEquals("[]", empty.appendGrades(new StringBuilder()).toString());
+        assertTrue(empty.average().isEmpty());
+        assertTrue(empty.letter().isEmpty());
+    }
+
+    @Test
+    void gradebook_rejectsOutOfRangeGrades() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        assertFalse(gradebook.addGrade("Alice", 101));
+        assertFalse(gradebook.addGrade("Alice", -1));
+        assertTrue(gradebook.findStudentGrades("Alice").get().isEmpty());
+    }
+
+    @Test
+    void gradebook_boxedStoreBehavesTheSame() {
+        var gradebook = new Gradebook(BoxedGradeStore::new);
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 90);
+        gradebook.addGrade("Alice", 80);
+        assertEquals(85.0, gradebook.averageFor("Alice").get(), 0.01);
+        assertTrue(gradebook.undo());
+        assertEquals(List.of(90), gradebook.findStudentGrades("Alice").get());
+    }
+
+    // ========== Heap footprint ==========
+
+    @Test
+    void byteStore_holdsOneBytePerGradePlusGrowthSlack() {
+        var store = new ByteGradeStore();
+        assertEquals(0, store.capacity());
+        for (int n = 1; n <= 10_000; n++) {
+            store.add(n % 101);
+            // growth is 1.5x, so at most half the used bytes (or the minimum of 8) are spare
+            assertTrue(store.capacity() >= n && store.capacity() <= Math.max(8, n + n / 2), "size " + n);
+        }
+        // a bulk append sizes the array to fit rather than leaving 1.5x headroom
+        var bulk = new ByteGradeStore();
+        bulk.addAll(new byte[1_000], 0, 1_000);
+        assertEquals(1_000, bulk.capacity());
+    }
+}
@@ -0,0 +1,170 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradeTimelineTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final long MIDTERM = Instant.parse("2026-03-01T00:00:00Z").toEpochMilli();
+
+    @Test
+    void windowsLastNAndTrend_matchTheGradesInOrder() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        // one grade a day, 50 to 95 in steps of 5, the midterm on day 5
+        for (int day = 0; day < 10; day++) {
+            assertTrue(gradebook.addGrade("Alice", 50 + 5 * day, MIDTERM + (day - 5) * DAY));
+        }
+
+        assertEquals(Optional.of(85.0), gradebook.averageOfLast("Alice", 5));
+        assertEquals(Optional.of(72.5), gradebook.averageOfLast("Alice", 100));
+        assertEquals(Optional.of(85.0), gradebook.averageBetween("Alice", MIDTERM, Long.MAX_VALUE));
+        assertEquals(Optional.of(52.5), gradebook.averageBetween("Alice", Long.MIN_VALUE + 1, MIDTERM - 3 * DAY));
+        assertTrue(gradebook.averageBetween("Alice", MIDTERM + 20 * DAY, Long.MAX_VALUE).isEmpty());
+        assertEquals(5.0, gradebook.trend("Alice", 10).get(), 1e-9);
+        assertEquals(5.0, gradebook.trend("Alice", 3).get(), 1e-9);
+
+        // a time before the previous grade is moved up to it, so it still falls after the midterm
+        gradebook.addGrade("Alice", 0, MIDTERM - 30 * DAY);
+        assertEquals(425.0 / 6, gradebook.averageBetween("Alice", MIDTERM, Long.MAX_VALUE).get(), 1e-9);
+        assertTrue(gradebook.trend("Alice", 2).get() < 0);
+
+        gradebook.addStudent("Bob");
+        gradebook.addGrade("Bob", 80);
+        assertTrue(gradebook.trend("Bob", 5).isEmpty());
+        assertTrue(gradebook.averageOfLast("Nobody", 1).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> gradebook.trend("Bob", 1));
+    }
+
+    @Test
+    void undoRedoAndRemoval_keepTheQueriesEqualToARecomputation() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        // the grades in order with their times, how many grades each undo entry covers, and redo batches
+        var grades = new ArrayList<long[]>();
+        var entries = new ArrayList<Integer>();
+        var redo = new ArrayList<List<long[]>>();
+        var random = new Random(23);
+        long time = MIDTERM;
+        for (int step = 0; step < 3_000; step++) {
+            int roll = random.nextInt(10);
+            if (roll < 6) {
+                int grade = random.nextInt(101);
+                time += random.nextInt(3) * DAY;
+                assertTrue(gradebook.addGrade("Alice", grade, time));
+                grades.add(new long[] {grade, time});
+                entries.add(1);
+                redo.clear();
+            } else if (roll < 8) {
+                // never as far back as ADD_STUDENT
+                int undone = gradebook.undo(Math.min(1 + random.nextInt(3), entries.size()));
+                int count = 0;
+                for (int i = 0; i < undone; i++) {
+                    count += entries.remove(entries.size() - 1);
+                }
+                var taken = grades.subList(grades.size() - count, grades.size());
+                if (undone > 0) {
+                    redo.add(new ArrayList<>(taken));
+                }
+                taken.clear();
+                time = grades.isEmpty() ? MIDTERM : grades.get(grades.size() - 1)[1];
+            } else if (!redo.isEmpty()) {
+                assertTrue(gradebook.redo());
+                var batch = redo.remove(redo.size() - 1);
+                grades.addAll(batch);
+                entries.add(batch.size());
+                time = grades.get(grades.size() - 1)[1];
+            }
+            assertQueriesMatch(gradebook, grades, time, "step " + step);
+        }
+
+        // a removed and restored student keeps the times of their grades
+        gradebook.removeStudent("Alice");
+        assertTrue(gradebook.averageOfLast("Alice", 1).isEmpty());
+        assertTrue(gradebook.undo());
+        assertQueriesMatch(gradebook, grades, time, "after restore");
+    }
+
+    private static void assertQueriesMatch(Gradebook gradebook, List<long[]> grades, long time, String message) {
+        int n = grades.size();
+        assertEquals(mean(grades.subList(Math.max(0, n - 7), n)), gradebook.averageOfLast("Alice", 7), message);
+        var since = grades.stream().filter(g -> g[1] >= time - 4 * DAY).toList();
+        assertEquals(mean(since), gradebook.averageBetween("Alice", time - 4 * DAY, Long.MAX_VALUE), message);
+        var expected = slope(grades.subList(Math.max(0, n - 20), n));
+        var trend = gradebook.trend("Alice", 20);
+        assertEquals(expected.isPresent(), trend.isPresent(), message);
+        if (expected.isPresent()) {
+            assertEquals(expected.get(), trend.get(), 1e-6, message);
+        }
+    }
+
+    private static Optional<Double> mean(List<long[]> grades) {
+        var average = grades.stream().mapToLong(g -> g[0]).average();
+        return average.isPresent() ? Optional.of(average.getAsDouble()) : Optional.empty();
+    }
+
+    // least squares straight from the definition
+    private static Optional<Double> slope(List<long[]> grades) {
+        int m = grades.size();
+        if (m < 2) {
+            return Optional.empty();
+        }
+        double meanX = (m - 1) / 2.0;
+        double meanY = mean(grades).orElseThrow();
+        double covariance = 0;
+        double variance = 0;
+        for (int x = 0; x < m; x++) {
+            covariance += (x - meanX) * (grades.get(x)[0] - meanY);
+            variance += (x - meanX) * (x - meanX);
+        }
+        return Optional.of(covariance / variance);
+    }
+
+    @Test
+    void commands_lastWindowAndTrend() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 60, MIDTERM - DAY);
+        gradebook.addGrade("Alice", 80, MIDTERM);
+        gradebook.addGrade("Alice", 90, MIDTERM + DAY);
+        var app = new Main(gradebook, new PrintStream(bytes, false, StandardCharsets.UTF_8));
+        var summary = app.runBatch(new BufferedReader(new StringReader("""
+                LAST Alice 2
+                LAST Alice
+                WINDOW Alice 2026-03-01T00:00:00Z
+                WINDOW Alice 2020-01-01T00:00:00Z 2026-03-01T00:00:00Z
+                WINDOW Alice 2030-01-01T00:00:00Z
+                WINDOW Alice March
+                TREND Alice
+                TREND Alice 1
+                TREND Bob
+                """)));
+
+        var output = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("Average of last 2 grades for Alice: 85.00"), output);
+        assertTrue(output.contains("Usage: LAST <name> <n>"), output);
+        assertTrue(output.contains("Average for Alice since 2026-03-01T00:00:00Z: 85.00"), output);
+        assertTrue(output.contains("Average for Alice from 2020-01-01T00:00:00Z to 2026-03-01T00:00:00Z: 60.00"), output);
+        assertTrue(output.contains("No grades for Alice since 2030-01-01T00:00:00Z"), output);
+        assertTrue(output.contains("Invalid time: March"), output);
+        assertTrue(output.contains("Trend for Alice: +15.00 points per grade"), output);
+        assertTrue(output.contains("Usage: TREND <name> [n] (n >= 2)"), output);
+        assertTrue(output.contains("No trend for Bob"), output);
+        assertEquals(5, summary.errors());
+    }
+}
@@ -0,0 +1,76 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Randomized property test: the running sums/counts behind averageFor and
+ * classAverage must always match a full recomputation from the stored grades.
+ */
+class GradebookAggregatesTest {
+
+    private static final List<String> NAMES = List.of("Alice", "Bob", "Charlie", "David", "Eve", "Frank");
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 7, 42, 1234, 98765})
+    void incrementalAggregatesMatchRecomputation(long seed) {
+        var random = new Random(seed);
+        // unbounded undo history so the whole run can be undone at the end
+        var gradebook = new Gradebook(ByteGradeStore::new, new ActivityLog(), new UndoHistory(Integer.MAX_VALUE, Long.MAX_VALUE));
+
+        for (int step = 0; step < 20_000; step++) {
+            var name = NAMES.get(random.nextInt(NAMES.size()));
+            int op = random.nextInt(100);
+            if (op < 10) {
+                gradebook.addStudent(name);
+            } else if (op < 70) {
+                gradebook.addGrade(name, random.nextInt(101));
+            } else if (op < 78) {
+                gradebook.removeStudent(name);
+            } else {
+                gradebook.undo();
+            }
+
+            if (step % 97 == 0) {
+                assertConsistent(gradebook);
+            }
+        }
+        assertConsistent(gradebook);
+
+        // drain the whole undo history, checking along the way
+        while (gradebook.undo()) {
+            assertConsistent(gradebook);
+        }
+        assertTrue(gradebook.classAverage().isEmpty());
+    }
+
+    private static void assertConsistent(Gradebook gradebook) {
+        long classSum = 0;
+        long classCount = 0;
+        for (var name : NAMES) {
+            var grades = gradebook.findStudentGrades(name);
+            if (grades.isEmpty()) {
+                assertTrue(gradebook.averageFor(name).isEmpty());
+                continue;
+            }
+            long sum = 0;
+            for (int grade : grades.get()) {
+                sum += grade;
+            }
+            classSum += sum;
+            classCount += grades.get().size();
+            assertEquals(expectedAverage(sum, grades.get().size()), gradebook.averageFor(name), name);
+        }
+        assertEquals(expectedAverage(classSum, classCount), gradebook.classAverage());
+    }
+
+    private static Optional<Double> expectedAverage(long sum, long count) {
+        return count == 0 ? Optional.empty() : Optional.of((double) sum / count);
+    }
+}
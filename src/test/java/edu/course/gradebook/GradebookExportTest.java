@@ -0,0 +1,92 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradebookExportTest {
+
+    @TempDir
+    Path dir;
+
+    private static Gradebook sample() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addStudent("Smith, \"Bob\"");
+        gradebook.addStudent("Carol");
+        gradebook.addGrade("Alice", 90);
+        gradebook.addGrade("Alice", 85);
+        gradebook.addGrade("Smith, \"Bob\"", 59);
+        return gradebook;
+    }
+
+    @Test
+    void csv_hasOneQuotedRowPerStudentInInsertionOrder() throws IOException {
+        var file = dir.resolve("out.csv");
+        assertEquals(3, sample().export(file, ExportFormat.CSV));
+        assertEquals("""
+                name,average,letter,grades
+                Alice,87.50,B,90;85
+                "Smith, ""Bob\""",59.00,F,59
+                Carol,,,
+                """, Files.readString(file));
+    }
+
+    @Test
+    void json_escapesNamesAndUsesNullWithoutGrades() throws IOException {
+        var file = dir.resolve("out.json");
+        sample().export(file, ExportFormat.JSON);
+        assertEquals("""
+                [
+                {"name":"Alice","grades":[90,85],"average":87.50,"letter":"B"},
+                {"name":"Smith, \\"Bob\\"","grades":[59],"average":59.00,"letter":"F"},
+                {"name":"Carol","grades":[],"average":null,"letter":null}
+                ]
+                """, Files.readString(file));
+
+        new Gradebook().export(file, ExportFormat.JSON);
+        assertEquals("[]\n", Files.readString(file));
+    }
+
+    @Test
+    void parallelExport_matchesSequentialAndSkipsRemovedStudents() throws IOException {
+        var gradebook = new Gradebook();
+        var random = new Random(3);
+        for (int s = 0; s < 20_000; s++) {
+            gradebook.addStudent("S" + s);
+            for (int g = 0; g < 5; g++) {
+                gradebook.addGrade("S" + s, random.nextInt(101));
+            }
+        }
+        for (int s = 0; s < 20_000; s += 7) {
+            gradebook.removeStudent("S" + s);
+        }
+        var sequential = dir.resolve("seq.json");
+        var parallel = dir.resolve("par.json");
+        assertEquals(gradebook.studentCount(),
+                GradebookExport.write(gradebook, sequential, ExportFormat.JSON, 1));
+        GradebookExport.write(gradebook, parallel, ExportFormat.JSON, 8);
+        assertEquals(Files.readString(sequential), Files.readString(parallel));
+        assertFalse(Files.readString(parallel).contains("\"S7\""));
+    }
+
+    @Test
+    void averages_roundHalfUpLikeReport() throws IOException {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        // 107 / 40 = 2.675, which is just below 2.675 as a double; the export rounds the exact fraction
+        for (int g = 0; g < 40; g++) {
+            gradebook.addGrade("Alice", g < 27 ? 3 : 2);
+        }
+        var file = dir.resolve("avg.csv");
+        gradebook.export(file, ExportFormat.CSV);
+        assertTrue(Files.readString(file).startsWith("name,average,letter,grades\nAlice,2.68,F,3;"));
+        assertEquals("2.68", String.format("%.2f", gradebook.averageFor("Alice").orElseThrow()));
+    }
+}
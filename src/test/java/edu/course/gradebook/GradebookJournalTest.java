@@ -0,0 +1,272 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// most tests open a journal only for what it records and replays, never calling it in the try body
+@SuppressWarnings("try")
+class GradebookJournalTest {
+
+    private static final GradebookJournal.Options NO_BACKGROUND_SYNC = new GradebookJournal.Options(256, 0, 1_000_000);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopen_replaysEveryChangeIncludingUndos() throws IOException {
+        var gradebook = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, gradebook, NO_BACKGROUND_SYNC)) {
+            gradebook.addStudent("Alice");
+            gradebook.addStudent("Bob");
+            gradebook.addGrade("Alice", 90);
+            gradebook.addGrade("Alice", 80);
+            gradebook.addGrade("Bob", 70);
+            gradebook.undo();                 // Bob's 70 removed
+            gradebook.removeStudent("Alice");
+            gradebook.undo();                 // Alice restored with 90, 80
+            gradebook.addGrade("Alice", 100);
+        }
+
+        var recovered = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, recovered, NO_BACKGROUND_SYNC)) {
+            assertEquals(9, journal.recoveredRecords());
+        }
+        assertEquals(List.of(90, 80, 100), recovered.findStudentGrades("Alice").get());
+        assertEquals(List.of(), recovered.findStudentGrades("Bob").get());
+        assertEquals(90.0, recovered.classAverage().get(), 1e-9);
+        assertFalse(recovered.undo(), "undo history is not persisted");
+    }
+
+    @Test
+    void checkpoint_replaysOnlyTheTail() throws IOException {
+        var gradebook = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, gradebook, NO_BACKGROUND_SYNC)) {
+            gradebook.addStudent("Alice");
+            for (int i = 0; i < 100; i++) {
+                gradebook.addGrade("Alice", i);
+            }
+            journal.checkpoint();
+            gradebook.addGrade("Alice", 100);
+        }
+
+        var recovered = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, recovered, NO_BACKGROUND_SYNC)) {
+            assertEquals(1, journal.recoveredRecords());
+        }
+        assertEquals(101, recovered.findStudentGrades("Alice").get().size());
+        assertEquals(50.0, recovered.averageFor("Alice").get(), 1e-9);
+        try (var files = Files.list(dir)) {
+            assertEquals(2, files.count(), "old journal generation should be deleted");
+        }
+    }
+
+    @Test
+    void loadedSnapshot_isCheckpointedIntoTheJournal() throws IOException {
+        var source = new Gradebook();
+        source.addStudent("Carol");
+        source.addGrade("Carol", 75);
+        var file = Files.createDirectories(dir.resolve("saved")).resolve("book.snap");
+        source.save(file);
+
+        var journalDir = dir.resolve("journal");
+        var gradebook = new Gradebook();
+        try (var journal = GradebookJournal.open(journalDir, gradebook, NO_BACKGROUND_SYNC)) {
+            gradebook.addStudent("Alice");
+            gradebook.load(file);
+            // checkpointed by load() itself, so this lands in the new generation
+            gradebook.addGrade("Carol", 85);
+        }
+
+        var recovered = new Gradebook();
+        try (var journal = GradebookJournal.open(journalDir, recovered, NO_BACKGROUND_SYNC)) {
+            assertEquals(1, journal.recoveredRecords());
+        }
+        assertTrue(recovered.findStudentGrades("Alice").isEmpty());
+        assertEquals(List.of(75, 85), recovered.findStudentGrades("Carol").get());
+    }
+
+    @Test
+    void categories_surviveReplayAndCheckpoint() throws IOException {
+        var gradebook = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, gradebook, NO_BACKGROUND_SYNC)) {
+            gradebook.defineCategory(new GradeCategory("homework", 30, 1));
+            gradebook.defineCategory(new GradeCategory("exams", 70));
+            gradebook.addStudent("Alice");
+            gradebook.addStudent("Bob");
+            gradebook.addGrade("Alice", "homework", 50);
+            gradebook.addGrade("Alice", "homework", 90);
+            gradebook.addGrade("Alice", 10);
+            gradebook.addGrade("Alice", "exams", 80);
+            gradebook.addGrade("Bob", "exams", 60);
+            gradebook.removeStudent("Alice");
+            gradebook.undo();                 // Alice restored with her categories
+            gradebook.defineCategory(new GradeCategory("exams", 50));
+        }
+        // 0.3 * 90 + 0.5 * 80, over weights 0.8
+        double alice = (30 * 90 + 50 * 80) / 80.0;
+        assertEquals(alice, gradebook.report("Alice").orElseThrow().average().orElseThrow(), 1e-9);
+
+        var recovered = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, recovered, NO_BACKGROUND_SYNC)) {
+            assertEquals(12, journal.recoveredRecords());
+            assertEquals(gradebook.categories(), recovered.categories());
+            assertEquals(alice, recovered.report("Alice").orElseThrow().average().orElseThrow(), 1e-9);
+            assertEquals(Optional.of(60.0), recovered.averageFor("Bob"));
+            journal.checkpoint();
+        }
+
+        var fromCheckpoint = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, fromCheckpoint, NO_BACKGROUND_SYNC)) {
+            assertEquals(0, journal.recoveredRecords());
+        }
+        assertEquals(gradebook.categories(), fromCheckpoint.categories());
+        assertEquals(alice, fromCheckpoint.report("Alice").orElseThrow().average().orElseThrow(), 1e-9);
+        assertEquals(gradebook.rankOf("Alice"), fromCheckpoint.rankOf("Alice"));
+        // the tags came back too: dropping no homework now averages in the 50
+        fromCheckpoint.defineCategory(new GradeCategory("homework", 30, 0));
+        assertEquals((30 * 70 + 50 * 80) / 80.0, fromCheckpoint.averageFor("Alice").orElseThrow(), 1e-9);
+    }
+
+    @Test
+    void gradeTimes_surviveReplayAndCheckpoint() throws IOException {
+        long day = 86_400_000L;
+        long march = 1_772_323_200_000L; // 2026-03-01T00:00Z
+        var gradebook = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, gradebook, NO_BACKGROUND_SYNC)) {
+            gradebook.addStudent("Alice");
+            gradebook.addGrade("Alice", 60, march);
+            gradebook.addGrade("Alice", 80, march + day);
+            gradebook.addGrade("Alice", 100, march + 2 * day);
+            gradebook.removeStudent("Alice");
+            gradebook.undo();                 // restored with the same times
+            gradebook.addGrade("Alice", 40, march + 3 * day);
+        }
+        var window = gradebook.averageBetween("Alice", march + day, march + 3 * day);
+        assertEquals(Optional.of(90.0), window);
+
+        var recovered = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, recovered, NO_BACKGROUND_SYNC)) {
+            assertEquals(7, journal.recoveredRecords());
+            assertEquals(window, recovered.averageBetween("Alice", march + day, march + 3 * day));
+            journal.checkpoint();
+        }
+
+        var fromCheckpoint = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, fromCheckpoint, NO_BACKGROUND_SYNC)) {
+            assertEquals(0, journal.recoveredRecords());
+        }
+        assertEquals(window, fromCheckpoint.averageBetween("Alice", march + day, march + 3 * day));
+        assertEquals(Optional.of(40.0), fromCheckpoint.averageBetween("Alice", march + 3 * day, march + 4 * day));
+        assertEquals(gradebook.trend("Alice", 4), fromCheckpoint.trend("Alice", 4));
+    }
+
+    @Test
+    void tornTail_isDiscardedAndJournalKeepsWorking() throws IOException {
+        var gradebook = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, gradebook, NO_BACKGROUND_SYNC)) {
+            gradebook.addStudent("Alice");
+            gradebook.addGrade("Alice", 90);
+            gradebook.addGrade("Alice", 80);
+        }
+        var journalFile = dir.resolve("journal-0.log");
+        try (var channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3); // simulate a crash mid-write of the last record
+        }
+
+        var recovered = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, recovered, NO_BACKGROUND_SYNC)) {
+            assertEquals(2, journal.recoveredRecords());
+            recovered.addGrade("Alice", 70);
+        }
+
+        var again = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, again, NO_BACKGROUND_SYNC)) {
+            assertEquals(3, journal.recoveredRecords());
+        }
+        assertEquals(List.of(90, 70), again.findStudentGrades("Alice").get());
+    }
+
+    @Test
+    void failedAppend_refusesLaterChangesWithoutTouchingTheBook() throws IOException {
+        var gradebook = new Gradebook();
+        var journal = GradebookJournal.open(dir, gradebook, new GradebookJournal.Options(1, 0, 1_000_000));
+        gradebook.addStudent("Alice");
+        // an interrupted write closes the journal's channel, so this grade never reaches the file
+        Thread.currentThread().interrupt();
+        try {
+            assertTrue(gradebook.addGrade("Alice", 90));
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertThrows(UncheckedIOException.class, () -> gradebook.addGrade("Alice", 80));
+        assertThrows(UncheckedIOException.class, () -> gradebook.removeStudent("Alice"));
+        assertThrows(UncheckedIOException.class, gradebook::undo);
+        assertEquals(List.of(90), gradebook.findStudentGrades("Alice").get());
+        assertEquals(2, gradebook.undoDepth());
+        assertThrows(IOException.class, journal::close);
+
+        var recovered = new Gradebook();
+        try (var reopened = GradebookJournal.open(dir, recovered, NO_BACKGROUND_SYNC)) {
+            assertEquals(1, reopened.recoveredRecords());
+        }
+        assertEquals(List.of(), recovered.findStudentGrades("Alice").get());
+    }
+
+    @Test
+    void addOfARemovedName_isJournaledAfterTheRemoval() throws Exception {
+        var gradebook = new ConcurrentGradebook();
+        gradebook.addStudent("Alice");
+        // registered ahead of the journal: another session adds the name while Alice is being removed
+        gradebook.addListener(new GradebookListener() {
+            @Override
+            public void studentRemoved(String name) {
+                var session = Thread.ofPlatform().start(() -> gradebook.addStudent(name));
+                try {
+                    session.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        try (var journal = GradebookJournal.open(dir, gradebook, NO_BACKGROUND_SYNC)) {
+            gradebook.removeStudent("Alice");
+            gradebook.addStudent("Bob");
+            gradebook.removeStudent("Bob");
+        }
+
+        var recovered = new Gradebook();
+        GradebookJournal.open(dir, recovered, NO_BACKGROUND_SYNC).close();
+        for (var name : List.of("Alice", "Bob")) {
+            assertEquals(gradebook.findStudentGrades(name).isPresent(), recovered.findStudentGrades(name).isPresent(), name);
+        }
+    }
+
+    @Test
+    void corruptSnapshot_isRejected() throws IOException {
+        var gradebook = new Gradebook();
+        try (var journal = GradebookJournal.open(dir, gradebook, NO_BACKGROUND_SYNC)) {
+            gradebook.addStudent("Alice");
+            gradebook.addGrade("Alice", 90);
+            journal.checkpoint();
+        }
+        var snapshot = dir.resolve(GradebookJournal.SNAPSHOT_FILE);
+        var bytes = Files.readAllBytes(snapshot);
+        // flip the last grade byte, which Alice's flags, her grade's time and the crc follow
+        bytes[bytes.length - 18] ^= 0x7F;
+        Files.write(snapshot, bytes);
+
+        assertThrows(IOException.class, () -> GradebookJournal.open(dir, new Gradebook(), NO_BACKGROUND_SYNC));
+    }
+}
@@ -0,0 +1,153 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradebookPublisherTest {
+
+    /** Records what it receives, requesting `initial` batches up front and one more after each. */
+    private static class Recorder implements Flow.Subscriber<List<GradebookChange>> {
+        final List<GradebookChange> changes = new ArrayList<>();
+        final CompletableFuture<Integer> batches = new CompletableFuture<>();
+        final long initial;
+        Flow.Subscription subscription;
+        int received;
+
+        Recorder(long initial) {
+            this.initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initial);
+        }
+
+        @Override
+        public void onNext(List<GradebookChange> batch) {
+            changes.addAll(batch);
+            received++;
+            if (initial != Long.MAX_VALUE) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            batches.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            batches.complete(received);
+        }
+    }
+
+    @Test
+    void changes_arriveInOrderAsTypedEvents_includingUndo() throws Exception {
+        var gradebook = new Gradebook();
+        var publisher = new GradebookPublisher();
+        gradebook.addListener(publisher);
+        var recorder = new Recorder(Long.MAX_VALUE);
+        publisher.subscribe(recorder);
+
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 90);
+        gradebook.addGrade("Alice", 70);
+        assertTrue(gradebook.undo());
+        gradebook.removeStudent("Alice");
+        assertTrue(gradebook.undo());
+        publisher.close();
+
+        int batches = recorder.batches.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(
+                new GradebookChange.StudentAdded(1, "Alice"),
+                new GradebookChange.GradeAdded(2, "Alice", 90),
+                new GradebookChange.GradeAdded(3, "Alice", 70),
+                new GradebookChange.GradeRemoved(4, "Alice", 70),
+                new GradebookChange.StudentRemoved(5, "Alice"),
+                new GradebookChange.StudentRestored(6, "Alice", List.of(90))), recorder.changes);
+        assertTrue(batches >= 1 && batches <= 6, "batches: " + batches);
+        assertEquals(0, publisher.subscriberCount());
+        assertEquals(0, publisher.droppedChanges());
+    }
+
+    @Test
+    void slowSubscriber_neverHoldsUpTheGradebook_andSeesTheNewestChanges() throws Exception {
+        var gradebook = new Gradebook();
+        var publisher = new GradebookPublisher(16, 4, GradebookPublisher.Overflow.DROP_OLDEST);
+        gradebook.addListener(publisher);
+        var release = new CountDownLatch(1);
+        var slow = new Recorder(1) {
+            @Override
+            public void onNext(List<GradebookChange> batch) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onNext(batch);
+            }
+        };
+        publisher.subscribe(slow);
+
+        // the subscriber is stuck in its first onNext the whole time
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            gradebook.addStudent("Alice");
+            for (int i = 0; i < 10_000; i++) {
+                gradebook.addGrade("Alice", i % 101);
+            }
+        });
+        release.countDown();
+        publisher.close();
+        slow.batches.get(5, TimeUnit.SECONDS);
+
+        var sequences = slow.changes.stream().mapToLong(GradebookChange::sequence).toArray();
+        for (int i = 1; i < sequences.length; i++) {
+            assertTrue(sequences[i] > sequences[i - 1]);
+        }
+        // the full buffer is what was published last
+        int n = sequences.length;
+        for (int i = 0; i < 16; i++) {
+            assertEquals(10_001 - 15 + i, sequences[n - 16 + i]);
+        }
+        assertEquals(10_001, n + publisher.droppedChanges());
+    }
+
+    @Test
+    void disconnectPolicy_andBadRequests_endTheSubscriptionWithAnError() {
+        var gradebook = new Gradebook();
+        var publisher = new GradebookPublisher(8, 8, GradebookPublisher.Overflow.DISCONNECT);
+        gradebook.addListener(publisher);
+        var idle = new Recorder(1) {
+            @Override
+            public void onNext(List<GradebookChange> batch) {
+                // never asks for more
+                changes.addAll(batch);
+            }
+        };
+        var broken = new Recorder(0);
+        publisher.subscribe(idle);
+        publisher.subscribe(broken);
+
+        var error = assertThrows(Exception.class, () -> broken.batches.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+        gradebook.addStudent("Alice");
+        for (int i = 0; i < 20; i++) {
+            gradebook.addGrade("Alice", 80);
+        }
+        error = assertThrows(Exception.class, () -> idle.batches.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertEquals(0, publisher.subscriberCount());
+        assertTrue(publisher.droppedChanges() >= 1);
+    }
+}
@@ -0,0 +1,122 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradebookServerTest {
+
+    @Test
+    void tcpSessions_shareStudentsButNotUndo() throws Exception {
+        var gradebook = new ConcurrentGradebook();
+        try (var server = new GradebookServer(GradebookServer.address("0"), gradebook);
+             var alice = new Client(server.address());
+             var bob = new Client(server.address())) {
+            assertEquals(List.of("Added student: Alice", "OK"), alice.send("ADD_STUDENT Alice"));
+            bob.send("ADD_STUDENT Bob");
+            alice.send("ADD_GRADE Alice 90");
+            bob.send("ADD_GRADE Bob 80");
+
+            assertEquals(List.of("Undo successful", "OK"), alice.send("UNDO"));
+            assertEquals(Optional.of(List.of()), gradebook.findStudentGrades("Alice"));
+            assertEquals(Optional.of(List.of(80)), gradebook.findStudentGrades("Bob"));
+
+            bob.send("ADD_GRADE Alice 70");
+            assertEquals(List.of("Cannot undo: another session has changed those students since", "ERROR"),
+                    alice.send("UNDO"));
+            assertEquals("ERROR", alice.send("BOGUS").getLast());
+            assertEquals(List.of("Goodbye!", "OK"), bob.send("EXIT"));
+            assertEquals(2, server.sessionsStarted());
+        }
+    }
+
+    @Test
+    void failingCommand_answersErrorAndKeepsTheSessionOpen() throws Exception {
+        var gradebook = new ConcurrentGradebook();
+        gradebook.addStudent("Bob");
+        gradebook.addListener(new GradebookListener() {
+            @Override
+            public void beforeChange() {
+                throw new IllegalStateException("book is read-only");
+            }
+        });
+        try (var server = new GradebookServer(GradebookServer.address("0"), gradebook);
+             var alice = new Client(server.address())) {
+            assertEquals(List.of("ADD_STUDENT failed: book is read-only", "ERROR"), alice.send("ADD_STUDENT Alice"));
+            assertEquals("OK", alice.send("REPORT Bob").getLast());
+            assertEquals(List.of("Goodbye!", "OK"), alice.send("EXIT"));
+        }
+        assertEquals(Optional.empty(), gradebook.findStudentGrades("Alice"));
+    }
+
+    @Test
+    void loadGenerator_replaysScriptOverUnixSocket(@TempDir Path dir) throws Exception {
+        var gradebook = new ConcurrentGradebook();
+        var socket = dir.resolve("gradebook.sock");
+        try (var server = new GradebookServer(UnixDomainSocketAddress.of(socket), gradebook)) {
+            var report = GradebookLoadGenerator.run(server.address(), List.of(
+                    "ADD_STUDENT S{client}",
+                    "ADD_GRADE S{client} 90",
+                    "",
+                    "REPORT S{client}"), 8, 5);
+
+            assertEquals(8 * 3 * 5, report.commands());
+            // every repeat after the first re-adds an existing student
+            assertEquals(8 * 4, report.errors());
+            assertEquals(report.commands(), report.latency().count());
+            assertTrue(report.latency().percentile(99) > 0);
+            for (int c = 0; c < 8; c++) {
+                assertEquals(5, gradebook.findStudentGrades("S" + c).get().size());
+            }
+        }
+        assertFalse(Files.exists(socket));
+    }
+
+    // one connection speaking the session protocol: a command line out, response lines back up to OK or ERROR
+    private static final class Client implements AutoCloseable {
+        private final SocketChannel channel;
+        private final BufferedReader in;
+        private final PrintStream out;
+
+        Client(SocketAddress address) throws IOException {
+            channel = SocketChannel.open(address);
+            in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            out = new PrintStream(new BufferedOutputStream(Channels.newOutputStream(channel)), false, StandardCharsets.UTF_8);
+        }
+
+        List<String> send(String command) throws IOException {
+            out.println(command);
+            out.flush();
+            var lines = new ArrayList<String>();
+            for (var line = in.readLine(); line != null; line = in.readLine()) {
+                lines.add(line);
+                if (line.equals("OK") || line.equals("ERROR")) {
+                    break;
+                }
+            }
+            return lines;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LetterDistributionTest {
+
+    @Test
+    void standardScale_matchesTruncatedTens() {
+        var scale = GradeScale.standard();
+        for (int tenths = 0; tenths <= 1000; tenths++) {
+            double average = tenths / 10.0;
+            var expected = switch ((int) average / 10) {
+                case 10, 9 -> "A";
+                case 8 -> "B";
+                case 7 -> "C";
+                case 6 -> "D";
+                default -> "F";
+            };
+            assertEquals(expected, scale.letterFor(average), "average " + average);
+        }
+    }
+
+    @Test
+    void distribution_followsAddRemoveAndUndo() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addStudent("Bob");
+        gradebook.addStudent("Carol");
+        gradebook.addGrade("Alice", 95);
+        gradebook.addGrade("Bob", 85);
+        gradebook.addGrade("Bob", 75);
+
+        assertEquals(Map.of("A", 1L, "B", 1L, "C", 0L, "D", 0L, "F", 0L), gradebook.letterDistribution());
+        assertEquals(List.of("A", "B", "C", "D", "F"), List.copyOf(gradebook.letterDistribution().keySet()));
+
+        gradebook.undo();
+        gradebook.addGrade("Carol", 10);
+        gradebook.removeStudent("Alice");
+        assertEquals(Map.of("A", 0L, "B", 1L, "C", 0L, "D", 0L, "F", 1L), gradebook.letterDistribution());
+
+        gradebook.undo();
+        assertEquals(1L, gradebook.letterDistribution().get("A"));
+        assertEquals(Optional.of("A"), gradebook.letterGradeFor("Alice"));
+        assertEquals(Optional.empty(), gradebook.letterGradeFor("Nobody"));
+    }
+
+    @Test
+    void switchingScale_recountsEveryStudent() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addStudent("Bob");
+        gradebook.addGrade("Alice", 98);
+        gradebook.addGrade("Bob", 91);
+
+        gradebook.setGradeScale(GradeScale.plusMinus());
+        assertEquals(Optional.of("A+"), gradebook.letterGradeFor("Alice"));
+        assertEquals(Optional.of("A-"), gradebook.letterGradeFor("Bob"));
+        assertEquals(1L, gradebook.letterDistribution().get("A+"));
+        assertEquals(1L, gradebook.letterDistribution().get("A-"));
+
+        gradebook.addGrade("Bob", 69);
+        assertEquals(Optional.of("B-"), gradebook.letterGradeFor("Bob"));
+        assertEquals(0L, gradebook.letterDistribution().get("A-"));
+        assertEquals(1L, gradebook.letterDistribution().get("B-"));
+    }
+
+    @Test
+    void randomSession_matchesCountingEveryStudent() {
+        var gradebook = new Gradebook(ByteGradeStore::new, new ActivityLog(),
+                new UndoHistory(Integer.MAX_VALUE, Long.MAX_VALUE));
+        gradebook.setGradeScale(GradeScale.plusMinus());
+        var random = new Random(7);
+        for (int op = 0; op < 5_000; op++) {
+            var name = "S" + random.nextInt(100);
+            switch (random.nextInt(10)) {
+                case 0 -> gradebook.removeStudent(name);
+                case 1, 2 -> gradebook.undo();
+                case 3 -> gradebook.addStudent(name);
+                default -> gradebook.addGrade(name, random.nextInt(101));
+            }
+        }
+        var expected = new LinkedHashMap<String, Long>();
+        for (var letter : GradeScale.plusMinus().letters()) {
+            expected.put(letter, 0L);
+        }
+        for (int s = 0; s < 100; s++) {
+            gradebook.averageFor("S" + s)
+                    .ifPresent(avg -> expected.merge(GradeScale.plusMinus().letterFor(avg), 1L, Long::sum));
+        }
+        assertEquals(expected, gradebook.letterDistribution());
+    }
+
+    @Test
+    void invalidScales_areRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new GradeScale(new String[] {"P", "F"}, new int[] {50}));
+        assertThrows(IllegalArgumentException.class,
+                () -> new GradeScale(new String[] {"P", "F"}, new int[] {50, 10}));
+        assertThrows(IllegalArgumentException.class,
+                () -> new GradeScale(new String[] {"P", "F"}, new int[] {0, 50}));
+        assertEquals("P", new GradeScale(new String[] {"P", "F"}, new int[] {50, 0}).letterFor(50));
+    }
+}
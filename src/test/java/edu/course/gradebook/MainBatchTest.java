@@ -0,0 +1,121 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MainBatchTest {
+
+    @Test
+    void runBatch_suppressesPromptsAndCountsErrors() throws Exception {
+        var bytes = new ByteArrayOutputStream();
+        var gradebook = new Gradebook();
+        var app = new Main(gradebook, new PrintStream(bytes, false, StandardCharsets.UTF_8));
+        var script = String.join("\n",
+                "ADD_STUDENT Alice",
+                "ADD_GRADE Alice 90",
+                "ADD_GRADE Bob 80",
+                "BOGUS",
+                "CLASS_REPORT",
+                "EXIT",
+                "ADD_GRADE Alice 10");
+
+        var summary = app.runBatch(new BufferedReader(new StringReader(script)));
+
+        var output = bytes.toString(StandardCharsets.UTF_8);
+        assertFalse(output.contains("> "));
+        assertFalse(output.contains("[0] ADD_STUDENT"));
+        assertTrue(output.contains("Class Average: 90.00"));
+        assertEquals(6, summary.lines());
+        assertEquals(2, summary.errors());
+        // nothing after EXIT is applied
+        assertEquals(1, gradebook.findStudentGrades("Alice").get().size());
+    }
+
+    @Test
+    void top_rejectsCountsBelowOne() throws Exception {
+        var bytes = new ByteArrayOutputStream();
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 90);
+        var app = new Main(gradebook, new PrintStream(bytes, false, StandardCharsets.UTF_8));
+
+        var summary = app.runBatch(new BufferedReader(new StringReader("TOP 0\nTOP -3\nTOP 1\n")));
+
+        var output = bytes.toString(StandardCharsets.UTF_8);
+        assertEquals(2, output.lines().filter("Usage: TOP [n] (n >= 1)"::equals).count(), output);
+        assertFalse(output.contains("No graded students yet"), output);
+        assertTrue(output.contains("1. Alice (90.00)"), output);
+        assertEquals(2, summary.errors());
+    }
+
+    @Test
+    void runBatch_stopsAtEndOfInputWithoutExit() throws Exception {
+        var bytes = new ByteArrayOutputStream();
+        var app = new Main(new Gradebook(), new PrintStream(bytes, false, StandardCharsets.UTF_8));
+
+        var summary = app.runBatch(new BufferedReader(new StringReader("ADD_STUDENT Alice\nREPORT Alice\n")));
+
+        assertEquals(2, summary.lines());
+        assertEquals(0, summary.errors());
+        assertTrue(bytes.toString(StandardCharsets.UTF_8).contains("Report for Alice:"));
+    }
+
+    @Test
+    void runPipelined_matchesRunBatchOutputAndCounts() throws Exception {
+        var script = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            var name = "S" + (i % 37);
+            script.append(switch (i % 9) {
+                case 0 -> "ADD_STUDENT " + name;
+                case 1, 2 -> "ADD_GRADE " + name + " " + (i % 120);
+                case 3 -> "REPORT " + name;
+                case 4 -> "CLASS_REPORT";
+                case 5 -> "RANK " + name;
+                case 6 -> i % 4 == 0 ? "UNDO" : "LOG";
+                case 7 -> i % 5 == 0 ? "REMOVE_STUDENT " + name : "TOP 3";
+                default -> "BOGUS " + i;
+            }).append('\n');
+        }
+        script.append("EXIT\nADD_STUDENT Late\n");
+
+        var sequential = new ByteArrayOutputStream();
+        var expected = new Main(new Gradebook(), new PrintStream(sequential, false, StandardCharsets.UTF_8))
+                .runBatch(new BufferedReader(new StringReader(script.toString())));
+        var pipelined = new ByteArrayOutputStream();
+        var gradebook = new Gradebook();
+        var actual = new Main(gradebook, new PrintStream(pipelined, false, StandardCharsets.UTF_8))
+                .runPipelined(new BufferedReader(new StringReader(script.toString())));
+
+        assertEquals(sequential.toString(StandardCharsets.UTF_8), pipelined.toString(StandardCharsets.UTF_8));
+        assertEquals(1_001, actual.lines());
+        assertEquals(expected.lines(), actual.lines());
+        assertEquals(expected.errors(), actual.errors());
+        assertTrue(gradebook.findStudentGrades("Late").isEmpty());
+    }
+
+    @Test
+    void runPipelined_failsInsteadOfHangingWhenOutputDies() {
+        var script = "ADD_STUDENT Alice\n" + "ADD_GRADE Alice 90\n".repeat(20 * CommandPipeline.BATCH_LINES);
+        var broken = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                throw new IllegalStateException("output device gone");
+            }
+        }, false, StandardCharsets.UTF_8);
+        var app = new Main(new Gradebook(), broken);
+
+        var failure = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IOException.class,
+                () -> app.runPipelined(new BufferedReader(new StringReader(script)))));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+    }
+}
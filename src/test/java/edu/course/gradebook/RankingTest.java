@@ -0,0 +1,155 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RankingTest {
+
+    @Test
+    void rank_sharesTiesAndSkipsUngradedStudents() {
+        var gradebook = new Gradebook();
+        for (var name : List.of("Alice", "Bob", "Carol", "Dan")) {
+            gradebook.addStudent(name);
+        }
+        gradebook.addGrade("Alice", 90);
+        gradebook.addGrade("Bob", 80);
+        gradebook.addGrade("Bob", 100);
+        gradebook.addGrade("Carol", 70);
+
+        assertEquals(OptionalInt.of(1), gradebook.rankOf("Alice"));
+        assertEquals(OptionalInt.of(1), gradebook.rankOf("Bob"));
+        assertEquals(OptionalInt.of(3), gradebook.rankOf("Carol"));
+        assertEquals(OptionalInt.empty(), gradebook.rankOf("Dan"));
+        assertEquals(OptionalInt.empty(), gradebook.rankOf("Nobody"));
+        assertEquals(3, gradebook.rankedCount());
+
+        assertEquals(List.of(new RankedStudent(1, "Alice", 90.0), new RankedStudent(1, "Bob", 90.0)),
+                gradebook.topStudents(2));
+    }
+
+    @Test
+    void medianAndPercentile_overStudentAverages() {
+        var gradebook = new Gradebook();
+        assertEquals(Optional.empty(), gradebook.median());
+        assertEquals(Optional.empty(), gradebook.percentile(50));
+
+        int[] averages = {60, 70, 80, 90};
+        for (int i = 0; i < averages.length; i++) {
+            gradebook.addStudent("S" + i);
+            gradebook.addGrade("S" + i, averages[i]);
+        }
+        assertEquals(Optional.of(75.0), gradebook.median());
+        assertEquals(Optional.of(60.0), gradebook.percentile(0));
+        assertEquals(Optional.of(70.0), gradebook.percentile(50));
+        assertEquals(Optional.of(80.0), gradebook.percentile(75));
+        assertEquals(Optional.of(90.0), gradebook.percentile(100));
+        assertThrows(IllegalArgumentException.class, () -> gradebook.percentile(101));
+    }
+
+    @Test
+    void undoAndRemove_keepIndexAndHistogramCurrent() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addStudent("Bob");
+        gradebook.addGrade("Alice", 50);
+        gradebook.addGrade("Bob", 60);
+        gradebook.addGrade("Alice", 100);
+        assertEquals(OptionalInt.of(1), gradebook.rankOf("Alice"));
+
+        gradebook.undo();
+        assertEquals(OptionalInt.of(2), gradebook.rankOf("Alice"));
+        assertEquals(0, gradebook.gradeHistogram()[100]);
+
+        gradebook.removeStudent("Bob");
+        assertEquals(OptionalInt.of(1), gradebook.rankOf("Alice"));
+        assertEquals(0, gradebook.gradeHistogram()[60]);
+
+        gradebook.undo();
+        assertEquals(OptionalInt.of(1), gradebook.rankOf("Bob"));
+        assertEquals(1, gradebook.gradeHistogram()[60]);
+        assertEquals(1, gradebook.gradeHistogram()[50]);
+    }
+
+    @Test
+    void randomSession_matchesSortingEveryAverage() {
+        var random = new Random(42);
+        runSession(random, () -> random.nextInt(101));
+    }
+
+    @Test
+    void tiedSession_matchesSortingEveryAverage() {
+        // two grade values leave whole buckets of students on the same average
+        var random = new Random(7);
+        runSession(random, () -> random.nextBoolean() ? 80 : 90);
+    }
+
+    private static void runSession(Random random, IntSupplier grades) {
+        var gradebook = new Gradebook(ByteGradeStore::new, new ActivityLog(),
+                new UndoHistory(Integer.MAX_VALUE, Long.MAX_VALUE));
+        var names = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            names.add("S" + i);
+            gradebook.addStudent("S" + i);
+        }
+        for (int op = 0; op < 5_000; op++) {
+            var name = names.get(random.nextInt(names.size()));
+            switch (random.nextInt(10)) {
+                case 0 -> gradebook.removeStudent(name);
+                case 1, 2 -> gradebook.undo();
+                case 3 -> gradebook.addStudent(name);
+                default -> gradebook.addGrade(name, grades.getAsInt());
+            }
+            if (op % 250 == 0) {
+                assertMatchesSort(gradebook, names);
+            }
+        }
+        assertMatchesSort(gradebook, names);
+    }
+
+    private static void assertMatchesSort(Gradebook gradebook, List<String> names) {
+        var averages = names.stream()
+                .map(gradebook::averageFor)
+                .flatMap(Optional::stream)
+                .mapToDouble(Double::doubleValue)
+                .sorted()
+                .toArray();
+        int n = averages.length;
+        assertEquals(n, gradebook.rankedCount());
+        for (var name : names) {
+            var avg = gradebook.averageFor(name);
+            if (avg.isEmpty()) {
+                assertEquals(OptionalInt.empty(), gradebook.rankOf(name));
+                continue;
+            }
+            long higher = Arrays.stream(averages).filter(a -> a > avg.get()).count();
+            assertEquals(OptionalInt.of((int) higher + 1), gradebook.rankOf(name), name);
+        }
+        if (n > 0) {
+            double median = n % 2 == 1 ? averages[n / 2] : (averages[n / 2 - 1] + averages[n / 2]) / 2;
+            assertEquals(Optional.of(median), gradebook.median());
+            assertEquals(Optional.of(averages[(int) Math.ceil(0.9 * n) - 1]), gradebook.percentile(90));
+            var top = gradebook.topStudents(5);
+            for (int i = 0; i < top.size(); i++) {
+                double average = averages[n - 1 - i];
+                assertEquals(average, top.get(i).average());
+                assertEquals(Arrays.stream(averages).filter(a -> a > average).count() + 1, top.get(i).rank());
+            }
+        }
+        long gradeCount = Arrays.stream(gradebook.gradeHistogram()).sum();
+        long expected = names.stream()
+                .map(gradebook::findStudentGrades)
+                .flatMap(Optional::stream)
+                .mapToLong(List::size)
+                .sum();
+        assertEquals(expected, gradeCount);
+    }
+}
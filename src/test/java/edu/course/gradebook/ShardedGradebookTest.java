@@ -0,0 +1,89 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedGradebookTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void departmentAggregates_matchOneBookWithTheSameStudents() throws IOException {
+        var sharded = new ShardedGradebook(4);
+        var single = new Gradebook();
+        var random = new Random(21);
+        for (int s = 0; s < 500; s++) {
+            var name = "Student" + s;
+            sharded.addStudent(name);
+            single.addStudent(name);
+            for (int g = random.nextInt(6); g > 0; g--) {
+                int grade = random.nextInt(101);
+                sharded.addGrade(name, grade);
+                single.addGrade(name, grade);
+            }
+        }
+        sharded.removeStudent("Student7");
+        single.removeStudent("Student7");
+
+        // the hash spreads students over every shard
+        for (int i = 0; i < sharded.shardCount(); i++) {
+            assertTrue(sharded.shard(i).studentCount() > 50);
+        }
+        assertEquals(single.studentCount(), sharded.studentCount());
+        assertEquals(single.gradeCount(), sharded.gradeCount());
+        assertEquals(single.classAverage().get(), sharded.classAverage().get(), 1e-9);
+        assertEquals(single.letterDistribution(), sharded.letterDistribution());
+        assertEquals(List.copyOf(single.letterDistribution().keySet()), List.copyOf(sharded.letterDistribution().keySet()));
+        assertArrayEquals(single.gradeHistogram(), sharded.gradeHistogram());
+        assertEquals(single.findStudentGrades("Student42"), sharded.findStudentGrades("Student42"));
+        assertEquals(single.report("Student42").get().toString(), sharded.report("Student42").get().toString());
+
+        // one file with every student once; the order is shard by shard
+        var expected = dir.resolve("single.csv");
+        var actual = dir.resolve("sharded.csv");
+        assertEquals(single.export(expected, ExportFormat.CSV), sharded.export(actual, ExportFormat.CSV));
+        assertEquals(Files.readAllLines(expected).stream().sorted().toList(),
+                Files.readAllLines(actual).stream().sorted().toList());
+    }
+
+    @Test
+    void sectionRouter_keepsEachSectionInItsOwnBookAndRanksAcrossThem() {
+        var sections = new Gradebook[] {new Gradebook(), new Gradebook()};
+        var department = new ShardedGradebook(sections, name -> name.startsWith("A") ? 0 : 1);
+        department.addStudent("Alice");
+        department.addStudent("Bob");
+        department.addStudent("Carol");
+        department.addGrade("Alice", 80);
+        department.addGrade("Bob", 95);
+        department.addGrade("Carol", 80);
+
+        assertEquals(1, sections[0].studentCount());
+        assertEquals(Optional.of(List.of(95)), sections[1].findStudentGrades("Bob"));
+        // ties share a rank across sections
+        assertEquals(List.of(new RankedStudent(1, "Bob", 95.0), new RankedStudent(2, "Alice", 80.0),
+                new RankedStudent(2, "Carol", 80.0)), department.topStudents(5));
+        assertEquals(1, department.topStudents(1).size());
+        assertEquals(Optional.of(85.0), department.classAverage());
+        assertEquals(2L, department.letterDistribution().get("B"));
+    }
+
+    @Test
+    void emptyDepartment_hasNoAverageAndExportsNoRows() throws IOException {
+        var department = new ShardedGradebook(3);
+        assertTrue(department.classAverage().isEmpty());
+        assertEquals(0, department.gradeHistogram()[50]);
+        var file = dir.resolve("empty.json");
+        assertEquals(0, department.export(file, ExportFormat.JSON));
+        assertEquals("[]\n", Files.readString(file));
+    }
+}
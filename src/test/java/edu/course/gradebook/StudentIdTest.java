@@ -0,0 +1,80 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StudentIdTest {
+
+    @Test
+    void idOverloads_matchNameBasedMethods() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addStudent("Bob");
+        int bob = gradebook.studentId("Bob").orElseThrow();
+
+        assertTrue(gradebook.addGrade(bob, 80));
+        assertTrue(gradebook.addGrade(bob, 90));
+        assertEquals(Optional.of(85.0), gradebook.averageFor(bob));
+        assertEquals(gradebook.averageFor("Bob"), gradebook.averageFor(bob));
+        assertEquals(Optional.of("B"), gradebook.letterGradeFor(bob));
+        assertEquals(Optional.of(List.of(80, 90)), gradebook.findStudentGrades(bob));
+        assertEquals(Optional.of("Bob"), gradebook.studentName(bob));
+    }
+
+    @Test
+    void unknownIds_areRejected() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+
+        assertFalse(gradebook.addGrade(-1, 90));
+        assertFalse(gradebook.addGrade(12_345, 90));
+        assertEquals(Optional.empty(), gradebook.averageFor(12_345));
+        assertEquals(Optional.empty(), gradebook.studentName(12_345));
+        assertEquals(OptionalInt.empty(), gradebook.studentId("Nobody"));
+    }
+
+    @Test
+    void removedStudent_isRestoredUnderSameIdByUndo() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        int alice = gradebook.studentId("Alice").orElseThrow();
+        gradebook.addGrade(alice, 70);
+        gradebook.removeStudent("Alice");
+
+        assertEquals(OptionalInt.empty(), gradebook.studentId("Alice"));
+        assertFalse(gradebook.addGrade(alice, 90));
+
+        assertTrue(gradebook.undo());
+        assertEquals(OptionalInt.of(alice), gradebook.studentId("Alice"));
+        assertEquals(Optional.of(List.of(70)), gradebook.findStudentGrades(alice));
+    }
+
+    @Test
+    void idsAreNotReused() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        int first = gradebook.studentId("Alice").orElseThrow();
+        gradebook.removeStudent("Alice");
+        gradebook.addStudent("Alice");
+
+        assertNotEquals(first, gradebook.studentId("Alice").orElseThrow());
+        assertEquals(1, gradebook.studentCount());
+    }
+
+    @Test
+    void registry_growsAcrossPages() {
+        var gradebook = new Gradebook();
+        for (int i = 0; i < 5_000; i++) {
+            gradebook.addStudent("S" + i);
+        }
+        int last = gradebook.studentId("S4999").orElseThrow();
+        assertTrue(gradebook.addGrade(last, 100));
+        assertEquals(Optional.of(100.0), gradebook.averageFor("S4999"));
+        assertEquals(5_000, gradebook.studentCount());
+    }
+}
@@ -0,0 +1,150 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThresholdWatchesTest {
+
+    @Test
+    void crossings_fireOnAddGradeUndoAndRemoveStudentOnly() {
+        var gradebook = new Gradebook();
+        var events = new ArrayList<String>();
+        gradebook.addListener(new GradebookListener() {
+            @Override
+            public void letterChanged(String name, String from, String to) {
+                events.add(name + " " + from + "->" + to);
+            }
+
+            @Override
+            public void watchCrossed(GradeWatch watch, String name, double average, boolean below) {
+                events.add(name + (below ? " below " : " above ") + watch.name());
+            }
+        });
+        gradebook.addStudent("Alice");
+        gradebook.addStudent("Bob");
+        gradebook.addGrade("Bob", 40);
+        // Bob is already below: listed, but no event
+        assertEquals(1, gradebook.addWatch(new GradeWatch("at-risk", 60)));
+        assertEquals(1, gradebook.addWatch(GradeWatch.worseThan("honors", "A", gradebook.gradeScale())));
+        events.clear();
+
+        gradebook.addGrade("Alice", 95);
+        assertEquals(List.of("Alice null->A"), events);
+        events.clear();
+        gradebook.addGrade("Alice", 90);
+        // 92.5: still an A and above both thresholds
+        assertEquals(List.of(), events);
+        gradebook.addGrade("Alice", 0);
+        // 61.67 falls past 90 only
+        assertEquals(List.of("Alice A->D", "Alice below honors"), events);
+        events.clear();
+        gradebook.addGrade("Alice", 0);
+        assertEquals(List.of("Alice D->F", "Alice below at-risk"), events);
+        assertEquals(Optional.of(List.of("Bob", "Alice")), gradebook.belowWatch("at-risk"));
+        events.clear();
+
+        assertTrue(gradebook.undo());
+        assertEquals(List.of("Alice F->D", "Alice above at-risk"), events);
+        assertEquals(Optional.of(List.of("Bob")), gradebook.belowWatch("at-risk"));
+        events.clear();
+        assertTrue(gradebook.redo());
+        assertEquals(List.of("Alice D->F", "Alice below at-risk"), events);
+        events.clear();
+
+        gradebook.removeStudent("Bob");
+        assertEquals(List.of("Bob F->null", "Bob above at-risk", "Bob above honors"), events);
+        assertEquals(Optional.of(List.of("Alice")), gradebook.belowWatch("at-risk"));
+        assertEquals(1, gradebook.belowWatchCount("honors"));
+        assertTrue(gradebook.belowWatch("nothing").isEmpty());
+
+        // moving a watch recounts from the averages already tracked
+        assertEquals(0, gradebook.addWatch(new GradeWatch("at-risk", 30)));
+        assertTrue(gradebook.removeWatch("at-risk"));
+        assertEquals(List.of("honors"), gradebook.watches().stream().map(GradeWatch::name).toList());
+    }
+
+    @Test
+    void randomChanges_keepEverySetEqualToAScan() {
+        var gradebook = new Gradebook();
+        var random = new Random(24);
+        for (int t = 0; t <= 100; t += 5) {
+            gradebook.addWatch(new GradeWatch("w" + t, t + 0.5));
+        }
+        var names = new String[40];
+        for (int s = 0; s < names.length; s++) {
+            names[s] = "S" + s;
+            gradebook.addStudent(names[s]);
+        }
+        for (int step = 0; step < 5_000; step++) {
+            var name = names[random.nextInt(names.length)];
+            switch (random.nextInt(10)) {
+                case 0, 1 -> gradebook.undo();
+                case 2 -> gradebook.redo();
+                case 3 -> {
+                    if (!gradebook.removeStudent(name)) {
+                        gradebook.addStudent(name);
+                    }
+                }
+                default -> gradebook.addGrade(name, random.nextInt(101));
+            }
+        }
+        for (var watch : gradebook.watches()) {
+            var expected = new TreeSet<String>();
+            for (var name : names) {
+                var average = gradebook.averageFor(name);
+                if (average.isPresent() && watch.isBelow(average.get())) {
+                    expected.add(name);
+                }
+            }
+            assertEquals(expected, new TreeSet<>(gradebook.belowWatch(watch.name()).orElseThrow()), watch.name());
+        }
+    }
+
+    @Test
+    void commands_watchWatchesAndAtRisk() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var gradebook = new Gradebook();
+        var app = new Main(gradebook, new PrintStream(bytes, false, StandardCharsets.UTF_8));
+        var summary = app.runBatch(new BufferedReader(new StringReader("""
+                WATCHES
+                ADD_STUDENT Alice
+                ADD_STUDENT Bob
+                ADD_GRADE Alice 55
+                ADD_GRADE Bob 75
+                WATCH at-risk 60
+                WATCH below-b B
+                WATCH odd x
+                ADD_GRADE Bob 30
+                AT_RISK at-risk
+                AT_RISK
+                AT_RISK nobody
+                WATCHES
+                """)));
+
+        var output = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("No watches; add one with WATCH <name> <average | letter>"), output);
+        assertTrue(output.contains("Watching at-risk (60), 1 below now"), output);
+        assertTrue(output.contains("Watching below-b (80), 2 below now"), output);
+        assertTrue(output.contains("Usage: WATCH <name> <average | letter>"), output);
+        // lowest average first
+        assertTrue(output.contains("Below at-risk (60): Bob, Alice"), output);
+        assertTrue(output.contains("Below below-b (80): Bob, Alice"), output);
+        assertTrue(output.contains("Unknown watch: nobody"), output);
+        assertTrue(output.contains("  at-risk (60), 2 below"), output);
+        // WATCH odd x and AT_RISK nobody
+        assertEquals(2, summary.errors());
+    }
+}
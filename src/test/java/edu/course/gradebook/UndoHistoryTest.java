@@ -0,0 +1,80 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UndoHistoryTest {
+
+    @Test
+    void depthLimit_dropsOldestEntries() {
+        var gradebook = new Gradebook(ByteGradeStore::new, new ActivityLog(), new UndoHistory(2, Long.MAX_VALUE));
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 70);
+        gradebook.addGrade("Alice", 80);
+        gradebook.addGrade("Alice", 90);
+
+        assertEquals(2, gradebook.undoDepth());
+        // addStudent and the 70 fell out
+        assertEquals(2, gradebook.undoHistory().evicted());
+        assertTrue(gradebook.undo());
+        assertTrue(gradebook.undo());
+        assertFalse(gradebook.undo(), "the oldest grade fell out of the history");
+        assertEquals(List.of(70), gradebook.findStudentGrades("Alice").get());
+    }
+
+    @Test
+    void byteLimit_releasesRemovedStudentsGrades() {
+        var gradebook = new Gradebook(ByteGradeStore::new, new ActivityLog(), new UndoHistory(1_000, 1_024));
+        gradebook.addStudent("Alice");
+        for (int i = 0; i < 2_000; i++) {
+            gradebook.addGrade("Alice", 100);
+        }
+        gradebook.removeStudent("Alice");
+
+        // the pinned 2000-grade list alone is over budget, but the newest entry is always kept
+        assertEquals(1, gradebook.undoDepth());
+        assertTrue(gradebook.undoRetainedBytes() >= 2_000);
+
+        gradebook.addStudent("Bob");
+        gradebook.addGrade("Bob", 50);
+        assertEquals(2, gradebook.undoDepth());
+        assertTrue(gradebook.undoRetainedBytes() < 1_024);
+    }
+
+    @Test
+    void retainedBytes_tracksPushAndPop() {
+        var history = new UndoHistory();
+        history.push(new UndoAction.RemoveLastGrade(0));
+        history.push(new UndoAction.RemoveLastGrade(1));
+        assertEquals(32, history.retainedBytes());
+        assertEquals(new UndoAction.RemoveLastGrade(1), history.pop());
+        assertEquals(16, history.retainedBytes());
+        history.pop();
+        assertNull(history.pop());
+        assertEquals(0, history.retainedBytes());
+    }
+
+    @Test
+    void longSession_staysWithinDepthAndByteLimits() {
+        var history = new UndoHistory(500, 64 << 10);
+        var gradebook = new Gradebook(ByteGradeStore::new, new ActivityLog(), history);
+        long pushes = 0;
+        for (int round = 0; round < 10_000; round++) {
+            // each round: add a student, give them grades, remove them again
+            var name = "S" + (round % 1_000);
+            gradebook.addStudent(name);
+            for (int g = 0; g < 98; g++) {
+                gradebook.addGrade(name, g);
+            }
+            gradebook.removeStudent(name);
+            pushes += 100;
+            assertTrue(history.depth() <= history.maxDepth(), "depth " + history.depth());
+            assertTrue(history.retainedBytes() <= history.maxBytes(), "retained " + history.retainedBytes());
+        }
+        // nothing is kept beyond what the limits allow; the rest was evicted, not leaked
+        assertEquals(pushes, history.depth() + history.evicted());
+    }
+}
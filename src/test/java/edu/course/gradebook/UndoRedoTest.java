@@ -0,0 +1,238 @@
+package edu.course.gradebook;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UndoRedoTest {
+
+    @Test
+    void committedGroup_undoesAsOneCompactedStep() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addStudent("Bob");
+        gradebook.begin();
+        for (int i = 0; i < 5_000; i++) {
+            gradebook.addGrade("Alice", 90);
+            gradebook.addGrade("Bob", 70);
+        }
+        gradebook.addStudent("Carol");
+        gradebook.addGrade("Carol", 50);
+        assertTrue(gradebook.commit());
+        assertFalse(gradebook.commit());
+
+        // 10,002 changes, kept as one entry of four bulk actions rather than 10,002 records
+        assertEquals(3, gradebook.undoDepth());
+        assertTrue(gradebook.undoRetainedBytes() < 1_000);
+
+        assertTrue(gradebook.undo());
+        assertEquals(Optional.of(List.of()), gradebook.findStudentGrades("Alice"));
+        assertTrue(gradebook.findStudentGrades("Carol").isEmpty());
+        assertTrue(gradebook.classAverage().isEmpty());
+        assertEquals(0, gradebook.rankedCount());
+        assertEquals("Undo performed", gradebook.recentLog(1).get(0));
+
+        assertTrue(gradebook.redo());
+        assertEquals(5_000, gradebook.findStudentGrades("Bob").get().size());
+        assertEquals(Optional.of(List.of(50)), gradebook.findStudentGrades("Carol"));
+        assertEquals(Optional.of((5_000 * 160 + 50) / 10_001.0), gradebook.classAverage());
+        assertEquals(3, gradebook.rankOf("Carol").getAsInt());
+    }
+
+    @Test
+    void undoInsideAnOpenGroup_isRefused() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.begin();
+        gradebook.addGrade("Alice", 80);
+        assertFalse(gradebook.undo());
+        assertFalse(gradebook.savepoint("inside"));
+        assertTrue(gradebook.commit());
+        assertTrue(gradebook.undo());
+        assertEquals(Optional.of(List.of()), gradebook.findStudentGrades("Alice"));
+    }
+
+    @Test
+    void undoN_thenRedo_restoresTheSameState() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 90);
+        gradebook.addGrade("Alice", 80);
+        gradebook.removeStudent("Alice");
+        gradebook.addStudent("Bob");
+
+        assertEquals(3, gradebook.undo(3));
+        assertEquals(Optional.of(List.of(90)), gradebook.findStudentGrades("Alice"));
+        assertTrue(gradebook.findStudentGrades("Bob").isEmpty());
+        assertEquals("Undo performed (3 steps)", gradebook.recentLog(1).get(0));
+
+        assertTrue(gradebook.redo());
+        assertTrue(gradebook.findStudentGrades("Alice").isEmpty());
+        assertTrue(gradebook.findStudentGrades("Bob").isPresent());
+        assertFalse(gradebook.redo());
+
+        // the redone batch is one entry again; more steps than there are undoes everything left
+        assertEquals(3, gradebook.undo(100));
+        assertEquals(0, gradebook.studentCount());
+        assertEquals(0, gradebook.undo(1));
+    }
+
+    @Test
+    void redo_afterSeveralUndosOfOneStudent_redoesEachInTurn() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 90);
+        gradebook.addGrade("Alice", 80);
+
+        assertTrue(gradebook.undo());
+        assertTrue(gradebook.undo());
+        assertTrue(gradebook.redo());
+        assertTrue(gradebook.redo());
+        assertEquals(Optional.of(List.of(90, 80)), gradebook.findStudentGrades("Alice"));
+        assertTrue(gradebook.undo());
+        assertEquals(Optional.of(List.of(90)), gradebook.findStudentGrades("Alice"));
+    }
+
+    @Test
+    void newChange_clearsRedo() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 90);
+        gradebook.undo();
+        assertEquals(1, gradebook.redoDepth());
+        gradebook.addGrade("Alice", 60);
+        assertEquals(0, gradebook.redoDepth());
+        assertFalse(gradebook.redo());
+        assertEquals(Optional.of(List.of(60)), gradebook.findStudentGrades("Alice"));
+    }
+
+    @Test
+    void undoTo_revertsEverythingSinceTheSavepoint() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 90);
+        assertTrue(gradebook.savepoint("midterm"));
+        gradebook.addGrade("Alice", 40);
+        gradebook.addStudent("Bob");
+        gradebook.removeStudent("Alice");
+
+        assertTrue(gradebook.undoTo("midterm"));
+        assertEquals(Optional.of(List.of(90)), gradebook.findStudentGrades("Alice"));
+        assertTrue(gradebook.findStudentGrades("Bob").isEmpty());
+        // already there: nothing to undo, still fine
+        assertTrue(gradebook.undoTo("midterm"));
+        assertFalse(gradebook.undoTo("final"));
+
+        // undoing past the savepoint forgets it
+        gradebook.undo();
+        gradebook.addGrade("Alice", 70);
+        assertFalse(gradebook.undoTo("midterm"));
+    }
+
+    @Test
+    void undoTo_isRefusedOnceTheNeededEntriesWereEvicted() {
+        var gradebook = new Gradebook(ByteGradeStore::new, new ActivityLog(), new UndoHistory(3, Long.MAX_VALUE));
+        gradebook.addStudent("Alice");
+        assertTrue(gradebook.savepoint("start"));
+        for (int i = 0; i < 5; i++) {
+            gradebook.addGrade("Alice", i);
+        }
+        assertFalse(gradebook.undoTo("start"));
+        assertEquals(5, gradebook.findStudentGrades("Alice").get().size());
+    }
+
+    @Test
+    void importUndo_canBeRedone() {
+        var gradebook = new Gradebook();
+        gradebook.addStudent("Alice");
+        gradebook.addGrade("Alice", 50);
+        var grades = new LinkedHashMap<String, ByteGradeStore>();
+        var alice = new ByteGradeStore();
+        alice.add(60);
+        var bob = new ByteGradeStore();
+        bob.add(100);
+        grades.put("Alice", alice);
+        grades.put("Bob", bob);
+        gradebook.importBatch(new GradeImport.Batch(grades, 2, 0));
+
+        assertTrue(gradebook.undo());
+        assertTrue(gradebook.findStudentGrades("Bob").isEmpty());
+        assertTrue(gradebook.redo());
+        assertEquals(Optional.of(List.of(50, 60)), gradebook.findStudentGrades("Alice"));
+        assertEquals(Optional.of(List.of(100)), gradebook.findStudentGrades("Bob"));
+        assertEquals(Optional.of(70.0), gradebook.classAverage());
+    }
+
+    @Test
+    void commands_driveGroupsSavepointsAndRedo() throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        var gradebook = new Gradebook();
+        var app = new Main(gradebook, new PrintStream(bytes, false, StandardCharsets.UTF_8));
+        var summary = app.runBatch(new BufferedReader(new StringReader("""
+                ADD_STUDENT Alice
+                SAVEPOINT empty
+                BEGIN
+                ADD_GRADE Alice 90
+                ADD_GRADE Alice 80
+                UNDO
+                COMMIT
+                ADD_GRADE Alice 70
+                UNDO 2
+                REDO
+                UNDO TO empty
+                COMMIT
+                UNDO x
+                """)));
+
+        var output = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("Cannot undo inside BEGIN; COMMIT first"), output);
+        assertTrue(output.contains("Undid 2 steps"), output);
+        assertTrue(output.contains("Undone back to savepoint empty"), output);
+        assertTrue(output.contains("No group to commit"), output);
+        // UNDO inside BEGIN, the second COMMIT and UNDO x
+        assertEquals(3, summary.errors());
+        assertEquals(Optional.of(List.of()), gradebook.findStudentGrades("Alice"));
+    }
+
+    @Test
+    void sessions_undoOnlyTheirOwnChanges() {
+        var gradebook = new ConcurrentGradebook();
+        var alice = new UndoHistory();
+        var bob = new UndoHistory();
+        gradebook.runSession(alice, () -> {
+            gradebook.addStudent("Alice");
+            gradebook.addGrade("Alice", 90);
+        });
+        gradebook.runSession(bob, () -> {
+            gradebook.addStudent("Bob");
+            gradebook.addGrade("Bob", 80);
+        });
+
+        gradebook.runSession(alice, () -> assertTrue(gradebook.undo()));
+        assertEquals(Optional.of(List.of()), gradebook.findStudentGrades("Alice"));
+        assertEquals(Optional.of(List.of(80)), gradebook.findStudentGrades("Bob"));
+        assertEquals(0, gradebook.undoDepth());
+
+        // Bob grades Alice; Alice's session may no longer take her student back
+        gradebook.runSession(bob, () -> gradebook.addGrade("Alice", 70));
+        gradebook.runSession(alice, () -> {
+            assertFalse(gradebook.undo());
+            assertFalse(gradebook.redo());
+            assertEquals(1, gradebook.undoDepth());
+        });
+        gradebook.runSession(bob, () -> assertTrue(gradebook.undo()));
+        gradebook.runSession(alice, () -> assertTrue(gradebook.undo()));
+        assertTrue(gradebook.findStudentGrades("Alice").isEmpty());
+        assertEquals(Optional.of(List.of(80)), gradebook.findStudentGrades("Bob"));
+    }
+}